@@ -0,0 +1,46 @@
+package kx;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe pool of byte arrays for temporary encoding and compression buffers, so serialization of big
+ * objects doesn't allocate a new array of the message size each time.
+ * <p>
+ * Arrays are released into the pool only while total size of pooled arrays is less than the limit.
+ */
+final class KxBufferPool {
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final ConcurrentLinkedDeque<byte[]> buffers = new ConcurrentLinkedDeque<>();
+
+    static final KxBufferPool SHARED = new KxBufferPool(64 * 1024 * 1024);
+
+    KxBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    /**
+     * Returns a pooled array of at least the given size or a new one if there is no such array in the pool.
+     */
+    byte[] acquire(int size) {
+        for (byte[] b : buffers) {
+            if (b.length >= size && buffers.removeFirstOccurrence(b)) {
+                pooledBytes.addAndGet(-b.length);
+                return b;
+            }
+        }
+        return new byte[size];
+    }
+
+    void release(byte[] buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (pooledBytes.addAndGet(buffer.length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-buffer.length);
+            return;
+        }
+        buffers.addFirst(buffer);
+    }
+}
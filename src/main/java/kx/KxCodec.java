@@ -0,0 +1,158 @@
+package kx;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+
+/**
+ * Reentrant kdb+ IPC codec. The codec keeps only its settings: each call uses own cursor,
+ * {@link KxEncoder} or {@link KxDecoder} input, so one codec can encode, decode and compress
+ * messages in many threads at the same time, without any connection locks.
+ * <p>
+ * Encoded messages and temporary buffers of compression are taken from a shared pool.
+ */
+public final class KxCodec {
+    private final TimeZone tz;
+    private final Charset charset;
+    private final int ipcVersion;
+    private final KxDecoder decoder;
+
+    /**
+     * Minimal message size to be compressed, the same kdb+ uses.
+     */
+    public static final int MIN_COMPRESSION_SIZE = 2000;
+
+    public KxCodec(TimeZone tz, Charset charset) {
+        this(tz, charset, 3, false, false);
+    }
+
+    /**
+     * @param tz                 the timezone of temporal values
+     * @param charset            the encoding of symbols and strings
+     * @param ipcVersion         the ipc version to encode with, as it's negotiated with kdb+ instance
+     * @param primitiveTemporals decode temporal vectors as {@link TemporalVector}, see {@link KxDecoder}
+     * @param compactStrings     decode symbol vectors as {@link SymbolVector} and lists of strings as {@link StringVector}
+     */
+    public KxCodec(TimeZone tz, Charset charset, int ipcVersion, boolean primitiveTemporals, boolean compactStrings) {
+        this.tz = tz;
+        this.charset = charset;
+        this.ipcVersion = ipcVersion;
+        this.decoder = new KxDecoder(tz, charset, KxDecoder.DEFAULT_PARALLEL_THRESHOLD, primitiveTemporals, compactStrings);
+    }
+
+    public TimeZone getTimeZone() {
+        return tz;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public KxDecoder getDecoder() {
+        return decoder;
+    }
+
+    /**
+     * Calculates the number of bytes which would be required to serialize the object, without the message header.
+     */
+    public int encodedSize(Object x) {
+        return createEncoder().nx(x);
+    }
+
+    /**
+     * Serializes the object as full IPC message, including the header.
+     *
+     * @param msgType  type of the ipc message: 0 - async, 1 - sync, 2 - response
+     * @param x        the object
+     * @param compress true if the message should be compressed. Small messages and messages that can't be
+     *                 compressed in half are never compressed, like in kdb+.
+     * @return the message bytes
+     * @see #encodeMessage(int, Object, boolean)
+     */
+    public byte[] encode(int msgType, Object x, boolean compress) {
+        try (KxMessage message = encodeMessage(msgType, x, compress)) {
+            return message.toByteArray();
+        }
+    }
+
+    /**
+     * Serializes the object as full IPC message in one pass into pooled chunks, which can be written
+     * to a socket without copying them into one big array.
+     *
+     * @param msgType  type of the ipc message: 0 - async, 1 - sync, 2 - response
+     * @param x        the object
+     * @param compress true if the message should be compressed. Small messages and messages that can't be
+     *                 compressed in half are never compressed, like in kdb+.
+     * @return the message that must be closed after it's written
+     */
+    public KxMessage encodeMessage(int msgType, Object x, boolean compress) {
+        final KxMessage message = createEncoder().encode(msgType, x);
+        if (!compress || message.size() <= MIN_COMPRESSION_SIZE) {
+            return message;
+        }
+
+        final KxMessage compressed = KxEncoder.compress(message, KxBufferPool.SHARED);
+        if (compressed == null) {
+            return message;
+        }
+        message.close();
+        return compressed;
+    }
+
+    /**
+     * Serializes the object as full uncompressed IPC message into the file. Each chunk is written as soon as
+     * it's filled, so the message is never kept in memory.
+     *
+     * @param file    the file to write the message into from its current position
+     * @param msgType type of the ipc message: 0 - async, 1 - sync, 2 - response
+     * @param x       the object
+     * @return the message size, including the header
+     * @throws IOException if the message can't be written
+     */
+    public int encode(FileChannel file, int msgType, Object x) throws IOException {
+        return new KxEncoder(tz, charset, ipcVersion, KxBufferPool.SHARED, file).write(msgType, x);
+    }
+
+    /**
+     * Serializes kdb+ error as a response message.
+     *
+     * @param text the error message
+     * @return the message bytes
+     */
+    public byte[] encodeError(String text) {
+        try (KxMessage message = createEncoder().error(text)) {
+            return message.toByteArray();
+        }
+    }
+
+    /**
+     * Deserializes full IPC message, including the header.
+     *
+     * @param message the message bytes
+     * @return decoded object
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message is malformed
+     */
+    public Object decode(byte[] message) throws c.KException, IOException {
+        return decoder.decode(message);
+    }
+
+    /**
+     * Deserializes message body. The input must be positioned just after the message header.
+     *
+     * @param in         the message source
+     * @param compressed true if the message is compressed
+     * @param progress   receives decoding progress
+     * @return decoded object
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message is malformed or can't be read
+     */
+    public Object decode(KxInput in, boolean compressed, QueryProgress progress) throws c.KException, IOException {
+        return decoder.decode(in, compressed, progress);
+    }
+
+    KxEncoder createEncoder() {
+        return new KxEncoder(tz, charset, ipcVersion, KxBufferPool.SHARED);
+    }
+}
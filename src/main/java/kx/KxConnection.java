@@ -7,7 +7,7 @@ import javax.net.ssl.SSLSocketFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.Socket;
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 import java.util.TimeZone;
 import java.util.concurrent.CancellationException;
@@ -16,9 +16,16 @@ import java.util.function.Consumer;
 public class KxConnection extends c implements Closeable {
     public static final TimeZone UTC_TIMEZONE = TimeZone.getTimeZone("UTC");
 
+    /**
+     * The codec with the same settings connections use, for objects that are not received from kdb+, like files.
+     */
+    public static final KxCodec DEFAULT_CODEC = new KxCodec(UTC_TIMEZONE, StandardCharsets.UTF_8);
+
+    private volatile KxPipeline pipeline;
+
     public KxConnection(String host, int port, InstanceOptions options) throws IOException {
         tz = UTC_TIMEZONE;
-        setEncoding("UTF-8");
+        setCharset(StandardCharsets.UTF_8);
 
         // We have to split original constructor into socket creating and authentification to be able to cancel
         // authentication - it could take too long if the instance if busy.
@@ -35,64 +42,101 @@ public class KxConnection extends c implements Closeable {
         io(s);
     }
 
-    public Object query(Object x, CancellationValidator cancellation, ResponseValidator responseValidator, Consumer<QueryPhase> phaseConsumer) throws IOException, KException, CancellationException {
+    /**
+     * Sends the query and waits for the response.
+     *
+     * @param codec         the codec the response is decoded with, see {@link #getCodec(boolean, boolean)}
+     * @param phaseConsumer receives the phases of the query. If it's a {@link QueryProgress}, it also receives
+     *                      the progress of receiving and decoding the response.
+     */
+    public Object query(Object x, KxCodec codec, CancellationValidator cancellation, ResponseValidator responseValidator, Consumer<QueryPhase> phaseConsumer) throws IOException, KException, CancellationException {
         if (o == null || i == null) {
             throw new IOException("Connection lost");
         }
-        synchronized (o) {
-            cancellation.checkCancelled();
-            phaseConsumer.accept(QueryPhase.ENCODING);
-            byte[] buffer = serialize(1, x, zip);
-
-            cancellation.checkCancelled();
-            phaseConsumer.accept(QueryPhase.SENDING);
-            o.write(buffer, 0, buffer.length);
+        final KxPipeline pipeline = this.pipeline;
+        if (pipeline != null) {
+            return pipeline.query(x, codec, cancellation, responseValidator, QueryProgress.of(phaseConsumer));
+        }
+        cancellation.checkCancelled();
+        phaseConsumer.accept(QueryPhase.ENCODING);
+        try (KxMessage message = serializeMessage(1, x, zip)) {
+            synchronized (o) {
+                cancellation.checkCancelled();
+                phaseConsumer.accept(QueryPhase.SENDING);
+                write(message);
+            }
         }
 
         phaseConsumer.accept(QueryPhase.WAITING);
         synchronized (i) {
-            i.readFully(b = new byte[8]); // read the msg header
-            a = b[0] == 1;  // endianness of the msg
-            if (b[1] == 1) { // msg types are 0 - async, 1 - sync, 2 - response
+            final byte[] header = new byte[8];
+            i.readFully(header); // read the msg header
+            if (header[1] == 1) { // msg types are 0 - async, 1 - sync, 2 - response
                 sync++;   // an incoming sync message means the remote will expect a response message
             }
-            j = 4;
 
-            final int size = ri();
-            final int readCount = size - 8;
+            final int size = msgSize(header);
 
             phaseConsumer.accept(QueryPhase.RECEIVING);
             try {
                 cancellation.checkCancelled();
                 responseValidator.checkMessageSize(size);
             } catch (CancellationException ex) {
-                i.skipBytes(readCount);
+                new KxStreamInput(i, size - 8, () -> {
+                }).skipRemaining();
                 throw ex;
             }
 
-            b = Arrays.copyOf(b, size);
-            i.readFully(b, 8, readCount); // read the incoming message in full
+            // The message is decoded while it's being received so RECEIVING and DECODING phases are the same,
+            // except big tables which columns are decoded in parallel
+            return readResponseBody(header, codec, cancellation, responseValidator, QueryProgress.of(phaseConsumer));
+        }
+    }
 
-            cancellation.checkCancelled();
-            phaseConsumer.accept(QueryPhase.DECODING);
-            return deserialize(b);
+    /**
+     * Decodes the response body or, if the validator asks for that, receives it into a memory-mapped temp file.
+     *
+     * @see KxMappedFile
+     */
+    Object readResponseBody(byte[] header, KxCodec codec, CancellationValidator cancellation, ResponseValidator validator, QueryProgress progress) throws IOException, KException {
+        if (validator.isMappedToFile(msgSize(header))) {
+            return KxMappedFile.receive(i, header, cancellation, progress, codec.getDecoder(), codec.getCharset());
         }
+        return readMsgBody(header, codec, cancellation, progress);
     }
 
     public void authenticate(String credentials) throws IOException, KException {
-        J = 0;
-        B = new byte[2 + ns(credentials)];
-        w(credentials + "\3");
-        o.write(B);
-        if (1 != i.read(B, 0, 1)) {
-            close();
-            throw new KException("access");
+        handshake(credentials);
+    }
+
+    /**
+     * Switches the connection into pipelined mode, so many queries can be in flight at the same time. The mode can't
+     * be switched off: all incoming messages are read by the pipeline from now on.
+     *
+     * @return the pipeline of the connection
+     * @throws IOException if the connection is closed
+     * @see KxPipeline
+     */
+    public synchronized KxPipeline startPipeline() throws IOException {
+        if (o == null || i == null) {
+            throw new IOException("Connection lost");
+        }
+        if (pipeline == null) {
+            pipeline = new KxPipeline(this);
         }
-        vt = Math.min(B[0], 3);
+        return pipeline;
+    }
+
+    public KxPipeline getPipeline() {
+        return pipeline;
     }
 
     @Override
     public void close() {
+        final KxPipeline pipeline = this.pipeline;
+        if (pipeline != null) {
+            pipeline.close(new IOException("Connection closed"));
+        }
         if (null != s) {
             try {
                 s.close();
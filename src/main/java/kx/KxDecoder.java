@@ -0,0 +1,650 @@
+package kx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes kdb+ IPC objects from a {@link KxInput}. Vectors are filled directly from the input in bulk, so the input
+ * can be a socket stream and the message never has to be buffered in full.
+ * <p>
+ * Columns of a table that is bigger than the parallel threshold are decoded on the {@link ForkJoinPool#commonPool()}:
+ * the boundaries of each column are found on the calling thread and the column is handed over to the pool straight away,
+ * so decoding goes in parallel with receiving the rest of the message.
+ * <p>
+ * Compact representations, {@link TemporalVector}, {@link SymbolVector} and {@link StringVector}, are used only
+ * for the top-level vectors, dictionaries and table columns: nested objects are always decoded as arrays.
+ * <p>
+ * The decoder keeps no state between calls.
+ */
+public class KxDecoder {
+    private final TimeZone tz;
+    private final Charset charset;
+    private final boolean utc;
+    private final long parallelThreshold;
+    private final boolean primitiveTemporals;
+    private final boolean compactStrings;
+
+    /**
+     * Default minimal message size, in bytes, to decode table columns in parallel.
+     */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * Number of columns of a stream, per thread of the pool, that are received ahead of decoding.
+     */
+    private static final int COLUMNS_AHEAD = 2;
+
+    public KxDecoder(TimeZone tz, Charset charset) {
+        this(tz, charset, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param tz                the timezone of temporal values
+     * @param charset           the encoding of symbols and strings
+     * @param parallelThreshold minimal size of the message, in bytes, to decode table columns in parallel.
+     *                          {@link Long#MAX_VALUE} disables parallel decoding.
+     */
+    public KxDecoder(TimeZone tz, Charset charset, long parallelThreshold) {
+        this(tz, charset, parallelThreshold, false);
+    }
+
+    /**
+     * @param tz                 the timezone of temporal values
+     * @param charset            the encoding of symbols and strings
+     * @param parallelThreshold  minimal size of the message, in bytes, to decode table columns in parallel.
+     *                           {@link Long#MAX_VALUE} disables parallel decoding.
+     * @param primitiveTemporals if true, temporal vectors are decoded as {@link TemporalVector} instead of arrays of objects.
+     */
+    public KxDecoder(TimeZone tz, Charset charset, long parallelThreshold, boolean primitiveTemporals) {
+        this(tz, charset, parallelThreshold, primitiveTemporals, false);
+    }
+
+    /**
+     * @param tz                 the timezone of temporal values
+     * @param charset            the encoding of symbols and strings
+     * @param parallelThreshold  minimal size of the message, in bytes, to decode table columns in parallel.
+     *                           {@link Long#MAX_VALUE} disables parallel decoding.
+     * @param primitiveTemporals if true, temporal vectors are decoded as {@link TemporalVector} instead of arrays of objects.
+     * @param compactStrings     if true, symbol vectors are decoded as {@link SymbolVector} and lists of strings
+     *                           as {@link StringVector}.
+     */
+    public KxDecoder(TimeZone tz, Charset charset, long parallelThreshold, boolean primitiveTemporals, boolean compactStrings) {
+        this.tz = tz;
+        this.charset = charset;
+        this.utc = tz.getRawOffset() == 0 && !tz.useDaylightTime();
+        this.parallelThreshold = parallelThreshold;
+        this.primitiveTemporals = primitiveTemporals;
+        this.compactStrings = compactStrings;
+    }
+
+    /**
+     * Decodes full IPC message, including the header.
+     *
+     * @param message the message bytes
+     * @return decoded object
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message is malformed
+     */
+    public Object decode(byte[] message) throws IOException, c.KException {
+        final KxInput in = KxInput.wrap(message).order(message[0] == 1);
+        in.skip(8);
+        return decode(in, message[2] == 1, QueryProgress.NONE);
+    }
+
+    /**
+     * Decodes message body. The input must be positioned just after the message header.
+     *
+     * @param in         the message source
+     * @param compressed true if the message is compressed
+     * @return decoded object
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message is malformed or can't be read
+     */
+    public Object decode(KxInput in, boolean compressed) throws IOException, c.KException {
+        return decode(in, compressed, QueryProgress.NONE);
+    }
+
+    /**
+     * Decodes message body. The input must be positioned just after the message header.
+     *
+     * @param in         the message source
+     * @param compressed true if the message is compressed
+     * @param progress   receives {@link QueryPhase#DECODING} progress of each column if table columns are decoded in parallel
+     * @return decoded object
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message is malformed or can't be read
+     */
+    public Object decode(KxInput in, boolean compressed, QueryProgress progress) throws IOException, c.KException {
+        final KxInput body = compressed ? new KxInflaterInput(in) : in;
+        if (body.peekByte() == -128) {
+            body.readByte();
+            throw new c.KException(body.readSymbol(charset));
+        }
+        return readObject(body, progress, true);
+    }
+
+    public Object readObject(KxInput in) throws IOException {
+        return readObject(in, null, false);
+    }
+
+    /**
+     * @param progress the progress of the top-level table or null if columns must be decoded on the current thread.
+     * @param compact  true if compact vectors can be used for the object.
+     */
+    private Object readObject(KxInput in, QueryProgress progress, boolean compact) throws IOException {
+        final int t = in.readByte();
+        if (t < 0) {
+            return readAtom(in, t);
+        }
+        if (t > 99) {
+            return readFunction(in, t);
+        }
+        if (t == 99) {
+            // keyed table is a dict of two tables
+            final Object x = readObject(in, progress, compact);
+            final Object y = readObject(in, progress, compact);
+            return new c.Dict(x, y);
+        }
+
+        in.readByte(); // attributes
+        if (t == 98) {
+            return new c.Flip(readTable(in, progress, compact));
+        }
+        return readVector(in, t, in.readInt(), compact);
+    }
+
+    private c.Dict readTable(KxInput in, QueryProgress progress, boolean compact) throws IOException {
+        if (in.peekByte() != 99) {
+            return (c.Dict) readObject(in);
+        }
+
+        in.readByte(); // dict
+        final Object names = readObject(in);
+        if (in.peekByte() != 0) {
+            return new c.Dict(names, readObject(in));
+        }
+
+        in.readByte(); // type
+        in.readByte(); // attributes
+        final int n = in.readInt();
+        if (progress == null || n < 2 || in.available() < parallelThreshold) {
+            final Object[] columns = new Object[n];
+            for (int i = 0; i < n; i++) {
+                columns[i] = readObject(in, null, compact);
+            }
+            return new c.Dict(names, columns);
+        }
+        return new c.Dict(names, readColumns(in, n, progress, compact));
+    }
+
+    /**
+     * Columns of a buffered or an uncompressed input are read straight from the buffer. Columns of a stream are copied
+     * into own buffers, but only a few columns ahead of decoding, see {@link #COLUMNS_AHEAD}, and each buffer is
+     * released as soon as the column is decoded, so the raw message is never kept in full.
+     */
+    private Object[] readColumns(KxInput in, int n, QueryProgress progress, boolean compact) throws IOException {
+        final Object[] res = new Object[n];
+        final KxInput[] inputs = new KxInput[n];
+        final AtomicInteger done = new AtomicInteger();
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(n);
+        final int ahead = Math.max(2, COLUMNS_AHEAD * ForkJoinPool.getCommonPoolParallelism());
+        boolean completed = false;
+        try {
+            for (int i = 0; i < n; i++) {
+                // uncompressed bytes are never changed, so they are read while the rest is being uncompressed
+                if (in.isBuffered() || in instanceof KxInflaterInput) {
+                    final int start = in.position();
+                    transferObject(in, null);
+                    inputs[i] = in.slice(start);
+                } else {
+                    if (i >= ahead) {
+                        tasks.get(i - ahead).get();
+                    }
+                    final KxOutput out = new KxOutput(KxStreamInput.CHUNK_SIZE, in.isLittleEndian());
+                    transferObject(in, out);
+                    inputs[i] = out.toInput();
+                }
+
+                final int index = i;
+                tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                    final KxInput column = inputs[index];
+                    inputs[index] = null;
+                    res[index] = readObject(column, null, compact);
+                    progress.progress(QueryPhase.DECODING, done.incrementAndGet(), n);
+                    return null;
+                }));
+            }
+            progress.accept(QueryPhase.DECODING);
+
+            for (ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+            completed = true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Decoding has been interrupted");
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if (!completed) {
+                tasks.forEach(t -> t.cancel(false));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Moves the input after the next object without decoding it.
+     */
+    void skipObject(KxInput in) throws IOException {
+        transferObject(in, null);
+    }
+
+    /**
+     * Moves next object to the output without decoding it.
+     *
+     * @param in  the source
+     * @param out the output or null if the object must be skipped
+     */
+    private void transferObject(KxInput in, KxOutput out) throws IOException {
+        final byte t = in.readByte();
+        if (out != null) {
+            out.putByte(t);
+        }
+
+        if (t < 0) {
+            if (t == -11) {
+                in.transferSymbols(1, out);
+            } else if (t >= -19) {
+                in.transfer(c.nt[-t], out);
+            } else {
+                throw new IOException("Unsupported atom type: " + t);
+            }
+            return;
+        }
+        if (t > 99) {
+            transferFunction(in, t, out);
+            return;
+        }
+        if (t == 99) {
+            transferObject(in, out);
+            transferObject(in, out);
+            return;
+        }
+
+        in.transfer(1, out); // attributes
+        if (t == 98) {
+            transferObject(in, out);
+            return;
+        }
+
+        final int n = in.readInt();
+        if (out != null) {
+            out.putInt(n);
+        }
+        if (t == 0) {
+            for (int i = 0; i < n; i++) {
+                transferObject(in, out);
+            }
+        } else if (t == 11) {
+            in.transferSymbols(n, out);
+        } else if (t <= 19) {
+            in.transfer((long) c.nt[t] * n, out);
+        } else {
+            throw new IOException("Unsupported vector type: " + t);
+        }
+    }
+
+    private void transferFunction(KxInput in, int t, KxOutput out) throws IOException {
+        switch (t) {
+            case 100:
+                in.transferSymbols(1, out);
+                transferObject(in, out);
+                return;
+            case 104:
+            case 105:
+                final int n = in.readInt();
+                if (out != null) {
+                    out.putInt(n);
+                }
+                for (int i = 0; i < n; i++) {
+                    transferObject(in, out);
+                }
+                return;
+            case 106:
+            case 107:
+            case 108:
+            case 109:
+            case 110:
+            case 111:
+                transferObject(in, out);
+                return;
+        }
+        in.transfer(1, out);
+    }
+
+    private Object readAtom(KxInput in, int t) throws IOException {
+        switch (t) {
+            case -1:
+                return in.readBoolean();
+            case -2:
+                return in.readGuid();
+            case -4:
+                return in.readByte();
+            case -5:
+                return in.readShort();
+            case -6:
+                return in.readInt();
+            case -7:
+                return in.readLong();
+            case -8:
+                return in.readFloat();
+            case -9:
+                return in.readDouble();
+            case -10:
+                return (char) (in.readByte() & 0xff);
+            case -11:
+                return in.readSymbol(charset);
+            case -12:
+                return timestamp(in.readLong());
+            case -13:
+                return new c.Month(in.readInt());
+            case -14:
+                return date(in.readInt());
+            case -15:
+                return datetime(in.readDouble());
+            case -16:
+                return new c.Timespan(in.readLong());
+            case -17:
+                return new c.Minute(in.readInt());
+            case -18:
+                return new c.Second(in.readInt());
+            case -19:
+                return time(in.readInt());
+        }
+        return null;
+    }
+
+    private Object readFunction(KxInput in, int t) throws IOException {
+        switch (t) {
+            case 100:
+                in.readSymbol(charset);
+                return new c.Function((char[]) readObject(in));
+            case 101:
+                return new c.UnaryOperator(in.readByte());
+            case 102:
+                return new c.BinaryOperator(in.readByte());
+            case 103:
+                return new c.IterationOperator(in.readByte());
+            case 104:
+                return new c.Projection(readObjects(in, in.readInt()));
+            case 105:
+                return new c.Composition(readObjects(in, in.readInt()));
+            case 106:
+            case 107:
+            case 108:
+            case 109:
+            case 110:
+            case 111:
+                return new c.EachIterator(t, readObject(in));
+            case 112:
+                // dynamic load
+                in.readByte();
+                return null;
+        }
+        in.readByte();
+        return "Type" + t;
+    }
+
+    private Object[] readObjects(KxInput in, int n) throws IOException {
+        final Object[] res = new Object[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = readObject(in);
+        }
+        return res;
+    }
+
+    protected Object readVector(KxInput in, int t, int n, boolean compact) throws IOException {
+        if (compact) {
+            if (primitiveTemporals && t >= 12 && t <= 19) {
+                return readTemporalVector(in, t, n);
+            }
+            if (compactStrings && t == 11) {
+                return readSymbolVector(in, n);
+            }
+            if (compactStrings && t == 0 && n > 0) {
+                return readStringVector(in, n);
+            }
+        }
+
+        switch (t) {
+            case 0:
+                return readObjects(in, n);
+            case 1: {
+                final boolean[] v = new boolean[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = in.readBoolean();
+                }
+                return v;
+            }
+            case 2: {
+                final UUID[] v = new UUID[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = in.readGuid();
+                }
+                return v;
+            }
+            case 4: {
+                final byte[] v = new byte[n];
+                in.readBytes(v, 0, n);
+                return v;
+            }
+            case 5: {
+                final short[] v = new short[n];
+                in.readShorts(v, 0, n);
+                return v;
+            }
+            case 6: {
+                final int[] v = new int[n];
+                in.readInts(v, 0, n);
+                return v;
+            }
+            case 7: {
+                final long[] v = new long[n];
+                in.readLongs(v, 0, n);
+                return v;
+            }
+            case 8: {
+                final float[] v = new float[n];
+                in.readFloats(v, 0, n);
+                return v;
+            }
+            case 9: {
+                final double[] v = new double[n];
+                in.readDoubles(v, 0, n);
+                return v;
+            }
+            case 10: {
+                final byte[] v = new byte[n];
+                in.readBytes(v, 0, n);
+                return new String(v, charset).toCharArray();
+            }
+            case 11: {
+                final String[] v = new String[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = in.readSymbol(charset);
+                }
+                return v;
+            }
+            case 12: {
+                final Timestamp[] v = new Timestamp[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = timestamp(in.readLong());
+                }
+                return v;
+            }
+            case 13: {
+                final c.Month[] v = new c.Month[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = new c.Month(in.readInt());
+                }
+                return v;
+            }
+            case 14: {
+                final Date[] v = new Date[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = date(in.readInt());
+                }
+                return v;
+            }
+            case 15: {
+                final java.util.Date[] v = new java.util.Date[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = datetime(in.readDouble());
+                }
+                return v;
+            }
+            case 16: {
+                final c.Timespan[] v = new c.Timespan[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = new c.Timespan(in.readLong());
+                }
+                return v;
+            }
+            case 17: {
+                final c.Minute[] v = new c.Minute[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = new c.Minute(in.readInt());
+                }
+                return v;
+            }
+            case 18: {
+                final c.Second[] v = new c.Second[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = new c.Second(in.readInt());
+                }
+                return v;
+            }
+            case 19: {
+                final Time[] v = new Time[n];
+                for (int i = 0; i < n; i++) {
+                    v[i] = time(in.readInt());
+                }
+                return v;
+            }
+        }
+        return null;
+    }
+
+    private SymbolVector readSymbolVector(KxInput in, int n) throws IOException {
+        final SymbolInterner interner = new SymbolInterner(charset);
+        final int[] codes = new int[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = in.readSymbol(interner);
+        }
+        return new SymbolVector(codes, interner.getSymbols());
+    }
+
+    /**
+     * Reads a general list as {@link StringVector} if all items are strings or as {@code Object[]} otherwise.
+     */
+    private Object readStringVector(KxInput in, int n) throws IOException {
+        final int[] offsets = new int[n + 1];
+        byte[] data = new byte[Math.max(16, n * 8)];
+        for (int i = 0; i < n; i++) {
+            if (in.peekByte() != 10) {
+                final StringVector strings = new StringVector(data, Arrays.copyOf(offsets, i + 1), charset);
+                final Object[] res = new Object[n];
+                for (int j = 0; j < i; j++) {
+                    res[j] = strings.get(j);
+                }
+                for (int j = i; j < n; j++) {
+                    res[j] = readObject(in);
+                }
+                return res;
+            }
+            in.readByte(); // type
+            in.readByte(); // attributes
+            final int length = in.readInt();
+            final int offset = offsets[i];
+            if (offset + length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, offset + length));
+            }
+            in.readBytes(data, offset, length);
+            offsets[i + 1] = offset + length;
+        }
+        return new StringVector(offsets[n] == data.length ? data : Arrays.copyOf(data, offsets[n]), offsets, charset);
+    }
+
+    private TemporalVector readTemporalVector(KxInput in, int t, int n) throws IOException {
+        switch (t) {
+            case 12:
+            case 16: {
+                final long[] v = new long[n];
+                in.readLongs(v, 0, n);
+                return new TemporalVector.Longs(t, v, this);
+            }
+            case 15: {
+                final double[] v = new double[n];
+                in.readDoubles(v, 0, n);
+                return new TemporalVector.Doubles(v, this);
+            }
+            default: {
+                final int[] v = new int[n];
+                in.readInts(v, 0, n);
+                return new TemporalVector.Ints(t, v, this);
+            }
+        }
+    }
+
+    private long gl(long x) {
+        if (utc) {
+            return x;
+        }
+        return x - tz.getOffset(x - tz.getOffset(x));
+    }
+
+    Timestamp timestamp(long j) {
+        final long d = j < 0 ? (j + 1) / c.n - 1 : j / c.n;
+        final Timestamp p = new Timestamp(j == c.nj ? j : gl(c.k + 1000 * d));
+        if (j != c.nj) {
+            p.setNanos((int) (j - c.n * d));
+        }
+        return p;
+    }
+
+    Date date(int i) {
+        return new Date(i == c.ni ? c.nj : gl(c.k + 86400000L * i));
+    }
+
+    Time time(int i) {
+        return new Time(i == c.ni ? c.nj : gl(i));
+    }
+
+    java.util.Date datetime(double f) {
+        return new java.util.Date(Double.isNaN(f) ? c.nj : gl(c.k + Math.round(8.64e7 * f)));
+    }
+}
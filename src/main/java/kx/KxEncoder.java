@@ -0,0 +1,694 @@
+package kx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.UUID;
+
+/**
+ * Cursor that serializes objects into kdb+ IPC bytes in one pass. Bytes are written into pooled chunks that are
+ * taken one by one as the message grows, so a big message is never copied into a bigger array and the total
+ * size is patched into the header at the end. A message written into a file is flushed chunk by chunk, so only
+ * the current chunk is in memory.
+ * <p>
+ * The encoder is not thread-safe: each encoding call has to use own instance, see {@link KxCodec}.
+ */
+final class KxEncoder {
+    private final TimeZone tz;
+    private final Charset charset;
+    private final int vt;
+    private final KxBufferPool pool;
+    private final FileChannel file;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer buffer;
+    private int size;
+
+    /**
+     * Size of a chunk of encoded message.
+     */
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    KxEncoder(TimeZone tz, Charset charset, int vt, KxBufferPool pool) {
+        this(tz, charset, vt, pool, null);
+    }
+
+    /**
+     * @param file the file each chunk is written into as soon as it's filled, or null to keep the chunks
+     */
+    KxEncoder(TimeZone tz, Charset charset, int vt, KxBufferPool pool, FileChannel file) {
+        this.tz = tz;
+        this.charset = charset;
+        this.vt = vt;
+        this.pool = pool;
+        this.file = file;
+    }
+
+    /**
+     * Writes full message, including the header.
+     *
+     * @param msgType type of the ipc message
+     * @param x       the object
+     * @return the message that must be closed after use
+     */
+    KxMessage encode(int msgType, Object x) {
+        try {
+            w((byte) 0);
+            w((byte) msgType);
+            w((short) 0);
+            w(0); // the length placeholder
+            w(x);
+            return finish();
+        } catch (RuntimeException | Error ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes full message, including the header, into the file of the encoder from its current position.
+     *
+     * @param msgType type of the ipc message
+     * @param x       the object
+     * @return the message size
+     */
+    int write(int msgType, Object x) throws IOException {
+        final long start = file.position();
+        try {
+            w((byte) 0);
+            w((byte) msgType);
+            w((short) 0);
+            w(0); // the length placeholder
+            w(x);
+            close();
+            final ByteBuffer length = ByteBuffer.allocate(4).putInt(0, size);
+            while (length.hasRemaining()) {
+                file.write(length, start + 4 + length.position());
+            }
+            return size;
+        } catch (UncheckedIOException ex) {
+            release();
+            throw ex.getCause();
+        } catch (RuntimeException | Error ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a response message with kdb+ error.
+     */
+    KxMessage error(String text) {
+        w((byte) 0);
+        w((byte) 2);
+        w((short) 0);
+        w(0);
+        w((byte) -128);
+        w(text);
+        return finish();
+    }
+
+    private KxMessage finish() {
+        close();
+        chunks.get(0).putInt(4, size);
+        final KxMessage message = new KxMessage(chunks, size, pool);
+        chunks.clear();
+        return message;
+    }
+
+    private void close() {
+        if (buffer != null) {
+            buffer.flip();
+            if (file == null) {
+                chunks.add(buffer);
+            } else {
+                flush(buffer);
+                pool.release(buffer.array());
+            }
+            buffer = null;
+        }
+    }
+
+    private void flush(ByteBuffer chunk) {
+        try {
+            while (chunk.hasRemaining()) {
+                file.write(chunk);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void release() {
+        if (buffer != null) {
+            pool.release(buffer.array());
+            buffer = null;
+        }
+        chunks.forEach(c -> pool.release(c.array()));
+        chunks.clear();
+    }
+
+    private void ensure(int required) {
+        if (buffer == null || buffer.remaining() < required) {
+            close();
+            buffer = ByteBuffer.wrap(pool.acquire(Math.max(CHUNK_SIZE, required)));
+        }
+        size += required;
+    }
+
+    /**
+     * Calculates the number of bytes which would be required to serialize the supplied object.
+     *
+     * @param x Object to be serialized
+     * @return number of bytes required to serialise an object.
+     */
+    int nx(Object x) {
+        int i = 0, n, t = c.t(x), j;
+        if (t == 99) {
+            return 1 + nx(((c.Dict) x).x) + nx(((c.Dict) x).y);
+        }
+        if (t == 98) {
+            return 3 + nx(((c.Flip) x).x) + nx(((c.Flip) x).y);
+        }
+        if (t < 0) {
+            return t == -11 ? 2 + ns((String) x) : 1 + c.nt[-t];
+        }
+        if (x instanceof KxVector) {
+            return 6 + ((KxVector) x).serializedSize(this);
+        }
+        j = 6;
+        n = n(x);
+        if (t == 0 || t == 11) {
+            for (; i < n; ++i) {
+                j += t == 0 ? nx(((Object[]) x)[i]) : 1 + ns(((String[]) x)[i]);
+            }
+        } else {
+            j += n * c.nt[t];
+        }
+        return j;
+    }
+
+    /**
+     * Calculates the number of bytes which would be required to serialize the supplied string.
+     *
+     * @param s String to be serialized
+     * @return number of bytes required to serialise a string
+     */
+    int ns(String s) {
+        int i;
+        if (s == null) {
+            return 0;
+        }
+        if (-1 < (i = s.indexOf('\000'))) {
+            s = s.substring(0, i);
+        }
+        return s.getBytes(charset).length;
+    }
+
+    private int n(Object x) {
+        return x instanceof c.Dict
+                ? n(((c.Dict) x).x)
+                : x instanceof c.Flip
+                ? n(((c.Flip) x).y[0])
+                : x instanceof KxVector
+                ? ((KxVector) x).size()
+                : x instanceof char[] ? new String((char[]) x).getBytes(charset).length : Array.getLength(x);
+    }
+
+    void w(byte x) {
+        ensure(1);
+        buffer.put(x);
+    }
+
+    void w(boolean x) {
+        w((byte) (x ? 1 : 0));
+    }
+
+    void w(char c) {
+        w((byte) c);
+    }
+
+    void w(short h) {
+        ensure(2);
+        buffer.putShort(h);
+    }
+
+    void w(int i) {
+        ensure(4);
+        buffer.putInt(i);
+    }
+
+    /**
+     * Writes the bytes, splitting them between chunks if required.
+     */
+    void w(byte[] b, int offset, int length) {
+        while (length > 0) {
+            if (buffer == null || !buffer.hasRemaining()) {
+                close();
+                buffer = ByteBuffer.wrap(pool.acquire(CHUNK_SIZE));
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.put(b, offset, count);
+            size += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    void w(short[] v) {
+        for (int i = 0; i < v.length; ) {
+            final int count = bulk(v.length - i, 2);
+            buffer.asShortBuffer().put(v, i, count);
+            buffer.position(buffer.position() + count * 2);
+            i += count;
+        }
+    }
+
+    void w(int[] v) {
+        for (int i = 0; i < v.length; ) {
+            final int count = bulk(v.length - i, 4);
+            buffer.asIntBuffer().put(v, i, count);
+            buffer.position(buffer.position() + count * 4);
+            i += count;
+        }
+    }
+
+    void w(long[] v) {
+        for (int i = 0; i < v.length; ) {
+            final int count = bulk(v.length - i, 8);
+            buffer.asLongBuffer().put(v, i, count);
+            buffer.position(buffer.position() + count * 8);
+            i += count;
+        }
+    }
+
+    void w(float[] v) {
+        for (int i = 0; i < v.length; ) {
+            final int count = bulk(v.length - i, 4);
+            buffer.asFloatBuffer().put(v, i, count);
+            buffer.position(buffer.position() + count * 4);
+            i += count;
+        }
+    }
+
+    void w(double[] v) {
+        for (int i = 0; i < v.length; ) {
+            final int count = bulk(v.length - i, 8);
+            buffer.asDoubleBuffer().put(v, i, count);
+            buffer.position(buffer.position() + count * 8);
+            i += count;
+        }
+    }
+
+    /**
+     * Makes room for at least one item in the current chunk.
+     *
+     * @return the number of items that can be written into the current chunk
+     */
+    private int bulk(int count, int width) {
+        if (buffer == null || buffer.remaining() < width) {
+            close();
+            buffer = ByteBuffer.wrap(pool.acquire(CHUNK_SIZE));
+        }
+        final int res = Math.min(count, buffer.remaining() / width);
+        size += res * width;
+        return res;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    void w(UUID uuid) {
+        if (vt < 3) {
+            throw new RuntimeException("Guid not valid pre kdb+3.0");
+        }
+        w(uuid.getMostSignificantBits());
+        w(uuid.getLeastSignificantBits());
+    }
+
+    void w(long j) {
+        ensure(8);
+        buffer.putLong(j);
+    }
+
+    void w(float e) {
+        ensure(4);
+        buffer.putFloat(e);
+    }
+
+    void w(double f) {
+        ensure(8);
+        buffer.putDouble(f);
+    }
+
+    void w(c.Month m) {
+        w(m.i);
+    }
+
+    void w(c.Minute u) {
+        w(u.i);
+    }
+
+    void w(c.Second v) {
+        w(v.i);
+    }
+
+    void w(c.Timespan n) {
+        if (vt < 1) {
+            throw new RuntimeException("Timespan not valid pre kdb+2.6");
+        }
+        w(n.j);
+    }
+
+    private long lg(long x) {
+        return x + tz.getOffset(x);
+    }
+
+    void w(Date d) {
+        long j = d.getTime();
+        w(j == c.nj ? c.ni : (int) (lg(j) / 86400000 - 10957));
+    }
+
+    void w(Time t) {
+        long j = t.getTime();
+        w(j == c.nj ? c.ni : (int) (lg(j) % 86400000));
+    }
+
+    void w(java.util.Date z) {
+        long j = z.getTime();
+        w(j == c.nj ? c.nf : (lg(j) - c.k) / 8.64e7);
+    }
+
+    void w(Timestamp p) {
+        long j = p.getTime();
+        if (vt < 1) {
+            throw new RuntimeException("Timestamp not valid pre kdb+2.6");
+        }
+        w(j == c.nj ? j : 1000000 * (lg(j) - c.k) + p.getNanos() % 1000000);
+    }
+
+    void w(String s) {
+        if (s != null) {
+            final int i = s.indexOf('\000');
+            final byte[] b = (i < 0 ? s : s.substring(0, i)).getBytes(charset);
+            w(b, 0, b.length);
+        }
+        w((byte) 0);
+    }
+
+    void w(Object x) {
+        int i = 0, n, t = c.t(x);
+        w((byte) t);
+        if (t < 0) {
+            switch (t) {
+                case -1:
+                    w(((Boolean) x).booleanValue());
+                    return;
+                case -2:
+                    w((UUID) x);
+                    return;
+                case -4:
+                    w(((Byte) x).byteValue());
+                    return;
+                case -5:
+                    w(((Short) x).shortValue());
+                    return;
+                case -6:
+                    w(((Integer) x).intValue());
+                    return;
+                case -7:
+                    w(((Long) x).longValue());
+                    return;
+                case -8:
+                    w(((Float) x).floatValue());
+                    return;
+                case -9:
+                    w(((Double) x).doubleValue());
+                    return;
+                case -10:
+                    w(((Character) x).charValue());
+                    return;
+                case -11:
+                    w((String) x);
+                    return;
+                case -12:
+                    w((Timestamp) x);
+                    return;
+                case -13:
+                    w((c.Month) x);
+                    return;
+                case -14:
+                    w((Date) x);
+                    return;
+                case -15:
+                    w((java.util.Date) x);
+                    return;
+                case -16:
+                    w((c.Timespan) x);
+                    return;
+                case -17:
+                    w((c.Minute) x);
+                    return;
+                case -18:
+                    w((c.Second) x);
+                    return;
+                case -19:
+                    w((Time) x);
+                    return;
+            }
+        }
+        if (t == 99) {
+            c.Dict r = (c.Dict) x;
+            w(r.x);
+            w(r.y);
+            return;
+        }
+        w((byte) 0);
+        if (t == 98) {
+            c.Flip r = (c.Flip) x;
+            w((byte) 99);
+            w(r.x);
+            w(r.y);
+            return;
+        }
+        if (t == 10 && x instanceof char[]) {
+            final byte[] b = new String((char[]) x).getBytes(charset);
+            w(b.length);
+            w(b, 0, b.length);
+            return;
+        }
+        w(n = n(x));
+        if (x instanceof KxVector) {
+            ((KxVector) x).write(this);
+        } else if (t == 4) {
+            w((byte[]) x, 0, n);
+        } else if (t == 5) {
+            w((short[]) x);
+        } else if (t == 6) {
+            w((int[]) x);
+        } else if (t == 7) {
+            w((long[]) x);
+        } else if (t == 8) {
+            w((float[]) x);
+        } else if (t == 9) {
+            w((double[]) x);
+        } else {
+            for (; i < n; ++i) {
+                if (t == 0) {
+                    w(((Object[]) x)[i]);
+                } else if (t == 1) {
+                    w(((boolean[]) x)[i]);
+                } else if (t == 2) {
+                    w(((UUID[]) x)[i]);
+                } else if (t == 11) {
+                    w(((String[]) x)[i]);
+                } else if (t == 12) {
+                    w(((Timestamp[]) x)[i]);
+                } else if (t == 13) {
+                    w(((c.Month[]) x)[i]);
+                } else if (t == 14) {
+                    w(((Date[]) x)[i]);
+                } else if (t == 15) {
+                    w(((java.util.Date[]) x)[i]);
+                } else if (t == 16) {
+                    w(((c.Timespan[]) x)[i]);
+                } else if (t == 17) {
+                    w(((c.Minute[]) x)[i]);
+                } else if (t == 18) {
+                    w(((c.Second[]) x)[i]);
+                } else {
+                    w(((Time[]) x)[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compresses the message using kdb+ IPC compression. The message is read from its chunks in place and the
+     * compressed bytes are written into new pooled chunks, so the message is never copied into one array.
+     *
+     * @param message the message
+     * @param pool    the pool of the compressed chunks
+     * @return the compressed message or null if the message can't be compressed into half of the size
+     */
+    static KxMessage compress(KxMessage message, KxBufferPool pool) {
+        final int t = message.size();
+        final Source y = new Source(message.chunks());
+        final Source z = new Source(message.chunks());
+        final Target target = new Target(t / 2, pool);
+
+        byte i = 0;
+        boolean g;
+        int f = 0, h0 = 0, h = 0;
+        int c = 12;
+        int d = c;
+        int e = t / 2;
+        int p = 0;
+        int q;
+        int r;
+        int s0 = 0;
+        int s = 8;
+        int[] a = new int[256];
+        for (int k = 0; k < 4; k++) {
+            target.put(k, y.get(k));
+        }
+        target.put(2, (byte) 1);
+        target.putInt(8, t);
+        for (; s < t; i *= 2) {
+            if (0 == i) {
+                if (d > e - 17) {
+                    target.release();
+                    return null;
+                }
+                i = 1;
+                target.put(c, (byte) f);
+                c = d++;
+                f = 0;
+            }
+            g = (s > t - 3) || (0 == (p = a[h = 0xFF & (y.get(s) ^ y.get(s + 1))])) || (0 != (y.get(s) ^ z.get(p)));
+            if (0 < s0) {
+                a[h0] = s0;
+                s0 = 0;
+            }
+            if (g) {
+                h0 = h;
+                s0 = s;
+                target.put(d++, y.get(s++));
+            } else {
+                a[h] = s;
+                f |= i;
+                p += 2;
+                r = s += 2;
+                q = Math.min(s + 255, t);
+                for (; z.get(p) == y.get(s) && ++s < q; ) {
+                    ++p;
+                }
+                target.put(d++, (byte) h);
+                target.put(d++, (byte) (s - r));
+            }
+        }
+        target.put(c, (byte) f);
+        target.putInt(4, d);
+        return target.toMessage(d);
+    }
+
+    /**
+     * Random access to the bytes of message chunks. The compression reads the current position and a previous
+     * match, so each of them has own source that keeps its current chunk.
+     */
+    private static final class Source {
+        private final ByteBuffer[] chunks;
+        private final int[] starts;
+
+        private byte[] array;
+        private int from;
+        private int to;
+        private int shift;
+
+        private Source(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+            this.starts = new int[chunks.length];
+            for (int i = 1; i < chunks.length; i++) {
+                starts[i] = starts[i - 1] + chunks[i - 1].remaining();
+            }
+        }
+
+        private byte get(int position) {
+            if (position < from || position >= to) {
+                seek(position);
+            }
+            return array[position - shift];
+        }
+
+        private void seek(int position) {
+            int i = Arrays.binarySearch(starts, position);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            while (position >= starts[i] + chunks[i].remaining()) {
+                i++;
+            }
+            final ByteBuffer chunk = chunks[i];
+            array = chunk.array();
+            from = starts[i];
+            to = from + chunk.remaining();
+            shift = from - chunk.arrayOffset() - chunk.position();
+        }
+    }
+
+    /**
+     * Compressed bytes in pooled chunks of the same size, taken as the compressed message grows.
+     */
+    private static final class Target {
+        private final int chunkSize;
+        private final byte[][] chunks;
+        private final KxBufferPool pool;
+
+        private Target(int capacity, KxBufferPool pool) {
+            this.chunkSize = Math.min(CHUNK_SIZE, capacity);
+            this.chunks = new byte[capacity / chunkSize + 1][];
+            this.pool = pool;
+        }
+
+        private void put(int position, byte b) {
+            final int index = position / chunkSize;
+            byte[] chunk = chunks[index];
+            if (chunk == null) {
+                chunk = chunks[index] = pool.acquire(chunkSize);
+            }
+            chunk[position % chunkSize] = b;
+        }
+
+        private void putInt(int position, int i) {
+            put(position, (byte) (i >> 24));
+            put(position + 1, (byte) (i >> 16));
+            put(position + 2, (byte) (i >> 8));
+            put(position + 3, (byte) i);
+        }
+
+        private KxMessage toMessage(int size) {
+            final List<ByteBuffer> res = new ArrayList<>();
+            for (int i = 0; i * chunkSize < size; i++) {
+                res.add(ByteBuffer.wrap(chunks[i], 0, Math.min(chunkSize, size - i * chunkSize)));
+            }
+            return new KxMessage(res, size, pool);
+        }
+
+        private void release() {
+            for (byte[] chunk : chunks) {
+                pool.release(chunk);
+            }
+        }
+    }
+}
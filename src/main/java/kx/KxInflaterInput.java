@@ -0,0 +1,135 @@
+package kx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incrementally uncompresses kdb+ IPC compressed message while the decoder reads it.
+ * <p>
+ * The compressed bytes are pulled from the source input chunk by chunk, so the compressed message is never kept in memory.
+ * The uncompressed buffer is still allocated in full: kdb+ compression references any previously uncompressed
+ * byte, not a sliding window, so it can't be released before the message is decoded. The buffer can be
+ * a memory-mapped file, see {@link KxMappedFile}.
+ */
+public class KxInflaterInput extends KxInput {
+    private final KxInput source;
+    private final ByteBuffer dst;
+    private final int[] positions = new int[256];
+
+    private int flags = 0;
+    private int mask = 0;
+    private int produced = 8;
+    private int hashed = 8;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Creates new input. The source must be positioned just after the message header so next 4 bytes are
+     * the uncompressed size of the message.
+     *
+     * @param source the compressed message source
+     */
+    public KxInflaterInput(KxInput source) throws IOException {
+        this(source, ByteBuffer.allocate(source.readInt()));
+    }
+
+    /**
+     * Creates new input that uncompresses the message into the given buffer. The buffer must be exactly the size of
+     * uncompressed message including 8 bytes of the header, which are not written by the input.
+     */
+    protected KxInflaterInput(KxInput source, ByteBuffer dst) {
+        super(dst.duplicate().position(8).limit(8));
+        this.source = source;
+        this.dst = dst;
+        order(source.isLittleEndian());
+    }
+
+    /**
+     * Returns the uncompressed size of the message, including the header.
+     */
+    public int getUncompressedSize() {
+        return dst.capacity();
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return produced == dst.capacity();
+    }
+
+    /**
+     * Creates independent cursor over already uncompressed bytes, which are never changed, so the cursor can be
+     * read in another thread while the rest of the message is being uncompressed.
+     */
+    @Override
+    public KxInput slice(int position) {
+        final ByteBuffer b = buffer.duplicate().order(buffer.order());
+        b.position(position);
+        return new KxInput(b);
+    }
+
+    /**
+     * Uncompresses the rest of the message, so the input becomes {@link #isBuffered() buffered}.
+     */
+    public void inflateFully() throws IOException {
+        inflate(dst.capacity());
+        buffer.limit(produced);
+    }
+
+    @Override
+    public long available() {
+        return dst.capacity() - buffer.position();
+    }
+
+    @Override
+    protected void fill(int required) throws IOException {
+        final int target = Math.min(dst.capacity(), Math.max(buffer.position() + required, produced + CHUNK_SIZE));
+        inflate(target);
+        buffer.limit(produced);
+        if (buffer.remaining() < required) {
+            super.fill(required);
+        }
+    }
+
+    private void inflate(int target) throws IOException {
+        final ByteBuffer d = dst;
+        int s = produced;
+        int p = hashed;
+        while (s < target) {
+            if (mask == 0) {
+                flags = 0xff & source.readByte();
+                mask = 1;
+            }
+
+            int n = 0;
+            final boolean ref = (flags & mask) != 0;
+            if (ref) {
+                int r = positions[0xff & source.readByte()];
+                d.put(s++, d.get(r++));
+                d.put(s++, d.get(r++));
+                n = 0xff & source.readByte();
+                for (int m = 0; m < n; m++) {
+                    d.put(s + m, d.get(r + m));
+                }
+            } else {
+                d.put(s++, source.readByte());
+            }
+
+            while (p < s - 1) {
+                positions[(0xff & d.get(p)) ^ (0xff & d.get(p + 1))] = p++;
+            }
+            if (ref) {
+                p = s += n;
+            }
+
+            mask = (mask << 1) & 0xff;
+        }
+        produced = s;
+        hashed = p;
+    }
+
+    @Override
+    public void skipRemaining() throws IOException {
+        super.skipRemaining();
+        source.skipRemaining();
+    }
+}
@@ -0,0 +1,360 @@
+package kx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Cursor over kdb+ IPC bytes. The base implementation reads an in-memory buffer, subclasses refill the
+ * buffer on demand from a socket, a decompressor or a file, so the decoder never has to see the whole message at once.
+ * <p>
+ * The input is not thread-safe: each decoding call has to use own instance.
+ */
+public class KxInput {
+    protected ByteBuffer buffer;
+
+    private byte[] scratch;
+
+    protected KxInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public static KxInput wrap(byte[] bytes) {
+        return wrap(bytes, 0, bytes.length);
+    }
+
+    public static KxInput wrap(byte[] bytes, int offset, int length) {
+        return new KxInput(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    public static KxInput wrap(ByteBuffer buffer) {
+        return new KxInput(buffer.duplicate().order(buffer.order()));
+    }
+
+    public KxInput order(boolean littleEndian) {
+        buffer.order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        return this;
+    }
+
+    public boolean isLittleEndian() {
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Returns true if all bytes of the message are in the buffer already, so the input can be
+     * {@link #slice(int) sliced} and read from different threads.
+     */
+    public boolean isBuffered() {
+        return true;
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    public void position(int position) {
+        buffer.position(position);
+    }
+
+    /**
+     * Returns number of bytes left in the message, including not loaded yet.
+     */
+    public long available() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Creates independent cursor over the same buffer at the given position. Can be used only if the input
+     * {@link #isBuffered()}.
+     *
+     * @param position the start position of new cursor
+     * @return new independent cursor
+     */
+    public KxInput slice(int position) {
+        if (!isBuffered()) {
+            throw new IllegalStateException("Not buffered input can't be sliced");
+        }
+        final ByteBuffer b = buffer.duplicate().order(buffer.order());
+        b.position(position);
+        return new KxInput(b);
+    }
+
+    /**
+     * Makes at least {@code required} bytes available in the buffer. The default implementation has nothing
+     * to load and fails with {@link EOFException}.
+     *
+     * @param required the number of bytes that must be available after the call
+     * @throws IOException if the bytes can't be loaded
+     */
+    protected void fill(int required) throws IOException {
+        throw new EOFException("Unexpected end of the message: " + required + " bytes required but only " + buffer.remaining() + " available");
+    }
+
+    private void ensure(int required) throws IOException {
+        if (buffer.remaining() < required) {
+            fill(required);
+        }
+    }
+
+    public byte peekByte() throws IOException {
+        ensure(1);
+        return buffer.get(buffer.position());
+    }
+
+    public byte readByte() throws IOException {
+        ensure(1);
+        return buffer.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() == 1;
+    }
+
+    public short readShort() throws IOException {
+        ensure(2);
+        return buffer.getShort();
+    }
+
+    public int readInt() throws IOException {
+        ensure(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensure(8);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        ensure(4);
+        return buffer.getFloat();
+    }
+
+    public double readDouble() throws IOException {
+        ensure(8);
+        return buffer.getDouble();
+    }
+
+    /**
+     * GUIDs are always big-endian regardless of the message endianness.
+     */
+    public UUID readGuid() throws IOException {
+        ensure(16);
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            return new UUID(buffer.getLong(), buffer.getLong());
+        } finally {
+            buffer.order(order);
+        }
+    }
+
+    /**
+     * Reads null-terminated symbol.
+     *
+     * @param charset the encoding of the symbol
+     * @return the symbol, never null.
+     */
+    public String readSymbol(Charset charset) throws IOException {
+        int length = 0;
+        while (true) {
+            ensure(1);
+            final int start = buffer.position();
+            final int end = buffer.limit();
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == 0) {
+                    final int count = i - start;
+                    final String res;
+                    if (length == 0 && buffer.hasArray()) {
+                        res = count == 0 ? "" : new String(buffer.array(), buffer.arrayOffset() + start, count, charset);
+                        buffer.position(i + 1);
+                    } else {
+                        final byte[] b = scratch(length + count);
+                        buffer.get(b, length, count);
+                        buffer.get();
+                        res = length + count == 0 ? "" : new String(b, 0, length + count, charset);
+                    }
+                    return res;
+                }
+            }
+            // No terminator in the buffer - keep what we have and load more
+            final int count = end - start;
+            final byte[] b = scratch(length + count);
+            buffer.get(b, length, count);
+            length += count;
+        }
+    }
+
+    /**
+     * Reads null-terminated symbol into the interner.
+     *
+     * @param interner the dictionary of symbols
+     * @return the code of the symbol in the interner
+     */
+    int readSymbol(SymbolInterner interner) throws IOException {
+        int length = 0;
+        while (true) {
+            ensure(1);
+            final int start = buffer.position();
+            final int end = buffer.limit();
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == 0) {
+                    final int count = i - start;
+                    final int res;
+                    if (length == 0 && buffer.hasArray()) {
+                        res = interner.intern(buffer.array(), buffer.arrayOffset() + start, count);
+                        buffer.position(i + 1);
+                    } else {
+                        final byte[] b = scratch(length + count);
+                        buffer.get(b, length, count);
+                        buffer.get();
+                        res = interner.intern(b, 0, length + count);
+                    }
+                    return res;
+                }
+            }
+            // No terminator in the buffer - keep what we have and load more
+            final int count = end - start;
+            final byte[] b = scratch(length + count);
+            buffer.get(b, length, count);
+            length += count;
+        }
+    }
+
+    public void readBytes(byte[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(1);
+            final int cnt = Math.min(length, buffer.remaining());
+            buffer.get(dst, offset, cnt);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void readShorts(short[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(2);
+            final int cnt = Math.min(length, buffer.remaining() / 2);
+            buffer.asShortBuffer().get(dst, offset, cnt);
+            buffer.position(buffer.position() + cnt * 2);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void readInts(int[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(4);
+            final int cnt = Math.min(length, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(dst, offset, cnt);
+            buffer.position(buffer.position() + cnt * 4);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void readLongs(long[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(8);
+            final int cnt = Math.min(length, buffer.remaining() / 8);
+            buffer.asLongBuffer().get(dst, offset, cnt);
+            buffer.position(buffer.position() + cnt * 8);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void readFloats(float[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(4);
+            final int cnt = Math.min(length, buffer.remaining() / 4);
+            buffer.asFloatBuffer().get(dst, offset, cnt);
+            buffer.position(buffer.position() + cnt * 4);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void readDoubles(double[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(8);
+            final int cnt = Math.min(length, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(dst, offset, cnt);
+            buffer.position(buffer.position() + cnt * 8);
+            offset += cnt;
+            length -= cnt;
+        }
+    }
+
+    public void skip(long count) throws IOException {
+        while (count > 0) {
+            ensure(1);
+            final int cnt = (int) Math.min(count, buffer.remaining());
+            buffer.position(buffer.position() + cnt);
+            count -= cnt;
+        }
+    }
+
+    /**
+     * Moves next {@code count} bytes into the output as is.
+     *
+     * @param count the number of bytes
+     * @param out   the output or null if the bytes must be skipped
+     */
+    public void transfer(long count, KxOutput out) throws IOException {
+        if (out == null) {
+            skip(count);
+            return;
+        }
+        while (count > 0) {
+            ensure(1);
+            final int cnt = (int) Math.min(count, buffer.remaining());
+            out.put(buffer, cnt);
+            count -= cnt;
+        }
+    }
+
+    /**
+     * Moves next {@code count} null-terminated symbols into the output as is.
+     *
+     * @param count the number of symbols
+     * @param out   the output or null if the symbols must be skipped
+     */
+    public void transferSymbols(int count, KxOutput out) throws IOException {
+        while (count > 0) {
+            ensure(1);
+            final int end = buffer.limit();
+            int i = buffer.position();
+            for (; i < end && count > 0; i++) {
+                if (buffer.get(i) == 0) {
+                    count--;
+                }
+            }
+            if (out == null) {
+                buffer.position(i);
+            } else {
+                out.put(buffer, i - buffer.position());
+            }
+        }
+    }
+
+    /**
+     * Consumes everything that's left in the source so the underlying stream stays aligned with the message boundaries.
+     */
+    public void skipRemaining() throws IOException {
+        buffer.position(buffer.limit());
+    }
+
+    private byte[] scratch(int size) {
+        if (scratch == null) {
+            scratch = new byte[Math.max(256, size)];
+        } else if (scratch.length < size) {
+            scratch = Arrays.copyOf(scratch, Math.max(size, scratch.length * 2));
+        }
+        return scratch;
+    }
+}
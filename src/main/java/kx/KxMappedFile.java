@@ -0,0 +1,288 @@
+package kx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A response that is kept in a memory-mapped temp file instead of the heap, for results bigger than the heap budget,
+ * or a binary file saved by the export that is mapped as is.
+ * <p>
+ * The message is streamed into the file as it's received, compressed messages are uncompressed straight into
+ * the mapping, and the file is a normal uncompressed IPC message, the same as exported binary files. Columns of
+ * a table are not decoded at all: they are {@link KxMappedVector}s that read items off the mapping.
+ * <p>
+ * An IPC message is never longer than 2Gb, so one mapping always covers the whole message. A temp file is deleted
+ * when it's {@link #close() closed}.
+ */
+public final class KxMappedFile implements Closeable {
+    private final Path path;
+    private final KxDecoder decoder;
+    private final Charset charset;
+    private final MappedByteBuffer buffer;
+    private final boolean temporary;
+
+    private volatile boolean closed;
+
+    private static final int COPY_BUFFER_SIZE = 256 * 1024;
+
+    private KxMappedFile(Path path, MappedByteBuffer buffer, KxDecoder decoder, Charset charset, boolean temporary) {
+        this.path = path;
+        this.buffer = buffer;
+        this.decoder = decoder;
+        this.charset = charset;
+        this.temporary = temporary;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the size of the message in the file, including the header.
+     */
+    public long getSize() {
+        return buffer.capacity();
+    }
+
+    KxDecoder getDecoder() {
+        return decoder;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Receives the message body into a new temp file and decodes it: a table, plain or keyed, is returned with
+     * {@link KxMappedVector} columns that keep the file open, anything else is decoded into the heap and the file is
+     * removed straight away.
+     * <p>
+     * If receiving is cancelled or failed, the rest of the message is skipped and the file is removed.
+     *
+     * @param stream       the socket stream positioned just after the message header
+     * @param header       already read 8 bytes of the message header
+     * @param cancellation validator checked each time a new chunk is received
+     * @param progress     receives the receiving progress of the message
+     * @param decoder      the decoder of atoms, temporal values and items of general lists
+     * @param charset      the encoding of symbols
+     * @return the decoded result
+     * @throws c.KException if the message is a kdb+ error
+     * @throws IOException  if the message can't be received or written into the file
+     */
+    static Object receive(InputStream stream, byte[] header, CancellationValidator cancellation, QueryProgress progress, KxDecoder decoder, Charset charset) throws c.KException, IOException {
+        final boolean littleEndian = header[0] == 1;
+        final KxStreamInput in = new KxStreamInput(stream, c.msgSize(header) - 8, cancellation, progress);
+        in.order(littleEndian);
+
+        final Path path = Files.createTempFile("kdbinsidebrains-", ".kib");
+        // in case the result is never closed
+        path.toFile().deleteOnExit();
+        try {
+            final MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = header[2] == 1 ? inflate(channel, in, header) : copy(channel, in, header);
+            }
+            return decode(new KxMappedFile(path, buffer, decoder, charset, true), littleEndian);
+        } catch (IOException | RuntimeException | c.KException ex) {
+            in.skipRemaining();
+            delete(path);
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a binary file, like the ones the binary export saves, and decodes it the same way as a received message:
+     * columns of a table are read off the mapping when they are shown, so the first rows are shown as soon as
+     * the file is mapped and a table of any size is opened without loading it into the heap.
+     * <p>
+     * An uncompressed file is mapped as is. A compressed file is read chunk by chunk and uncompressed straight into
+     * the mapping of a new temp file, which is deleted when the result is closed.
+     *
+     * @param file         the binary file of one IPC message
+     * @param temporary    true if the file belongs to the result: it's deleted when the result is closed or, if it's
+     *                     compressed, as soon as it's uncompressed. A file that can't be opened is never deleted.
+     * @param cancellation validator checked each time a new chunk of a compressed file is read
+     * @param progress     receives the reading progress of a compressed file
+     * @param decoder      the decoder of atoms, temporal values and items of general lists
+     * @param charset      the encoding of symbols
+     * @return the decoded content of the file
+     * @throws IOException if the file is not a binary file or it can't be read
+     */
+    public static Object open(Path file, boolean temporary, CancellationValidator cancellation, QueryProgress progress, KxDecoder decoder, Charset charset) throws c.KException, IOException {
+        final long size = Files.size(file);
+        final byte[] header = new byte[8];
+        try (InputStream stream = Files.newInputStream(file)) {
+            if (stream.readNBytes(header, 0, 8) != 8 || header[0] > 1 || header[2] > 1 || c.msgSize(header) != size) {
+                throw new IOException("The file is not a KDB binary file");
+            }
+
+            final boolean littleEndian = header[0] == 1;
+            if (header[2] == 1) {
+                final KxStreamInput in = new KxStreamInput(stream, size - 8, cancellation, progress);
+                in.order(littleEndian);
+
+                final Path path = Files.createTempFile("kdbinsidebrains-", ".kib");
+                path.toFile().deleteOnExit();
+                try {
+                    final MappedByteBuffer buffer;
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                        buffer = inflate(channel, in, header);
+                    }
+                    final Object res = decode(new KxMappedFile(path, buffer, decoder, charset, true), littleEndian);
+                    if (temporary) {
+                        delete(file);
+                    }
+                    return res;
+                } catch (IOException | RuntimeException | c.KException ex) {
+                    delete(path);
+                    throw ex;
+                }
+            }
+        }
+
+        final MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return decode(new KxMappedFile(file, buffer, decoder, charset, temporary), header[0] == 1);
+    }
+
+    private static Object decode(KxMappedFile file, boolean littleEndian) throws c.KException, IOException {
+        file.buffer.order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        final Object res = file.decode();
+        if (of(res) != file) {
+            file.close();
+        }
+        return res;
+    }
+
+    private static MappedByteBuffer copy(FileChannel channel, KxStreamInput in, byte[] header) throws IOException {
+        final int size = c.msgSize(header);
+        channel.write(ByteBuffer.wrap(header));
+
+        final byte[] b = new byte[COPY_BUFFER_SIZE];
+        long remaining = size - 8;
+        while (remaining > 0) {
+            final int cnt = (int) Math.min(b.length, remaining);
+            in.readBytes(b, 0, cnt);
+            final ByteBuffer bb = ByteBuffer.wrap(b, 0, cnt);
+            while (bb.hasRemaining()) {
+                channel.write(bb);
+            }
+            remaining -= cnt;
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    private static MappedByteBuffer inflate(FileChannel channel, KxStreamInput in, byte[] header) throws IOException {
+        final int size = in.readInt();
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        // the file is an uncompressed message
+        final byte[] h = header.clone();
+        h[2] = 0;
+        buffer.put(0, h[0]).put(1, h[1]).put(2, h[2]).put(3, h[3]);
+        buffer.order(h[0] == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).putInt(4, size);
+
+        new KxInflaterInput(in, buffer).inflateFully();
+        return buffer;
+    }
+
+    private Object decode() throws c.KException, IOException {
+        final KxInput in = KxInput.wrap(buffer);
+        in.position(8);
+
+        final byte t = in.peekByte();
+        if (t == -128) {
+            in.readByte();
+            throw new c.KException(in.readSymbol(charset));
+        }
+        if (t == 98) {
+            return readTable(in);
+        }
+        if (t == 99) {
+            final int start = in.position();
+            in.readByte();
+            if (in.peekByte() == 98) {
+                final c.Flip keys = readTable(in);
+                if (in.peekByte() == 98) {
+                    return new c.Dict(keys, readTable(in));
+                }
+            }
+            in.position(start);
+        }
+        // the same way as a received message, so top-level vectors are compact
+        return decoder.decode(in, false, QueryProgress.NONE);
+    }
+
+    private c.Flip readTable(KxInput in) throws IOException {
+        in.readByte(); // flip
+        in.readByte(); // attributes
+        in.readByte(); // dict
+
+        final String[] names = (String[]) decoder.readObject(in);
+        in.readByte(); // general list
+        in.readByte(); // attributes
+        final int n = in.readInt();
+
+        final Object[] columns = new Object[n];
+        for (int i = 0; i < n; i++) {
+            columns[i] = KxMappedVector.read(this, buffer, in);
+        }
+        return new c.Flip(new c.Dict(names, columns));
+    }
+
+    /**
+     * Returns the file a table or a keyed table has been mapped from.
+     *
+     * @param result a query result
+     * @return the file or null if the result is not mapped from a file
+     */
+    public static KxMappedFile of(Object result) {
+        if (result instanceof c.Dict) {
+            return of(((c.Dict) result).x);
+        }
+        if (result instanceof c.Flip) {
+            final Object[] columns = ((c.Flip) result).y;
+            if (columns.length != 0 && columns[0] instanceof KxMappedVector) {
+                return ((KxMappedVector) columns[0]).getFile();
+            }
+        }
+        return null;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Deletes the file, if it's a temp one. The mapping itself is released by the garbage collector, so vectors still
+     * can be read until then, but the file must not be used anymore.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            if (temporary) {
+                delete(path);
+            }
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignore) {
+            // Windows doesn't delete a mapped file, so it's deleted on exit
+        }
+    }
+}
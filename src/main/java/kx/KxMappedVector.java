@@ -0,0 +1,336 @@
+package kx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+/**
+ * kdb+ vector that is read straight from a memory-mapped message, see {@link KxMappedFile}. Nothing is decoded
+ * until {@link #get(int)} is called, so the heap keeps only offsets of variable-length items: symbols and items of
+ * general lists.
+ * <p>
+ * The mapping is read with absolute methods only, so the vector can be read from many threads.
+ */
+public final class KxMappedVector extends KxVector {
+    private final KxMappedFile file;
+    private final ByteBuffer buffer;
+    private final int type;
+    private final int size;
+    private final int position;
+    private final int[] offsets;
+
+    /**
+     * @param file     the file the vector belongs to
+     * @param buffer   the mapped message
+     * @param type     kdb+ type of the vector
+     * @param size     number of items
+     * @param position position of the first item in the buffer
+     * @param offsets  position of each variable-length item and the end of the last one or null for fixed-width types
+     */
+    KxMappedVector(KxMappedFile file, ByteBuffer buffer, int type, int size, int position, int[] offsets) {
+        this.file = file;
+        this.buffer = buffer;
+        this.type = type;
+        this.size = size;
+        this.position = position;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the file the vector is mapped from.
+     */
+    public KxMappedFile getFile() {
+        return file;
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public Class<?> getElementType() {
+        switch (type) {
+            case 0:
+                return Object.class;
+            case 1:
+                return boolean.class;
+            case 2:
+                return UUID.class;
+            case 4:
+                return byte.class;
+            case 5:
+                return short.class;
+            case 6:
+                return int.class;
+            case 7:
+                return long.class;
+            case 8:
+                return float.class;
+            case 9:
+                return double.class;
+            case 10:
+                return char.class;
+            case 11:
+                return String.class;
+        }
+        return TemporalVector.elementType(type);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int at(int index) {
+        return position + index * c.nt[type];
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        switch (type) {
+            case 2:
+                return buffer.getLong(at(index)) == 0 && buffer.getLong(at(index) + 8) == 0;
+            case 5:
+                return buffer.getShort(at(index)) == Short.MIN_VALUE;
+            case 6:
+            case 13:
+            case 14:
+            case 17:
+            case 18:
+            case 19:
+                return buffer.getInt(at(index)) == c.ni;
+            case 7:
+            case 12:
+            case 16:
+                return buffer.getLong(at(index)) == c.nj;
+            case 8:
+                return Float.isNaN(buffer.getFloat(at(index)));
+            case 9:
+            case 15:
+                return Double.isNaN(buffer.getDouble(at(index)));
+            case 11:
+                return offsets[index + 1] - offsets[index] == 1;
+        }
+        return false;
+    }
+
+    @Override
+    public int compare(int index1, int index2) {
+        final boolean n1 = isNull(index1);
+        final boolean n2 = isNull(index2);
+        if (n1 || n2) {
+            return n1 == n2 ? 0 : n1 ? -1 : 1;
+        }
+
+        switch (type) {
+            case 1:
+            case 4:
+            case 10:
+                return Integer.compare(buffer.get(at(index1)), buffer.get(at(index2)));
+            case 2:
+                return ((UUID) get(index1)).compareTo((UUID) get(index2));
+            case 5:
+                return Short.compare(buffer.getShort(at(index1)), buffer.getShort(at(index2)));
+            case 6:
+            case 13:
+            case 14:
+            case 17:
+            case 18:
+            case 19:
+                return Integer.compare(buffer.getInt(at(index1)), buffer.getInt(at(index2)));
+            case 7:
+            case 12:
+            case 16:
+                return Long.compare(buffer.getLong(at(index1)), buffer.getLong(at(index2)));
+            case 8:
+                return Float.compare(buffer.getFloat(at(index1)), buffer.getFloat(at(index2)));
+            case 9:
+            case 15:
+                return Double.compare(buffer.getDouble(at(index1)), buffer.getDouble(at(index2)));
+            case 11:
+                return compareBytes(offsets[index1], offsets[index1 + 1], offsets[index2], offsets[index2 + 1]);
+        }
+
+        // general list: strings are compared by the bytes, anything else is not ordered
+        final int p1 = offsets[index1];
+        final int p2 = offsets[index2];
+        if (buffer.get(p1) == 10 && buffer.get(p2) == 10) {
+            return compareBytes(p1 + 6, offsets[index1 + 1], p2 + 6, offsets[index2 + 1]);
+        }
+        return 0;
+    }
+
+    private int compareBytes(int s1, int e1, int s2, int e2) {
+        final int l = Math.min(e1 - s1, e2 - s2);
+        for (int i = 0; i < l; i++) {
+            final int r = Integer.compare(buffer.get(s1 + i) & 0xff, buffer.get(s2 + i) & 0xff);
+            if (r != 0) {
+                return r;
+            }
+        }
+        return Integer.compare(e1 - s1, e2 - s2);
+    }
+
+    @Override
+    public Object get(int index) {
+        final int p = at(index);
+        switch (type) {
+            case 0:
+                return decodeItem(index);
+            case 1:
+                return buffer.get(p) == 1;
+            case 2: {
+                final ByteBuffer b = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+                return new UUID(b.getLong(p), b.getLong(p + 8));
+            }
+            case 4:
+                return buffer.get(p);
+            case 5:
+                return buffer.getShort(p);
+            case 6:
+                return buffer.getInt(p);
+            case 7:
+                return buffer.getLong(p);
+            case 8:
+                return buffer.getFloat(p);
+            case 9:
+                return buffer.getDouble(p);
+            case 10:
+                return (char) (buffer.get(p) & 0xff);
+            case 11:
+                return getSymbol(index);
+            case 12:
+                return file.getDecoder().timestamp(buffer.getLong(p));
+            case 13:
+                return new c.Month(buffer.getInt(p));
+            case 14:
+                return file.getDecoder().date(buffer.getInt(p));
+            case 15:
+                return file.getDecoder().datetime(buffer.getDouble(p));
+            case 16:
+                return new c.Timespan(buffer.getLong(p));
+            case 17:
+                return new c.Minute(buffer.getInt(p));
+            case 18:
+                return new c.Second(buffer.getInt(p));
+            case 19:
+                return file.getDecoder().time(buffer.getInt(p));
+        }
+        throw new IllegalStateException("Unsupported vector type: " + type);
+    }
+
+    private String getSymbol(int index) {
+        final int start = offsets[index];
+        final int length = offsets[index + 1] - start - 1;
+        if (length == 0) {
+            return "";
+        }
+        final byte[] b = new byte[length];
+        buffer.duplicate().position(start).get(b);
+        return new String(b, file.getCharset());
+    }
+
+    private Object decodeItem(int index) {
+        final KxInput in = KxInput.wrap(buffer);
+        in.position(offsets[index]);
+        try {
+            return file.getDecoder().readObject(in);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    int serializedSize(KxEncoder encoder) {
+        if (offsets == null) {
+            return size * c.nt[type];
+        }
+
+        int res = 0;
+        for (int i = 0; i < size; i++) {
+            res += type == 11 ? 1 + encoder.ns(getSymbol(i)) : encoder.nx(decodeItem(i));
+        }
+        return res;
+    }
+
+    @Override
+    void write(KxEncoder encoder) {
+        for (int i = 0; i < size; i++) {
+            final int p = at(i);
+            switch (type) {
+                case 0:
+                    encoder.w(decodeItem(i));
+                    break;
+                case 1:
+                case 4:
+                case 10:
+                    encoder.w(buffer.get(p));
+                    break;
+                case 2:
+                    encoder.w((UUID) get(i));
+                    break;
+                case 5:
+                    encoder.w(buffer.getShort(p));
+                    break;
+                case 7:
+                case 12:
+                case 16:
+                    encoder.w(buffer.getLong(p));
+                    break;
+                case 8:
+                    encoder.w(buffer.getFloat(p));
+                    break;
+                case 9:
+                case 15:
+                    encoder.w(buffer.getDouble(p));
+                    break;
+                case 11:
+                    encoder.w(getSymbol(i));
+                    break;
+                default:
+                    encoder.w(buffer.getInt(p));
+            }
+        }
+    }
+
+    /**
+     * Creates the vector for the vector header at the current position of the input and moves the input after it.
+     * Offsets of variable-length items are collected by the way.
+     */
+    static KxMappedVector read(KxMappedFile file, ByteBuffer buffer, KxInput in) throws IOException {
+        final int t = in.readByte();
+        if (t < 0 || t > 19 || t == 3) {
+            throw new IOException("Unsupported column type: " + t);
+        }
+        in.readByte(); // attributes
+        final int n = in.readInt();
+        final int position = in.position();
+
+        int[] offsets = null;
+        if (t == 0) {
+            offsets = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                offsets[i] = in.position();
+                file.getDecoder().skipObject(in);
+            }
+            offsets[n] = in.position();
+        } else if (t == 11) {
+            offsets = new int[n + 1];
+            int p = position;
+            for (int i = 0; i < n; i++) {
+                offsets[i] = p;
+                while (buffer.get(p++) != 0) {
+                    // find the terminator
+                }
+            }
+            offsets[n] = p;
+            in.position(p);
+        } else {
+            in.skip((long) c.nt[t] * n);
+        }
+        return new KxMappedVector(file, buffer, t, n, position, offsets);
+    }
+}
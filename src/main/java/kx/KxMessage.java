@@ -0,0 +1,71 @@
+package kx;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Serialized IPC message as a list of pooled chunks. The chunks go to the socket as they are, without
+ * copying them into one array, and return to the pool when the message is closed.
+ * <p>
+ * The message is not thread-safe and must be closed once it's written.
+ */
+public final class KxMessage implements AutoCloseable {
+    private final ByteBuffer[] chunks;
+    private final int size;
+    private final KxBufferPool pool;
+    private boolean closed;
+
+    KxMessage(List<ByteBuffer> chunks, int size, KxBufferPool pool) {
+        this.chunks = chunks.toArray(new ByteBuffer[0]);
+        this.size = size;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the message size, including the header.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isCompressed() {
+        return chunks[0].get(2) == 1;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+    }
+
+    public byte[] toByteArray() {
+        final byte[] res = new byte[size];
+        int position = 0;
+        for (ByteBuffer chunk : chunks) {
+            final int length = chunk.remaining();
+            chunk.duplicate().get(res, position, length);
+            position += length;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the chunks of the message, which must not be changed.
+     */
+    ByteBuffer[] chunks() {
+        return chunks;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (ByteBuffer chunk : chunks) {
+            pool.release(chunk.array());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package kx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Growable buffer for kdb+ IPC bytes.
+ * <p>
+ * The output is not thread-safe.
+ */
+public class KxOutput {
+    private ByteBuffer buffer;
+
+    public KxOutput(int capacity, boolean littleEndian) {
+        buffer = ByteBuffer.allocate(Math.max(16, capacity)).order(littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    public KxOutput putByte(byte b) {
+        ensure(1);
+        buffer.put(b);
+        return this;
+    }
+
+    public KxOutput putInt(int i) {
+        ensure(4);
+        buffer.putInt(i);
+        return this;
+    }
+
+    /**
+     * Copies next {@code count} bytes of the source into the output and moves the source position.
+     */
+    public KxOutput put(ByteBuffer src, int count) {
+        ensure(count);
+        final ByteBuffer s = src.duplicate();
+        s.limit(s.position() + count);
+        buffer.put(s);
+        src.position(src.position() + count);
+        return this;
+    }
+
+    /**
+     * Returns an input over the written bytes. The output must not be used after that.
+     */
+    public KxInput toInput() {
+        final ByteBuffer b = buffer.duplicate().order(buffer.order());
+        b.flip();
+        return KxInput.wrap(b);
+    }
+
+    private void ensure(int required) {
+        if (buffer.remaining() >= required) {
+            return;
+        }
+        final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + required);
+        final ByteBuffer b = ByteBuffer.allocate(capacity).order(buffer.order());
+        buffer.flip();
+        b.put(buffer);
+        buffer = b;
+    }
+}
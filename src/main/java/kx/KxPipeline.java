@@ -0,0 +1,245 @@
+package kx;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined mode of a connection, for gateways that allow only one handle per user: many queries can be in flight
+ * over one socket at the same time.
+ * <p>
+ * Each query is sent as an async message that evaluates it on the remote side and sends back two async messages
+ * with {@code neg[.z.w]}: a header with the correlation id and the evaluation status, and the result itself.
+ * A dedicated reader thread reads all incoming messages, matches the responses with the requests and passes
+ * any other message to the {@link c.MsgHandler} of the connection.
+ * <p>
+ * As the result is sent as a separate message, it's decoded exactly as a response to a sync query.
+ *
+ * @see KxConnection#startPipeline()
+ */
+public final class KxPipeline {
+    private final KxConnection connection;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Request> requests = new ConcurrentHashMap<>();
+
+    private volatile IOException closeError;
+
+    /**
+     * First item of the response header.
+     */
+    static final String RESPONSE_MARKER = "kxPipelineResponse";
+
+    private static final char[] WRAPPER = ("{[id;q] r:@[{(1b;value x)};q;{(0b;x)}]; " +
+            "neg[.z.w] (`" + RESPONSE_MARKER + ";id;r 0); neg[.z.w] r 1}").toCharArray();
+
+    private static final int CANCELLATION_CHECK_MILLIS = 100;
+
+    KxPipeline(KxConnection connection) {
+        this.connection = connection;
+
+        final Thread reader = new Thread(this::readMessages, "KxPipeline-Reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Returns the number of queries sent but not responded yet.
+     */
+    public int getInFlightCount() {
+        return requests.size();
+    }
+
+    /**
+     * Sends the query as an async message and returns straight away.
+     *
+     * @param x            the query, the same as for a sync query
+     * @param codec        the codec the result is decoded with, so queries in flight can have different options
+     * @param cancellation checked while the response is being received. If it fails, the rest of the response is skipped.
+     * @param validator    validates size of the response before it's received
+     * @param progress     receives the phases of the query and the progress of receiving the response
+     * @return the future completed by the reader thread with the result. The future fails with {@link c.KException}
+     * if the remote side returns an error.
+     * @throws IOException if the query can't be sent
+     */
+    public CompletableFuture<Object> submit(Object x, KxCodec codec, CancellationValidator cancellation, ResponseValidator validator, QueryProgress progress) throws IOException {
+        checkClosed();
+
+        final long id = ids.incrementAndGet();
+        final Request request = new Request(codec, cancellation, validator, progress);
+        requests.put(id, request);
+        try {
+            progress.accept(QueryPhase.ENCODING);
+            try (KxMessage message = connection.serializeMessage(0, new Object[]{WRAPPER, id, x}, connection.zip)) {
+                synchronized (connection.o) {
+                    cancellation.checkCancelled();
+                    progress.accept(QueryPhase.SENDING);
+                    connection.write(message);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            requests.remove(id);
+            throw ex;
+        }
+        progress.accept(QueryPhase.WAITING);
+
+        // the connection could be closed while the message was being sent
+        if (closeError != null && requests.remove(id) != null) {
+            request.future.completeExceptionally(closeError);
+        }
+        return request.future;
+    }
+
+    /**
+     * Sends the query and waits for the response, like {@link KxConnection#query}.
+     */
+    public Object query(Object x, KxCodec codec, CancellationValidator cancellation, ResponseValidator validator, QueryProgress progress) throws IOException, c.KException, CancellationException {
+        final CompletableFuture<Object> future = submit(x, codec, cancellation, validator, progress);
+        while (true) {
+            try {
+                return future.get(CANCELLATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                // the response is skipped by the reader when it comes
+                cancellation.checkCancelled();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("The query has been interrupted.");
+            } catch (ExecutionException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof c.KException) {
+                    throw (c.KException) cause;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private void readMessages() {
+        try {
+            while (true) {
+                final byte[] header = readHeader();
+                final Object msg;
+                try {
+                    msg = connection.readMsgBody(header, () -> {
+                    }, QueryProgress.NONE);
+                } catch (c.KException ex) {
+                    // nobody waits for it
+                    continue;
+                }
+
+                if (isResponseHeader(msg)) {
+                    final Object[] items = (Object[]) msg;
+                    readResponse(requests.remove(items[1]), Boolean.TRUE.equals(items[2]));
+                } else {
+                    final c.MsgHandler handler = connection.getMsgHandler();
+                    if (handler != null) {
+                        handler.processMsg(connection, header[1], msg);
+                    } else if (header[1] == 1) {
+                        connection.ke("unable to process sync requests");
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            close(ex);
+        } catch (Exception ex) {
+            close(new IOException("Pipeline reader has been failed", ex));
+        }
+    }
+
+    private static boolean isResponseHeader(Object msg) {
+        if (!(msg instanceof Object[])) {
+            return false;
+        }
+        final Object[] items = (Object[]) msg;
+        return items.length == 3 && RESPONSE_MARKER.equals(items[0]) && items[1] instanceof Long;
+    }
+
+    /**
+     * Reads the result that follows the response header.
+     *
+     * @param request the request or null if it's not known anymore, so the result is just skipped
+     */
+    private void readResponse(Request request, boolean success) throws IOException {
+        final byte[] header = readHeader();
+        final int size = c.msgSize(header);
+        if (request == null) {
+            new KxStreamInput(connection.i, size - 8, () -> {
+            }).skipRemaining();
+            return;
+        }
+
+        request.progress.accept(QueryPhase.RECEIVING);
+        try {
+            request.cancellation.checkCancelled();
+            request.validator.checkMessageSize(size);
+        } catch (CancellationException ex) {
+            new KxStreamInput(connection.i, size - 8, () -> {
+            }).skipRemaining();
+            request.future.completeExceptionally(ex);
+            return;
+        }
+
+        try {
+            // the rest of the message is skipped by the connection if the decoding is cancelled or failed
+            final Object res = connection.readResponseBody(header, request.codec, request.cancellation, request.validator, request.progress);
+            if (success) {
+                request.future.complete(res);
+            } else {
+                request.future.completeExceptionally(new c.KException(res instanceof char[] ? new String((char[]) res) : String.valueOf(res)));
+            }
+        } catch (c.KException | CancellationException ex) {
+            request.future.completeExceptionally(ex);
+        } catch (IOException | RuntimeException ex) {
+            request.future.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private byte[] readHeader() throws IOException {
+        final byte[] header = new byte[8];
+        connection.i.readFully(header);
+        if (header[1] == 1) {
+            connection.sync++;
+        }
+        return header;
+    }
+
+    private void checkClosed() throws IOException {
+        final IOException error = closeError;
+        if (error != null) {
+            throw new IOException("The connection is closed", error);
+        }
+    }
+
+    /**
+     * Fails all requests in flight. The reader thread stops itself when the socket is closed.
+     */
+    void close(IOException error) {
+        if (closeError == null) {
+            closeError = error;
+        }
+        requests.values().forEach(r -> r.future.completeExceptionally(error));
+        requests.clear();
+    }
+
+    private static final class Request {
+        private final KxCodec codec;
+        private final CancellationValidator cancellation;
+        private final ResponseValidator validator;
+        private final QueryProgress progress;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private Request(KxCodec codec, CancellationValidator cancellation, ResponseValidator validator, QueryProgress progress) {
+            this.codec = codec;
+            this.cancellation = cancellation;
+            this.validator = validator;
+            this.progress = progress;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package kx;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a message body straight from the socket stream through a small fixed-size window, so only decoded
+ * values are kept on the heap and never the raw message.
+ */
+public class KxStreamInput extends KxInput {
+    private final InputStream stream;
+    private final CancellationValidator cancellation;
+    private final QueryProgress progress;
+    private final long length;
+
+    private long remaining;
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * @param stream       the source stream
+     * @param length       number of bytes of the message left in the stream
+     * @param cancellation validator checked each time a new chunk is loaded
+     */
+    public KxStreamInput(InputStream stream, long length, CancellationValidator cancellation) {
+        this(stream, length, cancellation, QueryProgress.NONE);
+    }
+
+    /**
+     * @param stream       the source stream
+     * @param length       number of bytes of the message left in the stream
+     * @param cancellation validator checked each time a new chunk is loaded
+     * @param progress     receives {@link QueryPhase#RECEIVING} progress each time a new chunk is loaded
+     */
+    public KxStreamInput(InputStream stream, long length, CancellationValidator cancellation, QueryProgress progress) {
+        super(ByteBuffer.allocate(CHUNK_SIZE));
+        this.stream = stream;
+        this.length = length;
+        this.remaining = length;
+        this.progress = progress;
+        this.cancellation = cancellation;
+        buffer.limit(0);
+    }
+
+    @Override
+    public boolean isBuffered() {
+        return false;
+    }
+
+    @Override
+    public long available() {
+        return buffer.remaining() + remaining;
+    }
+
+    /**
+     * Returns number of bytes that are still in the stream and not loaded yet.
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    @Override
+    protected void fill(int required) throws IOException {
+        cancellation.checkCancelled();
+
+        buffer.compact();
+        try {
+            final byte[] array = buffer.array();
+            while (buffer.position() < required || (buffer.hasRemaining() && remaining > 0 && buffer.position() < CHUNK_SIZE / 2)) {
+                if (remaining == 0) {
+                    throw new EOFException("Unexpected end of the message: " + required + " bytes required but only " + buffer.position() + " available");
+                }
+                final int cnt = stream.read(array, buffer.position(), (int) Math.min(buffer.remaining(), remaining));
+                if (cnt < 0) {
+                    throw new EOFException("Connection closed before the message was received");
+                }
+                buffer.position(buffer.position() + cnt);
+                remaining -= cnt;
+            }
+        } finally {
+            buffer.flip();
+        }
+        progress.progress(QueryPhase.RECEIVING, length - remaining, length);
+    }
+
+    @Override
+    public void skipRemaining() throws IOException {
+        super.skipRemaining();
+        while (remaining > 0) {
+            final long skip = stream.skip(remaining);
+            if (skip <= 0) {
+                if (stream.read() < 0) {
+                    throw new EOFException("Connection closed before the message was received");
+                }
+                remaining--;
+            } else {
+                remaining -= skip;
+            }
+        }
+    }
+}
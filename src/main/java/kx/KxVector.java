@@ -0,0 +1,58 @@
+package kx;
+
+import java.lang.reflect.Array;
+
+/**
+ * kdb+ vector kept in a compact form instead of a Java array of objects. An item object is created, if required,
+ * only when {@link #get(int)} is called.
+ * <p>
+ * The decoder creates such vectors only for top-level results and columns of top-level tables,
+ * see {@link c#setPrimitiveTemporals(boolean)} and {@link c#setCompactStrings(boolean)}.
+ */
+public abstract class KxVector {
+    /**
+     * Returns kdb+ type of the vector.
+     */
+    public abstract int getType();
+
+    /**
+     * Returns the class of objects returned by {@link #get(int)}.
+     */
+    public abstract Class<?> getElementType();
+
+    public abstract int size();
+
+    public abstract boolean isNull(int index);
+
+    /**
+     * Compares two items without creating the item objects. Nulls are less than any other value, like in kdb+.
+     */
+    public abstract int compare(int index1, int index2);
+
+    /**
+     * Returns the object for the item, the same as {@link c} creates in normal mode.
+     */
+    public abstract Object get(int index);
+
+    /**
+     * Creates an array of objects, the same as {@link c} creates in normal mode.
+     */
+    public Object toArray() {
+        final int size = size();
+        final Object res = Array.newInstance(getElementType(), size);
+        for (int i = 0; i < size; i++) {
+            Array.set(res, i, get(i));
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of bytes required to serialize items of the vector, without the vector header.
+     */
+    abstract int serializedSize(KxEncoder encoder);
+
+    /**
+     * Serializes items of the vector. The vector header is already written.
+     */
+    abstract void write(KxEncoder encoder);
+}
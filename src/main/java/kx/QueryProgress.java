@@ -0,0 +1,29 @@
+package kx;
+
+import java.util.function.Consumer;
+
+/**
+ * Phase consumer that also wants to know how far the current phase has gone.
+ * <p>
+ * Can be passed everywhere a {@code Consumer<QueryPhase>} is expected. {@link #progress(QueryPhase, long, long)}
+ * can be called from different threads and may throw {@link java.util.concurrent.CancellationException}
+ * to interrupt the processing.
+ */
+@FunctionalInterface
+public interface QueryProgress extends Consumer<QueryPhase> {
+    QueryProgress NONE = phase -> {
+    };
+
+    default void progress(QueryPhase phase, long done, long total) {
+    }
+
+    static QueryProgress of(Consumer<QueryPhase> consumer) {
+        if (consumer == null) {
+            return NONE;
+        }
+        if (consumer instanceof QueryProgress) {
+            return (QueryProgress) consumer;
+        }
+        return consumer::accept;
+    }
+}
@@ -5,4 +5,14 @@ import java.util.concurrent.CancellationException;
 @FunctionalInterface
 public interface ResponseValidator {
     void checkMessageSize(int size) throws CancellationException;
+
+    /**
+     * Returns true if the response must be kept in a memory-mapped temp file instead of the heap, see
+     * {@link KxMappedFile}. Called only if {@link #checkMessageSize(int)} accepts the response.
+     *
+     * @param size the size of the message, including the header
+     */
+    default boolean isMappedToFile(int size) {
+        return false;
+    }
 }
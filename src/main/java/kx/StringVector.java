@@ -0,0 +1,153 @@
+package kx;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * kdb+ list of strings packed into one byte array instead of a {@code char[]} for each item.
+ * <p>
+ * {@link #get(int)} creates the same {@code char[]} {@link c} creates in normal mode.
+ *
+ * @see c#setCompactStrings(boolean)
+ */
+public final class StringVector extends KxVector {
+    private final byte[] data;
+    private final int[] offsets;
+    private final Charset charset;
+
+    /**
+     * @param data    the bytes of all strings
+     * @param offsets start of each string in the data and the end of the last one, so it's one longer than the vector
+     * @param charset the encoding of the data
+     */
+    public StringVector(byte[] data, int[] offsets, Charset charset) {
+        this.data = data;
+        this.offsets = offsets;
+        this.charset = charset;
+    }
+
+    /**
+     * Splits the text into lines without decoding it, like {@link java.nio.file.Files#readAllLines} does:
+     * a line is terminated by {@code \n}, {@code \r} or {@code \r\n}, and the last terminator is optional.
+     * <p>
+     * Line terminators are removed in place, so the data array is reused by the vector and must not be changed after.
+     *
+     * @param data    the text bytes
+     * @param charset the encoding of the text
+     * @return the vector of lines
+     */
+    public static StringVector lines(byte[] data, Charset charset) {
+        int[] offsets = new int[16];
+        int count = 0;
+        int length = 0;
+        boolean lineStarted = false;
+        for (int i = 0; i < data.length; i++) {
+            final byte b = data[i];
+            if (!lineStarted) {
+                if (count + 1 >= offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[count++] = length;
+                lineStarted = true;
+            }
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && i + 1 < data.length && data[i + 1] == '\n') {
+                    i++;
+                }
+                lineStarted = false;
+            } else {
+                data[length++] = b;
+            }
+        }
+        offsets[count] = length;
+        return new StringVector(data, Arrays.copyOf(offsets, count + 1), charset);
+    }
+
+    @Override
+    public int getType() {
+        return 0;
+    }
+
+    @Override
+    public Class<?> getElementType() {
+        return Object.class;
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return false;
+    }
+
+    @Override
+    public int compare(int index1, int index2) {
+        final int s1 = offsets[index1];
+        final int l1 = offsets[index1 + 1] - s1;
+        final int s2 = offsets[index2];
+        final int l2 = offsets[index2 + 1] - s2;
+        final int l = Math.min(l1, l2);
+        for (int i = 0; i < l; i++) {
+            final int r = Integer.compare(data[s1 + i] & 0xff, data[s2 + i] & 0xff);
+            if (r != 0) {
+                return r;
+            }
+        }
+        return Integer.compare(l1, l2);
+    }
+
+    @Override
+    public char[] get(int index) {
+        return getString(index).toCharArray();
+    }
+
+    public String getString(int index) {
+        final int start = offsets[index];
+        return new String(data, start, offsets[index + 1] - start, charset);
+    }
+
+    /**
+     * Returns the length of the item in bytes.
+     */
+    public int getLength(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    @Override
+    int serializedSize(KxEncoder encoder) {
+        final int size = size();
+        if (charset.equals(encoder.getCharset())) {
+            return size * 6 + offsets[size] - offsets[0];
+        }
+
+        int res = 0;
+        for (int i = 0; i < size; i++) {
+            res += encoder.nx(get(i));
+        }
+        return res;
+    }
+
+    @Override
+    void write(KxEncoder encoder) {
+        final int size = size();
+        if (!charset.equals(encoder.getCharset())) {
+            for (int i = 0; i < size; i++) {
+                encoder.w(get(i));
+            }
+            return;
+        }
+
+        // the same encoding, so the bytes go as they are
+        for (int i = 0; i < size; i++) {
+            final int start = offsets[i];
+            final int length = offsets[i + 1] - start;
+            encoder.w((byte) 10);
+            encoder.w((byte) 0);
+            encoder.w(length);
+            encoder.w(data, start, length);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package kx;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Dictionary of symbols that are read from a message. The raw bytes of a symbol are looked up in a hash table,
+ * so a {@link String} is created only once for each distinct symbol.
+ * <p>
+ * The interner is not thread-safe: each column has to use own instance.
+ */
+final class SymbolInterner {
+    private final Charset charset;
+
+    private byte[] pool = new byte[1024];
+    private int poolSize = 0;
+
+    private int[] offsets = new int[65];
+    private String[] symbols = new String[64];
+    private int count = 0;
+
+    // code + 1 of a symbol or 0 for an empty slot
+    private int[] table = new int[128];
+
+    SymbolInterner(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Returns the code of the symbol, adding the symbol if it's new.
+     */
+    int intern(byte[] bytes, int offset, int length) {
+        final int hash = hash(bytes, offset, length);
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+        while (true) {
+            final int code = table[slot] - 1;
+            if (code < 0) {
+                break;
+            }
+            final int start = offsets[code];
+            if (offsets[code + 1] - start == length && Arrays.equals(pool, start, start + length, bytes, offset, offset + length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(bytes, offset, length, slot);
+    }
+
+    int size() {
+        return count;
+    }
+
+    String[] getSymbols() {
+        return Arrays.copyOf(symbols, count);
+    }
+
+    private int add(byte[] bytes, int offset, int length, int slot) {
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        }
+        System.arraycopy(bytes, offset, pool, poolSize, length);
+        poolSize += length;
+
+        if (count == symbols.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2 + 1);
+        }
+        final int code = count++;
+        symbols[code] = length == 0 ? "" : new String(bytes, offset, length, charset);
+        offsets[count] = poolSize;
+        table[slot] = code + 1;
+
+        if (count * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    private void rehash() {
+        final int[] t = new int[table.length * 2];
+        final int mask = t.length - 1;
+        for (int code = 0; code < count; code++) {
+            final int start = offsets[code];
+            int slot = hash(pool, start, offsets[code + 1] - start) & mask;
+            while (t[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            t[slot] = code + 1;
+        }
+        table = t;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,117 @@
+package kx;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * kdb+ symbol vector that keeps each distinct symbol only once: items are codes in the dictionary of symbols.
+ * <p>
+ * {@link #get(int)} returns the same {@link String} instance for all items with the same symbol, so anything
+ * calculated for a symbol, like a formatted text or a search match, can be cached by the code.
+ *
+ * @see c#setCompactStrings(boolean)
+ */
+public final class SymbolVector extends KxVector {
+    private final int[] codes;
+    private final String[] symbols;
+
+    private volatile int[] ranks;
+
+    public SymbolVector(int[] codes, String[] symbols) {
+        this.codes = codes;
+        this.symbols = symbols;
+    }
+
+    @Override
+    public int getType() {
+        return 11;
+    }
+
+    @Override
+    public Class<?> getElementType() {
+        return String.class;
+    }
+
+    @Override
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Returns the code of the item's symbol in {@link #getSymbols()}.
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    /**
+     * Returns the dictionary of distinct symbols. The array must not be modified.
+     */
+    public String[] getSymbols() {
+        return symbols;
+    }
+
+    @Override
+    public boolean isNull(int index) {
+        return symbols[codes[index]].isEmpty();
+    }
+
+    @Override
+    public int compare(int index1, int index2) {
+        final int[] r = ranks();
+        return Integer.compare(r[codes[index1]], r[codes[index2]]);
+    }
+
+    @Override
+    public String get(int index) {
+        return symbols[codes[index]];
+    }
+
+    @Override
+    public Object toArray() {
+        final String[] res = new String[codes.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = symbols[codes[i]];
+        }
+        return res;
+    }
+
+    @Override
+    int serializedSize(KxEncoder encoder) {
+        final int[] sizes = new int[symbols.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = 1 + encoder.ns(symbols[i]);
+        }
+
+        int res = 0;
+        for (int code : codes) {
+            res += sizes[code];
+        }
+        return res;
+    }
+
+    @Override
+    void write(KxEncoder encoder) {
+        for (int code : codes) {
+            encoder.w(symbols[code]);
+        }
+    }
+
+    private int[] ranks() {
+        int[] r = ranks;
+        if (r == null) {
+            final Integer[] order = new Integer[symbols.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> symbols[i]));
+
+            r = new int[symbols.length];
+            for (int i = 0; i < order.length; i++) {
+                r[order[i]] = i;
+            }
+            ranks = r;
+        }
+        return r;
+    }
+}
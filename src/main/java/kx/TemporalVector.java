@@ -0,0 +1,241 @@
+package kx;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * kdb+ temporal vector that keeps raw kdb+ values in a primitive array instead of an array of objects:
+ * timestamps and timespans are nanoseconds, months, dates, minutes, seconds and times are the kdb+ ints
+ * and datetimes are days since 2000.01.01 as doubles.
+ * <p>
+ * The raw values don't depend on any timezone. An object is created only when {@link #get(int)} is called and
+ * it's exactly the same object {@link c} creates for the value in normal mode.
+ *
+ * @see c#setPrimitiveTemporals(boolean)
+ */
+public abstract class TemporalVector extends KxVector {
+    private final int type;
+    final KxDecoder decoder;
+
+    private TemporalVector(int type, KxDecoder decoder) {
+        this.type = type;
+        this.decoder = decoder;
+    }
+
+    /**
+     * Returns kdb+ type of the vector, from 12 (timestamp) to 19 (time).
+     */
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public Class<?> getElementType() {
+        return elementType(type);
+    }
+
+    @Override
+    int serializedSize(KxEncoder encoder) {
+        return size() * c.nt[type];
+    }
+
+    static Class<?> elementType(int type) {
+        switch (type) {
+            case 12:
+                return Timestamp.class;
+            case 13:
+                return c.Month.class;
+            case 14:
+                return Date.class;
+            case 15:
+                return java.util.Date.class;
+            case 16:
+                return c.Timespan.class;
+            case 17:
+                return c.Minute.class;
+            case 18:
+                return c.Second.class;
+            case 19:
+                return Time.class;
+        }
+        throw new IllegalArgumentException("Not a temporal type: " + type);
+    }
+
+    /**
+     * Timestamp (12) or timespan (16) vector.
+     */
+    public static final class Longs extends TemporalVector {
+        private final long[] values;
+
+        public Longs(int type, long[] values, KxDecoder decoder) {
+            super(type, decoder);
+            this.values = values;
+        }
+
+        public long[] getValues() {
+            return values;
+        }
+
+        /**
+         * Creates a vector of the same type and decoder with other values.
+         */
+        public Longs withValues(long[] values) {
+            return new Longs(getType(), values, decoder);
+        }
+
+        public long getLong(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return values[index] == c.nj;
+        }
+
+        @Override
+        public int compare(int index1, int index2) {
+            return Long.compare(values[index1], values[index2]);
+        }
+
+        @Override
+        public Object get(int index) {
+            final long v = values[index];
+            return getType() == 12 ? decoder.timestamp(v) : new c.Timespan(v);
+        }
+
+        @Override
+        void write(KxEncoder encoder) {
+            encoder.w(values);
+        }
+    }
+
+    /**
+     * Month (13), date (14), minute (17), second (18) or time (19) vector.
+     */
+    public static final class Ints extends TemporalVector {
+        private final int[] values;
+
+        public Ints(int type, int[] values, KxDecoder decoder) {
+            super(type, decoder);
+            this.values = values;
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        /**
+         * Creates a vector of the same type and decoder with other values.
+         */
+        public Ints withValues(int[] values) {
+            return new Ints(getType(), values, decoder);
+        }
+
+        public int getInt(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return values[index] == c.ni;
+        }
+
+        @Override
+        public int compare(int index1, int index2) {
+            return Integer.compare(values[index1], values[index2]);
+        }
+
+        @Override
+        public Object get(int index) {
+            final int v = values[index];
+            switch (getType()) {
+                case 13:
+                    return new c.Month(v);
+                case 14:
+                    return decoder.date(v);
+                case 17:
+                    return new c.Minute(v);
+                case 18:
+                    return new c.Second(v);
+                default:
+                    return decoder.time(v);
+            }
+        }
+
+        @Override
+        void write(KxEncoder encoder) {
+            encoder.w(values);
+        }
+    }
+
+    /**
+     * Datetime (15) vector.
+     */
+    public static final class Doubles extends TemporalVector {
+        private final double[] values;
+
+        public Doubles(double[] values, KxDecoder decoder) {
+            super(15, decoder);
+            this.values = values;
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * Creates a vector of the same decoder with other values.
+         */
+        public Doubles withValues(double[] values) {
+            return new Doubles(values, decoder);
+        }
+
+        public double getDouble(int index) {
+            return values[index];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public boolean isNull(int index) {
+            return Double.isNaN(values[index]);
+        }
+
+        @Override
+        public int compare(int index1, int index2) {
+            final double v1 = values[index1];
+            final double v2 = values[index2];
+            final boolean n1 = Double.isNaN(v1);
+            final boolean n2 = Double.isNaN(v2);
+            if (n1 || n2) {
+                return n1 == n2 ? 0 : n1 ? -1 : 1;
+            }
+            return Double.compare(v1, v2);
+        }
+
+        @Override
+        public Object get(int index) {
+            return decoder.datetime(values[index]);
+        }
+
+        @Override
+        void write(KxEncoder encoder) {
+            encoder.w(values);
+        }
+    }
+}
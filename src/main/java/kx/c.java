@@ -19,6 +19,7 @@ import java.lang.reflect.Array;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.Charset;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -27,6 +28,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
 /**
  * Connector class for interfacing with a kdb+ process. This class is essentially a serializer/deserializer of java types
@@ -49,7 +51,7 @@ import java.util.UUID;
  */
 public class c {
     /**
-     * Encoding specifies the character encoding to use when [de]-serializing strings.
+     * Encoding specifies the default character encoding of new instances, see {@link #setCharset(Charset)}.
      */
     private static String encoding = "ISO-8859-1";
 
@@ -63,7 +65,7 @@ public class c {
     protected int sync = 0;
 
     /**
-     * Sets character encoding for serialising/deserialising strings.
+     * Sets default character encoding for serialising/deserialising strings of new instances.
      *
      * @param encoding The name of a supported
      *                 <a href="../lang/package-summary.html#charenc">
@@ -87,30 +89,10 @@ public class c {
      * {@code o} is the outputStream of the socket used to write data to the remote kdb+ process.
      */
     OutputStream o;
-    /**
-     * {@code b} is the buffer used to store the incoming message bytes from the remote prior to de-serialization
-     */
-    byte[] b;
-    /**
-     * {@code j} is the current position of the de-serializer within the read buffer b
-     */
-    int j;
-    /**
-     * {@code B} is the buffer used to store the outgoing message bytes when serializing an object
-     */
-    byte[] B;
-    /**
-     * {@code J} is the current position the serializer within the write buffer B
-     */
-    int J;
     /**
      * {@code vt} indicates the ipc version to encode with
      */
     int vt;
-    /**
-     * Marks whether the message being deserialized was encoded little or big endian.
-     */
-    boolean a;
     /**
      * Indicates whether the current connection is to a local interface. Tested when considering whether to compress an outgoing message.
      */
@@ -190,7 +172,8 @@ public class c {
      */
     public c(ServerSocket s, IAuthenticate a) throws IOException {
         io(s.accept());
-        int n = i.read(b = new byte[99]);
+        final byte[] b = new byte[99];
+        int n = i.read(b);
         if (a != null && !a.authenticate(new String(b, 0, n > 1 ? n - 2 : 0))) {
             close();
             throw new IOException("access");
@@ -234,7 +217,6 @@ public class c {
      * @throws IOException if an I/O error occurs.
      */
     public c(String host, int port, String usernamepassword, boolean useTLS) throws KException, IOException {
-        B = new byte[2 + ns(usernamepassword)];
         s = new Socket(host, port);
         if (useTLS) {
             try {
@@ -246,14 +228,7 @@ public class c {
             }
         }
         io(s);
-        J = 0;
-        w(usernamepassword + "\3");
-        o.write(B);
-        if (1 != i.read(B, 0, 1)) {
-            close();
-            throw new KException("access");
-        }
-        vt = Math.min(B[0], 3);
+        handshake(usernamepassword);
     }
 
     /**
@@ -460,222 +435,6 @@ public class c {
         }
     }
 
-    /**
-     * Deserializes the contents of the incoming message buffer {@code b}.
-     *
-     * @return deserialised object
-     * @throws UnsupportedEncodingException If the named charset is not supported
-     */
-    Object r() throws UnsupportedEncodingException {
-        int i = 0, n, t = b[j++];
-        if (t < 0) {
-            switch (t) {
-                case -1:
-                    return rb();
-                case (-2):
-                    return rg();
-                case -4:
-                    return b[j++];
-                case -5:
-                    return rh();
-                case -6:
-                    return ri();
-                case -7:
-                    return rj();
-                case -8:
-                    return re();
-                case -9:
-                    return rf();
-                case -10:
-                    return rc();
-                case -11:
-                    return rs();
-                case -12:
-                    return rp();
-                case -13:
-                    return rm();
-                case -14:
-                    return rd();
-                case -15:
-                    return rz();
-                case -16:
-                    return rn();
-                case -17:
-                    return ru();
-                case -18:
-                    return rv();
-                case -19:
-                    return rt();
-            }
-        }
-        if (t > 99) {
-            if (t == 100) {
-                rs();
-                return new Function((char[]) r());
-            }
-            if (t == 101) {
-                return new UnaryOperator(b[j++]);
-            }
-            if (t == 102) {
-                return new BinaryOperator(b[j++]);
-            }
-            if (t == 103) {
-                return new IterationOperator(b[j++]);
-            }
-            if (t == 104) {
-                final int sz = ri();
-                Object[] res = new Object[sz];
-                for (i = 0; i < sz; i++) {
-                    res[i] = r();
-                }
-                return new Projection(res);
-            }
-            if (t == 105) {
-                final int sz = ri();
-                Object[] res = new Object[sz];
-                for (i = 0; i < sz; i++) {
-                    res[i] = r();
-                }
-                return new Composition(res);
-            }
-            if (t == 106 || t == 107 || t == 108 || t == 109 || t == 110 || t == 111) {
-                return new EachIterator(t, r());
-            }
-            if (t == 112) {
-                // dynamic load
-                j++;
-                return null;
-            }
-            j++;
-            return "Type" + t;
-        }
-
-        if (t == 99) {
-            return new Dict(r(), r());
-        }
-        j++;
-        if (t == 98) {
-            return new Flip((Dict) r());
-        }
-        n = ri();
-        switch (t) {
-            case 0:
-                Object[] L = new Object[n];
-                for (; i < n; i++) {
-                    L[i] = r();
-                }
-                return L;
-            case 1:
-                boolean[] B = new boolean[n];
-                for (; i < n; i++) {
-                    B[i] = rb();
-                }
-                return B;
-            case 2: {
-                UUID[] G = new UUID[n];
-                for (; i < n; i++) {
-                    G[i] = rg();
-                }
-                return G;
-            }
-            case 4:
-                byte[] G = new byte[n];
-                for (; i < n; i++) {
-                    G[i] = b[j++];
-                }
-                return G;
-            case 5:
-                short[] H = new short[n];
-                for (; i < n; i++) {
-                    H[i] = rh();
-                }
-                return H;
-            case 6:
-                int[] I = new int[n];
-                for (; i < n; i++) {
-                    I[i] = ri();
-                }
-                return I;
-            case 7:
-                long[] J = new long[n];
-                for (; i < n; i++) {
-                    J[i] = rj();
-                }
-                return J;
-            case 8:
-                float[] E = new float[n];
-                for (; i < n; i++) {
-                    E[i] = re();
-                }
-                return E;
-            case 9:
-                double[] F = new double[n];
-                for (; i < n; i++) {
-                    F[i] = rf();
-                }
-                return F;
-            case 10:
-                char[] C = new String(b, j, n, encoding).toCharArray();
-                j += n;
-                return C;
-            case 11:
-                String[] S = new String[n];
-                for (; i < n; i++) {
-                    S[i] = rs();
-                }
-                return S;
-            case 12:
-                Timestamp[] P = new Timestamp[n];
-                for (; i < n; i++) {
-                    P[i] = rp();
-                }
-                return P;
-            case 13:
-                Month[] M = new Month[n];
-                for (; i < n; i++) {
-                    M[i] = rm();
-                }
-                return M;
-            case 14:
-                Date[] D = new Date[n];
-                for (; i < n; i++) {
-                    D[i] = rd();
-                }
-                return D;
-            case 15:
-                java.util.Date[] Z = new java.util.Date[n];
-                for (; i < n; i++) {
-                    Z[i] = rz();
-                }
-                return Z;
-            case 16:
-                Timespan[] N = new Timespan[n];
-                for (; i < n; i++) {
-                    N[i] = rn();
-                }
-                return N;
-            case 17:
-                Minute[] U = new Minute[n];
-                for (; i < n; i++) {
-                    U[i] = ru();
-                }
-                return U;
-            case 18:
-                Second[] V = new Second[n];
-                for (; i < n; i++) {
-                    V[i] = rv();
-                }
-                return V;
-            case 19:
-                Time[] T = new Time[n];
-                for (; i < n; i++) {
-                    T[i] = rt();
-                }
-                return T;
-        }
-        return null;
-    }
-
     private static class Construction {
         private final int type;
         private final String operation;
@@ -733,7 +492,7 @@ public class c {
     public static class Function {
         private final String content;
 
-        private Function(char[] content) {
+        Function(char[] content) {
             this.content = new String(content);
         }
 
@@ -820,108 +579,6 @@ public class c {
         }
     }
 
-    private void compress() {
-        byte i = 0;
-        boolean g;
-        int j = J, f = 0, h0 = 0, h = 0;
-        byte[] y = B;
-        B = new byte[y.length / 2];
-        int c = 12;
-        int d = c;
-        int e = B.length;
-        int p = 0;
-        int q;
-        int r;
-        int s0 = 0;
-        int s = 8;
-        int t = J;
-        int[] a = new int[256];
-        System.arraycopy(y, 0, B, 0, 4);
-        B[2] = 1;
-        J = 8;
-        w(j);
-        for (; s < t; i *= 2) {
-            if (0 == i) {
-                if (d > e - 17) {
-                    J = j;
-                    B = y;
-                    return;
-                }
-                i = 1;
-                B[c] = (byte) f;
-                c = d++;
-                f = 0;
-            }
-            g = (s > t - 3) || (0 == (p = a[h = 0xFF & (y[s] ^ y[s + 1])])) || (0 != (y[s] ^ y[p]));
-            if (0 < s0) {
-                a[h0] = s0;
-                s0 = 0;
-            }
-            if (g) {
-                h0 = h;
-                s0 = s;
-                B[d++] = y[s++];
-            } else {
-                a[h] = s;
-                f |= i;
-                p += 2;
-                r = s += 2;
-                q = Math.min(s + 255, t);
-                for (; y[p] == y[s] && ++s < q; ) {
-                    ++p;
-                }
-                B[d++] = (byte) h;
-                B[d++] = (byte) (s - r);
-            }
-        }
-        B[c] = (byte) f;
-        J = 4;
-        w(d);
-        J = d;
-        y = null;
-        B = Arrays.copyOf(B, J);
-    }
-
-    private void uncompress() {
-        int n = 0, r = 0, f = 0, s = 8, p = s;
-        short i = 0;
-        byte[] dst = new byte[ri()];
-        int d = j;
-        int[] aa = new int[256];
-        while (s < dst.length) {
-            if (i == 0) {
-                f = 0xff & (int) b[d++];
-                i = 1;
-            }
-            if ((f & i) != 0) {
-                r = aa[0xff & (int) b[d++]];
-                dst[s++] = dst[r++];
-                dst[s++] = dst[r++];
-                n = 0xff & (int) b[d++];
-                for (int m = 0; m < n; m++) {
-                    dst[s + m] = dst[r + m];
-                }
-            } else {
-                dst[s++] = b[d++];
-            }
-            while (p < s - 1) {
-                aa[(0xff & (int) dst[p]) ^ (0xff & (int) dst[p + 1])] = p++;
-            }
-            if ((f & i) != 0) {
-                p = s += n;
-            }
-            i *= 2;
-            if (i == 256) {
-                i = 0;
-            }
-        }
-        b = dst;
-        j = 8;
-    }
-
-    void w(byte x) {
-        B[J++] = x;
-    }
 
     /**
      * null integer, i.e. 0Ni
@@ -936,202 +593,94 @@ public class c {
      */
     static double nf = Double.NaN;
 
-    boolean rb() {
-        return 1 == b[j++];
-    }
-
-    void w(boolean x) {
-        w((byte) (x ? 1 : 0));
-    }
-
-    char rc() {
-        return (char) (b[j++] & 0xff);
-    }
-
-    void w(char c) {
-        w((byte) c);
-    }
-
-    short rh() {
-        int x = b[j++], y = b[j++];
-        return (short) (a ? x & 0xff | y << 8 : x << 8 | y & 0xff);
-    }
-
-    void w(short h) {
-        w((byte) (h >> 8));
-        w((byte) h);
-    }
-
-    int ri() {
-        int x = rh(), y = rh();
-        return a ? x & 0xffff | y << 16 : x << 16 | y & 0xffff;
-    }
-
-    void w(int i) {
-        w((short) (i >> 16));
-        w((short) i);
-    }
-
-    UUID rg() {
-        boolean oa = a;
-        a = false;
-        UUID g = new UUID(rj(), rj());
-        a = oa;
-        return g;
-    }
-
-    void w(UUID uuid) {
-        if (vt < 3) {
-            throw new RuntimeException("Guid not valid pre kdb+3.0");
-        }
-        w(uuid.getMostSignificantBits());
-        w(uuid.getLeastSignificantBits());
-    }
-
-    long rj() {
-        int x = ri(), y = ri();
-        return a ? x & 0xffffffffL | (long) y << 32 : (long) x << 32 | y & 0xffffffffL;
-    }
-
-    void w(long j) {
-        w((int) (j >> 32));
-        w((int) j);
-    }
-
-    float re() {
-        return Float.intBitsToFloat(ri());
-    }
-
-    void w(float e) {
-        w(Float.floatToIntBits(e));
-    }
-
-    double rf() {
-        return Double.longBitsToDouble(rj());
-    }
-
-    void w(double f) {
-        w(Double.doubleToLongBits(f));
-    }
-
-    Month rm() {
-        return new Month(ri());
-    }
-
-    void w(Month m) {
-        w(m.i);
-    }
-
-    Minute ru() {
-        return new Minute(ri());
-    }
-
-    void w(Minute u) {
-        w(u.i);
-    }
-
-    Second rv() {
-        return new Second(ri());
-    }
-
-    void w(Second v) {
-        w(v.i);
-    }
-
-    Timespan rn() {
-        return new Timespan(rj());
-    }
-
-    void w(Timespan n) {
-        if (vt < 1) {
-            throw new RuntimeException("Timespan not valid pre kdb+2.6");
-        }
-        w(n.j);
-    }
 
     /**
      * {@code Timezone} to use for temporal types serialisation.
      */
     public TimeZone tz = TimeZone.getDefault();
-    static long k = 86400000L * 10957, n = 1000000000L;
 
-    long o(long x) {
-        return tz.getOffset(x);
-    }
+    /**
+     * If true, top-level temporal vectors and temporal columns of a top-level table are deserialized as
+     * {@link TemporalVector} that keeps raw kdb+ values instead of arrays of objects.
+     */
+    private boolean primitiveTemporals = false;
 
-    long lg(long x) {
-        return x + o(x);
+    public boolean isPrimitiveTemporals() {
+        return primitiveTemporals;
     }
 
-    long gl(long x) {
-        return x - o(x - o(x));
+    public void setPrimitiveTemporals(boolean primitiveTemporals) {
+        this.primitiveTemporals = primitiveTemporals;
     }
 
-    Date rd() {
-        int i = ri();
-        return new Date(i == ni ? nj : gl(k + 86400000L * i));
-    }
+    /**
+     * If true, top-level symbol vectors and symbol columns of a top-level table are deserialized as
+     * {@link SymbolVector} and lists of strings as {@link StringVector}.
+     */
+    private boolean compactStrings = false;
 
-    void w(Date d) {
-        long j = d.getTime();
-        w(j == nj ? ni : (int) (lg(j) / 86400000 - 10957));
+    public boolean isCompactStrings() {
+        return compactStrings;
     }
 
-    Time rt() {
-        int i = ri();
-        return new Time(i == ni ? nj : gl(i));
+    public void setCompactStrings(boolean compactStrings) {
+        this.compactStrings = compactStrings;
     }
 
-    void w(Time t) {
-        long j = t.getTime();
-        w(j == nj ? ni : (int) (lg(j) % 86400000));
-    }
+    /**
+     * The character encoding of symbols and strings of this instance.
+     */
+    private Charset charset = Charset.forName(encoding);
 
-    java.util.Date rz() {
-        double f = rf();
-        return new java.util.Date(Double.isNaN(f) ? nj : gl(k + Math.round(8.64e7 * f)));
+    public Charset getCharset() {
+        return charset;
     }
 
-    void w(java.util.Date z) {
-        long j = z.getTime();
-        w(j == nj ? nf : (lg(j) - k) / 8.64e7);
+    public void setCharset(Charset charset) {
+        this.charset = charset;
     }
 
-    Timestamp rp() {
-        long j = rj(), d = j < 0 ? (j + 1) / n - 1 : j / n;
-        Timestamp p = new Timestamp(j == nj ? j : gl(k + 1000 * d));
-        if (j != nj) {
-            p.setNanos((int) (j - n * d));
-        }
-        return p;
+    /**
+     * Returns the codec with current settings of this instance. The codec doesn't depend on the connection
+     * so it can be used in any thread, without the connection locks.
+     *
+     * @return the codec with current settings
+     */
+    public KxCodec getCodec() {
+        return getCodec(primitiveTemporals, compactStrings);
     }
 
-    void w(Timestamp p) {
-        long j = p.getTime();
-        if (vt < 1) {
-            throw new RuntimeException("Timestamp not valid pre kdb+2.6");
-        }
-        w(j == nj ? j : 1000000 * (lg(j) - k) + p.getNanos() % 1000000);
+    /**
+     * Returns the codec with current settings of this instance but the given decoding options, so a query can be
+     * decoded with its own options without changing the connection that could be shared with other queries.
+     *
+     * @param primitiveTemporals decode temporal vectors as {@link TemporalVector}
+     * @param compactStrings     decode symbol vectors as {@link SymbolVector} and lists of strings as {@link StringVector}
+     * @return the codec with current settings and the decoding options
+     */
+    public KxCodec getCodec(boolean primitiveTemporals, boolean compactStrings) {
+        return new KxCodec(tz, charset, vt, primitiveTemporals, compactStrings);
     }
 
-    String rs() throws UnsupportedEncodingException {
-        int i = j;
-        for (; b[j++] != 0; ) {
+    /**
+     * Sends the credentials and reads the ipc version supported by the remote.
+     *
+     * @param usernamepassword Username and password as "username:password" for remote authorization
+     * @throws KException  if access denied
+     * @throws IOException if an I/O error occurs.
+     */
+    void handshake(String usernamepassword) throws KException, IOException {
+        final byte[] credentials = (usernamepassword + "\3").getBytes(charset);
+        final byte[] b = Arrays.copyOf(credentials, credentials.length + 1);
+        o.write(b);
+        if (1 != i.read(b, 0, 1)) {
+            close();
+            throw new KException("access");
         }
-        return (i == j - 1) ? "" : new String(b, i, j - 1 - i, encoding);
+        vt = Math.min(b[0], 3);
     }
+    static long k = 86400000L * 10957, n = 1000000000L;
 
-    void w(String s) throws UnsupportedEncodingException {
-        int i = 0, n;
-        if (s != null) {
-            n = ns(s);
-            byte[] b = s.getBytes(encoding);
-            for (; i < n; ) {
-                w(b[i++]);
-            }
-        }
-        B[J++] = 0;
-    }
 
     public static class EachIterator extends Iterator {
         private static final String[] OPERATORS = {"'", "/", "\\", "':", "/:", "\\:"};
@@ -1228,6 +777,8 @@ public class c {
                 ? 17
                 : x instanceof Second[]
                 ? 18
+                : x instanceof KxVector
+                ? ((KxVector) x).getType()
                 : x instanceof Flip
                 ? 98
                 : x instanceof Dict
@@ -1241,23 +792,6 @@ public class c {
      */
     static int[] nt = {0, 1, 16, 0, 1, 2, 4, 8, 4, 8, 1, 0, 8, 4, 4, 8, 8, 4, 4, 4};
 
-    /**
-     * A helper function for nx, calculates the number of bytes which would be required to serialize the supplied string.
-     *
-     * @param s String to be serialized
-     * @return number of bytes required to serialise a string
-     * @throws UnsupportedEncodingException If the named charset is not supported
-     */
-    static int ns(String s) throws UnsupportedEncodingException {
-        int i;
-        if (s == null) {
-            return 0;
-        }
-        if (-1 < (i = s.indexOf('\000'))) {
-            s = s.substring(0, i);
-        }
-        return s.getBytes(encoding).length;
-    }
 
     /**
      * A helper function for nx, returns the number of elements in the supplied object.
@@ -1274,6 +808,8 @@ public class c {
                 ? n(((Dict) x).x)
                 : x instanceof Flip
                 ? n(((Flip) x).y[0])
+                : x instanceof KxVector
+                ? ((KxVector) x).size()
                 : x instanceof char[] ? new String((char[]) x).getBytes(encoding).length : Array.getLength(x);
     }
 
@@ -1285,150 +821,7 @@ public class c {
      * @throws UnsupportedEncodingException If the named charset is not supported
      */
     public int nx(Object x) throws UnsupportedEncodingException {
-        int i = 0, n, t = t(x), j;
-        if (t == 99) {
-            return 1 + nx(((Dict) x).x) + nx(((Dict) x).y);
-        }
-        if (t == 98) {
-            return 3 + nx(((Flip) x).x) + nx(((Flip) x).y);
-        }
-        if (t < 0) {
-            return t == -11 ? 2 + ns((String) x) : 1 + nt[-t];
-        }
-        j = 6;
-        n = n(x);
-        if (t == 0 || t == 11) {
-            for (; i < n; ++i) {
-                j += t == 0 ? nx(((Object[]) x)[i]) : 1 + ns(((String[]) x)[i]);
-            }
-        } else {
-            j += n * nt[t];
-        }
-        return j;
-    }
-
-    void w(Object x) throws UnsupportedEncodingException {
-        int i = 0, n, t = t(x);
-        w((byte) t);
-        if (t < 0) {
-            switch (t) {
-                case -1:
-                    w(((Boolean) x).booleanValue());
-                    return;
-                case -2:
-                    w((UUID) x);
-                    return;
-                case -4:
-                    w(((Byte) x).byteValue());
-                    return;
-                case -5:
-                    w(((Short) x).shortValue());
-                    return;
-                case -6:
-                    w(((Integer) x).intValue());
-                    return;
-                case -7:
-                    w(((Long) x).longValue());
-                    return;
-                case -8:
-                    w(((Float) x).floatValue());
-                    return;
-                case -9:
-                    w(((Double) x).doubleValue());
-                    return;
-                case -10:
-                    w(((Character) x).charValue());
-                    return;
-                case -11:
-                    w((String) x);
-                    return;
-                case -12:
-                    w((Timestamp) x);
-                    return;
-                case -13:
-                    w((Month) x);
-                    return;
-                case -14:
-                    w((Date) x);
-                    return;
-                case -15:
-                    w((java.util.Date) x);
-                    return;
-                case -16:
-                    w((Timespan) x);
-                    return;
-                case -17:
-                    w((Minute) x);
-                    return;
-                case -18:
-                    w((Second) x);
-                    return;
-                case -19:
-                    w((Time) x);
-                    return;
-            }
-        }
-        if (t == 99) {
-            Dict r = (Dict) x;
-            w(r.x);
-            w(r.y);
-            return;
-        }
-        B[J++] = 0;
-        if (t == 98) {
-            Flip r = (Flip) x;
-            B[J++] = 99;
-            w(r.x);
-            w(r.y);
-            return;
-        }
-        w(n = n(x));
-        if (t == 10) {
-            byte[] b = new String((char[]) x).getBytes(encoding);
-            for (; i < b.length; ) {
-                w(b[i++]);
-            }
-        } else {
-            for (; i < n; ++i) {
-                if (t == 0) {
-                    w(((Object[]) x)[i]);
-                } else if (t == 1) {
-                    w(((boolean[]) x)[i]);
-                } else if (t == 2) {
-                    w(((UUID[]) x)[i]);
-                } else if (t == 4) {
-                    w(((byte[]) x)[i]);
-                } else if (t == 5) {
-                    w(((short[]) x)[i]);
-                } else if (t == 6) {
-                    w(((int[]) x)[i]);
-                } else if (t == 7) {
-                    w(((long[]) x)[i]);
-                } else if (t == 8) {
-                    w(((float[]) x)[i]);
-                } else if (t == 9) {
-                    w(((double[]) x)[i]);
-                } else if (t == 11) {
-                    w(((String[]) x)[i]);
-                } else if (t == 12) {
-                    w(((Timestamp[]) x)[i]);
-                } else if (t == 13) {
-                    w(((Month[]) x)[i]);
-                } else if (t == 14) {
-                    w(((Date[]) x)[i]);
-                } else if (t == 15) {
-                    w(((java.util.Date[]) x)[i]);
-                } else if (t == 16) {
-                    w(((Timespan[]) x)[i]);
-                } else if (t == 17) {
-                    w(((Minute[]) x)[i]);
-                } else if (t == 18) {
-                    w(((Second[]) x)[i]);
-                } else {
-                    w(((Time[]) x)[i]);
-                }
-            }
-        }
+        return getCodec().encodedSize(x);
     }
 
     /**
@@ -1441,19 +834,7 @@ public class c {
      * @throws IOException should not throw
      */
     public byte[] serialize(int msgType, Object x, boolean zip) throws IOException {
-        int length = 8 + nx(x);
-        synchronized (o) {
-            B = new byte[length];
-            B[0] = 0;
-            B[1] = (byte) msgType;
-            J = 4;
-            w(length);
-            w(x);
-            if (zip && J > 2000 && !l) {
-                compress();
-            }
-            return B;
-        }
+        return getCodec().encode(msgType, x, zip && !l);
     }
 
     /**
@@ -1461,30 +842,37 @@ public class c {
      *
      * @param buffer byte[] to deserialise object from
      * @return deserialised object
-     * @throws KException                   if buffer contains kdb+ error object.
-     * @throws UnsupportedEncodingException If the named charset is not supported
+     * @throws KException  if buffer contains kdb+ error object.
+     * @throws IOException if the buffer is malformed or the named charset is not supported
      */
-    public Object deserialize(byte[] buffer) throws KException, UnsupportedEncodingException {
-        synchronized (i) {
-            b = buffer;
-            a = b[0] == 1;  // endianness of the msg
-            boolean compressed = b[2] == 1;
-            j = 8;
-            if (compressed) {
-                uncompress();
-            }
-            if (b[8] == -128) {
-                j = 9;
-                throw new KException(rs());
-            }
-            return r(); // deserialize the message
-        }
+    public Object deserialize(byte[] buffer) throws KException, IOException {
+        return getCodec().decode(buffer);
+    }
+
+    /**
+     * Serialises {@code x} object in one pass into pooled chunks, see {@link KxCodec#encodeMessage(int, Object, boolean)}.
+     *
+     * @param msgType type of the ipc message
+     * @param x       object to serialise
+     * @param zip     true if to attempt compress serialised output
+     * @return the message that must be closed after it's sent
+     */
+    public KxMessage serializeMessage(int msgType, Object x, boolean zip) {
+        return getCodec().encodeMessage(msgType, x, zip && !l);
+    }
+
+    /**
+     * Writes the message chunks one by one into the socket output stream. Must be called under the output lock.
+     */
+    void write(KxMessage message) throws IOException {
+        message.writeTo(o);
     }
 
     protected void w(int msgType, Object x) throws IOException {
-        synchronized (o) {
-            byte[] buffer = serialize(msgType, x, zip);
-            o.write(buffer, 0, buffer.length);
+        try (KxMessage message = serializeMessage(msgType, x, zip)) {
+            synchronized (o) {
+                write(message);
+            }
         }
     }
 
@@ -1513,16 +901,9 @@ public class c {
             throw new IOException("Unexpected error msg");
         }
         sync--;
-        int n = 2 + ns(text) + 8;
+        final byte[] buffer = getCodec().encodeError(text);
         synchronized (o) {
-            B = new byte[n];
-            B[0] = 0;
-            B[1] = 2;
-            J = 4;
-            w(n);
-            w((byte) -128);
-            w(text);
-            o.write(B);
+            o.write(buffer);
         }
     }
 
@@ -1612,19 +993,59 @@ public class c {
      */
     public Object[] readMsg() throws KException, IOException, UnsupportedEncodingException {
         synchronized (i) {
-            i.readFully(b = new byte[8]); // read the msg header
-            a = b[0] == 1;  // endianness of the msg
-            if (b[1] == 1) // msg types are 0 - async, 1 - sync, 2 - response
+            final byte[] header = new byte[8];
+            i.readFully(header); // read the msg header
+            if (header[1] == 1) // msg types are 0 - async, 1 - sync, 2 - response
             {
                 sync++;   // an incoming sync message means the remote will expect a response message
             }
-            j = 4;
-            b = Arrays.copyOf(b, ri());
-            i.readFully(b, 8, b.length - 8); // read the incoming message in full
-            return new Object[]{b[1], deserialize(b)};
+            return new Object[]{header[1], readMsgBody(header, () -> {
+            }, QueryProgress.NONE)};
         }
     }
 
+    /**
+     * Decodes the message body straight from the socket stream, without buffering the whole message.
+     * If the decoding is cancelled or the message is a kdb+ error, the rest of the message is skipped
+     * so the stream stays aligned with the next message.
+     *
+     * @param header       already read 8 bytes of the message header
+     * @param cancellation validator checked each time a new chunk is read from the socket
+     * @param progress     receives receiving and decoding progress of the message
+     * @return deserialised object
+     * @throws KException  if the message contains an error
+     * @throws IOException if an I/O error occurs.
+     */
+    Object readMsgBody(byte[] header, CancellationValidator cancellation, QueryProgress progress) throws KException, IOException {
+        return readMsgBody(header, getCodec(), cancellation, progress);
+    }
+
+    /**
+     * Decodes the message body the same way as {@link #readMsgBody(byte[], CancellationValidator, QueryProgress)}
+     * but with the given codec.
+     */
+    Object readMsgBody(byte[] header, KxCodec codec, CancellationValidator cancellation, QueryProgress progress) throws KException, IOException {
+        final KxInput in = new KxStreamInput(i, msgSize(header) - 8, cancellation, progress).order(header[0] == 1);
+        try {
+            return codec.decode(in, header[2] == 1, progress);
+        } catch (KException | CancellationException ex) {
+            in.skipRemaining();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the full size of the message, including the header.
+     *
+     * @param header 8 bytes of the message header
+     * @return the message size
+     */
+    static int msgSize(byte[] header) {
+        final boolean le = header[0] == 1;
+        final int b0 = header[4] & 0xff, b1 = header[5] & 0xff, b2 = header[6] & 0xff, b3 = header[7] & 0xff;
+        return le ? b0 | b1 << 8 | b2 << 16 | b3 << 24 : b3 | b2 << 8 | b1 << 16 | b0 << 24;
+    }
+
     /**
      * Reads an incoming message from the remote kdb+ process. This blocks until a single message has been received and
      * deserialized. This is called automatically during a sync request via k(String s,..). It can be called explicitly when
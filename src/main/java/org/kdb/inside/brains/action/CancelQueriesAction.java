@@ -8,6 +8,7 @@ import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.popup.*;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.reference.SoftReference;
 import com.intellij.ui.popup.list.GroupedItemsListRenderer;
 import com.intellij.util.IconUtil;
@@ -65,7 +66,7 @@ public class CancelQueriesAction extends DumbAwareAction {
         }
 
         final List<InstanceConnection> connections = getValidConnections(manager);
-        int stopCount = connections.size();
+        int stopCount = connections.stream().mapToInt(c -> c.getQueries().size()).sum();
         if (stopCount == 0) {
             return;
         }
@@ -156,16 +157,17 @@ public class CancelQueriesAction extends DumbAwareAction {
         HandlerItem selected = null;
         List<HandlerItem> items = new ArrayList<>(connections.size());
         for (final InstanceConnection connection : connections) {
-            final KdbQuery query = connection.getQuery();
-            if (query != null) {
-                HandlerItem item = new HandlerItem(connection.getName(), KdbIcons.Node.Instance, false) {
+            final List<KdbQuery> queries = connection.getQueries();
+            for (KdbQuery query : queries) {
+                final String name = queries.size() == 1 ? connection.getName() : connection.getName() + ": " + StringUtil.first(query.getExpression(), 40, true);
+                HandlerItem item = new HandlerItem(name, KdbIcons.Node.Instance, false) {
                     @Override
                     void stop() {
-                        connection.cancelQuery();
+                        connection.cancelQuery(query);
                     }
                 };
                 items.add(item);
-                if (connection == activeConnection) {
+                if (connection == activeConnection && selected == null) {
                     selected = item;
                 }
             }
@@ -13,6 +13,11 @@ public class ExecutionOptions implements SettingsBean<ExecutionOptions> {
     private int warningMessageMb = 10;
     private boolean logQueries = true;
     private boolean splitLogsByMonths = true;
+    private boolean primitiveTemporals = false;
+    private boolean compactStrings = false;
+    private boolean mapBigResults = false;
+    private boolean pagedResults = false;
+    private int pagedResultRows = 1_000_000;
 
     private EditorsBindingStrategy bindingStrategy = EditorsBindingStrategy.CONNECT_TO_TAB;
 
@@ -80,6 +85,46 @@ public class ExecutionOptions implements SettingsBean<ExecutionOptions> {
         this.splitLogsByMonths = splitLogsByMonths;
     }
 
+    public boolean isPrimitiveTemporals() {
+        return primitiveTemporals;
+    }
+
+    public void setPrimitiveTemporals(boolean primitiveTemporals) {
+        this.primitiveTemporals = primitiveTemporals;
+    }
+
+    public boolean isCompactStrings() {
+        return compactStrings;
+    }
+
+    public void setCompactStrings(boolean compactStrings) {
+        this.compactStrings = compactStrings;
+    }
+
+    public boolean isMapBigResults() {
+        return mapBigResults;
+    }
+
+    public void setMapBigResults(boolean mapBigResults) {
+        this.mapBigResults = mapBigResults;
+    }
+
+    public boolean isPagedResults() {
+        return pagedResults;
+    }
+
+    public void setPagedResults(boolean pagedResults) {
+        this.pagedResults = pagedResults;
+    }
+
+    public int getPagedResultRows() {
+        return pagedResultRows;
+    }
+
+    public void setPagedResultRows(int pagedResultRows) {
+        this.pagedResultRows = pagedResultRows;
+    }
+
     @Override
     public void copyFrom(ExecutionOptions executionOptions) {
         bindingStrategy = executionOptions.bindingStrategy;
@@ -90,6 +135,11 @@ public class ExecutionOptions implements SettingsBean<ExecutionOptions> {
         logQueries = executionOptions.logQueries;
         splitLogsByMonths = executionOptions.splitLogsByMonths;
         autoReconnect = executionOptions.autoReconnect;
+        primitiveTemporals = executionOptions.primitiveTemporals;
+        compactStrings = executionOptions.compactStrings;
+        mapBigResults = executionOptions.mapBigResults;
+        pagedResults = executionOptions.pagedResults;
+        pagedResultRows = executionOptions.pagedResultRows;
     }
 
     @Override
@@ -97,12 +147,12 @@ public class ExecutionOptions implements SettingsBean<ExecutionOptions> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ExecutionOptions that = (ExecutionOptions) o;
-        return autoReconnect == that.autoReconnect && normalizeQuery == that.normalizeQuery && showConnectionChange == that.showConnectionChange && connectionChangeTimeout == that.connectionChangeTimeout && warningMessageMb == that.warningMessageMb && logQueries == that.logQueries && bindingStrategy == that.bindingStrategy && splitLogsByMonths == that.splitLogsByMonths;
+        return autoReconnect == that.autoReconnect && normalizeQuery == that.normalizeQuery && showConnectionChange == that.showConnectionChange && connectionChangeTimeout == that.connectionChangeTimeout && warningMessageMb == that.warningMessageMb && logQueries == that.logQueries && bindingStrategy == that.bindingStrategy && splitLogsByMonths == that.splitLogsByMonths && primitiveTemporals == that.primitiveTemporals && compactStrings == that.compactStrings && mapBigResults == that.mapBigResults && pagedResults == that.pagedResults && pagedResultRows == that.pagedResultRows;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(autoReconnect, normalizeQuery, showConnectionChange, connectionChangeTimeout, warningMessageMb, logQueries, bindingStrategy, splitLogsByMonths);
+        return Objects.hash(autoReconnect, normalizeQuery, showConnectionChange, connectionChangeTimeout, warningMessageMb, logQueries, bindingStrategy, splitLogsByMonths, primitiveTemporals, compactStrings, mapBigResults, pagedResults, pagedResultRows);
     }
 
     @Override
@@ -116,6 +166,11 @@ public class ExecutionOptions implements SettingsBean<ExecutionOptions> {
                 ", logQueries=" + logQueries +
                 ", splitLogsByMonths=" + splitLogsByMonths +
                 ", bindingStrategy=" + bindingStrategy +
+                ", primitiveTemporals=" + primitiveTemporals +
+                ", compactStrings=" + compactStrings +
+                ", mapBigResults=" + mapBigResults +
+                ", pagedResults=" + pagedResults +
+                ", pagedResultRows=" + pagedResultRows +
                 '}';
     }
 }
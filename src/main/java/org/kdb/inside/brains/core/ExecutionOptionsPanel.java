@@ -17,6 +17,11 @@ public class ExecutionOptionsPanel extends JPanel {
     private JBCheckBox autoReconnect;
     private JBCheckBox normalizeQuery;
     private JBCheckBox showConnectionState;
+    private JBCheckBox primitiveTemporals;
+    private JBCheckBox compactStrings;
+    private JBCheckBox pagedResults;
+    private JBCheckBox mapBigResults;
+    private final JBIntSpinner pagedResultRows = new JBIntSpinner(1_000_000, 1000, Integer.MAX_VALUE, 100_000);
     private final JBIntSpinner connectionStateTimeout = new JBIntSpinner(1000, 100, 10000, 500);
 
     private final ComboBox<EditorsBindingStrategy> strategies = new ComboBox<>(EditorsBindingStrategy.values());
@@ -40,6 +45,14 @@ public class ExecutionOptionsPanel extends JPanel {
 
         formBuilder.addLabeledComponent("Show a warning when response is more than, Mb: ", warningMessageSizeEditor);
 
+        addMapBigResults(formBuilder);
+
+        addPrimitiveTemporals(formBuilder);
+
+        addCompactStrings(formBuilder);
+
+        addPagedResults(formBuilder);
+
         add(formBuilder.getPanel());
     }
 
@@ -97,6 +110,57 @@ public class ExecutionOptionsPanel extends JPanel {
         formBuilder.addComponent(p);
     }
 
+    private void addPrimitiveTemporals(FormBuilder formBuilder) {
+        final ContextHelpLabel infoLabel = ContextHelpLabel.create("Temporal columns are kept as raw kdb+ values instead of an object for each value, so big tables take much less memory.\nA value is converted into an object only when it's shown or exported.");
+
+        primitiveTemporals = new JBCheckBox("Keep temporal columns as raw kdb+ values");
+
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        p.add(primitiveTemporals);
+        p.add(Box.createHorizontalStrut(5));
+        p.add(infoLabel);
+        formBuilder.addComponent(p);
+    }
+
+    private void addCompactStrings(FormBuilder formBuilder) {
+        final ContextHelpLabel infoLabel = ContextHelpLabel.create("Each distinct symbol of a column is kept only once and strings of a column are packed into one block of memory,\nso big tables take much less memory and search by symbols is faster.");
+
+        compactStrings = new JBCheckBox("Keep symbol and string columns packed");
+
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        p.add(compactStrings);
+        p.add(Box.createHorizontalStrut(5));
+        p.add(infoLabel);
+        formBuilder.addComponent(p);
+    }
+
+    private void addMapBigResults(FormBuilder formBuilder) {
+        final ContextHelpLabel infoLabel = ContextHelpLabel.create("A response bigger than the warning size is written into a temp file as it's received and\ntable cells are read straight from the file, so a result can be bigger than the memory.\nThe file is removed when the result is closed.");
+
+        mapBigResults = new JBCheckBox("Keep big responses in a temp file instead of showing the warning");
+
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        p.add(mapBigResults);
+        p.add(Box.createHorizontalStrut(5));
+        p.add(infoLabel);
+        formBuilder.addComponent(p);
+    }
+
+    private void addPagedResults(FormBuilder formBuilder) {
+        final ContextHelpLabel infoLabel = ContextHelpLabel.create("A big table is kept in a temporary variable on the instance and only visible rows are fetched.\nSorting and searching are executed on the instance. The variable is removed when the result is closed.\nPages are fetched one by one over a connection of the instance: set max concurrent queries of the instance above 1,\nso queries of the console are not rejected while a page is fetched.");
+
+        pagedResults = new JBCheckBox("Fetch big tables page by page, if more than rows: ");
+
+        JPanel p = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        p.add(pagedResults);
+        p.add(pagedResultRows);
+        p.add(Box.createHorizontalStrut(5));
+        p.add(infoLabel);
+        formBuilder.addComponent(p);
+
+        pagedResults.addItemListener(e -> validatePagedResults());
+    }
+
     private void addStrategies(FormBuilder formBuilder) {
         strategies.setEditable(false);
         strategies.setSelectedItem(EditorsBindingStrategy.MANUAL);
@@ -131,6 +195,11 @@ public class ExecutionOptionsPanel extends JPanel {
         o.setLogQueries(logQueries.isSelected());
         o.setAutoReconnect(autoReconnect.isSelected());
         o.setSplitLogsByMonths(splitLogsByMonths.isSelected());
+        o.setPrimitiveTemporals(primitiveTemporals.isSelected());
+        o.setCompactStrings(compactStrings.isSelected());
+        o.setMapBigResults(mapBigResults.isSelected());
+        o.setPagedResults(pagedResults.isSelected());
+        o.setPagedResultRows(pagedResultRows.getNumber());
         return o;
     }
 
@@ -143,7 +212,17 @@ public class ExecutionOptionsPanel extends JPanel {
         logQueries.setSelected(options.isLogQueries());
         splitLogsByMonths.setSelected(options.isSplitLogsByMonths());
         autoReconnect.setSelected(options.isAutoReconnect());
+        primitiveTemporals.setSelected(options.isPrimitiveTemporals());
+        compactStrings.setSelected(options.isCompactStrings());
+        mapBigResults.setSelected(options.isMapBigResults());
+        pagedResults.setSelected(options.isPagedResults());
+        pagedResultRows.setNumber(options.getPagedResultRows());
         validateConnectionState();
+        validatePagedResults();
+    }
+
+    private void validatePagedResults() {
+        pagedResultRows.setEnabled(pagedResults.isSelected());
     }
 
     private void validateConnectionState() {
@@ -1,5 +1,6 @@
 package org.kdb.inside.brains.core;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 public interface InstanceConnection {
@@ -23,13 +24,30 @@ public interface InstanceConnection {
     Exception getDisconnectError();
 
 
+    /**
+     * Cancels all running queries.
+     */
     void cancelQuery();
 
+    void cancelQuery(KdbQuery query);
+
+    /**
+     * Returns true if all running queries are cancelled.
+     */
     boolean isQueryCancelled();
 
 
+    /**
+     * Returns the first running query or null if there is no one.
+     */
     KdbQuery getQuery();
 
+    /**
+     * Returns all running queries. There can be more than one query only if the instance has a pool of connections,
+     * see {@link InstanceOptions#getPoolSize()}.
+     */
+    List<KdbQuery> getQueries();
+
     KdbResult query(KdbQuery query) throws ConcurrentQueryException;
 
     void query(KdbQuery query, Consumer<KdbResult> handler) throws ConcurrentQueryException;
@@ -9,6 +9,13 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
     private int timeout = 1000;
     private boolean tls = false;
     private boolean compression = false;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private boolean pipelined = false;
+
+    /**
+     * One connection only: a query can't be executed while another one is running.
+     */
+    public static final int DEFAULT_POOL_SIZE = 1;
 
     public InstanceOptions() {
     }
@@ -19,6 +26,12 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
         this.compression = compression;
     }
 
+    public InstanceOptions(int timeout, boolean tls, boolean compression, int poolSize, boolean pipelined) {
+        this(timeout, tls, compression);
+        this.poolSize = poolSize;
+        this.pipelined = pipelined;
+    }
+
     public boolean isTls() {
         return tls;
     }
@@ -43,12 +56,38 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
         this.compression = compression;
     }
 
+    /**
+     * Returns max number of connections to the instance. Connections above the first one are opened only when
+     * a query is executed while other ones are running and they are kept open till the instance is disconnected.
+     * <p>
+     * If the instance is {@link #isPipelined()}, it's max number of queries in flight over one connection.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Returns true if concurrent queries are sent over one connection as async messages, up to {@link #getPoolSize()}
+     * queries at the same time. It's for gateways that allow only one connection per user.
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
     public String toParameters() {
-        return "tls=" + tls + "&timeout=" + timeout + "&compression=" + compression;
+        return "tls=" + tls + "&timeout=" + timeout + "&compression=" + compression + "&poolSize=" + poolSize + "&pipelined=" + pipelined;
     }
 
     public InstanceOptions copy() {
-        return new InstanceOptions(timeout, tls, compression);
+        return new InstanceOptions(timeout, tls, compression, poolSize, pipelined);
     }
 
     @Override
@@ -56,6 +95,8 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
         tls = options.tls;
         timeout = options.timeout;
         compression = options.compression;
+        poolSize = options.poolSize;
+        pipelined = options.pipelined;
     }
 
     @Override
@@ -63,12 +104,12 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         InstanceOptions options = (InstanceOptions) o;
-        return timeout == options.timeout && tls == options.tls && compression == options.compression;
+        return timeout == options.timeout && tls == options.tls && compression == options.compression && poolSize == options.poolSize && pipelined == options.pipelined;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(timeout, tls, compression);
+        return Objects.hash(timeout, tls, compression, poolSize, pipelined);
     }
 
     @Override
@@ -77,6 +118,8 @@ public class InstanceOptions implements SettingsBean<InstanceOptions> {
                 "timeout=" + timeout +
                 ", tls=" + tls +
                 ", compression=" + compression +
+                ", poolSize=" + poolSize +
+                ", pipelined=" + pipelined +
                 '}';
     }
 
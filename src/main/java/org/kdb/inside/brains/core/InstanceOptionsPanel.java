@@ -10,9 +10,12 @@ import java.awt.*;
 
 public class InstanceOptionsPanel extends AbstractOptionsPanel {
     private final JLabel labelText;
+    private final JLabel poolSizeLabel;
     private final JBCheckBox tlsCheckbox = new JBCheckBox("TLS is enabled");
     private final JBCheckBox compressionCheckbox = new JBCheckBox("Compression is enabled");
+    private final JBCheckBox pipelinedCheckbox = new JBCheckBox("Send concurrent queries over one connection (for gateways with one connection per user)");
     private final JBIntSpinner timeoutSpinner = new JBIntSpinner(1000, 1000, Integer.MAX_VALUE, 10);
+    private final JBIntSpinner poolSizeSpinner = new JBIntSpinner(InstanceOptions.DEFAULT_POOL_SIZE, 1, 32, 1);
 
     public InstanceOptionsPanel() {
         super(new BorderLayout());
@@ -22,12 +25,17 @@ public class InstanceOptionsPanel extends AbstractOptionsPanel {
         tlsCheckbox.addItemListener(e -> notifyOptionsChanged());
         compressionCheckbox.addItemListener(e -> notifyOptionsChanged());
         timeoutSpinner.addChangeListener(e -> notifyOptionsChanged());
+        poolSizeSpinner.addChangeListener(e -> notifyOptionsChanged());
+        pipelinedCheckbox.addItemListener(e -> notifyOptionsChanged());
 
         labelText = new JLabel("Connection timeout, ms: ");
+        poolSizeLabel = new JLabel("Max concurrent queries: ");
         formBuilder
                 .addComponent(tlsCheckbox)
                 .addComponent(compressionCheckbox)
                 .addLabeledComponent(labelText, timeoutSpinner)
+                .addLabeledComponent(poolSizeLabel, poolSizeSpinner)
+                .addComponent(pipelinedCheckbox)
 
                 .addComponentFillVertically(new JPanel(), 0);
 
@@ -40,6 +48,8 @@ public class InstanceOptionsPanel extends AbstractOptionsPanel {
         options.setTls(tlsCheckbox.isSelected());
         options.setTimeout(timeoutSpinner.getNumber());
         options.setCompression(compressionCheckbox.isSelected());
+        options.setPoolSize(poolSizeSpinner.getNumber());
+        options.setPipelined(pipelinedCheckbox.isSelected());
         return options;
     }
 
@@ -48,6 +58,8 @@ public class InstanceOptionsPanel extends AbstractOptionsPanel {
             tlsCheckbox.setSelected(options.isTls());
             compressionCheckbox.setSelected(options.isCompression());
             timeoutSpinner.setValue(options.getTimeout());
+            poolSizeSpinner.setValue(options.getPoolSize());
+            pipelinedCheckbox.setSelected(options.isPipelined());
         }
     }
 
@@ -56,6 +68,9 @@ public class InstanceOptionsPanel extends AbstractOptionsPanel {
         compressionCheckbox.setEnabled(b);
         timeoutSpinner.setEnabled(b);
         labelText.setEnabled(b);
+        poolSizeSpinner.setEnabled(b);
+        poolSizeLabel.setEnabled(b);
+        pipelinedCheckbox.setEnabled(b);
 
         super.setEnabled(b);
     }
@@ -20,7 +20,12 @@ import com.intellij.openapi.ui.popup.JBPopupFactory;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.util.ui.UIUtil;
 import icons.KdbIcons;
+import kx.CancellationValidator;
+import kx.KxCodec;
 import kx.KxConnection;
+import kx.QueryPhase;
+import kx.QueryProgress;
+import kx.ResponseValidator;
 import kx.c;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -32,12 +37,11 @@ import org.kdb.inside.brains.view.treeview.forms.InstanceEditorDialog;
 import javax.swing.*;
 import java.awt.*;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.*;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.kdb.inside.brains.core.InstanceState.CONNECTED;
 import static org.kdb.inside.brains.core.InstanceState.DISCONNECTED;
@@ -252,6 +256,8 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
     private class QueryProgressive implements Progressive {
         private boolean canceled = false;
+        private boolean mappedToFile = false;
+        private boolean connectionDiscarded = false;
         private ProgressIndicator indicator;
 
         private final KdbQuery query;
@@ -291,15 +297,22 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
                 return true;
             } catch (IOException ex) {
+                // only a broken pooled connection has been closed, so other ones are still usable
+                final boolean discarded = connectionDiscarded;
+                connectionDiscarded = false;
                 if (retry) {
-                    myConnection.close(ex);
-                    if (myConnection.connectAndWait() == CONNECTED) {
+                    if (!discarded) {
+                        myConnection.close(ex);
+                    }
+                    if (discarded || myConnection.connectAndWait() == CONNECTED) {
                         return safeQuery(query, indicator, false);
                     }
                 }
                 indicator.cancel();
                 complete(ex);
-                myConnection.close(ex);
+                if (!discarded) {
+                    myConnection.close(ex);
+                }
             } catch (InterruptedException ignore) {
                 indicator.cancel();
                 // nothing to do here - the task has been done
@@ -311,12 +324,47 @@ public class KdbConnectionManager implements Disposable, DumbAware {
         }
 
         private void performQuery(@NotNull Object query, @NotNull ProgressIndicator indicator) throws IOException, c.KException {
-            final KxConnection c = myConnection.safeConnection();
+            final KxConnection c = myConnection.acquireConnection(indicator, () -> checkCancelled(indicator));
+            boolean broken = false;
+            try {
+                performQuery(c, query, indicator);
+            } catch (IOException ex) {
+                broken = true;
+                throw ex;
+            } finally {
+                connectionDiscarded = myConnection.releaseConnection(c, broken);
+            }
+        }
 
-            final Object object = c.query(query,
+        private void performQuery(KxConnection c, @NotNull Object query, @NotNull ProgressIndicator indicator) throws IOException, c.KException {
+            // the connection can be shared by pipelined queries, so it's not changed
+            final KxCodec codec = c.getCodec(getOptions().isPrimitiveTemporals(), getOptions().isCompactStrings());
+            final Object object = c.query(query, codec,
                     () -> checkCancelled(indicator),
-                    this::validateMessageSize,
-                    phase -> indicator.setText(phase.getDescription())
+                    new ResponseValidator() {
+                        @Override
+                        public void checkMessageSize(int size) throws CancellationException {
+                            validateMessageSize(size);
+                        }
+
+                        @Override
+                        public boolean isMappedToFile(int size) {
+                            return mappedToFile;
+                        }
+                    },
+                    new QueryProgress() {
+                        @Override
+                        public void accept(QueryPhase phase) {
+                            indicator.setText(phase.getDescription());
+                        }
+
+                        @Override
+                        public void progress(QueryPhase phase, long done, long total) {
+                            checkCancelled(indicator);
+                            indicator.setIndeterminate(false);
+                            indicator.setFraction((double) done / total);
+                        }
+                    }
             );
             complete(object);
         }
@@ -329,16 +377,24 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
         private void validateMessageSize(int size) throws CancellationException {
             if (size > getOptions().getWarningMessageMb() * MB_SIZE) {
+                if (getOptions().isMapBigResults()) {
+                    mappedToFile = true;
+                    return;
+                }
+
                 final int sizeMb = ((int) ((size / MB_SIZE) * 100d)) / 100;
 
-                final CompletableFuture<Boolean> res = new CompletableFuture<>();
+                final CompletableFuture<Integer> res = new CompletableFuture<>();
                 ApplicationManager.getApplication().invokeAndWait(() -> {
-                            final int i = Messages.showOkCancelDialog(project, "The response is " + sizeMb + "Mb and could take long processing time or cause out of memory error. Would you like to proceed the response?", "Big Result Warning", "Cancel The Query", "Proceed and Show Result", AllIcons.General.NotificationWarning);
-                            res.complete(i == Messages.CANCEL);
+                            final int i = Messages.showYesNoCancelDialog(project, "The response is " + sizeMb + "Mb and could take long processing time or cause out of memory error. Would you like to proceed the response or keep it in a temp file, outside of the memory?", "Big Result Warning", "Proceed and Show Result", "Keep in Temp File", "Cancel The Query", AllIcons.General.NotificationWarning);
+                            res.complete(i);
                         }
                 );
                 try {
-                    if (!res.get()) {
+                    final int i = res.get();
+                    if (i == Messages.NO) {
+                        mappedToFile = true;
+                    } else if (i != Messages.YES) {
                         throw new CancellationException("The response is " + sizeMb + "Mb and was cancelled.");
                     }
                 } catch (ExecutionException | InterruptedException ignore) {
@@ -491,7 +547,14 @@ public class KdbConnectionManager implements Disposable, DumbAware {
         private long stateChangeTime;
 
         private KxConnection myConnection;
-        private QueryProgressive queryProgressive;
+
+        private int openedCount;
+        private int pipelinedCount;
+        private int generation;
+        private final Deque<KxConnection> idleConnections = new ArrayDeque<>();
+        private final List<KxConnection> openedConnections = new ArrayList<>();
+
+        private final List<QueryProgressive> queries = new CopyOnWriteArrayList<>();
 
         private final KdbInstance instance;
 
@@ -603,11 +666,26 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
         void connected(KxConnection connection) {
             this.myConnection = connection;
+            synchronized (idleConnections) {
+                openedCount++;
+                openedConnections.add(connection);
+                idleConnections.add(connection);
+            }
             updateState(InstanceState.CONNECTED);
         }
 
 
         void close(Exception exception) {
+            synchronized (idleConnections) {
+                generation++;
+                openedCount = 0;
+                pipelinedCount = 0;
+                openedConnections.forEach(KxConnection::close);
+                openedConnections.clear();
+                idleConnections.clear();
+                idleConnections.notifyAll();
+            }
+
             if (myConnection != null) {
                 myConnection.close();
                 myConnection = null;
@@ -637,7 +715,15 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
         @Override
         public KdbQuery getQuery() {
-            return queryProgressive != null ? queryProgressive.query : null;
+            for (QueryProgressive query : queries) {
+                return query.query;
+            }
+            return null;
+        }
+
+        @Override
+        public List<KdbQuery> getQueries() {
+            return queries.stream().map(q -> q.query).collect(Collectors.toList());
         }
 
         @Override
@@ -658,26 +744,38 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
         @Override
         public void cancelQuery() {
-            if (queryProgressive != null) {
-                if (queryProgressive.isCanceled()) {
-                    Messages.showInfoMessage("The query has been cancelled but not any phase can be terminated. If you'd like immediate result, try to reconnect the instance.", "Cancelling Is in Progress");
-                } else {
-                    queryProgressive.cancel();
+            queries.forEach(this::cancelQuery);
+        }
+
+        @Override
+        public void cancelQuery(KdbQuery query) {
+            for (QueryProgressive progressive : queries) {
+                if (progressive.query == query) {
+                    cancelQuery(progressive);
                 }
             }
         }
 
+        private void cancelQuery(QueryProgressive progressive) {
+            if (progressive.isCanceled()) {
+                Messages.showInfoMessage("The query has been cancelled but not any phase can be terminated. If you'd like immediate result, try to reconnect the instance.", "Cancelling Is in Progress");
+            } else {
+                progressive.cancel();
+            }
+        }
+
         @Override
         public boolean isQueryCancelled() {
-            return queryProgressive != null && queryProgressive.isCanceled();
+            return !queries.isEmpty() && queries.stream().allMatch(QueryProgressive::isCanceled);
         }
 
         private void doQuery(KdbQuery query, Consumer<KdbResult> handler, boolean modal) throws ConcurrentQueryException {
-            if (getQuery() != null) {
+            if (!queries.isEmpty() && InstanceOptions.resolveOptions(instance).getPoolSize() <= 1) {
                 throw new ConcurrentQueryException("Another query is already running");
             }
 
-            queryProgressive = new QueryProgressive(this, query, handler);
+            final QueryProgressive queryProgressive = new QueryProgressive(this, query, handler);
+            queries.add(queryProgressive);
 
             processQueryStarted(TheInstanceConnection.this, query);
             final Task task;
@@ -690,9 +788,8 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
                     @Override
                     public void onFinished() {
-                        final KdbResult result = queryProgressive.getResult();
-                        queryProgressive = null;
-                        processQueryFinished(TheInstanceConnection.this, query, result);
+                        queries.remove(queryProgressive);
+                        processQueryFinished(TheInstanceConnection.this, query, queryProgressive.getResult());
                     }
                 };
             } else {
@@ -704,20 +801,141 @@ public class KdbConnectionManager implements Disposable, DumbAware {
 
                     @Override
                     public void onFinished() {
-                        final KdbResult result = queryProgressive.getResult();
-                        queryProgressive = null;
-                        processQueryFinished(TheInstanceConnection.this, query, result);
+                        queries.remove(queryProgressive);
+                        processQueryFinished(TheInstanceConnection.this, query, queryProgressive.getResult());
                     }
                 };
             }
             task.queue();
         }
 
-        private KxConnection safeConnection() throws IOException {
-            if (myConnection == null) {
+        /**
+         * Takes an idle connection or opens a new one if the pool is not full. Otherwise, waits till another
+         * query releases its connection.
+         * <p>
+         * A pipelined instance has only one connection, shared by up to pool size queries in flight.
+         */
+        private KxConnection acquireConnection(ProgressIndicator indicator, CancellationValidator cancellation) throws IOException {
+            final InstanceOptions options = InstanceOptions.resolveOptions(instance);
+
+            final int gen;
+            synchronized (idleConnections) {
+                while (true) {
+                    if (state != CONNECTED) {
+                        throw new IOException("Instance is not connected");
+                    }
+
+                    if (options.isPipelined()) {
+                        if (pipelinedCount < options.getPoolSize()) {
+                            return startPipeline();
+                        }
+                    } else {
+                        final KxConnection connection = idleConnections.pollFirst();
+                        if (connection != null) {
+                            return connection;
+                        }
+
+                        if (openedCount < options.getPoolSize()) {
+                            openedCount++;
+                            gen = generation;
+                            break;
+                        }
+                    }
+
+                    indicator.setText("Waiting for a free connection");
+                    cancellation.checkCancelled();
+                    try {
+                        idleConnections.wait(PROGRESS_TICK_MILLIS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("The query has been interrupted.");
+                    }
+                }
+            }
+
+            indicator.setText("Opening new connection");
+            KxConnection connection = null;
+            try {
+                connection = openConnection(options);
+            } finally {
+                synchronized (idleConnections) {
+                    if (gen != generation) {
+                        // the instance has been disconnected in the meantime
+                        if (connection != null) {
+                            connection.close();
+                            connection = null;
+                        }
+                    } else if (connection == null) {
+                        openedCount--;
+                        idleConnections.notifyAll();
+                    } else {
+                        openedConnections.add(connection);
+                    }
+                }
+            }
+            if (connection == null) {
+                throw new IOException("Instance is not connected");
+            }
+            return connection;
+        }
+
+        /**
+         * Switches the first connection into pipelined mode, so it's not used for sync queries anymore.
+         */
+        private KxConnection startPipeline() throws IOException {
+            final KxConnection connection = myConnection;
+            if (connection == null) {
                 throw new IOException("Instance is not connected");
             }
-            return myConnection;
+            idleConnections.remove(connection);
+            connection.startPipeline();
+            pipelinedCount++;
+            return connection;
+        }
+
+        private KxConnection openConnection(InstanceOptions options) throws IOException {
+            final KxConnection connection = new KxConnection(instance.getHost(), instance.getPort(), options);
+            try {
+                connection.s.setSoTimeout(options.getTimeout());
+                connection.authenticate(CredentialService.resolveCredentials(instance));
+                connection.s.setSoTimeout(0);
+                return connection;
+            } catch (IOException ex) {
+                connection.close();
+                throw ex;
+            } catch (Exception ex) {
+                connection.close();
+                throw new IOException("Connection can't be opened: " + ex.getMessage(), ex);
+            }
+        }
+
+        /**
+         * Returns the connection into the pool. A broken connection is closed and removed from the pool, unless it's
+         * the primary or the pipelined one: the whole instance must be disconnected then.
+         *
+         * @return true if the broken connection has been discarded and the instance is still usable
+         */
+        private boolean releaseConnection(KxConnection connection, boolean broken) {
+            boolean discarded = false;
+            synchronized (idleConnections) {
+                if (connection.getPipeline() != null) {
+                    if (pipelinedCount > 0) {
+                        pipelinedCount--;
+                    }
+                } else if (broken && connection != myConnection) {
+                    if (openedConnections.remove(connection)) {
+                        openedCount--;
+                    }
+                    connection.close();
+                    discarded = true;
+                } else if (connection.isConnected() && openedConnections.contains(connection)) {
+                    idleConnections.addFirst(connection);
+                } else if (openedConnections.remove(connection)) {
+                    openedCount--;
+                }
+                idleConnections.notifyAll();
+            }
+            return discarded;
         }
 
         @Override
@@ -28,6 +28,28 @@ public class KdbQuery {
         return res;
     }
 
+    /**
+     * Creates a query that applies the function to this query, as it would be sent to the instance, and
+     * the given arguments. The new query has the same expression, so it's shown and repeated as this one.
+     *
+     * @param function  the function that takes the query as the first argument and evaluates it by {@code value}
+     * @param arguments other arguments of the function
+     * @return the wrapped query
+     */
+    public KdbQuery wrap(String function, Object... arguments) {
+        final KdbQuery query = this;
+        return new KdbQuery(expr, args) {
+            @Override
+            Object toQueryObject(boolean normalize) {
+                final Object[] res = new Object[arguments.length + 2];
+                res[0] = function.toCharArray();
+                res[1] = query.toQueryObject(normalize);
+                System.arraycopy(arguments, 0, res, 2, arguments.length);
+                return res;
+            }
+        };
+    }
+
     public String getExpression() {
         return expr;
     }
@@ -19,6 +19,15 @@ public class KdbResult {
         statedNanos = System.nanoTime();
     }
 
+    private KdbResult(KdbResult result, Object object) {
+        time = result.time;
+        statedMillis = result.statedMillis;
+        statedNanos = result.statedNanos;
+        finishedMillis = result.finishedMillis;
+        finishedNanos = result.finishedNanos;
+        this.result = object;
+    }
+
     public KdbResult complete(Object result) {
         if (finishedMillis != 0) {
             throw new IllegalStateException("Already finalized");
@@ -33,6 +42,13 @@ public class KdbResult {
         return new KdbResult().complete(result);
     }
 
+    /**
+     * Returns the result of the same query with another object, like the object reloaded from a file.
+     */
+    public KdbResult withObject(Object object) {
+        return new KdbResult(this, object);
+    }
+
     public LocalDateTime getTime() {
         return time;
     }
@@ -76,8 +76,10 @@ public class KdbScopeHelper {
         final String timeout = el.getAttributeValue("timeout");
         final String tls = el.getAttributeValue("tls");
         final String compression = el.getAttributeValue("compression");
+        final String poolSize = el.getAttributeValue("poolSize");
+        final String pipelined = el.getAttributeValue("pipelined");
 
-        if (timeout == null && tls == null && compression == null) {
+        if (timeout == null && tls == null && compression == null && poolSize == null && pipelined == null) {
             return null;
         }
 
@@ -91,6 +93,12 @@ public class KdbScopeHelper {
         if (compression != null) {
             o.setCompression(Boolean.parseBoolean(compression));
         }
+        if (poolSize != null) {
+            o.setPoolSize(Integer.parseInt(poolSize));
+        }
+        if (pipelined != null) {
+            o.setPipelined(Boolean.parseBoolean(pipelined));
+        }
         return o;
     }
 
@@ -177,6 +185,12 @@ public class KdbScopeHelper {
         el.setAttribute("timeout", String.valueOf(options.getTimeout()));
         el.setAttribute("tls", String.valueOf(options.isTls()));
         el.setAttribute("compression", String.valueOf(options.isCompression()));
+        if (options.getPoolSize() != InstanceOptions.DEFAULT_POOL_SIZE) {
+            el.setAttribute("poolSize", String.valueOf(options.getPoolSize()));
+        }
+        if (options.isPipelined()) {
+            el.setAttribute("pipelined", "true");
+        }
     }
 
     @NotNull
@@ -1,6 +1,10 @@
 package org.kdb.inside.brains.view;
 
 import kx.KxConnection;
+import kx.KxVector;
+import kx.StringVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
 import kx.c;
 import org.jetbrains.annotations.NotNull;
 import org.kdb.inside.brains.KdbType;
@@ -15,29 +19,48 @@ import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.UUID;
 import java.util.function.Function;
 
 public final class KdbOutputFormatter {
     private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy.MM.dd");
-    private static final DateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss.SSS");
-    private static final DateFormat DATETIME_FORMAT = new SimpleDateFormat("yyyy.MM.dd'T'HH:mm:ss.SSS");
-    private static final DateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("yyyy.MM.dd'D'HH:mm:ss");
-
-    private static final DecimalFormat[] DECIMAL_FORMAT = new DecimalFormat[ConsoleOptions.MAX_DECIMAL_PRECISION + 1];
-
-    static {
-        DATE_FORMAT.setTimeZone(KxConnection.UTC_TIMEZONE);
-        TIME_FORMAT.setTimeZone(KxConnection.UTC_TIMEZONE);
-        DATETIME_FORMAT.setTimeZone(KxConnection.UTC_TIMEZONE);
-        TIMESTAMP_FORMAT.setTimeZone(KxConnection.UTC_TIMEZONE);
-
-        DECIMAL_FORMAT[0] = new DecimalFormat("0.");
+    // Text formats are not thread-safe, so each thread has its own ones: tables are searched in background
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = utcFormat("yyyy.MM.dd");
+    private static final ThreadLocal<DateFormat> TIME_FORMAT = utcFormat("HH:mm:ss.SSS");
+    private static final ThreadLocal<DateFormat> DATETIME_FORMAT = utcFormat("yyyy.MM.dd'T'HH:mm:ss.SSS");
+    private static final ThreadLocal<DateFormat> TIMESTAMP_FORMAT = utcFormat("yyyy.MM.dd'D'HH:mm:ss");
+
+    // Raw temporal values are formatted with thread-safe java.time formatters, without creating Date objects
+    private static final DateTimeFormatter RAW_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+    private static final DateTimeFormatter RAW_TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+    private static final DateTimeFormatter RAW_DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd'T'HH:mm:ss.SSS");
+    private static final DateTimeFormatter RAW_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd'D'HH:mm:ss.SSSSSSSSS");
+
+    private static final int KDB_EPOCH_DAYS = 10957;
+    private static final long KDB_EPOCH_MILLIS = 86400000L * KDB_EPOCH_DAYS;
+    private static final long NANOS_IN_SECOND = 1_000_000_000L;
+
+    private static final ThreadLocal<DecimalFormat[]> DECIMAL_FORMAT = ThreadLocal.withInitial(() -> {
+        final DecimalFormat[] res = new DecimalFormat[ConsoleOptions.MAX_DECIMAL_PRECISION + 1];
+        res[0] = new DecimalFormat("0.");
         for (int i = 1; i <= ConsoleOptions.MAX_DECIMAL_PRECISION; i++) {
-            DECIMAL_FORMAT[i] = new DecimalFormat("0." + "#".repeat(i));
+            res[i] = new DecimalFormat("0." + "#".repeat(i));
         }
+        return res;
+    });
+
+    private static ThreadLocal<DateFormat> utcFormat(String pattern) {
+        return ThreadLocal.withInitial(() -> {
+            final DateFormat format = new SimpleDateFormat(pattern);
+            format.setTimeZone(KxConnection.UTC_TIMEZONE);
+            return format;
+        });
     }
 
     private final ConsoleOptions options;
@@ -209,6 +232,10 @@ public final class KdbOutputFormatter {
             return formatArray(v, this::formatSecond, 12);
         }
 
+        if (v instanceof KxVector) {
+            return formatVector((KxVector) v);
+        }
+
         if (v instanceof c.Flip) {
             return formatFlip((c.Flip) v);
         }
@@ -448,7 +475,7 @@ public final class KdbOutputFormatter {
 
     @NotNull
     public String formatFloat(float v) {
-        return isNull(v) ? "0Ne" : DECIMAL_FORMAT[options.getFloatPrecision()].format(v) + "e";
+        return isNull(v) ? "0Ne" : DECIMAL_FORMAT.get()[options.getFloatPrecision()].format(v) + "e";
     }
 
     @NotNull
@@ -460,7 +487,7 @@ public final class KdbOutputFormatter {
             return oneItemArrayPrefix() + formatFloat(v[0]);
         }
         final StringBuilder b = new StringBuilder();
-        final DecimalFormat decimalFormat = DECIMAL_FORMAT[options.getFloatPrecision()];
+        final DecimalFormat decimalFormat = DECIMAL_FORMAT.get()[options.getFloatPrecision()];
         for (float f : v) {
             b.append(Float.isNaN(f) ? "0N" : decimalFormat.format(f));
             b.append(" ");
@@ -474,7 +501,7 @@ public final class KdbOutputFormatter {
         if (v % 1 == 0) {
             return ((long) v) + "f";
         }
-        return isNull(v) ? "0n" : DECIMAL_FORMAT[options.getFloatPrecision()].format(v);
+        return isNull(v) ? "0n" : DECIMAL_FORMAT.get()[options.getFloatPrecision()].format(v);
     }
 
     @NotNull
@@ -488,7 +515,7 @@ public final class KdbOutputFormatter {
 
         boolean postfix = true;
         final StringBuilder b = new StringBuilder();
-        final DecimalFormat decimalFormat = DECIMAL_FORMAT[options.getFloatPrecision()];
+        final DecimalFormat decimalFormat = DECIMAL_FORMAT.get()[options.getFloatPrecision()];
         for (double d : v) {
             postfix &= d % 1 == 0;
             b.append(Double.isNaN(d) ? "0n" : decimalFormat.format(d));
@@ -514,7 +541,7 @@ public final class KdbOutputFormatter {
         while (b.length() < 10) {
             b.insert(1, "0");
         }
-        return TIMESTAMP_FORMAT.format(v) + b;
+        return TIMESTAMP_FORMAT.get().format(v) + b;
     }
 
     @NotNull
@@ -524,17 +551,17 @@ public final class KdbOutputFormatter {
 
     @NotNull
     public String formatDate(Date v) {
-        return isNull(v) ? "0Nd" : DATE_FORMAT.format(v);
+        return isNull(v) ? "0Nd" : DATE_FORMAT.get().format(v);
     }
 
     @NotNull
     public String formatTime(Time v) {
-        return isNull(v) ? "0Nt" : TIME_FORMAT.format(v);
+        return isNull(v) ? "0Nt" : TIME_FORMAT.get().format(v);
     }
 
     @NotNull
     public String formatDatetime(java.util.Date v) {
-        return isNull(v) ? "0Nz" : DATETIME_FORMAT.format(v);
+        return isNull(v) ? "0Nz" : DATETIME_FORMAT.get().format(v);
     }
 
     @NotNull
@@ -557,6 +584,142 @@ public final class KdbOutputFormatter {
         return isNull(v) ? "0Nv" : String.valueOf(v);
     }
 
+    @NotNull
+    public String formatVector(KxVector v) {
+        if (v instanceof TemporalVector) {
+            return formatTemporal((TemporalVector) v);
+        }
+        if (v instanceof SymbolVector) {
+            return formatSymbol((SymbolVector) v);
+        }
+        // typed vectors, like mapped ones, are formatted the same way as arrays of the type
+        if (v.getElementType() != Object.class) {
+            return formatObject(v.toArray());
+        }
+
+        final int size = v.size();
+        if (size == 0) {
+            return "()";
+        }
+        final StringBuilder b = new StringBuilder(size * 12);
+        b.append('(');
+        if (size == 1) {
+            b.append(oneItemArrayPrefix());
+        }
+        for (int i = 0; i < size; i++) {
+            b.append(formatObject(v.get(i)));
+            b.append(';');
+        }
+        b.setCharAt(b.length() - 1, ')');
+        return b.toString();
+    }
+
+    /**
+     * Formats an item of a compact vector like {@link #objectToString(Object)} formats the item object, but
+     * the object is not created if that can be avoided.
+     */
+    @NotNull
+    public String formatItem(KxVector v, int index) {
+        if (v instanceof TemporalVector) {
+            return formatTemporal((TemporalVector) v, index);
+        }
+        if (v instanceof StringVector && !options.isWrapStrings()) {
+            return ((StringVector) v).getString(index);
+        }
+        return objectToString(v.get(index));
+    }
+
+    @NotNull
+    public String formatSymbol(SymbolVector v) {
+        final int size = v.size();
+        if (size == 0) {
+            return emptyArray(String.class);
+        }
+        if (size == 1) {
+            return oneItemArrayPrefix() + "`" + v.get(0);
+        }
+        final StringBuilder b = new StringBuilder(size * 8);
+        for (int i = 0; i < size; i++) {
+            b.append('`').append(v.get(i));
+        }
+        return b.toString();
+    }
+
+    @NotNull
+    public String formatTemporal(TemporalVector v) {
+        final int size = v.size();
+        if (size == 0) {
+            return emptyArray(v.getElementType());
+        }
+        if (size == 1) {
+            return oneItemArrayPrefix() + formatTemporal(v, 0);
+        }
+        final StringBuilder b = new StringBuilder(size * 24);
+        for (int i = 0; i < size; i++) {
+            b.append(formatTemporal(v, i));
+            b.append(' ');
+        }
+        b.setLength(b.length() - 1);
+        return b.toString();
+    }
+
+    /**
+     * Formats an item of raw temporal vector without creating the value object. The result is the same
+     * as formatting of the object created by {@link TemporalVector#get(int)} in UTC.
+     */
+    @NotNull
+    public String formatTemporal(TemporalVector v, int index) {
+        switch (v.getType()) {
+            case 12:
+                return formatRawTimestamp(((TemporalVector.Longs) v).getLong(index));
+            case 13:
+                return formatMonth(new c.Month(((TemporalVector.Ints) v).getInt(index)));
+            case 14:
+                return formatRawDate(((TemporalVector.Ints) v).getInt(index));
+            case 15:
+                return formatRawDatetime(((TemporalVector.Doubles) v).getDouble(index));
+            case 16:
+                return formatTimespan(new c.Timespan(((TemporalVector.Longs) v).getLong(index)));
+            case 17:
+                return formatMinute(new c.Minute(((TemporalVector.Ints) v).getInt(index)));
+            case 18:
+                return formatSecond(new c.Second(((TemporalVector.Ints) v).getInt(index)));
+            default:
+                return formatRawTime(((TemporalVector.Ints) v).getInt(index));
+        }
+    }
+
+    @NotNull
+    private String formatRawTimestamp(long nanos) {
+        if (isNull(nanos)) {
+            return "0Np";
+        }
+        final long seconds = Math.floorDiv(nanos, NANOS_IN_SECOND);
+        final int nano = (int) Math.floorMod(nanos, NANOS_IN_SECOND);
+        return RAW_TIMESTAMP_FORMAT.format(LocalDateTime.ofEpochSecond(seconds + KDB_EPOCH_MILLIS / 1000, nano, ZoneOffset.UTC));
+    }
+
+    @NotNull
+    private String formatRawDate(int days) {
+        return isNull(days) ? "0Nd" : RAW_DATE_FORMAT.format(LocalDate.ofEpochDay(KDB_EPOCH_DAYS + days));
+    }
+
+    @NotNull
+    private String formatRawTime(int millis) {
+        return isNull(millis) ? "0Nt" : RAW_TIME_FORMAT.format(LocalTime.ofNanoOfDay(Math.floorMod(millis, 86400000) * 1_000_000L));
+    }
+
+    @NotNull
+    private String formatRawDatetime(double days) {
+        if (isNull(days)) {
+            return "0Nz";
+        }
+        final long millis = KDB_EPOCH_MILLIS + Math.round(8.64e7 * days);
+        final long seconds = Math.floorDiv(millis, 1000);
+        final int nano = (int) Math.floorMod(millis, 1000) * 1_000_000;
+        return RAW_DATETIME_FORMAT.format(LocalDateTime.ofEpochSecond(seconds, nano, ZoneOffset.UTC));
+    }
+
     @NotNull
     public String formatFlip(c.Flip f) {
         final String[] x = f.x;
@@ -564,7 +727,7 @@ public final class KdbOutputFormatter {
 
         final StringBuilder b = new StringBuilder();
 
-        b.append(Array.getLength(y[0]));
+        b.append(y[0] instanceof KxVector ? ((KxVector) y[0]).size() : Array.getLength(y[0]));
         b.append("#([]");
         for (int i = 0; i < x.length; i++) {
             final String name = x[i];
@@ -573,7 +736,7 @@ public final class KdbOutputFormatter {
             b.append(name);
             b.append(":");
 
-            final String str = getKdbTypeName(val.getClass().getComponentType());
+            final String str = getKdbTypeName(val instanceof KxVector ? ((KxVector) val).getElementType() : val.getClass().getComponentType());
             if (str != null) {
                 b.append("`").append(str).append("$");
             }
@@ -1,7 +1,9 @@
 package org.kdb.inside.brains.view.chart;
 
+import kx.TemporalVector;
 import kx.c;
 import org.jfree.data.time.*;
+import org.kdb.inside.brains.view.console.table.QColumn;
 
 import javax.swing.*;
 import java.util.Date;
@@ -15,11 +17,26 @@ public interface ChartDataProvider {
 
         final ColumnConfig[] configs = new ColumnConfig[columnCount];
         final Map<String, Object[]> dataMap = new HashMap<>();
+        final Map<String, QColumn> viewsMap = new HashMap<>();
 
+        int[] modelRows = null;
         for (int col = 0; col < columnCount; col++) {
             final ColumnConfig column = new ColumnConfig(table.getColumnName(col), table.getColumnClass(col));
             configs[col] = column;
 
+            // Typed columns are not copied: values are read from the view through primitive getters when requested
+            final QColumn view = QColumn.of(table, col);
+            if (view != null) {
+                if (modelRows == null) {
+                    modelRows = new int[rowsCount];
+                    for (int row = 0; row < rowsCount; row++) {
+                        modelRows[row] = table.convertRowIndexToModel(row);
+                    }
+                }
+                viewsMap.put(column.getName(), view);
+                continue;
+            }
+
             final Object[] rData = new Object[rowsCount];
             for (int row = 0; row < rowsCount; row++) {
                 rData[row] = table.getValueAt(row, col);
@@ -27,6 +44,7 @@ public interface ChartDataProvider {
             dataMap.put(column.getName(), rData);
         }
 
+        final int[] rows = modelRows;
         return new ChartDataProvider() {
             @Override
             public ColumnConfig[] getColumns() {
@@ -40,7 +58,43 @@ public interface ChartDataProvider {
 
             @Override
             public Object[] getRows(ColumnConfig column) {
-                return dataMap.get(column.getName());
+                final QColumn view = viewsMap.get(column.getName());
+                if (view == null) {
+                    return dataMap.get(column.getName());
+                }
+                final Object[] res = new Object[rowsCount];
+                for (int i = 0; i < rowsCount; i++) {
+                    res[i] = view.get(rows[i]);
+                }
+                return res;
+            }
+
+            @Override
+            public double[] getDoubles(ColumnConfig column) {
+                final QColumn view = viewsMap.get(column.getName());
+                if (!(view instanceof QColumn.NumericColumn)) {
+                    return ChartDataProvider.super.getDoubles(column);
+                }
+                final QColumn.NumericColumn numbers = (QColumn.NumericColumn) view;
+                final double[] res = new double[rowsCount];
+                for (int i = 0; i < rowsCount; i++) {
+                    res[i] = numbers.getDouble(rows[i]);
+                }
+                return res;
+            }
+
+            @Override
+            public Date[] getDates(ColumnConfig column) {
+                final QColumn view = viewsMap.get(column.getName());
+                if (!(view instanceof QColumn.VectorColumn) || !(((QColumn.VectorColumn) view).getVector() instanceof TemporalVector)) {
+                    return ChartDataProvider.super.getDates(column);
+                }
+                final TemporalVector vector = (TemporalVector) ((QColumn.VectorColumn) view).getVector();
+                final Date[] res = new Date[rowsCount];
+                for (int i = 0; i < rowsCount; i++) {
+                    res[i] = createDate(vector, rows[i]);
+                }
+                return res;
             }
         };
     }
@@ -94,6 +148,39 @@ public interface ChartDataProvider {
         throw new IllegalArgumentException("Invalid value type: " + value.getClass());
     }
 
+    /**
+     * Creates the same date as {@link #createDate(Object)} for the {@link TemporalVector#get(int)} value but
+     * straight from the raw kdb+ value. Raw values are timezone-independent, so the date is in UTC.
+     */
+    static Date createDate(TemporalVector vector, int index) {
+        switch (vector.getType()) {
+            case 12: {
+                final long v = ((TemporalVector.Longs) vector).getLong(index);
+                return new Date(v == Long.MIN_VALUE ? v : 86400000L * 10957 + Math.floorDiv(v, 1_000_000L));
+            }
+            case 13:
+                return new Date(((TemporalVector.Ints) vector).getInt(index) * 12 * 24 * 60 * 1000L);
+            case 14: {
+                final int v = ((TemporalVector.Ints) vector).getInt(index);
+                return new Date(v == Integer.MIN_VALUE ? Long.MIN_VALUE : 86400000L * 10957 + 86400000L * v);
+            }
+            case 15: {
+                final double v = ((TemporalVector.Doubles) vector).getDouble(index);
+                return new Date(Double.isNaN(v) ? Long.MIN_VALUE : 86400000L * 10957 + Math.round(8.64e7 * v));
+            }
+            case 16:
+                return new Date(((TemporalVector.Longs) vector).getLong(index) / 1_000_000L);
+            case 17:
+                return new Date(((TemporalVector.Ints) vector).getInt(index) * 60 * 1000L);
+            case 18:
+                return new Date(((TemporalVector.Ints) vector).getInt(index) * 1000L);
+            default: {
+                final int v = ((TemporalVector.Ints) vector).getInt(index);
+                return new Date(v == Integer.MIN_VALUE ? Long.MIN_VALUE : v);
+            }
+        }
+    }
+
     static RegularTimePeriod createPeriod(Object value) {
         // SQL Date, Time, Timestamp are here
         if (value instanceof Date) {
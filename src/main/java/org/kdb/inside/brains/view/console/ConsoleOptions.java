@@ -19,9 +19,12 @@ public final class ConsoleOptions implements SettingsBean<ConsoleOptions> {
     private boolean expandTable = true;
     private boolean consoleBackground = true;
     private boolean xmasKeyColumn = true;
+    private boolean searchIndex = false;
+    private int resultsMemoryBudget = DEFAULT_RESULTS_MEMORY_BUDGET;
     private ConsoleSplitType splitType = ConsoleSplitType.NO;
 
     public static final int MAX_DECIMAL_PRECISION = 16;
+    public static final int DEFAULT_RESULTS_MEMORY_BUDGET = 2048;
 
     public ConsoleOptions() {
     }
@@ -146,6 +149,26 @@ public final class ConsoleOptions implements SettingsBean<ConsoleOptions> {
         this.xmasKeyColumn = xmasKeyColumn;
     }
 
+    public boolean isSearchIndex() {
+        return searchIndex;
+    }
+
+    public void setSearchIndex(boolean searchIndex) {
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Returns the heap budget of results of all tabs in Mb: results of inactive tabs over the budget are evicted into
+     * temp files. Zero means no limit.
+     */
+    public int getResultsMemoryBudget() {
+        return resultsMemoryBudget;
+    }
+
+    public void setResultsMemoryBudget(int resultsMemoryBudget) {
+        this.resultsMemoryBudget = resultsMemoryBudget;
+    }
+
     @Override
     public void copyFrom(ConsoleOptions options) {
         this.enlistArrays = options.enlistArrays;
@@ -163,6 +186,8 @@ public final class ConsoleOptions implements SettingsBean<ConsoleOptions> {
         this.expandTable = options.expandTable;
         this.xmasKeyColumn = options.xmasKeyColumn;
         this.consoleBackground = options.consoleBackground;
+        this.searchIndex = options.searchIndex;
+        this.resultsMemoryBudget = options.resultsMemoryBudget;
     }
 
     @Override
@@ -170,12 +195,12 @@ public final class ConsoleOptions implements SettingsBean<ConsoleOptions> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ConsoleOptions that = (ConsoleOptions) o;
-        return floatPrecision == that.floatPrecision && enlistArrays == that.enlistArrays && wrapStrings == that.wrapStrings && prefixSymbols == that.prefixSymbols && striped == that.striped && showGrid == that.showGrid && indexColumn == that.indexColumn && dictAsTable == that.dictAsTable && listAsTable == that.listAsTable && expandList == that.expandList && expandDict == that.expandDict && expandTable == that.expandTable && splitType == that.splitType && consoleBackground == that.consoleBackground && xmasKeyColumn == that.xmasKeyColumn;
+        return floatPrecision == that.floatPrecision && enlistArrays == that.enlistArrays && wrapStrings == that.wrapStrings && prefixSymbols == that.prefixSymbols && striped == that.striped && showGrid == that.showGrid && indexColumn == that.indexColumn && dictAsTable == that.dictAsTable && listAsTable == that.listAsTable && expandList == that.expandList && expandDict == that.expandDict && expandTable == that.expandTable && splitType == that.splitType && consoleBackground == that.consoleBackground && xmasKeyColumn == that.xmasKeyColumn && searchIndex == that.searchIndex && resultsMemoryBudget == that.resultsMemoryBudget;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(floatPrecision, enlistArrays, wrapStrings, prefixSymbols, striped, showGrid, indexColumn, dictAsTable, listAsTable, expandList, expandDict, expandTable, splitType, consoleBackground, xmasKeyColumn);
+        return Objects.hash(floatPrecision, enlistArrays, wrapStrings, prefixSymbols, striped, showGrid, indexColumn, dictAsTable, listAsTable, expandList, expandDict, expandTable, splitType, consoleBackground, xmasKeyColumn, searchIndex, resultsMemoryBudget);
     }
 
     @Override
@@ -196,6 +221,8 @@ public final class ConsoleOptions implements SettingsBean<ConsoleOptions> {
                 ", splitType=" + splitType +
                 ", xmasKeyColumn=" + xmasKeyColumn +
                 ", consoleBackground=" + consoleBackground +
+                ", searchIndex=" + searchIndex +
+                ", resultsMemoryBudget=" + resultsMemoryBudget +
                 '}';
     }
 }
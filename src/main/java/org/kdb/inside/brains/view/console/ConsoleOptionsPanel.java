@@ -23,13 +23,17 @@ public class ConsoleOptionsPanel extends JPanel {
     private final JBCheckBox expandFlip = new JBCheckBox("Table");
     private final JBCheckBox consoleBackground = new JBCheckBox("Use an instance color for console background");
     private final JBCheckBox xmasKeyColumn = new JBCheckBox("Show XMas key column");
+    private final JBCheckBox searchIndex = new JBCheckBox("Index big tables for repeated searches");
     private final JBIntSpinner floatPrecisionEditor = new JBIntSpinner(7, 0, ConsoleOptions.MAX_DECIMAL_PRECISION);
+    private final JBIntSpinner resultsMemoryBudgetEditor = new JBIntSpinner(ConsoleOptions.DEFAULT_RESULTS_MEMORY_BUDGET, 0, 1024 * 1024, 256);
     private final ComboBox<ConsoleSplitType> splitTypes = new ComboBox<>(ConsoleSplitType.values());
 
     public ConsoleOptionsPanel() {
         super(new BorderLayout());
 
         enlistArrays.setToolTipText("If enabled - an one element list will be shown as 'enlist'; comma is used otherwise.");
+        searchIndex.setToolTipText("If enabled - an n-gram index of the table text is created when a big table is searched again, which takes additional memory.");
+        resultsMemoryBudgetEditor.setToolTipText("Results of inactive tabs over the budget are moved into compressed temp files and loaded back when a tab is selected. 0 - no limit.");
 
         final var formBuilder = FormBuilder.createFormBuilder();
         formBuilder.addComponent(showGrid);
@@ -41,7 +45,9 @@ public class ConsoleOptionsPanel extends JPanel {
         formBuilder.addComponent(listAsTable);
         formBuilder.addComponent(dictAsTable);
         formBuilder.addComponent(xmasKeyColumn);
+        formBuilder.addComponent(searchIndex);
         formBuilder.addLabeledComponent("Float precision: ", floatPrecisionEditor);
+        formBuilder.addLabeledComponent("Results memory budget, Mb: ", resultsMemoryBudgetEditor);
         createSplitTypes(formBuilder);
         addExpandPanel(formBuilder);
         formBuilder.addComponent(consoleBackground);
@@ -96,6 +102,8 @@ public class ConsoleOptionsPanel extends JPanel {
         consoleOptions.setExpandTable(expandFlip.isSelected());
         consoleOptions.setConsoleBackground(consoleBackground.isSelected());
         consoleOptions.setXmasKeyColumn(xmasKeyColumn.isSelected());
+        consoleOptions.setSearchIndex(searchIndex.isSelected());
+        consoleOptions.setResultsMemoryBudget(resultsMemoryBudgetEditor.getNumber());
         return consoleOptions;
     }
 
@@ -115,5 +123,7 @@ public class ConsoleOptionsPanel extends JPanel {
         expandFlip.setSelected(consoleOptions.isExpandTable());
         consoleBackground.setSelected(consoleOptions.isConsoleBackground());
         xmasKeyColumn.setSelected(consoleOptions.isXmasKeyColumn());
+        searchIndex.setSelected(consoleOptions.isSearchIndex());
+        resultsMemoryBudgetEditor.setNumber(consoleOptions.getResultsMemoryBudget());
     }
 }
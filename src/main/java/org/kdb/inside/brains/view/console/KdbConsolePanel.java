@@ -32,7 +32,11 @@ import com.intellij.ui.tabs.JBTabsFactory;
 import com.intellij.ui.tabs.TabInfo;
 import com.intellij.util.ui.IoErrorText;
 import icons.KdbIcons;
-import kx.c;
+import kx.CancellationValidator;
+import kx.KxConnection;
+import kx.KxMappedFile;
+import kx.QueryPhase;
+import kx.QueryProgress;
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -46,9 +50,12 @@ import org.kdb.inside.brains.settings.SettingsBean;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 import org.kdb.inside.brains.view.LineNumberGutterProvider;
 import org.kdb.inside.brains.view.PopupActionGroup;
+import org.kdb.inside.brains.view.console.table.MappedTableModel;
+import org.kdb.inside.brains.view.console.table.PagedTableModel;
 import org.kdb.inside.brains.view.console.table.TableResult;
 import org.kdb.inside.brains.view.console.table.TableResultView;
 import org.kdb.inside.brains.view.console.table.TabsTableResult;
+import org.kdb.inside.brains.view.export.ArrowReader;
 import org.kdb.inside.brains.view.export.ExportDataProvider;
 import org.kdb.inside.brains.view.treeview.forms.InstanceEditorDialog;
 
@@ -57,6 +64,7 @@ import java.awt.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
 import java.util.function.Consumer;
 
 public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvider, Disposable {
@@ -286,7 +294,7 @@ public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvid
         });
         actions.addSeparator();
 
-        actions.add(new DumbAwareAction("Open KDB Table", "Opens previously saved KDB table in binary format", KdbIcons.Console.ImportBinary) {
+        actions.add(new DumbAwareAction("Open KDB Table", "Opens previously saved KDB table in binary or Apache Arrow format", KdbIcons.Console.ImportBinary) {
             @Override
             public void actionPerformed(@NotNull AnActionEvent e) {
                 loadBinaryFile();
@@ -350,14 +358,38 @@ public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvid
 
         final String tabName = virtualFile.getNameWithoutExtension();
         final Application application = ApplicationManager.getApplication();
-        new Task.Backgroundable(project, "Loading a table from " + tabName, false, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
+        new Task.Backgroundable(project, "Loading a table from " + tabName, true, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 try {
-                    indicator.setText("Loading file");
-                    final byte[] bytes = Files.readAllBytes(virtualFile.toNioPath());
-                    indicator.setText("Deserializing content: " + FileUtils.byteCountToDisplaySize(bytes.length));
-                    final Object deserialize = new c().deserialize(bytes);
+                    final Path path = virtualFile.toNioPath();
+                    final Object deserialize;
+                    if (ArrowReader.isArrowFile(path) || "arrows".equalsIgnoreCase(virtualFile.getExtension())) {
+                        indicator.setText("Reading Arrow file: " + FileUtils.byteCountToDisplaySize(Files.size(path)));
+                        deserialize = ArrowReader.read(path);
+                    } else {
+                        // the file is mapped and rows are read off the mapping when they are shown
+                        final String size = FileUtils.byteCountToDisplaySize(Files.size(path));
+                        indicator.setText("Mapping file: " + size);
+                        final CancellationValidator cancellation = () -> {
+                            if (indicator.isCanceled()) {
+                                throw new CancellationException("Loading has been canceled");
+                            }
+                        };
+                        final QueryProgress progress = new QueryProgress() {
+                            @Override
+                            public void accept(QueryPhase phase) {
+                                indicator.setText("Uncompressing file: " + size);
+                            }
+
+                            @Override
+                            public void progress(QueryPhase phase, long done, long total) {
+                                indicator.setIndeterminate(false);
+                                indicator.setFraction((double) done / total);
+                            }
+                        };
+                        deserialize = KxMappedFile.open(path, false, cancellation, progress, KxConnection.DEFAULT_CODEC.getDecoder(), KxConnection.DEFAULT_CODEC.getCharset());
+                    }
 
                     final KdbQuery query = new KdbQuery("Loaded from file: " + virtualFile.getCanonicalPath());
                     final KdbResult result = new KdbResult();
@@ -371,6 +403,8 @@ public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvid
                         resultTabs.showTab(tabName, tr);
                         indicator.setText("");
                     });
+                } catch (CancellationException ignore) {
+                    // canceled by the user
                 } catch (Exception ex) {
                     application.invokeLater(() -> Messages.showErrorDialog(project, "The file can't be loaded: " + ex.getMessage(), "Incorrect KDB Table File"));
                 }
@@ -430,8 +464,10 @@ public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvid
     }
 
     private void processQuery(KdbQuery query, TableResultView resultView) {
+        final ExecutionOptions options = settingsService.getConnectionOptions();
+        final KdbQuery request = options.isPagedResults() ? PagedTableModel.wrapQuery(query, options.getPagedResultRows()) : query;
         try {
-            connection.query(query, result -> {
+            connection.query(request, result -> {
                 if (result.isError()) {
                     final Exception ex = (Exception) result.getObject();
                     if (ex instanceof IOException) {
@@ -444,9 +480,18 @@ public class KdbConsolePanel extends SimpleToolWindowPanel implements DataProvid
                     selectConsole();
                 } else {
                     printRoundtrip(result);
-                    printToConsole(formatter.resultToString(result, true, true) + "\n", ConsoleViewContentType.NORMAL_OUTPUT);
 
-                    final TableResult tbl = TableResult.from(query, result);
+                    final TableResult tbl = TableResult.from(query, result, connection);
+                    if (tbl != null && tbl.getTableModel() instanceof PagedTableModel) {
+                        final PagedTableModel model = (PagedTableModel) tbl.getTableModel();
+                        printToConsole(model.getTotalRowsCount() + " rows are kept in `" + model.getVariable() + " on the instance and fetched page by page\n", ConsoleViewContentType.LOG_VERBOSE_OUTPUT);
+                    } else if (tbl != null && tbl.getTableModel() instanceof MappedTableModel) {
+                        final KxMappedFile file = ((MappedTableModel) tbl.getTableModel()).getFile();
+                        printToConsole(tbl.getTableModel().getRowCount() + " rows are kept in " + file.getPath() + " (" + FileUtils.byteCountToDisplaySize(file.getSize()) + ") and read from the file\n", ConsoleViewContentType.LOG_VERBOSE_OUTPUT);
+                    } else {
+                        printToConsole(formatter.resultToString(result, true, true) + "\n", ConsoleViewContentType.NORMAL_OUTPUT);
+                    }
+
                     if (tbl != null) {
                         resultTabs.updateTableResult(tbl, resultView, this::execute);
                     } else {
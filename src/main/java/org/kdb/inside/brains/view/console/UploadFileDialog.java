@@ -9,6 +9,7 @@ import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBTextField;
 import com.intellij.util.ui.FormBuilder;
+import kx.StringVector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kdb.inside.brains.QLanguage;
@@ -17,6 +18,7 @@ import org.kdb.inside.brains.core.KdbQuery;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -98,7 +100,8 @@ class UploadFileDialog extends DialogWrapper {
     public KdbQuery createQuery() throws IOException {
         final Path path = getPath();
         final String name = getVariableName();
-        final Object data = isTextFormat() ? Files.readAllLines(path).stream().map(String::toCharArray).toArray() : Files.readAllBytes(path);
+        final byte[] bytes = Files.readAllBytes(path);
+        final Object data = isTextFormat() ? StringVector.lines(bytes, StandardCharsets.UTF_8) : bytes;
         return new KdbQuery("set", name, data);
     }
 }
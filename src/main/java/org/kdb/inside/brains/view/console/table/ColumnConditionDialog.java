@@ -0,0 +1,147 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.TableColumn;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+class ColumnConditionDialog extends DialogWrapper {
+    private final TableResult.QTableModel model;
+
+    private final ComboBox<TableColumn> columns;
+    private final ComboBox<ColumnFilter.Type> types = new ComboBox<>(ColumnFilter.Type.values());
+
+    private final JBLabel fromLabel = new JBLabel("From:");
+    private final JBTextField fromField = new JBTextField();
+    private final JBLabel toLabel = new JBLabel("To:");
+    private final JBTextField toField = new JBTextField();
+    private final JBLabel valuesLabel = new JBLabel("Values:");
+    private final JBTextField valuesField = new JBTextField();
+
+    ColumnConditionDialog(JTable table, List<TableColumn> tableColumns, @Nullable TableColumn selected) {
+        super(table, false);
+        setTitle("Add Rows Condition");
+
+        model = (TableResult.QTableModel) table.getModel();
+
+        columns = new ComboBox<>(tableColumns.toArray(TableColumn[]::new));
+        columns.setRenderer(SimpleListCellRenderer.create("", c -> String.valueOf(c.getHeaderValue())));
+        if (selected != null) {
+            columns.setSelectedItem(selected);
+        }
+        columns.addActionListener(e -> updateHints());
+
+        types.setRenderer(SimpleListCellRenderer.create("", ColumnFilter.Type::getLabel));
+        types.addActionListener(e -> {
+            updateFields();
+            pack();
+        });
+
+        fromField.getEmptyText().setText("Empty for no lower bound");
+        toField.getEmptyText().setText("Empty for no upper bound");
+
+        updateFields();
+        updateHints();
+
+        setOKButtonText("Add");
+
+        init();
+        initValidation();
+    }
+
+    private void updateFields() {
+        final ColumnFilter.Type type = types.getItem();
+        fromLabel.setVisible(type == ColumnFilter.Type.WITHIN);
+        fromField.setVisible(type == ColumnFilter.Type.WITHIN);
+        toLabel.setVisible(type == ColumnFilter.Type.WITHIN);
+        toField.setVisible(type == ColumnFilter.Type.WITHIN);
+        valuesLabel.setVisible(type == ColumnFilter.Type.IN);
+        valuesField.setVisible(type == ColumnFilter.Type.IN);
+    }
+
+    private void updateHints() {
+        final TableColumn column = columns.getItem();
+        final QColumn view = column == null ? null : model.getColumnView(column.getModelIndex());
+        switch (view == null ? 0 : ColumnFilter.temporalType(view)) {
+            case 12:
+                valuesField.getEmptyText().setText("2024.01.31D10:00:00.000000000 ...");
+                break;
+            case 13:
+                valuesField.getEmptyText().setText("2024.01m ...");
+                break;
+            case 14:
+                valuesField.getEmptyText().setText("2024.01.31 ...");
+                break;
+            case 15:
+                valuesField.getEmptyText().setText("2024.01.31T10:00:00.000 ...");
+                break;
+            case 16:
+                valuesField.getEmptyText().setText("0D10:00:00.000000000 ...");
+                break;
+            case 17:
+            case 18:
+            case 19:
+                valuesField.getEmptyText().setText("10:00:00.000 ...");
+                break;
+            default:
+                valuesField.getEmptyText().setText("Values separated by spaces: `a`b or 1 2 3");
+        }
+    }
+
+    @Override
+    protected @Nullable ValidationInfo doValidate() {
+        final TableColumn column = columns.getItem();
+        if (column == null) {
+            return new ValidationInfo("Column must be selected", columns);
+        }
+
+        try {
+            getCondition().compile(model.getColumnView(column.getModelIndex()));
+        } catch (IllegalArgumentException ex) {
+            final ColumnFilter.Type type = types.getItem();
+            return new ValidationInfo(ex.getMessage(), type == ColumnFilter.Type.WITHIN ? fromField : type == ColumnFilter.Type.IN ? valuesField : columns);
+        }
+        return null;
+    }
+
+    ColumnFilter.Condition getCondition() {
+        final TableColumn column = columns.getItem();
+        final int index = column.getModelIndex();
+        final String name = String.valueOf(column.getHeaderValue());
+        switch (types.getItem()) {
+            case WITHIN:
+                return ColumnFilter.Condition.within(index, name, fromField.getText(), toField.getText());
+            case IN:
+                final List<String> values = Arrays.stream(valuesField.getText().split("[\\s,`]+")).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+                return ColumnFilter.Condition.in(index, name, values);
+            default:
+                return ColumnFilter.Condition.isNull(index, name, types.getItem() == ColumnFilter.Type.NULL);
+        }
+    }
+
+    @Override
+    public @Nullable JComponent getPreferredFocusedComponent() {
+        return types;
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("Column:", columns)
+                .addLabeledComponent("Condition:", types)
+                .addLabeledComponent(fromLabel, fromField)
+                .addLabeledComponent(toLabel, toField)
+                .addLabeledComponent(valuesLabel, valuesField)
+                .getPanel();
+    }
+}
@@ -0,0 +1,722 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.StringVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Structured filter of table rows: conditions on columns combined with AND or OR.
+ * <p>
+ * A condition is compiled into a predicate that reads raw values of the column view, like longs of a timestamp
+ * vector or codes of a symbol vector, so nothing is formatted and no value object is created for primitive columns.
+ * Bounds and values of a condition are kdb+ literals, parsed once into the raw domain of the column.
+ */
+class ColumnFilter {
+    private final Operator operator;
+    private final List<Condition> conditions;
+
+    private static final int KDB_EPOCH_DAYS = 10957;
+    private static final long KDB_EPOCH_MILLIS = 86400000L * KDB_EPOCH_DAYS;
+    private static final long NANOS_IN_DAY = 86400_000_000_000L;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("uuuu.MM.dd");
+
+    ColumnFilter(Operator operator, List<Condition> conditions) {
+        this.operator = operator;
+        this.conditions = List.copyOf(conditions);
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * Compiles the filter into a predicate of model rows. The predicate is stateless and can be checked by many
+     * threads at once.
+     *
+     * @param views views of the model columns by the column index
+     * @throws IllegalArgumentException if a condition can't be applied to its column
+     */
+    IntPredicate compile(IntFunction<QColumn> views) {
+        final IntPredicate[] predicates = new IntPredicate[conditions.size()];
+        for (int i = 0; i < predicates.length; i++) {
+            final Condition condition = conditions.get(i);
+            predicates[i] = condition.compile(views.apply(condition.getColumn()));
+        }
+
+        if (predicates.length == 1) {
+            return predicates[0];
+        }
+
+        if (operator == Operator.AND) {
+            return row -> {
+                for (IntPredicate predicate : predicates) {
+                    if (!predicate.test(row)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        return row -> {
+            for (IntPredicate predicate : predicates) {
+                if (predicate.test(row)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return conditions.stream().map(Condition::toString).collect(Collectors.joining(operator == Operator.AND ? " and " : " or "));
+    }
+
+    public enum Operator {
+        AND("Match all"),
+        OR("Match any");
+
+        private final String label;
+
+        Operator(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum Type {
+        WITHIN("within"),
+        IN("in"),
+        NULL("is null"),
+        NOT_NULL("is not null");
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /**
+     * A condition on one column of the model.
+     */
+    public static final class Condition {
+        private final int column;
+        private final String name;
+        private final Type type;
+        private final String from;
+        private final String to;
+        private final List<String> values;
+
+        private Condition(int column, String name, Type type, String from, String to, List<String> values) {
+            this.column = column;
+            this.name = name;
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+        }
+
+        /**
+         * Value of the column is within the bounds, inclusive. An empty bound is not checked, but nulls are never
+         * within the bounds.
+         */
+        public static Condition within(int column, String name, String from, String to) {
+            return new Condition(column, name, Type.WITHIN, from.trim(), to.trim(), List.of());
+        }
+
+        /**
+         * Value of the column is one of the values: symbols can be prefixed by the grave accent.
+         */
+        public static Condition in(int column, String name, List<String> values) {
+            return new Condition(column, name, Type.IN, "", "", List.copyOf(values));
+        }
+
+        public static Condition isNull(int column, String name, boolean nulls) {
+            return new Condition(column, name, nulls ? Type.NULL : Type.NOT_NULL, "", "", List.of());
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Compiles the condition into a predicate of model rows.
+         *
+         * @param view the column view
+         * @throws IllegalArgumentException if the condition can't be applied to the column or a value can't be parsed
+         */
+        public IntPredicate compile(QColumn view) {
+            if (view == null) {
+                throw new IllegalArgumentException("Column " + name + " is not loaded into memory");
+            }
+            switch (type) {
+                case NULL:
+                    return view::isNull;
+                case NOT_NULL:
+                    return row -> !view.isNull(row);
+                case WITHIN:
+                    return within(view);
+                default:
+                    return in(view);
+            }
+        }
+
+        private IntPredicate within(QColumn view) {
+            if (from.isEmpty() && to.isEmpty()) {
+                throw new IllegalArgumentException("At least one bound must be specified");
+            }
+
+            final Domain domain = Domain.of(view);
+            if (domain == Domain.DOUBLE) {
+                final double lo = from.isEmpty() ? Double.NEGATIVE_INFINITY : parseDouble(view, from);
+                final double hi = to.isEmpty() ? Double.POSITIVE_INFINITY : parseDouble(view, to);
+                if (view instanceof QColumn.NumericColumn) {
+                    final QColumn.NumericColumn c = (QColumn.NumericColumn) view;
+                    return row -> {
+                        final double v = c.getDouble(row);
+                        return v >= lo && v <= hi;
+                    };
+                }
+                if (view instanceof QColumn.VectorColumn) {
+                    final TemporalVector.Doubles v = (TemporalVector.Doubles) ((QColumn.VectorColumn) view).getVector();
+                    return row -> {
+                        final double d = v.getDouble(row);
+                        return d >= lo && d <= hi;
+                    };
+                }
+                return row -> {
+                    final double d = datetime(view.get(row));
+                    return d >= lo && d <= hi;
+                };
+            }
+
+            if (domain == Domain.LONG) {
+                final long lo = from.isEmpty() ? Long.MIN_VALUE + 1 : parseLong(view, from, true);
+                final long hi = to.isEmpty() ? Long.MAX_VALUE : parseLong(view, to, false);
+                final LongReader reader = LongReader.of(view);
+                return row -> {
+                    final long v = reader.read(row);
+                    return v != Long.MIN_VALUE && v >= lo && v <= hi;
+                };
+            }
+
+            if (domain == Domain.SYMBOL) {
+                final SymbolReader reader = SymbolReader.of(view);
+                return row -> {
+                    final String v = reader.read(row);
+                    return v != null && (from.isEmpty() || v.compareTo(from) >= 0) && (to.isEmpty() || v.compareTo(to) <= 0);
+                };
+            }
+            throw new IllegalArgumentException("Column " + name + " can't be filtered by a range");
+        }
+
+        private IntPredicate in(QColumn view) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("At least one value must be specified");
+            }
+
+            final Domain domain = Domain.of(view);
+            if (domain == Domain.SYMBOL) {
+                final Set<String> set = new HashSet<>();
+                for (String value : values) {
+                    set.add(value.startsWith("`") ? value.substring(1) : value);
+                }
+
+                if (view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof SymbolVector) {
+                    // packed symbols are checked once for each distinct symbol
+                    final SymbolVector vector = (SymbolVector) ((QColumn.VectorColumn) view).getVector();
+                    final String[] symbols = vector.getSymbols();
+                    final boolean[] matches = new boolean[symbols.length];
+                    for (int i = 0; i < symbols.length; i++) {
+                        matches[i] = set.contains(symbols[i]);
+                    }
+                    return row -> matches[vector.getCode(row)];
+                }
+
+                final SymbolReader reader = SymbolReader.of(view);
+                return row -> set.contains(reader.read(row));
+            }
+
+            if (domain == Domain.LONG) {
+                final long[] keys = new long[values.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = parseLong(view, values.get(i), true);
+                }
+                Arrays.sort(keys);
+
+                final LongReader reader = LongReader.of(view);
+                return row -> Arrays.binarySearch(keys, reader.read(row)) >= 0;
+            }
+
+            if (domain == Domain.DOUBLE) {
+                final double[] keys = new double[values.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = parseDouble(view, values.get(i));
+                }
+                Arrays.sort(keys);
+
+                if (view instanceof QColumn.NumericColumn) {
+                    final QColumn.NumericColumn c = (QColumn.NumericColumn) view;
+                    return row -> Arrays.binarySearch(keys, c.getDouble(row)) >= 0;
+                }
+                if (view instanceof QColumn.VectorColumn) {
+                    final TemporalVector.Doubles v = (TemporalVector.Doubles) ((QColumn.VectorColumn) view).getVector();
+                    return row -> Arrays.binarySearch(keys, v.getDouble(row)) >= 0;
+                }
+                return row -> Arrays.binarySearch(keys, datetime(view.get(row))) >= 0;
+            }
+
+            if (view instanceof QColumn.BooleanColumn) {
+                final QColumn.BooleanColumn c = (QColumn.BooleanColumn) view;
+                final boolean[] accepted = new boolean[2];
+                for (String value : values) {
+                    accepted[parseBoolean(value) ? 1 : 0] = true;
+                }
+                return row -> accepted[c.getBoolean(row) ? 1 : 0];
+            }
+            throw new IllegalArgumentException("Column " + name + " can't be filtered by a list of values");
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case WITHIN:
+                    if (from.isEmpty()) {
+                        return name + " <= " + to;
+                    }
+                    if (to.isEmpty()) {
+                        return name + " >= " + from;
+                    }
+                    return name + " within " + from + " " + to;
+                case IN:
+                    return name + " in " + String.join(" ", values);
+                default:
+                    return name + " " + type.getLabel();
+            }
+        }
+    }
+
+    /**
+     * Raw domain of column values.
+     */
+    private enum Domain {
+        /**
+         * Integral numbers and temporals, except datetime: nulls are the min value.
+         */
+        LONG,
+        /**
+         * Floats and datetimes: nulls are NaN.
+         */
+        DOUBLE,
+        /**
+         * Symbols and strings.
+         */
+        SYMBOL,
+        OTHER;
+
+        static Domain of(QColumn view) {
+            if (view instanceof QColumn.FloatColumn || view instanceof QColumn.DoubleColumn) {
+                return DOUBLE;
+            }
+            if (view instanceof QColumn.NumericColumn || view instanceof QColumn.CharColumn) {
+                return LONG;
+            }
+            if (view instanceof QColumn.SymbolColumn) {
+                return SYMBOL;
+            }
+
+            final int temporal = temporalType(view);
+            if (temporal == 15) {
+                return DOUBLE;
+            }
+            if (temporal != 0) {
+                return LONG;
+            }
+
+            final Class<?> type = view.getElementType();
+            if (type == String.class || type == char[].class || view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof StringVector) {
+                return SYMBOL;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * Returns kdb+ type of a temporal column or 0 if the column is not temporal.
+     */
+    static int temporalType(QColumn view) {
+        if (view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof TemporalVector) {
+            return ((QColumn.VectorColumn) view).getVector().getType();
+        }
+        if (view instanceof QColumn.ObjectColumn) {
+            final Class<?> type = view.getElementType();
+            if (type == Timestamp.class) {
+                return 12;
+            }
+            if (type == c.Month.class) {
+                return 13;
+            }
+            if (type == java.sql.Date.class) {
+                return 14;
+            }
+            if (type == java.util.Date.class) {
+                return 15;
+            }
+            if (type == c.Timespan.class) {
+                return 16;
+            }
+            if (type == c.Minute.class) {
+                return 17;
+            }
+            if (type == c.Second.class) {
+                return 18;
+            }
+            if (type == Time.class) {
+                return 19;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Reads values of a column as longs, nulls are {@link Long#MIN_VALUE}.
+     */
+    @FunctionalInterface
+    private interface LongReader {
+        long read(int row);
+
+        static LongReader of(QColumn view) {
+            if (view instanceof QColumn.LongColumn) {
+                final QColumn.LongColumn c = (QColumn.LongColumn) view;
+                return c::getLong;
+            }
+            if (view instanceof QColumn.IntColumn) {
+                final QColumn.IntColumn c = (QColumn.IntColumn) view;
+                return row -> {
+                    final int v = c.getInt(row);
+                    return v == Integer.MIN_VALUE ? Long.MIN_VALUE : v;
+                };
+            }
+            if (view instanceof QColumn.ShortColumn) {
+                final QColumn.ShortColumn c = (QColumn.ShortColumn) view;
+                return row -> {
+                    final short v = c.getShort(row);
+                    return v == Short.MIN_VALUE ? Long.MIN_VALUE : v;
+                };
+            }
+            if (view instanceof QColumn.ByteColumn) {
+                final QColumn.ByteColumn c = (QColumn.ByteColumn) view;
+                return row -> c.getByte(row) & 0xff;
+            }
+            if (view instanceof QColumn.CharColumn) {
+                final QColumn.CharColumn c = (QColumn.CharColumn) view;
+                return c::getChar;
+            }
+            if (view instanceof QColumn.VectorColumn) {
+                final TemporalVector vector = (TemporalVector) ((QColumn.VectorColumn) view).getVector();
+                if (vector instanceof TemporalVector.Longs) {
+                    final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+                    return v::getLong;
+                }
+                final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+                return row -> {
+                    final int i = v.getInt(row);
+                    return i == Integer.MIN_VALUE ? Long.MIN_VALUE : i;
+                };
+            }
+            // temporal objects are converted into raw kdb+ values, results are decoded in UTC
+            return row -> temporal(view.get(row));
+        }
+    }
+
+    /**
+     * Reads values of a symbol or string column as strings, nulls are null.
+     */
+    @FunctionalInterface
+    private interface SymbolReader {
+        String read(int row);
+
+        static SymbolReader of(QColumn view) {
+            if (view instanceof QColumn.SymbolColumn) {
+                final QColumn.SymbolColumn c = (QColumn.SymbolColumn) view;
+                return c::getSymbol;
+            }
+            return row -> {
+                final Object v = view.get(row);
+                if (v instanceof char[]) {
+                    return new String((char[]) v);
+                }
+                return (String) v;
+            };
+        }
+    }
+
+    /**
+     * Converts a temporal object into the raw kdb+ value, nulls are {@link Long#MIN_VALUE}.
+     */
+    static long temporal(Object value) {
+        if (value == null) {
+            return Long.MIN_VALUE;
+        }
+        if (value instanceof Timestamp) {
+            final Timestamp t = (Timestamp) value;
+            if (t.getTime() == Long.MIN_VALUE) {
+                return Long.MIN_VALUE;
+            }
+            return (Math.floorDiv(t.getTime(), 1000L) * 1000L - KDB_EPOCH_MILLIS) * 1_000_000L + t.getNanos();
+        }
+        if (value instanceof java.sql.Date) {
+            final long time = ((java.sql.Date) value).getTime();
+            return time == Long.MIN_VALUE ? Long.MIN_VALUE : Math.floorDiv(time - KDB_EPOCH_MILLIS, 86400000L);
+        }
+        if (value instanceof Time) {
+            final long time = ((Time) value).getTime();
+            return time == Long.MIN_VALUE ? Long.MIN_VALUE : time;
+        }
+        if (value instanceof c.Timespan) {
+            return ((c.Timespan) value).j;
+        }
+        final int i;
+        if (value instanceof c.Month) {
+            i = ((c.Month) value).i;
+        } else if (value instanceof c.Minute) {
+            i = ((c.Minute) value).i;
+        } else if (value instanceof c.Second) {
+            i = ((c.Second) value).i;
+        } else {
+            return Long.MIN_VALUE;
+        }
+        return i == Integer.MIN_VALUE ? Long.MIN_VALUE : i;
+    }
+
+    /**
+     * Converts a datetime object into days since 2000.01.01, nulls are NaN.
+     */
+    static double datetime(Object value) {
+        if (!(value instanceof java.util.Date)) {
+            return Double.NaN;
+        }
+        final long time = ((java.util.Date) value).getTime();
+        return time == Long.MIN_VALUE ? Double.NaN : (time - KDB_EPOCH_MILLIS) / 8.64e7;
+    }
+
+    /**
+     * Converts a raw kdb+ value into the temporal object of the type: the reverse of {@link #temporal(Object)}.
+     */
+    static Object temporalObject(int type, long value) {
+        final boolean isNull = value == Long.MIN_VALUE;
+        switch (type) {
+            case 12: {
+                if (isNull) {
+                    return new Timestamp(Long.MIN_VALUE);
+                }
+                final Timestamp t = new Timestamp(Math.floorDiv(value, 1_000_000_000L) * 1000L + KDB_EPOCH_MILLIS);
+                t.setNanos((int) Math.floorMod(value, 1_000_000_000L));
+                return t;
+            }
+            case 13:
+                return new c.Month(isNull ? Integer.MIN_VALUE : (int) value);
+            case 14:
+                return new java.sql.Date(isNull ? Long.MIN_VALUE : value * 86400000L + KDB_EPOCH_MILLIS);
+            case 16:
+                return new c.Timespan(value);
+            case 17:
+                return new c.Minute(isNull ? Integer.MIN_VALUE : (int) value);
+            case 18:
+                return new c.Second(isNull ? Integer.MIN_VALUE : (int) value);
+            case 19:
+                return new Time(value);
+        }
+        throw new IllegalArgumentException("Not a temporal type: " + type);
+    }
+
+    /**
+     * Converts days since 2000.01.01 into the datetime object: the reverse of {@link #datetime(Object)}.
+     */
+    static java.util.Date datetimeObject(double value) {
+        return new java.util.Date(Double.isNaN(value) ? Long.MIN_VALUE : KDB_EPOCH_MILLIS + Math.round(value * 8.64e7));
+    }
+
+    static boolean parseBoolean(String value) {
+        switch (value) {
+            case "1b":
+            case "1":
+            case "true":
+                return true;
+            case "0b":
+            case "0":
+            case "false":
+                return false;
+        }
+        throw new IllegalArgumentException("Not a boolean: " + value);
+    }
+
+    /**
+     * Parses a double, or a datetime for datetime columns, with an optional type suffix.
+     */
+    static double parseDouble(QColumn view, String text) {
+        if (temporalType(view) == 15) {
+            final int t = Math.max(text.indexOf('T'), text.indexOf(' '));
+            final long days = parseDate(t < 0 ? text : text.substring(0, t));
+            return days + (t < 0 ? 0 : parseNanos(text.substring(t + 1)) / (double) NANOS_IN_DAY);
+        }
+        try {
+            return Double.parseDouble(stripSuffix(text, "efz"));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Not a number: " + text);
+        }
+    }
+
+    /**
+     * Parses a number or a temporal literal into the raw kdb+ value of the column. A fractional number is rounded up
+     * for a lower bound and down for an upper one.
+     */
+    static long parseLong(QColumn view, String text, boolean lower) {
+        final int type = temporalType(view);
+        switch (type) {
+            case 12: {
+                final int d = Math.max(text.indexOf('D'), Math.max(text.indexOf('T'), text.indexOf(' ')));
+                final long days = parseDate(d < 0 ? text : text.substring(0, d));
+                return days * NANOS_IN_DAY + (d < 0 ? 0 : parseNanos(text.substring(d + 1)));
+            }
+            case 13: {
+                final String s = stripSuffix(text, "m");
+                final LocalDate date = parseLocalDate(s + ".01", text);
+                return (date.getYear() - 2000) * 12L + date.getMonthValue() - 1;
+            }
+            case 14:
+                return parseDate(text);
+            case 16:
+                return parseTimespan(text);
+            case 17:
+                return parseNanos(text) / 60_000_000_000L;
+            case 18:
+                return parseNanos(text) / 1_000_000_000L;
+            case 19:
+                return parseNanos(text) / 1_000_000L;
+        }
+
+        if (view instanceof QColumn.CharColumn) {
+            final String s = text.startsWith("\"") && text.endsWith("\"") && text.length() == 3 ? text.substring(1, 2) : text;
+            if (s.length() != 1) {
+                throw new IllegalArgumentException("Not a char: " + text);
+            }
+            return s.charAt(0);
+        }
+
+        if (view instanceof QColumn.ByteColumn && text.startsWith("0x")) {
+            try {
+                return Integer.parseInt(text.substring(2), 16);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Not a byte: " + text);
+            }
+        }
+
+        final String number = stripSuffix(text, "hij");
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            final double v = parseDouble(view, number);
+            return (long) (lower ? Math.ceil(v) : Math.floor(v));
+        }
+    }
+
+    /**
+     * Parses a timespan, [-][dD]HH:mm[:ss[.nnnnnnnnn]], into nanoseconds.
+     */
+    static long parseTimespan(String text) {
+        final boolean negative = text.startsWith("-");
+        final String span = negative ? text.substring(1) : text;
+        final int d = span.indexOf('D');
+        final long nanos = (d < 0 ? 0 : parseInt(span.substring(0, d), text)) * NANOS_IN_DAY + parseNanos(span.substring(d + 1));
+        return negative ? -nanos : nanos;
+    }
+
+    private static long parseDate(String text) {
+        return parseLocalDate(stripSuffix(text, "d"), text).toEpochDay() - KDB_EPOCH_DAYS;
+    }
+
+    private static LocalDate parseLocalDate(String date, String text) {
+        try {
+            return LocalDate.parse(date, DATE_FORMAT);
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Not a date: " + text);
+        }
+    }
+
+    /**
+     * Parses HH:mm[:ss[.nnnnnnnnn]] into nanoseconds.
+     */
+    private static long parseNanos(String text) {
+        final String[] parts = text.split(":");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Not a time: " + text);
+        }
+
+        long nanos = parseInt(parts[0], text) * 3600_000_000_000L + parseInt(parts[1], text) * 60_000_000_000L;
+        if (parts.length == 3) {
+            final String sec = parts[2];
+            final int dot = sec.indexOf('.');
+            nanos += parseInt(dot < 0 ? sec : sec.substring(0, dot), text) * 1_000_000_000L;
+            if (dot >= 0) {
+                final String fraction = sec.substring(dot + 1);
+                if (fraction.length() > 9) {
+                    throw new IllegalArgumentException("Not a time: " + text);
+                }
+                nanos += fraction.isEmpty() ? 0 : parseInt(fraction, text) * (long) Math.pow(10, 9 - fraction.length());
+            }
+        }
+        return nanos;
+    }
+
+    private static long parseInt(String value, String text) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Wrong value: " + text);
+        }
+    }
+
+    private static String stripSuffix(String text, String suffixes) {
+        if (text.length() > 1 && suffixes.indexOf(text.charAt(text.length() - 1)) >= 0) {
+            return text.substring(0, text.length() - 1);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,474 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import kx.KxVector;
+import kx.SymbolVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Profiles of columns: count of nulls, min and max, an estimate of distinct values, quantiles and a histogram.
+ * <p>
+ * Each column is read only once by its typed view, see {@link QColumn}: rows are split into chunks profiled in
+ * parallel and profiles of the chunks are merged. Memory of a profile doesn't depend on the number of rows:
+ * distinct values are estimated by {@link HyperLogLog}, quantiles and the histogram are taken from
+ * a {@link KllSketch}. Values of enumerated symbols are counted exactly, so the most frequent ones are known.
+ */
+class ColumnProfiler {
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * Min number of rows in a chunk profiled by one thread.
+     */
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final Logger log = Logger.getInstance(ColumnProfiler.class);
+
+    /**
+     * Profiles the columns in background and passes the profile of each column, with its index, to the listener
+     * on the EDT as soon as the column is profiled. Profiling of previous columns is cancelled.
+     *
+     * @param rows     model rows of the profiled cells
+     * @param columns  views of the profiled columns
+     * @param listener the listener of the profiles
+     */
+    void profile(int[] rows, QColumn[] columns, ObjIntConsumer<Profile> listener) {
+        final int v = version.incrementAndGet();
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < columns.length && v == version.get(); i++) {
+                final Profile profile = profile(rows, columns[i]);
+                final int index = i;
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (v == version.get()) {
+                        listener.accept(profile, index);
+                    }
+                }, ModalityState.any());
+            }
+        }, ForkJoinPool.commonPool()).whenComplete((r, ex) -> {
+            if (ex != null) {
+                log.error("Columns can't be profiled", ex);
+            }
+        });
+    }
+
+    /**
+     * Cancels the current profiling, its profiles are not published anymore.
+     */
+    void cancel() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Profiles the rows of one column in the calling thread and the common pool.
+     */
+    static Profile profile(int[] rows, QColumn column) {
+        final ChunkProfiler profiler = ChunkProfiler.of(column);
+
+        final int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows.length / CHUNK_SIZE));
+        if (chunks == 1) {
+            return profiler.profile(rows, 0, rows.length);
+        }
+
+        final Profile[] profiles = new Profile[chunks];
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            final int from = (int) ((long) rows.length * c / chunks);
+            final int to = (int) ((long) rows.length * (c + 1) / chunks);
+            tasks.add(ForkJoinTask.adapt(() -> profiles[chunk] = profiler.profile(rows, from, to)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        for (int i = 1; i < chunks; i++) {
+            profiles[0].merge(profiles[i]);
+        }
+        return profiles[0];
+    }
+
+    /**
+     * Profiles a chunk of rows by the fastest way for the column type.
+     */
+    @FunctionalInterface
+    private interface ChunkProfiler {
+        Profile profile(int[] rows, int from, int to);
+
+        static ChunkProfiler of(QColumn column) {
+            final LongValues longs = LongValues.of(column);
+            if (longs != null) {
+                return (rows, from, to) -> {
+                    final Profile p = new Profile(column, Profile.Domain.LONG);
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    for (int i = from; i < to; i++) {
+                        final long v = longs.get(rows[i]);
+                        if (v == Long.MIN_VALUE) {
+                            p.nulls++;
+                            continue;
+                        }
+                        if (v < min) {
+                            min = v;
+                        }
+                        if (v > max) {
+                            max = v;
+                        }
+                        p.distinct.add(HyperLogLog.hash(v));
+                        p.sketch.add(v);
+                    }
+                    p.count = to - from;
+                    p.minLong = min;
+                    p.maxLong = max;
+                    return p;
+                };
+            }
+
+            final DoubleValues doubles = DoubleValues.of(column);
+            if (doubles != null) {
+                return (rows, from, to) -> {
+                    final Profile p = new Profile(column, Profile.Domain.DOUBLE);
+                    double min = Double.POSITIVE_INFINITY;
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (int i = from; i < to; i++) {
+                        final double v = doubles.get(rows[i]);
+                        if (Double.isNaN(v)) {
+                            p.nulls++;
+                            continue;
+                        }
+                        if (v < min) {
+                            min = v;
+                        }
+                        if (v > max) {
+                            max = v;
+                        }
+                        p.distinct.add(HyperLogLog.hash(Double.doubleToLongBits(v)));
+                        p.sketch.add(v);
+                    }
+                    p.count = to - from;
+                    p.minDouble = min;
+                    p.maxDouble = max;
+                    return p;
+                };
+            }
+
+            if (column instanceof QColumn.VectorColumn) {
+                final KxVector vector = ((QColumn.VectorColumn) column).getVector();
+                if (vector instanceof SymbolVector) {
+                    // each symbol is counted by its code, so min, max and distinct symbols are exact
+                    final SymbolVector symbols = (SymbolVector) vector;
+                    return (rows, from, to) -> {
+                        final Profile p = new Profile(column, Profile.Domain.SYMBOL);
+                        p.symbolCounts = new long[symbols.getSymbols().length];
+                        for (int i = from; i < to; i++) {
+                            p.symbolCounts[symbols.getCode(rows[i])]++;
+                        }
+                        p.count = to - from;
+                        return p;
+                    };
+                }
+            }
+
+            if (column instanceof QColumn.SymbolColumn) {
+                final QColumn.SymbolColumn c = (QColumn.SymbolColumn) column;
+                return (rows, from, to) -> {
+                    final Profile p = new Profile(column, Profile.Domain.STRING);
+                    for (int i = from; i < to; i++) {
+                        final String s = c.getSymbol(rows[i]);
+                        if (s == null || s.isEmpty()) {
+                            p.nulls++;
+                            continue;
+                        }
+                        if (p.minString == null || s.compareTo(p.minString) < 0) {
+                            p.minString = s;
+                        }
+                        if (p.maxString == null || s.compareTo(p.maxString) > 0) {
+                            p.maxString = s;
+                        }
+                        p.distinct.add(HyperLogLog.hash(s.hashCode()));
+                    }
+                    p.count = to - from;
+                    return p;
+                };
+            }
+
+            return (rows, from, to) -> {
+                final Profile p = new Profile(column, Profile.Domain.OBJECT);
+                for (int i = from; i < to; i++) {
+                    final int row = rows[i];
+                    if (column.isNull(row)) {
+                        p.nulls++;
+                        continue;
+                    }
+                    final Object value = column.get(row);
+                    p.distinct.add(HyperLogLog.hash(value instanceof char[] ? Arrays.hashCode((char[]) value) : value == null ? 0 : value.hashCode()));
+                }
+                p.count = to - from;
+                return p;
+            };
+        }
+    }
+
+    /**
+     * Profile of a column. Nulls are counted but not included into other statistics.
+     */
+    static final class Profile {
+        private final QColumn column;
+        private final Domain domain;
+
+        private long count;
+        private long nulls;
+        private final HyperLogLog distinct;
+        private final KllSketch sketch;
+
+        private long minLong = Long.MAX_VALUE;
+        private long maxLong = Long.MIN_VALUE;
+        private double minDouble = Double.POSITIVE_INFINITY;
+        private double maxDouble = Double.NEGATIVE_INFINITY;
+        private String minString;
+        private String maxString;
+        private long[] symbolCounts;
+
+        /**
+         * How values of a column are profiled.
+         */
+        private enum Domain {
+            LONG,
+            DOUBLE,
+            SYMBOL,
+            STRING,
+            OBJECT
+        }
+
+        private Profile(QColumn column, Domain domain) {
+            this.column = column;
+            this.domain = domain;
+            distinct = domain == Domain.SYMBOL ? null : new HyperLogLog();
+            sketch = domain == Domain.LONG || domain == Domain.DOUBLE ? new KllSketch() : null;
+        }
+
+        private void merge(Profile p) {
+            count += p.count;
+            nulls += p.nulls;
+            if (distinct != null) {
+                distinct.merge(p.distinct);
+            }
+            if (sketch != null) {
+                sketch.merge(p.sketch);
+            }
+            minLong = Math.min(minLong, p.minLong);
+            maxLong = Math.max(maxLong, p.maxLong);
+            minDouble = Math.min(minDouble, p.minDouble);
+            maxDouble = Math.max(maxDouble, p.maxDouble);
+            if (p.minString != null && (minString == null || p.minString.compareTo(minString) < 0)) {
+                minString = p.minString;
+            }
+            if (p.maxString != null && (maxString == null || p.maxString.compareTo(maxString) > 0)) {
+                maxString = p.maxString;
+            }
+            if (symbolCounts != null) {
+                for (int i = 0; i < symbolCounts.length; i++) {
+                    symbolCounts[i] += p.symbolCounts[i];
+                }
+            }
+        }
+
+        /**
+         * Returns the view of the profiled column.
+         */
+        QColumn getColumn() {
+            return column;
+        }
+
+        /**
+         * Returns the number of profiled rows, including nulls.
+         */
+        long getCount() {
+            return count;
+        }
+
+        long getNulls() {
+            if (domain == Domain.SYMBOL) {
+                final int nullCode = nullSymbol();
+                return nullCode < 0 ? 0 : symbolCounts[nullCode];
+            }
+            return nulls;
+        }
+
+        /**
+         * Returns the number of distinct not null values: exact for enumerated symbols and an estimate for others.
+         */
+        long getDistinct() {
+            if (domain == Domain.SYMBOL) {
+                final int nullCode = nullSymbol();
+                long res = 0;
+                for (int i = 0; i < symbolCounts.length; i++) {
+                    if (i != nullCode && symbolCounts[i] != 0) {
+                        res++;
+                    }
+                }
+                return res;
+            }
+            return distinct.estimate();
+        }
+
+        /**
+         * Returns true if the column is numeric or temporal, so it has quantiles and a histogram.
+         */
+        boolean hasQuantiles() {
+            return sketch != null && !sketch.isEmpty();
+        }
+
+        /**
+         * Returns the min not null value as a vector of one item of the column type or null, if there is no such value.
+         */
+        Object getMin() {
+            switch (domain) {
+                case LONG:
+                    return minLong > maxLong ? null : GroupBy.fromLongs(column, new long[]{minLong});
+                case DOUBLE:
+                    return minDouble > maxDouble ? null : GroupBy.fromDoubles(column, new double[]{minDouble});
+                case SYMBOL:
+                    return extremeSymbol(-1);
+                case STRING:
+                    return minString == null ? null : new String[]{minString};
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Returns the max not null value as a vector of one item of the column type or null, if there is no such value.
+         */
+        Object getMax() {
+            switch (domain) {
+                case LONG:
+                    return minLong > maxLong ? null : GroupBy.fromLongs(column, new long[]{maxLong});
+                case DOUBLE:
+                    return minDouble > maxDouble ? null : GroupBy.fromDoubles(column, new double[]{maxDouble});
+                case SYMBOL:
+                    return extremeSymbol(1);
+                case STRING:
+                    return maxString == null ? null : new String[]{maxString};
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Returns an approximate quantile as a vector of one item of the column type or null, if the column has no quantiles.
+         *
+         * @param rank the rank of the quantile, from 0 to 1
+         */
+        Object getQuantile(double rank) {
+            if (!hasQuantiles()) {
+                return null;
+            }
+            final double q = sketch.quantile(rank);
+            if (domain == Domain.LONG) {
+                return GroupBy.fromLongs(column, new long[]{Math.max(minLong, Math.min(maxLong, Math.round(q)))});
+            }
+            return GroupBy.fromDoubles(column, new double[]{q});
+        }
+
+        /**
+         * Returns approximate numbers of not null values in bins of the same width from min to max, or an empty array
+         * if the column has no quantiles. Integral values are binned by integral bounds.
+         */
+        long[] getHistogram(int bins) {
+            if (!hasQuantiles()) {
+                return new long[0];
+            }
+
+            final double min = domain == Domain.LONG ? minLong : minDouble;
+            final double max = domain == Domain.LONG ? maxLong : maxDouble;
+            if (Double.isInfinite(min) || Double.isInfinite(max)) {
+                return new long[0];
+            }
+
+            // an integral bin covers the same number of integers
+            final boolean integral = domain == Domain.LONG;
+            final double width = integral ? max - min + 1 : max - min;
+            final int n = integral ? (int) Math.max(1, Math.min(bins, width)) : bins;
+            final long total = count - nulls;
+            final long[] res = new long[n];
+            long added = 0;
+            for (int i = 0; i < n; i++) {
+                final double upper = min + width * (i + 1) / n;
+                final double cdf = i == n - 1 ? 1 : sketch.cdf(integral ? Math.ceil(upper) - 1 : upper);
+                res[i] = Math.round(total * cdf) - added;
+                added += res[i];
+            }
+            return res;
+        }
+
+        /**
+         * Returns the most frequent not null values in the descending order of counts, for enumerated symbols only.
+         */
+        List<Top> getTop(int limit) {
+            if (domain != Domain.SYMBOL) {
+                return List.of();
+            }
+
+            final String[] symbols = ((SymbolVector) ((QColumn.VectorColumn) column).getVector()).getSymbols();
+            final int nullCode = nullSymbol();
+            final List<Top> res = new ArrayList<>();
+            for (int i = 0; i < symbolCounts.length; i++) {
+                if (i != nullCode && symbolCounts[i] != 0) {
+                    res.add(new Top(symbols[i], symbolCounts[i]));
+                }
+            }
+            res.sort((a, b) -> Long.compare(b.count, a.count));
+            return res.size() > limit ? res.subList(0, limit) : res;
+        }
+
+        private int nullSymbol() {
+            final String[] symbols = ((SymbolVector) ((QColumn.VectorColumn) column).getVector()).getSymbols();
+            for (int i = 0; i < symbols.length; i++) {
+                if (symbols[i].isEmpty()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String[] extremeSymbol(int sign) {
+            final String[] symbols = ((SymbolVector) ((QColumn.VectorColumn) column).getVector()).getSymbols();
+            String res = null;
+            for (int i = 0; i < symbols.length; i++) {
+                final String s = symbols[i];
+                if (symbolCounts[i] != 0 && !s.isEmpty() && (res == null || Integer.signum(s.compareTo(res)) == sign)) {
+                    res = s;
+                }
+            }
+            return res == null ? null : new String[]{res};
+        }
+    }
+
+    /**
+     * A frequent value and its count.
+     */
+    static final class Top {
+        private final String value;
+        private final long count;
+
+        private Top(String value, long count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
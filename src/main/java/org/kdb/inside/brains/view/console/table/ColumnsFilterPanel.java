@@ -1,15 +1,20 @@
 package org.kdb.inside.brains.view.console.table;
 
+import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionToolbar;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.ui.ComboBox;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.CheckBoxList;
+import com.intellij.ui.CollectionListModel;
 import com.intellij.ui.ListSpeedSearch;
 import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.panels.NonOpaquePanel;
 import icons.KdbIcons;
 import org.jetbrains.annotations.NotNull;
@@ -22,15 +27,21 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 class ColumnsFilterPanel extends NonOpaquePanel {
     private final MyTableColumnModel columnModel;
     private final CheckBoxList<TableColumn> columnsFilterList;
 
-    public ColumnsFilterPanel(JTable table) {
+    private final Consumer<ColumnFilter> rowsFilterListener;
+    private final CollectionListModel<ColumnFilter.Condition> conditionsModel = new CollectionListModel<>();
+    private final ComboBox<ColumnFilter.Operator> operatorBox = new ComboBox<>(ColumnFilter.Operator.values());
+
+    public ColumnsFilterPanel(JTable table, Consumer<ColumnFilter> rowsFilterListener) {
         super(new BorderLayout());
         this.columnModel = (MyTableColumnModel) table.getColumnModel();
+        this.rowsFilterListener = rowsFilterListener;
 
         columnsFilterList = new CheckBoxList<>() {
             @Override
@@ -88,6 +99,7 @@ class ColumnsFilterPanel extends NonOpaquePanel {
         filterToolbar.setTargetComponent(columnsFilterList);
         add(filterToolbar.getComponent(), BorderLayout.NORTH);
         add(ScrollPaneFactory.createScrollPane(columnsFilterList, true), BorderLayout.CENTER);
+        add(createConditionsPanel(table), BorderLayout.SOUTH);
 
         invalidateFilter();
 
@@ -98,6 +110,63 @@ class ColumnsFilterPanel extends NonOpaquePanel {
         setMinimumSize(s);
     }
 
+    private JComponent createConditionsPanel(JTable table) {
+        final JBList<ColumnFilter.Condition> conditionsList = new JBList<>(conditionsModel);
+        conditionsList.getEmptyText().setText("No rows conditions");
+
+        final DefaultActionGroup group = new DefaultActionGroup();
+        group.add(new DumbAwareAction("Add Condition", "Show only rows that match a condition on a column", AllIcons.General.Add) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                final ColumnConditionDialog dialog = new ColumnConditionDialog(table, columnModel.getColumns(true), getSelectedColumn());
+                if (dialog.showAndGet()) {
+                    conditionsModel.add(dialog.getCondition());
+                    updateRowsFilter();
+                }
+            }
+        });
+        group.add(new DumbAwareAction("Remove Condition", "Remove selected conditions", AllIcons.General.Remove) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                conditionsList.getSelectedValuesList().forEach(conditionsModel::remove);
+                updateRowsFilter();
+            }
+
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                e.getPresentation().setEnabled(!conditionsList.isSelectionEmpty());
+            }
+        });
+
+        operatorBox.setRenderer(SimpleListCellRenderer.create("", ColumnFilter.Operator::getLabel));
+        operatorBox.addActionListener(e -> updateRowsFilter());
+
+        final ActionToolbar toolbar = ActionManager.getInstance().createActionToolbar("TableResultView.RowsFilterToolbar", group, true);
+        toolbar.setTargetComponent(conditionsList);
+
+        final JPanel header = new JPanel(new BorderLayout());
+        header.add(toolbar.getComponent(), BorderLayout.WEST);
+        header.add(operatorBox, BorderLayout.EAST);
+
+        final JScrollPane scrollPane = ScrollPaneFactory.createScrollPane(conditionsList, true);
+        scrollPane.setPreferredSize(new Dimension(0, 120));
+
+        final JPanel panel = new JPanel(new BorderLayout());
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+
+    private TableColumn getSelectedColumn() {
+        final int index = columnsFilterList.getSelectedIndex();
+        return index < 0 ? null : columnsFilterList.getItemAt(index);
+    }
+
+    private void updateRowsFilter() {
+        final List<ColumnFilter.Condition> items = conditionsModel.getItems();
+        rowsFilterListener.accept(items.isEmpty() ? null : new ColumnFilter(operatorBox.getItem(), items));
+    }
+
     @NotNull
     private static Set<Object> getColumnNames(List<TableColumn> oldCols) {
         return oldCols.stream().map(TableColumn::getHeaderValue).collect(Collectors.toSet());
@@ -108,6 +177,8 @@ class ColumnsFilterPanel extends NonOpaquePanel {
     }
 
     public void invalidateFilter() {
+        // a new result has new columns and new rows without any filter
+        conditionsModel.removeAll();
         columnsFilterList.clear();
         final Enumeration<TableColumn> columns = columnModel.getColumns();
         while (columns.hasMoreElements()) {
@@ -132,5 +203,9 @@ class ColumnsFilterPanel extends NonOpaquePanel {
 
     public void destroy() {
         columnModel.reset();
+        if (!conditionsModel.isEmpty()) {
+            conditionsModel.removeAll();
+            updateRowsFilter();
+        }
     }
 }
@@ -0,0 +1,194 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.panels.NonOpaquePanel;
+import com.intellij.ui.table.JBTable;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Side panel with profiles of visible columns of a table: nulls, distinct values, min, quartiles, max and
+ * a histogram. Only rows in the view are profiled and the profiles are updated when the rows are changed.
+ */
+class ColumnsProfilePanel extends NonOpaquePanel {
+    private final JTable table;
+    private final KdbOutputFormatter formatter;
+    private final ColumnProfiler profiler = new ColumnProfiler();
+    private final ProfilesModel profilesModel = new ProfilesModel();
+
+    private TableModel profiledModel;
+    private int profiledRows = -1;
+
+    private static final int HISTOGRAM_BINS = 16;
+    private static final int TOP_VALUES = 16;
+
+    private static final double[] RANKS = {0.25, 0.5, 0.75, 0.99};
+    private static final String[] NAMES = {"Column", "Nulls", "Distinct", "Min", "25%", "Median", "75%", "99%", "Max", "Histogram"};
+    private static final char[] BARS = {'\u2581', '\u2582', '\u2583', '\u2584', '\u2585', '\u2586', '\u2587', '\u2588'};
+
+    ColumnsProfilePanel(JTable table, KdbOutputFormatter formatter) {
+        super(new BorderLayout());
+        this.table = table;
+        this.formatter = formatter;
+
+        final JBTable profilesTable = new JBTable(profilesModel);
+        profilesTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        profilesTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+                final Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                setHorizontalAlignment(column == 0 || column == NAMES.length - 1 ? LEFT : RIGHT);
+                setToolTipText(column == NAMES.length - 1 ? profilesModel.getHistogramTooltip(row) : null);
+                return c;
+            }
+        });
+
+        add(ScrollPaneFactory.createScrollPane(profilesTable, true), BorderLayout.CENTER);
+
+        final Dimension s = getMinimumSize();
+        s.width = s.width + 400;
+        setMinimumSize(s);
+
+        invalidateProfile();
+    }
+
+    /**
+     * Profiles visible columns again, the current profiling is cancelled.
+     */
+    void invalidateProfile() {
+        final List<String> names = new ArrayList<>();
+        final List<QColumn> columns = new ArrayList<>();
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            // columns that are not in memory can't be profiled
+            final QColumn view = QColumn.of(table, i);
+            if (view != null) {
+                names.add(table.getColumnName(i));
+                columns.add(view);
+            }
+        }
+
+        profiledModel = table.getModel();
+        profiledRows = table.getRowCount();
+
+        final int[] rows = new int[profiledRows];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = table.convertRowIndexToModel(i);
+        }
+
+        profilesModel.reset(names);
+        profiler.profile(rows, columns.toArray(QColumn[]::new), profilesModel::setProfile);
+    }
+
+    /**
+     * Profiles columns again if rows in the view are changed: only sorted rows have the same profiles.
+     */
+    void rowsChanged() {
+        if (table.getModel() != profiledModel || table.getRowCount() != profiledRows) {
+            invalidateProfile();
+        }
+    }
+
+    void destroy() {
+        profiler.cancel();
+    }
+
+    private String format(Object vector) {
+        return vector == null ? "" : QColumn.of(vector).format(formatter, 0);
+    }
+
+    private static String sparkline(long[] counts) {
+        long max = 0;
+        for (long count : counts) {
+            max = Math.max(max, count);
+        }
+
+        final StringBuilder b = new StringBuilder(counts.length);
+        for (long count : counts) {
+            // an empty bin is a space and others have a bar at least, so rare values are still visible
+            b.append(count == 0 ? ' ' : BARS[(int) Math.min(BARS.length - 1, (count * BARS.length - 1) / max)]);
+        }
+        return b.toString();
+    }
+
+    /**
+     * Formats cells of a profile once, as the profile is published.
+     */
+    private Object[] formatProfile(String name, ColumnProfiler.Profile p) {
+        final Object[] res = new Object[NAMES.length + 1];
+        res[0] = name;
+        res[1] = p.getNulls();
+        res[2] = p.getDistinct();
+        res[3] = format(p.getMin());
+        for (int i = 0; i < RANKS.length; i++) {
+            res[4 + i] = format(p.getQuantile(RANKS[i]));
+        }
+        res[8] = format(p.getMax());
+
+        // the last item is the tooltip of the histogram
+        if (p.hasQuantiles()) {
+            res[9] = sparkline(p.getHistogram(HISTOGRAM_BINS));
+            res[10] = "<html>Values from " + StringUtil.escapeXmlEntities(String.valueOf(res[3])) + " to " + StringUtil.escapeXmlEntities(String.valueOf(res[8])) + "</html>";
+        } else {
+            final List<ColumnProfiler.Top> top = p.getTop(TOP_VALUES);
+            res[9] = sparkline(top.stream().mapToLong(ColumnProfiler.Top::getCount).toArray());
+            res[10] = top.isEmpty() ? null : top.stream()
+                    .map(t -> StringUtil.escapeXmlEntities(formatter.formatSymbol(t.getValue())) + ": " + t.getCount())
+                    .collect(Collectors.joining("<br>", "<html>Most frequent values:<br>", "</html>"));
+        }
+        return res;
+    }
+
+    private class ProfilesModel extends AbstractTableModel {
+        private List<String> names = List.of();
+        private Object[][] rows = new Object[0][];
+
+        void reset(List<String> names) {
+            this.names = names;
+            rows = new Object[names.size()][];
+            fireTableDataChanged();
+        }
+
+        void setProfile(ColumnProfiler.Profile profile, int index) {
+            rows[index] = formatProfile(names.get(index), profile);
+            fireTableRowsUpdated(index, index);
+        }
+
+        @Override
+        public int getRowCount() {
+            return names.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            final Object[] values = rows[row];
+            if (values != null) {
+                return values[column];
+            }
+            return column == 0 ? names.get(row) : column == 1 ? "profiling..." : "";
+        }
+
+        String getHistogramTooltip(int row) {
+            final Object[] values = rows[row];
+            return values == null ? null : (String) values[NAMES.length];
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxVector;
+import kx.TemporalVector;
+
+/**
+ * Reads values of a column as doubles, nulls are NaN.
+ * <p>
+ * Floats and datetimes are read, datetimes as days since 2000.01.01.
+ */
+@FunctionalInterface
+interface DoubleValues {
+    double get(int row);
+
+    /**
+     * Returns the reader of the column or null, if values of the column are not floats or datetimes.
+     */
+    static DoubleValues of(QColumn view) {
+        if (view instanceof QColumn.FloatColumn || view instanceof QColumn.DoubleColumn) {
+            return ((QColumn.NumericColumn) view)::getDouble;
+        }
+        if (view instanceof QColumn.VectorColumn) {
+            final KxVector vector = ((QColumn.VectorColumn) view).getVector();
+            if (vector instanceof TemporalVector.Doubles) {
+                return ((TemporalVector.Doubles) vector)::getDouble;
+            }
+            return null;
+        }
+        if (ColumnFilter.temporalType(view) == 15) {
+            return row -> ColumnFilter.datetime(view.get(row));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,1434 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Local group-by of table rows, like {@code select sum size, avg price by sym, 0D00:05 xbar time from t}: rows are
+ * grouped by key columns, a key can be bucketed as {@code xbar} does, and values are aggregated in each group. The
+ * result can be pivoted: distinct values of the pivot column become columns of the result.
+ * <p>
+ * Keys are hashed as primitive longs: raw values of numbers and temporals, codes of packed symbols or dictionary
+ * codes of other values, and a composite key is combined from dense codes of its columns. Rows are grouped and
+ * aggregated by chunks in parallel, each chunk into its own typed accumulators, which are merged at the end.
+ */
+class GroupBy {
+    private final List<Key> keys;
+    private final List<Aggregation> aggregations;
+    private final Key pivot;
+
+    /**
+     * Max number of distinct values of the pivot column.
+     */
+    static final int MAX_PIVOT_COLUMNS = 1024;
+
+    /**
+     * Min number of rows in a chunk processed by one thread.
+     */
+    private static final int CHUNK_SIZE = 128 * 1024;
+
+    /**
+     * Max number of accumulated cells in all chunks of one aggregation, so there are less chunks if there are
+     * many groups.
+     */
+    private static final long MAX_CHUNK_CELLS = 32L * 1024 * 1024;
+
+    /**
+     * Codes of a range less than the number of rows, and not less than the min range, are mapped into group ids
+     * through an array instead of hashing.
+     */
+    private static final int MIN_DIRECT_RANGE = 64 * 1024;
+    private static final int MAX_DIRECT_RANGE = 16 * 1024 * 1024;
+
+    private static final Pattern XBAR = Pattern.compile("(.+?)\\s+xbar\\s+(\\S+)");
+
+    GroupBy(List<Key> keys, List<Aggregation> aggregations, Key pivot) {
+        this.keys = List.copyOf(keys);
+        this.aggregations = List.copyOf(aggregations);
+        this.pivot = pivot;
+    }
+
+    /**
+     * Parses a group-by in q-like syntax.
+     *
+     * @param by        comma separated key columns, a key can be bucketed: {@code sym, 0D00:05 xbar time}
+     * @param aggregate comma separated aggregations: {@code sum size, avg price, count i}
+     * @param pivot     the pivot column or an empty string
+     * @param columns   names of the model columns
+     * @throws IllegalArgumentException if the text can't be parsed or there is no such column
+     */
+    static GroupBy parse(String by, String aggregate, String pivot, List<String> columns) {
+        final List<Key> keys = new ArrayList<>();
+        for (String item : split(by)) {
+            final Matcher m = XBAR.matcher(item);
+            if (m.matches()) {
+                keys.add(new Key(column(columns, m.group(2)), m.group(2), m.group(1).trim()));
+            } else {
+                keys.add(new Key(column(columns, item), item, ""));
+            }
+        }
+
+        final List<Aggregation> aggregations = new ArrayList<>();
+        for (String item : split(aggregate)) {
+            final String[] parts = item.split("\\s+");
+            if (parts.length > 2) {
+                throw new IllegalArgumentException("Wrong aggregation: " + item);
+            }
+
+            final Function function = Function.of(parts[0]);
+            if (parts.length == 1) {
+                if (function != Function.COUNT) {
+                    throw new IllegalArgumentException("Column of " + function.getLabel() + " must be specified");
+                }
+                aggregations.add(new Aggregation(function, -1, "i"));
+            } else if (function == Function.COUNT && parts[1].equals("i")) {
+                aggregations.add(new Aggregation(function, -1, "i"));
+            } else {
+                aggregations.add(new Aggregation(function, column(columns, parts[1]), parts[1]));
+            }
+        }
+        if (aggregations.isEmpty()) {
+            throw new IllegalArgumentException("At least one aggregation must be specified");
+        }
+
+        Key p = null;
+        if (!pivot.isBlank()) {
+            final String name = pivot.trim();
+            p = new Key(column(columns, name), name, "");
+            for (Key key : keys) {
+                if (key.column == p.column) {
+                    throw new IllegalArgumentException("Pivot column can't be a key: " + name);
+                }
+            }
+            if (aggregations.size() != 1) {
+                throw new IllegalArgumentException("Only one aggregation can be pivoted");
+            }
+        }
+        return new GroupBy(keys, aggregations, p);
+    }
+
+    private static List<String> split(String text) {
+        return Arrays.stream(text.split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+    }
+
+    private static int column(List<String> columns, String name) {
+        final int i = columns.indexOf(name);
+        if (i < 0) {
+            throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        return i;
+    }
+
+    public List<Key> getKeys() {
+        return keys;
+    }
+
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    public Key getPivot() {
+        return pivot;
+    }
+
+    /**
+     * Checks that keys and aggregations can be applied to the columns, without reading any row.
+     *
+     * @throws IllegalArgumentException if a key or an aggregation can't be applied to its column
+     */
+    void check(IntFunction<QColumn> views) {
+        for (Key key : keys) {
+            KeyColumn.of(view(views, key.column, key.name), key);
+        }
+        if (pivot != null) {
+            KeyColumn.of(view(views, pivot.column, pivot.name), pivot);
+        }
+        for (Aggregation aggregation : aggregations) {
+            AccumulatorFactory.of(aggregation.column < 0 ? null : view(views, aggregation.column, aggregation.name), aggregation);
+        }
+    }
+
+    /**
+     * Groups the rows and aggregates each group. The result is a keyed table sorted by keys or a table of one row,
+     * if there are no keys.
+     *
+     * @param views     views of the model columns by the column index
+     * @param rows      model rows to be grouped, in the view order, so first and last are taken in this order
+     * @param formatter the formatter of pivot column names
+     * @throws IllegalArgumentException if a key or an aggregation can't be applied to its column
+     */
+    Object execute(IntFunction<QColumn> views, int[] rows, KdbOutputFormatter formatter) {
+        final KeyColumn[] keyColumns = new KeyColumn[keys.size()];
+        for (int i = 0; i < keyColumns.length; i++) {
+            final Key key = keys.get(i);
+            keyColumns[i] = KeyColumn.of(view(views, key.column, key.name), key);
+        }
+
+        final AccumulatorFactory[] factories = new AccumulatorFactory[aggregations.size()];
+        for (int i = 0; i < factories.length; i++) {
+            final Aggregation aggregation = aggregations.get(i);
+            factories[i] = AccumulatorFactory.of(aggregation.column < 0 ? null : view(views, aggregation.column, aggregation.name), aggregation);
+        }
+
+        final long[][] codes = new long[keyColumns.length][];
+        final Groups groups = group(keyColumns, codes, rows);
+
+        final int[] order = order(groups, keyColumns, codes, rows);
+
+        final String[] keyNames = keys.stream().map(Key::getName).toArray(String[]::new);
+        final Object[] keyValues = new Object[keyColumns.length];
+        final int[] firsts = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            firsts[i] = groups.firsts[order[i]];
+        }
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyValues[i] = keyColumns[i].column(codes[i], firsts, rows);
+        }
+
+        final String[] names;
+        final Object[] values;
+        if (pivot == null) {
+            names = valueNames();
+            values = new Object[factories.length];
+            for (int i = 0; i < factories.length; i++) {
+                values[i] = aggregate(factories[i], rows, groups.ids, groups.count).column(order, rows, null);
+            }
+        } else {
+            final KeyColumn pivotColumn = KeyColumn.of(view(views, pivot.column, pivot.name), pivot);
+            final long[] pivotCodes = pivotColumn.encode(rows);
+            final Groups pivots = densify(pivotCodes);
+            if (pivots.count > MAX_PIVOT_COLUMNS) {
+                throw new IllegalArgumentException("Too many values to be pivoted: " + pivots.count + ", max is " + MAX_PIVOT_COLUMNS);
+            }
+            if ((long) groups.count * pivots.count > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many cells to be pivoted: " + groups.count + " rows by " + pivots.count + " columns");
+            }
+
+            final int[] pivotOrder = order(pivots, new KeyColumn[]{pivotColumn}, new long[][]{pivotCodes}, rows);
+            final int size = pivots.count;
+            final int[] cells = new int[rows.length];
+            forEachChunk(rows.length, chunks(rows.length), (chunk, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    cells[i] = groups.ids[i] * size + pivots.ids[i];
+                }
+            });
+
+            final Accumulator counts = aggregate(AccumulatorFactory.COUNT, rows, cells, groups.count * size);
+            final Accumulator accumulator = aggregate(factories[0], rows, cells, groups.count * size);
+
+            names = new String[size];
+            values = new Object[size];
+            final Set<String> used = new HashSet<>(Arrays.asList(keyNames));
+            for (int p = 0; p < size; p++) {
+                final int[] columnCells = new int[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    columnCells[i] = order[i] * size + pivotOrder[p];
+                }
+                final String name = pivotColumn.view.formatPlain(formatter, rows[pivots.firsts[pivotOrder[p]]]);
+                names[p] = uniqueName(name.isEmpty() ? "null" : name, used);
+                values[p] = accumulator.column(columnCells, rows, ((CountAccumulator) counts).counts);
+            }
+        }
+
+        final c.Flip table = new c.Flip(new c.Dict(names, values));
+        if (keyColumns.length == 0) {
+            return table;
+        }
+        return new c.Dict(new c.Flip(new c.Dict(keyNames, keyValues)), table);
+    }
+
+    /**
+     * Groups the rows by all keys: a composite key is grouped by the combined group of previous keys and the code
+     * of the next one.
+     */
+    private static Groups group(KeyColumn[] keyColumns, long[][] codes, int[] rows) {
+        Groups groups = rows.length == 0 ? new Groups(new int[0], 0, new int[0]) : new Groups(new int[rows.length], 1, new int[1]);
+        for (int i = 0; i < keyColumns.length; i++) {
+            codes[i] = keyColumns[i].encode(rows);
+            final Groups g = densify(codes[i]);
+            groups = i == 0 ? g : densify(combine(groups, g));
+        }
+        return groups;
+    }
+
+    private String[] valueNames() {
+        final Set<String> used = keys.stream().map(Key::getName).collect(Collectors.toCollection(HashSet::new));
+        final Map<String, Long> counts = aggregations.stream().collect(Collectors.groupingBy(a -> a.name, Collectors.counting()));
+
+        final String[] res = new String[aggregations.size()];
+        for (int i = 0; i < res.length; i++) {
+            final Aggregation a = aggregations.get(i);
+            // the column name is used, as q does, if it's not ambiguous
+            final String name = a.column < 0 ? "count" : counts.get(a.name) == 1 ? a.name : a.function.getLabel() + "_" + a.name;
+            res[i] = uniqueName(name, used);
+        }
+        return res;
+    }
+
+    private static String uniqueName(String name, Set<String> used) {
+        String res = name;
+        for (int i = 1; !used.add(res); i++) {
+            res = name + i;
+        }
+        return res;
+    }
+
+    private static QColumn view(IntFunction<QColumn> views, int column, String name) {
+        final QColumn view = views.apply(column);
+        if (view == null) {
+            throw new IllegalArgumentException("Column " + name + " is not loaded into memory");
+        }
+        return view;
+    }
+
+    /**
+     * Returns groups sorted by their keys: raw key values are compared, if they keep the order of values, or
+     * values of the first row of each group.
+     */
+    private static int[] order(Groups groups, KeyColumn[] keyColumns, long[][] codes, int[] rows) {
+        final int[] order = new int[groups.count];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        if (keyColumns.length != 0) {
+            final int[] firsts = groups.firsts;
+            QTableRowSorter.sort(order, (g1, g2) -> {
+                final int p1 = firsts[g1];
+                final int p2 = firsts[g2];
+                for (int k = 0; k < keyColumns.length; k++) {
+                    final int res = keyColumns[k].ordered ? Long.compare(codes[k][p1], codes[k][p2]) : keyColumns[k].view.compare(rows[p1], rows[p2]);
+                    if (res != 0) {
+                        return res;
+                    }
+                }
+                return 0;
+            });
+        }
+        return order;
+    }
+
+    /**
+     * Combines two groupings into one code of each row: the codes are dense, so they can't overflow.
+     */
+    private static long[] combine(Groups a, Groups b) {
+        final long[] res = new long[a.ids.length];
+        forEachChunk(res.length, chunks(res.length), (chunk, from, to) -> {
+            for (int i = from; i < to; i++) {
+                res[i] = (long) a.ids[i] * b.count + b.ids[i];
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Maps codes into dense group ids, ordered by the first row of each group. Codes of a small range, like symbol
+     * codes or bucket numbers, are mapped through an array. Otherwise, each chunk is hashed into its own map in
+     * parallel, then the maps are merged in the chunks order.
+     */
+    static Groups densify(long[] codes) {
+        final int n = codes.length;
+        final int chunks = chunks(n);
+
+        final long[] mins = new long[chunks];
+        final long[] maxs = new long[chunks];
+        forEachChunk(n, chunks, (chunk, from, to) -> {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                final long v = codes[i];
+                if (v != Long.MIN_VALUE) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+            }
+            mins[chunk] = min;
+            maxs[chunk] = max;
+        });
+        final long min = Arrays.stream(mins).min().orElse(0);
+        final long max = Arrays.stream(maxs).max().orElse(0);
+        if (min > max) {
+            // only nulls or no rows at all
+            return densify(codes, 0, 0);
+        }
+        if (max - min >= 0 && max - min < Math.min(MAX_DIRECT_RANGE, Math.max(MIN_DIRECT_RANGE, n))) {
+            return densify(codes, min, (int) (max - min + 1));
+        }
+
+        final int[] ids = new int[n];
+        final LongIdMap[] maps = new LongIdMap[chunks];
+        forEachChunk(n, chunks, (chunk, from, to) -> {
+            final LongIdMap map = new LongIdMap();
+            for (int i = from; i < to; i++) {
+                ids[i] = map.id(codes[i], i);
+            }
+            maps[chunk] = map;
+        });
+
+        if (chunks == 1) {
+            final LongIdMap map = maps[0];
+            return new Groups(ids, map.size(), map.firsts());
+        }
+
+        final LongIdMap global = new LongIdMap();
+        final int[][] translations = new int[chunks][];
+        for (int c = 0; c < chunks; c++) {
+            final LongIdMap map = maps[c];
+            final int[] translation = new int[map.size()];
+            for (int id = 0; id < translation.length; id++) {
+                translation[id] = global.id(map.key(id), map.first(id));
+            }
+            translations[c] = translation;
+        }
+
+        forEachChunk(n, chunks, (chunk, from, to) -> {
+            final int[] translation = translations[chunk];
+            for (int i = from; i < to; i++) {
+                ids[i] = translation[ids[i]];
+            }
+        });
+        return new Groups(ids, global.size(), global.firsts());
+    }
+
+    /**
+     * Maps codes of the range through an array, nulls are in the last slot.
+     */
+    private static Groups densify(long[] codes, long min, int range) {
+        final int[] slots = new int[range + 1];
+        final int[] ids = new int[codes.length];
+        final int[] firsts = new int[Math.min(range + 1, codes.length)];
+        int count = 0;
+        for (int i = 0; i < codes.length; i++) {
+            final long v = codes[i];
+            final int slot = v == Long.MIN_VALUE ? range : (int) (v - min);
+            int id = slots[slot];
+            if (id == 0) {
+                firsts[count] = i;
+                id = ++count;
+                slots[slot] = id;
+            }
+            ids[i] = id - 1;
+        }
+        return new Groups(ids, count, Arrays.copyOf(firsts, count));
+    }
+
+    private static Accumulator aggregate(AccumulatorFactory factory, int[] rows, int[] cells, int size) {
+        final int chunks = (int) Math.max(1, Math.min(chunks(rows.length), MAX_CHUNK_CELLS / Math.max(1, size)));
+        final Accumulator[] accumulators = new Accumulator[chunks];
+        forEachChunk(rows.length, chunks, (chunk, from, to) -> {
+            final Accumulator accumulator = factory.create(size);
+            accumulator.add(rows, cells, from, to);
+            accumulators[chunk] = accumulator;
+        });
+
+        for (int i = 1; i < chunks; i++) {
+            accumulators[0].merge(accumulators[i]);
+        }
+        return accumulators[0];
+    }
+
+    private static int chunks(int rows) {
+        return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / CHUNK_SIZE));
+    }
+
+    /**
+     * Splits the rows into chunks of about the same size and processes them in parallel on the common pool.
+     */
+    private static void forEachChunk(int rows, int chunks, ChunkAction action) {
+        if (chunks == 1) {
+            action.process(0, 0, rows);
+            return;
+        }
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            final int from = (int) ((long) rows * c / chunks);
+            final int to = (int) ((long) rows * (c + 1) / chunks);
+            tasks.add(ForkJoinTask.adapt(() -> action.process(chunk, from, to)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder b = new StringBuilder("select ");
+        b.append(aggregations.stream().map(Aggregation::toString).collect(Collectors.joining(", ")));
+        if (!keys.isEmpty()) {
+            b.append(" by ").append(keys.stream().map(Key::toString).collect(Collectors.joining(", ")));
+        }
+        if (pivot != null) {
+            b.append(" pivot ").append(pivot.name);
+        }
+        return b.toString();
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void process(int chunk, int from, int to);
+    }
+
+    public enum Function {
+        COUNT("count"),
+        SUM("sum"),
+        AVG("avg"),
+        MIN("min"),
+        MAX("max"),
+        FIRST("first"),
+        LAST("last");
+
+        private final String label;
+
+        Function(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        static Function of(String label) {
+            for (Function function : values()) {
+                if (function.label.equals(label)) {
+                    return function;
+                }
+            }
+            throw new IllegalArgumentException("Unknown function: " + label);
+        }
+    }
+
+    /**
+     * A key column: values of the column are grouped as is or by buckets, like {@code 0D00:05 xbar time}.
+     */
+    public static final class Key {
+        private final int column;
+        private final String name;
+        private final String bucket;
+
+        Key(int column, String name, String bucket) {
+            this.column = column;
+            this.name = name;
+            this.bucket = bucket;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the bucket size as a kdb+ literal or an empty string, if values are not bucketed.
+         */
+        public String getBucket() {
+            return bucket;
+        }
+
+        @Override
+        public String toString() {
+            return bucket.isEmpty() ? name : bucket + " xbar " + name;
+        }
+    }
+
+    /**
+     * An aggregation of a column, the count has no column.
+     */
+    public static final class Aggregation {
+        private final Function function;
+        private final int column;
+        private final String name;
+
+        Aggregation(Function function, int column, String name) {
+            this.function = function;
+            this.column = column;
+            this.name = name;
+        }
+
+        public Function getFunction() {
+            return function;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return function.getLabel() + " " + name;
+        }
+    }
+
+    /**
+     * Dense group id of each row and the first row of each group.
+     */
+    static final class Groups {
+        final int[] ids;
+        final int count;
+        final int[] firsts;
+
+        Groups(int[] ids, int count, int[] firsts) {
+            this.ids = ids;
+            this.count = count;
+            this.firsts = firsts;
+        }
+    }
+
+    /**
+     * Encodes values of a key column into longs and creates the result column from the codes.
+     */
+    private abstract static class KeyColumn {
+        final QColumn view;
+        /**
+         * Codes are ordered as values of the column are.
+         */
+        final boolean ordered;
+
+        private KeyColumn(QColumn view, boolean ordered) {
+            this.view = view;
+            this.ordered = ordered;
+        }
+
+        /**
+         * Returns the code of each row.
+         */
+        abstract long[] encode(int[] rows);
+
+        /**
+         * Returns the key column of the result.
+         *
+         * @param codes     codes of the rows
+         * @param positions position of the first row of each group, in the result order
+         * @param rows      the rows
+         */
+        Object column(long[] codes, int[] positions, int[] rows) {
+            return select(view, positions, rows);
+        }
+
+        static KeyColumn of(QColumn view, Key key) {
+            final LongValues longs = LongValues.of(view);
+            if (longs != null) {
+                final long bucket = key.bucket.isEmpty() ? 0 : parseLongBucket(view, key);
+                return new LongKey(view, longs, bucket);
+            }
+
+            final DoubleValues doubles = DoubleValues.of(view);
+            if (doubles != null) {
+                final double bucket = key.bucket.isEmpty() ? 0 : parseDoubleBucket(view, key);
+                return new DoubleKey(view, doubles, bucket);
+            }
+
+            if (!key.bucket.isEmpty()) {
+                throw new IllegalArgumentException("Column " + key.name + " can't be bucketed");
+            }
+
+            if (view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof SymbolVector) {
+                final SymbolVector vector = (SymbolVector) ((QColumn.VectorColumn) view).getVector();
+                return new KeyColumn(view, false) {
+                    @Override
+                    long[] encode(int[] rows) {
+                        final long[] res = new long[rows.length];
+                        forEachChunk(rows.length, chunks(rows.length), (chunk, from, to) -> {
+                            for (int i = from; i < to; i++) {
+                                res[i] = vector.getCode(rows[i]);
+                            }
+                        });
+                        return res;
+                    }
+                };
+            }
+            return new DictionaryKey(view);
+        }
+
+        private static long parseLongBucket(QColumn view, Key key) {
+            final String text = key.bucket;
+            final int type = ColumnFilter.temporalType(view);
+            final long res;
+            if (type == 12 || type == 16) {
+                res = ColumnFilter.parseTimespan(text);
+            } else if (type >= 17 && text.contains(":")) {
+                res = ColumnFilter.parseLong(view, text, true);
+            } else if (view instanceof QColumn.BooleanColumn || view instanceof QColumn.CharColumn) {
+                throw new IllegalArgumentException("Column " + key.name + " can't be bucketed");
+            } else {
+                // months, days, minutes, seconds and milliseconds can be just a number
+                try {
+                    res = Long.parseLong(stripSuffix(text, "hij"));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Wrong bucket of " + key.name + ": " + text);
+                }
+            }
+            if (res <= 0) {
+                throw new IllegalArgumentException("Bucket of " + key.name + " must be positive: " + text);
+            }
+            return res;
+        }
+
+        private static double parseDoubleBucket(QColumn view, Key key) {
+            final String text = key.bucket;
+            final double res;
+            if (ColumnFilter.temporalType(view) == 15 && text.contains(":")) {
+                // datetimes are days
+                res = ColumnFilter.parseTimespan(text) / 86400e9;
+            } else {
+                try {
+                    res = Double.parseDouble(stripSuffix(text, "efz"));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Wrong bucket of " + key.name + ": " + text);
+                }
+            }
+            if (!(res > 0)) {
+                throw new IllegalArgumentException("Bucket of " + key.name + " must be positive: " + text);
+            }
+            return res;
+        }
+    }
+
+    private static String stripSuffix(String text, String suffixes) {
+        if (text.length() > 1 && suffixes.indexOf(text.charAt(text.length() - 1)) >= 0) {
+            return text.substring(0, text.length() - 1);
+        }
+        return text;
+    }
+
+    /**
+     * Integral numbers and temporals: raw values are the codes, or bucket numbers if values are bucketed.
+     */
+    private static final class LongKey extends KeyColumn {
+        private final LongValues values;
+        private final long bucket;
+
+        private LongKey(QColumn view, LongValues values, long bucket) {
+            super(view, true);
+            this.values = values;
+            this.bucket = bucket;
+        }
+
+        @Override
+        long[] encode(int[] rows) {
+            final long[] res = new long[rows.length];
+            forEachChunk(rows.length, chunks(rows.length), (chunk, from, to) -> {
+                if (bucket == 0) {
+                    for (int i = from; i < to; i++) {
+                        res[i] = values.get(rows[i]);
+                    }
+                } else {
+                    // codes are bucket numbers, so they are of a small range
+                    for (int i = from; i < to; i++) {
+                        final long v = values.get(rows[i]);
+                        res[i] = v == Long.MIN_VALUE ? v : Math.floorDiv(v, bucket);
+                    }
+                }
+            });
+            return res;
+        }
+
+        @Override
+        Object column(long[] codes, int[] positions, int[] rows) {
+            if (bucket == 0) {
+                return super.column(codes, positions, rows);
+            }
+
+            final long[] res = new long[positions.length];
+            for (int i = 0; i < res.length; i++) {
+                final long code = codes[positions[i]];
+                res[i] = code == Long.MIN_VALUE ? code : code * bucket;
+            }
+            return fromLongs(view, res);
+        }
+    }
+
+    /**
+     * Floats and datetimes: the codes are ordered bits of doubles, bucketed if required.
+     */
+    private static final class DoubleKey extends KeyColumn {
+        private final DoubleValues values;
+        private final double bucket;
+
+        private DoubleKey(QColumn view, DoubleValues values, double bucket) {
+            super(view, true);
+            this.values = values;
+            this.bucket = bucket;
+        }
+
+        @Override
+        long[] encode(int[] rows) {
+            final long[] res = new long[rows.length];
+            forEachChunk(rows.length, chunks(rows.length), (chunk, from, to) -> {
+                for (int i = from; i < to; i++) {
+                    final double v = values.get(rows[i]);
+                    res[i] = QColumn.doubleKey(bucket == 0 ? v : Math.floor(v / bucket) * bucket);
+                }
+            });
+            return res;
+        }
+
+        @Override
+        Object column(long[] codes, int[] positions, int[] rows) {
+            if (bucket == 0) {
+                return super.column(codes, positions, rows);
+            }
+
+            final double[] res = new double[positions.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = QColumn.fromDoubleKey(codes[positions[i]]);
+            }
+            return fromDoubles(view, res);
+        }
+    }
+
+    /**
+     * Symbols, strings and other objects: each distinct value gets its code in a dictionary, so the codes are
+     * assigned in one thread.
+     */
+    private static final class DictionaryKey extends KeyColumn {
+        private DictionaryKey(QColumn view) {
+            super(view, false);
+        }
+
+        @Override
+        long[] encode(int[] rows) {
+            final long[] res = new long[rows.length];
+            final Map<Object, Integer> dictionary = new HashMap<>();
+            for (int i = 0; i < rows.length; i++) {
+                final Object v = view.get(rows[i]);
+                final Object key = v instanceof char[] ? new String((char[]) v) : v;
+                Integer code = dictionary.get(key);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(key, code);
+                }
+                res[i] = code;
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Typed accumulators of one aggregation, one value of each cell: a group or a group and a pivot value.
+     */
+    private abstract static class Accumulator {
+        /**
+         * Accumulates the rows at the positions.
+         */
+        abstract void add(int[] rows, int[] cells, int from, int to);
+
+        /**
+         * Merges the accumulator of next rows into this one.
+         */
+        abstract void merge(Accumulator other);
+
+        /**
+         * Returns the result column.
+         *
+         * @param cells  the cells in the result order
+         * @param rows   the rows
+         * @param counts number of rows in each cell, if a cell can be empty, or null
+         */
+        abstract Object column(int[] cells, int[] rows, long[] counts);
+    }
+
+    @FunctionalInterface
+    private interface AccumulatorFactory {
+        AccumulatorFactory COUNT = CountAccumulator::new;
+
+        Accumulator create(int cells);
+
+        static AccumulatorFactory of(QColumn view, Aggregation aggregation) {
+            final Function function = aggregation.function;
+            if (function == Function.COUNT) {
+                return COUNT;
+            }
+            if (function == Function.FIRST || function == Function.LAST) {
+                return cells -> new PositionAccumulator(view, cells, function == Function.FIRST);
+            }
+
+            final boolean numeric = view instanceof QColumn.NumericColumn || view instanceof QColumn.BooleanColumn;
+            final LongValues longs = LongValues.of(view);
+            final DoubleValues doubles = DoubleValues.of(view);
+            switch (function) {
+                case SUM:
+                    if (numeric && longs != null) {
+                        return cells -> new LongSumAccumulator(longs, cells);
+                    }
+                    if (numeric && doubles != null) {
+                        return cells -> new DoubleSumAccumulator(doubles, cells);
+                    }
+                    break;
+                case AVG:
+                    if (numeric) {
+                        final DoubleValues values = doubles != null ? doubles : row -> {
+                            final long v = longs.get(row);
+                            return v == Long.MIN_VALUE ? Double.NaN : v;
+                        };
+                        return cells -> new AvgAccumulator(values, cells);
+                    }
+                    break;
+                default:
+                    if (longs != null) {
+                        return cells -> new LongMinMaxAccumulator(view, longs, cells, function == Function.MAX);
+                    }
+                    if (doubles != null) {
+                        return cells -> new DoubleMinMaxAccumulator(view, doubles, cells, function == Function.MAX);
+                    }
+            }
+            throw new IllegalArgumentException("Column " + aggregation.name + " can't be aggregated by " + function.getLabel());
+        }
+    }
+
+    private static final class CountAccumulator extends Accumulator {
+        private final long[] counts;
+
+        private CountAccumulator(int cells) {
+            counts = new long[cells];
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                counts[cells[i]]++;
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final long[] o = ((CountAccumulator) other).counts;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += o[i];
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] ignore) {
+            final long[] res = new long[cells.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = counts[cells[i]];
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Sum of integral numbers is a long, as kdb+ does, nulls are skipped.
+     */
+    private static final class LongSumAccumulator extends Accumulator {
+        private final LongValues values;
+        private final long[] sums;
+
+        private LongSumAccumulator(LongValues values, int cells) {
+            this.values = values;
+            this.sums = new long[cells];
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final long v = values.get(rows[i]);
+                if (v != Long.MIN_VALUE) {
+                    sums[cells[i]] += v;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final long[] o = ((LongSumAccumulator) other).sums;
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += o[i];
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] counts) {
+            final long[] res = new long[cells.length];
+            for (int i = 0; i < res.length; i++) {
+                final int cell = cells[i];
+                res[i] = counts != null && counts[cell] == 0 ? Long.MIN_VALUE : sums[cell];
+            }
+            return res;
+        }
+    }
+
+    private static final class DoubleSumAccumulator extends Accumulator {
+        private final DoubleValues values;
+        private final double[] sums;
+
+        private DoubleSumAccumulator(DoubleValues values, int cells) {
+            this.values = values;
+            this.sums = new double[cells];
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final double v = values.get(rows[i]);
+                if (!Double.isNaN(v)) {
+                    sums[cells[i]] += v;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final double[] o = ((DoubleSumAccumulator) other).sums;
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += o[i];
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] counts) {
+            final double[] res = new double[cells.length];
+            for (int i = 0; i < res.length; i++) {
+                final int cell = cells[i];
+                res[i] = counts != null && counts[cell] == 0 ? Double.NaN : sums[cell];
+            }
+            return res;
+        }
+    }
+
+    private static final class AvgAccumulator extends Accumulator {
+        private final DoubleValues values;
+        private final double[] sums;
+        private final long[] counts;
+
+        private AvgAccumulator(DoubleValues values, int cells) {
+            this.values = values;
+            this.sums = new double[cells];
+            this.counts = new long[cells];
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final double v = values.get(rows[i]);
+                if (!Double.isNaN(v)) {
+                    final int cell = cells[i];
+                    sums[cell] += v;
+                    counts[cell]++;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final AvgAccumulator o = (AvgAccumulator) other;
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += o.sums[i];
+                counts[i] += o.counts[i];
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] ignore) {
+            final double[] res = new double[cells.length];
+            for (int i = 0; i < res.length; i++) {
+                final int cell = cells[i];
+                res[i] = counts[cell] == 0 ? Double.NaN : sums[cell] / counts[cell];
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Min or max of raw longs, the result has the type of the column.
+     */
+    private static final class LongMinMaxAccumulator extends Accumulator {
+        private final QColumn view;
+        private final LongValues values;
+        private final boolean max;
+        private final long[] res;
+
+        private LongMinMaxAccumulator(QColumn view, LongValues values, int cells, boolean max) {
+            this.view = view;
+            this.values = values;
+            this.max = max;
+            this.res = new long[cells];
+            // the null is the min value, so it's the initial max
+            Arrays.fill(res, max ? Long.MIN_VALUE : Long.MAX_VALUE);
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final long v = values.get(rows[i]);
+                if (v != Long.MIN_VALUE) {
+                    final int cell = cells[i];
+                    if (max ? v > res[cell] : v < res[cell]) {
+                        res[cell] = v;
+                    }
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final long[] o = ((LongMinMaxAccumulator) other).res;
+            for (int i = 0; i < res.length; i++) {
+                if (max ? o[i] > res[i] : o[i] < res[i]) {
+                    res[i] = o[i];
+                }
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] counts) {
+            final long[] v = new long[cells.length];
+            for (int i = 0; i < v.length; i++) {
+                final long r = res[cells[i]];
+                v[i] = r == Long.MAX_VALUE && !max ? Long.MIN_VALUE : r;
+            }
+            return fromLongs(view, v);
+        }
+    }
+
+    private static final class DoubleMinMaxAccumulator extends Accumulator {
+        private final QColumn view;
+        private final DoubleValues values;
+        private final boolean max;
+        private final double[] res;
+
+        private DoubleMinMaxAccumulator(QColumn view, DoubleValues values, int cells, boolean max) {
+            this.view = view;
+            this.values = values;
+            this.max = max;
+            this.res = new double[cells];
+            Arrays.fill(res, Double.NaN);
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final double v = values.get(rows[i]);
+                if (!Double.isNaN(v)) {
+                    final int cell = cells[i];
+                    final double r = res[cell];
+                    if (Double.isNaN(r) || (max ? v > r : v < r)) {
+                        res[cell] = v;
+                    }
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            final double[] o = ((DoubleMinMaxAccumulator) other).res;
+            for (int i = 0; i < res.length; i++) {
+                final double v = o[i];
+                if (!Double.isNaN(v) && (Double.isNaN(res[i]) || (max ? v > res[i] : v < res[i]))) {
+                    res[i] = v;
+                }
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] counts) {
+            final double[] v = new double[cells.length];
+            for (int i = 0; i < v.length; i++) {
+                v[i] = res[cells[i]];
+            }
+            return fromDoubles(view, v);
+        }
+    }
+
+    /**
+     * First or last row of each cell, the result values are taken from the column as is.
+     */
+    private static final class PositionAccumulator extends Accumulator {
+        private final QColumn view;
+        private final boolean first;
+        private final int[] positions;
+
+        private PositionAccumulator(QColumn view, int cells, boolean first) {
+            this.view = view;
+            this.first = first;
+            this.positions = new int[cells];
+            Arrays.fill(positions, -1);
+        }
+
+        @Override
+        void add(int[] rows, int[] cells, int from, int to) {
+            for (int i = from; i < to; i++) {
+                final int cell = cells[i];
+                if (!first || positions[cell] < 0) {
+                    positions[cell] = i;
+                }
+            }
+        }
+
+        @Override
+        void merge(Accumulator other) {
+            // the other accumulator has next rows
+            final int[] o = ((PositionAccumulator) other).positions;
+            for (int i = 0; i < positions.length; i++) {
+                if (o[i] >= 0 && (!first || positions[i] < 0)) {
+                    positions[i] = o[i];
+                }
+            }
+        }
+
+        @Override
+        Object column(int[] cells, int[] rows, long[] counts) {
+            final int[] p = new int[cells.length];
+            for (int i = 0; i < p.length; i++) {
+                p[i] = positions[cells[i]];
+            }
+            return select(view, p, rows);
+        }
+    }
+
+    /**
+     * Copies items of the column at the positions into a vector of the same type, a negative position is a null.
+     */
+    static Object select(QColumn view, int[] positions, int[] rows) {
+        final int n = positions.length;
+        if (view instanceof QColumn.VectorColumn) {
+            final KxVector vector = ((QColumn.VectorColumn) view).getVector();
+            if (vector instanceof SymbolVector) {
+                final SymbolVector v = (SymbolVector) vector;
+                final String[] symbols = v.getSymbols();
+                final String[] res = new String[n];
+                for (int i = 0; i < n; i++) {
+                    res[i] = positions[i] < 0 ? "" : symbols[v.getCode(rows[positions[i]])];
+                }
+                return res;
+            }
+            if (vector instanceof TemporalVector.Longs) {
+                final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+                final long[] res = new long[n];
+                for (int i = 0; i < n; i++) {
+                    res[i] = positions[i] < 0 ? Long.MIN_VALUE : v.getLong(rows[positions[i]]);
+                }
+                return v.withValues(res);
+            }
+            if (vector instanceof TemporalVector.Ints) {
+                final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+                final int[] res = new int[n];
+                for (int i = 0; i < n; i++) {
+                    res[i] = positions[i] < 0 ? Integer.MIN_VALUE : v.getInt(rows[positions[i]]);
+                }
+                return v.withValues(res);
+            }
+            if (vector instanceof TemporalVector.Doubles) {
+                final TemporalVector.Doubles v = (TemporalVector.Doubles) vector;
+                final double[] res = new double[n];
+                for (int i = 0; i < n; i++) {
+                    res[i] = positions[i] < 0 ? Double.NaN : v.getDouble(rows[positions[i]]);
+                }
+                return v.withValues(res);
+            }
+        }
+
+        final LongValues longs = view instanceof QColumn.NumericColumn || view instanceof QColumn.BooleanColumn || view instanceof QColumn.CharColumn ? LongValues.of(view) : null;
+        if (longs != null) {
+            final long[] res = new long[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = positions[i] < 0 ? Long.MIN_VALUE : longs.get(rows[positions[i]]);
+            }
+            return fromLongs(view, res);
+        }
+
+        if (view instanceof QColumn.FloatColumn || view instanceof QColumn.DoubleColumn) {
+            final QColumn.NumericColumn c = (QColumn.NumericColumn) view;
+            final double[] res = new double[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = positions[i] < 0 ? Double.NaN : c.getDouble(rows[positions[i]]);
+            }
+            return fromDoubles(view, res);
+        }
+
+        if (view instanceof QColumn.SymbolColumn) {
+            final QColumn.SymbolColumn c = (QColumn.SymbolColumn) view;
+            final String[] res = new String[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = positions[i] < 0 ? "" : c.getSymbol(rows[positions[i]]);
+            }
+            return res;
+        }
+
+        final Class<?> type = view.getElementType();
+        final Object[] res = (Object[]) Array.newInstance(type.isPrimitive() ? Object.class : type, n);
+        for (int i = 0; i < n; i++) {
+            res[i] = positions[i] < 0 ? null : view.get(rows[positions[i]]);
+        }
+        return res;
+    }
+
+    /**
+     * Creates a vector of the column type from raw longs, nulls are {@link Long#MIN_VALUE}.
+     */
+    static Object fromLongs(QColumn view, long[] values) {
+        final int n = values.length;
+        if (view instanceof QColumn.LongColumn) {
+            return values;
+        }
+        if (view instanceof QColumn.IntColumn) {
+            final int[] res = new int[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = values[i] == Long.MIN_VALUE ? Integer.MIN_VALUE : (int) values[i];
+            }
+            return res;
+        }
+        if (view instanceof QColumn.ShortColumn) {
+            final short[] res = new short[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = values[i] == Long.MIN_VALUE ? Short.MIN_VALUE : (short) values[i];
+            }
+            return res;
+        }
+        if (view instanceof QColumn.ByteColumn) {
+            final byte[] res = new byte[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = (byte) values[i];
+            }
+            return res;
+        }
+        if (view instanceof QColumn.BooleanColumn) {
+            final boolean[] res = new boolean[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = values[i] == 1;
+            }
+            return res;
+        }
+        if (view instanceof QColumn.CharColumn) {
+            final char[] res = new char[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = values[i] == Long.MIN_VALUE ? ' ' : (char) values[i];
+            }
+            return res;
+        }
+        if (view instanceof QColumn.VectorColumn) {
+            final KxVector vector = ((QColumn.VectorColumn) view).getVector();
+            if (vector instanceof TemporalVector.Longs) {
+                return ((TemporalVector.Longs) vector).withValues(values);
+            }
+            final int[] res = new int[n];
+            for (int i = 0; i < n; i++) {
+                res[i] = values[i] == Long.MIN_VALUE ? Integer.MIN_VALUE : (int) values[i];
+            }
+            return ((TemporalVector.Ints) vector).withValues(res);
+        }
+
+        final int type = ColumnFilter.temporalType(view);
+        final Object[] res = (Object[]) Array.newInstance(view.getElementType(), n);
+        for (int i = 0; i < n; i++) {
+            res[i] = ColumnFilter.temporalObject(type, values[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Creates a vector of the column type from doubles, nulls are NaN.
+     */
+    static Object fromDoubles(QColumn view, double[] values) {
+        if (view instanceof QColumn.DoubleColumn) {
+            return values;
+        }
+        if (view instanceof QColumn.FloatColumn) {
+            final float[] res = new float[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = (float) values[i];
+            }
+            return res;
+        }
+        if (view instanceof QColumn.VectorColumn) {
+            return ((TemporalVector.Doubles) ((QColumn.VectorColumn) view).getVector()).withValues(values);
+        }
+
+        final java.util.Date[] res = new java.util.Date[values.length];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = ColumnFilter.datetimeObject(values[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Open addressing map of long keys into ids, assigned in the order the keys are added.
+     */
+    private static final class LongIdMap {
+        private long[] slots = new long[64];
+        // id + 1 of each slot, zero for an empty slot
+        private int[] slotIds = new int[64];
+        private long[] keys = new long[32];
+        private int[] firsts = new int[32];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long key(int id) {
+            return keys[id];
+        }
+
+        int first(int id) {
+            return firsts[id];
+        }
+
+        int[] firsts() {
+            return Arrays.copyOf(firsts, size);
+        }
+
+        /**
+         * Returns the id of the key, a new key gets the next id and the position as its first one.
+         */
+        int id(long key, int position) {
+            final int mask = slots.length - 1;
+            int i = (int) HyperLogLog.hash(key) & mask;
+            int id;
+            while ((id = slotIds[i]) != 0) {
+                if (slots[i] == key) {
+                    return id - 1;
+                }
+                i = (i + 1) & mask;
+            }
+
+            id = size++;
+            slots[i] = key;
+            slotIds[i] = id + 1;
+            if (id == keys.length) {
+                keys = Arrays.copyOf(keys, id * 2);
+                firsts = Arrays.copyOf(firsts, id * 2);
+            }
+            keys[id] = key;
+            firsts[id] = position;
+
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            slots = new long[slots.length * 2];
+            slotIds = new int[slotIds.length * 2];
+            final int mask = slots.length - 1;
+            for (int id = 0; id < size; id++) {
+                final long key = keys[id];
+                int i = (int) HyperLogLog.hash(key) & mask;
+                while (slotIds[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = key;
+                slotIds[i] = id + 1;
+            }
+        }
+    }
+}
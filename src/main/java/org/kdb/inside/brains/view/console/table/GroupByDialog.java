@@ -0,0 +1,83 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class GroupByDialog extends DialogWrapper {
+    private final TableResult.QTableModel model;
+    private final List<String> columns;
+
+    private final JBTextField byField = new JBTextField();
+    private final JBTextField aggregateField = new JBTextField();
+    private final ComboBox<String> pivotBox;
+
+    GroupByDialog(JTable table) {
+        super(table, false);
+        setTitle("Group By");
+
+        model = (TableResult.QTableModel) table.getModel();
+        columns = Arrays.stream(model.getColumns()).map(TableResult.QColumnInfo::getQName).collect(Collectors.toList());
+
+        // selected columns are the keys by default, unless the whole table is selected
+        final int[] selected = table.getSelectedColumns();
+        if (selected.length < columns.size()) {
+            byField.setText(IntStream.of(selected).map(table::convertColumnIndexToModel).mapToObj(columns::get).collect(Collectors.joining(", ")));
+        }
+        byField.getEmptyText().setText("Key columns: sym, 0D00:05 xbar time");
+
+        aggregateField.setText("count i");
+        aggregateField.getEmptyText().setText("Aggregations: count, sum, avg, min, max, first or last of a column");
+
+        final List<String> items = new ArrayList<>(columns.size() + 1);
+        items.add("");
+        items.addAll(columns);
+        pivotBox = new ComboBox<>(items.toArray(String[]::new));
+        pivotBox.setRenderer(SimpleListCellRenderer.create("", s -> s.isEmpty() ? "None" : s));
+
+        setOKButtonText("Group");
+
+        init();
+        initValidation();
+    }
+
+    @Override
+    protected @Nullable ValidationInfo doValidate() {
+        try {
+            getGroupBy().check(model::getColumnView);
+        } catch (IllegalArgumentException ex) {
+            return new ValidationInfo(ex.getMessage(), aggregateField);
+        }
+        return null;
+    }
+
+    GroupBy getGroupBy() {
+        final String pivot = pivotBox.getItem();
+        return GroupBy.parse(byField.getText(), aggregateField.getText(), pivot == null ? "" : pivot, columns);
+    }
+
+    @Override
+    public @Nullable JComponent getPreferredFocusedComponent() {
+        return aggregateField;
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("Aggregate:", aggregateField)
+                .addLabeledComponent("By:", byField)
+                .addLabeledComponent("Pivot:", pivotBox)
+                .getPanel();
+    }
+}
@@ -0,0 +1,76 @@
+package org.kdb.inside.brains.view.console.table;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog estimator of the number of distinct values: 2^14 one-byte registers, so the standard error is
+ * about 0.8% and the memory doesn't depend on the number of values. Small cardinalities are counted by
+ * the linear counting of empty registers, so they are almost exact.
+ * <p>
+ * Values are added by their 64-bit hash, see {@link #hash(long)}.
+ */
+final class HyperLogLog {
+    private final byte[] registers;
+
+    private static final int PRECISION = 14;
+    private static final int SIZE = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / SIZE);
+
+    HyperLogLog() {
+        registers = new byte[SIZE];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * Spreads bits of a value into a 64-bit hash: the finalizer of MurmurHash3.
+     */
+    static long hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    void add(long hash) {
+        final int index = (int) (hash >>> (64 - PRECISION));
+        final int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (registers[index] < rank) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < SIZE; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        final double estimate = ALPHA * SIZE * SIZE / sum;
+        if (estimate <= 2.5 * SIZE && zeros != 0) {
+            return Math.round(SIZE * Math.log((double) SIZE / zeros));
+        }
+        return Math.round(estimate);
+    }
+
+    HyperLogLog copy() {
+        return new HyperLogLog(Arrays.copyOf(registers, SIZE));
+    }
+}
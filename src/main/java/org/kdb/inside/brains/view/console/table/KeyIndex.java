@@ -0,0 +1,320 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxVector;
+import kx.StringVector;
+import kx.SymbolVector;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+
+/**
+ * Hash index of rows of a keyed table or a dictionary by their keys, including composite ones.
+ * <p>
+ * Keys are hashed as primitive values read by typed column views, see {@link QColumn}: numbers and temporals by
+ * their raw values, enumerated symbols by a hash of each distinct symbol. Rows of the same slot are chained through
+ * an array, so the index takes two ints for each row and a row is found by a few comparisons for any number of rows.
+ * Slots of rows are hashed in parallel chunks.
+ */
+final class KeyIndex {
+    private final KeyColumn[] columns;
+    private final int[] heads;
+    private final int[] next;
+    private final int mask;
+
+    /**
+     * Min number of rows in a chunk hashed by one thread.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private KeyIndex(KeyColumn[] columns, int[] heads, int[] next) {
+        this.columns = columns;
+        this.heads = heads;
+        this.next = next;
+        this.mask = heads.length - 1;
+    }
+
+    /**
+     * Builds the index of rows by the key columns.
+     *
+     * @param keys      views of the key columns
+     * @param rows      the number of rows
+     * @param formatter the formatter of values, that are looked up by their text
+     */
+    static KeyIndex build(QColumn[] keys, int rows, KdbOutputFormatter formatter) {
+        final KeyColumn[] columns = new KeyColumn[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            columns[i] = KeyColumn.of(keys[i], formatter);
+        }
+
+        // slots are kept in the chain array until rows are linked
+        final int[] heads = new int[Integer.highestOneBit(Math.max(1, rows))];
+        final int[] next = new int[rows];
+        final int mask = heads.length - 1;
+
+        final int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / CHUNK_SIZE));
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int) ((long) rows * c / chunks);
+            final int to = (int) ((long) rows * (c + 1) / chunks);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                for (int row = from; row < to; row++) {
+                    long h = 0;
+                    for (KeyColumn column : columns) {
+                        h = h * 31 + column.hash(row);
+                    }
+                    next[row] = slot(h, mask);
+                }
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        // rows are linked from the end, so the first row of a duplicated key is found first
+        for (int row = rows - 1; row >= 0; row--) {
+            final int slot = next[row];
+            next[row] = heads[slot];
+            heads[slot] = row + 1;
+        }
+        return new KeyIndex(columns, heads, next);
+    }
+
+    /**
+     * Returns hashes of values of the column. Values are hashed by their content, so the same values of any two
+     * columns have the same hash, even if the columns are of different tables or types, like ints and longs.
+     */
+    static LongValues hashes(QColumn view, KdbOutputFormatter formatter) {
+        return KeyColumn.of(view, formatter)::hash;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string, the null string is the same as the empty one.
+     */
+    private static long stringHash(String s) {
+        if (s == null || s.isEmpty()) {
+            return 0;
+        }
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) HyperLogLog.hash(hash) & mask;
+    }
+
+    /**
+     * Returns the number of key columns.
+     */
+    int getKeysCount() {
+        return columns.length;
+    }
+
+    /**
+     * Finds the first row of the key typed as text: one value for each key column, separated by commas if there
+     * are a few key columns.
+     *
+     * @return the model row or -1, if there is no such key
+     * @throws IllegalArgumentException if the text is not a key
+     */
+    int find(String text) {
+        if (columns.length == 1) {
+            return find(List.of(text.trim()));
+        }
+
+        final List<String> values = new ArrayList<>(columns.length);
+        for (String s : text.split(",")) {
+            values.add(s.trim());
+        }
+        return find(values);
+    }
+
+    /**
+     * Finds the first row of the key.
+     *
+     * @param values texts of the key values, one for each key column
+     * @return the model row or -1, if there is no such key
+     * @throws IllegalArgumentException if the number of values is wrong or a value can't be parsed
+     */
+    int find(List<String> values) {
+        if (values.size() != columns.length) {
+            throw new IllegalArgumentException("Key must have " + columns.length + " values, not " + values.size());
+        }
+
+        final Probe[] probes = new Probe[columns.length];
+        long h = 0;
+        for (int i = 0; i < columns.length; i++) {
+            probes[i] = columns[i].parse(values.get(i));
+            h = h * 31 + probes[i].hash;
+        }
+
+        for (int r = heads[slot(h, mask)]; r != 0; r = next[r - 1]) {
+            if (matches(probes, r - 1)) {
+                return r - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(Probe[] probes, int row) {
+        for (Probe probe : probes) {
+            if (!probe.matcher.test(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A key value parsed from a text: its hash and the predicate of rows with the same value.
+     */
+    private static final class Probe {
+        private final long hash;
+        private final IntPredicate matcher;
+
+        private Probe(long hash, IntPredicate matcher) {
+            this.hash = hash;
+            this.matcher = matcher;
+        }
+    }
+
+    /**
+     * Hashes values of a key column and parses texts of its values by the fastest way for the column type.
+     */
+    private interface KeyColumn {
+        long hash(int row);
+
+        Probe parse(String text);
+
+        static KeyColumn of(QColumn view, KdbOutputFormatter formatter) {
+            if (view instanceof QColumn.BooleanColumn) {
+                final QColumn.BooleanColumn c = (QColumn.BooleanColumn) view;
+                return new KeyColumn() {
+                    @Override
+                    public long hash(int row) {
+                        return c.getBoolean(row) ? 1 : 0;
+                    }
+
+                    @Override
+                    public Probe parse(String text) {
+                        final boolean v = ColumnFilter.parseBoolean(text);
+                        return new Probe(v ? 1 : 0, row -> c.getBoolean(row) == v);
+                    }
+                };
+            }
+
+            final LongValues longs = LongValues.of(view);
+            if (longs != null) {
+                return new KeyColumn() {
+                    @Override
+                    public long hash(int row) {
+                        return longs.get(row);
+                    }
+
+                    @Override
+                    public Probe parse(String text) {
+                        final long v = ColumnFilter.parseLong(view, text, true);
+                        return new Probe(v, row -> longs.get(row) == v);
+                    }
+                };
+            }
+
+            final DoubleValues doubles = DoubleValues.of(view);
+            if (doubles != null) {
+                return new KeyColumn() {
+                    @Override
+                    public long hash(int row) {
+                        return key(doubles.get(row));
+                    }
+
+                    @Override
+                    public Probe parse(String text) {
+                        final long v = key(ColumnFilter.parseDouble(view, text));
+                        return new Probe(v, row -> key(doubles.get(row)) == v);
+                    }
+
+                    private long key(double v) {
+                        // -0.0 is the same key as 0.0
+                        return QColumn.doubleKey(v == 0 ? 0 : v);
+                    }
+                };
+            }
+
+            if (view instanceof QColumn.VectorColumn) {
+                final KxVector vector = ((QColumn.VectorColumn) view).getVector();
+                if (vector instanceof SymbolVector) {
+                    // each distinct symbol is hashed only once
+                    final SymbolVector v = (SymbolVector) vector;
+                    final String[] symbols = v.getSymbols();
+                    final long[] hashes = new long[symbols.length];
+                    for (int i = 0; i < symbols.length; i++) {
+                        hashes[i] = stringHash(symbols[i]);
+                    }
+                    return new KeyColumn() {
+                        @Override
+                        public long hash(int row) {
+                            return hashes[v.getCode(row)];
+                        }
+
+                        @Override
+                        public Probe parse(String text) {
+                            final String s = unquote(text, true);
+                            return new Probe(stringHash(s), row -> symbols[v.getCode(row)].equals(s));
+                        }
+                    };
+                }
+                if (vector instanceof StringVector) {
+                    final StringVector v = (StringVector) vector;
+                    return strings(v::getString, false);
+                }
+            }
+
+            if (view instanceof QColumn.SymbolColumn) {
+                return strings(((QColumn.SymbolColumn) view)::getSymbol, true);
+            }
+
+            // strings of a general list are looked up as they are, other values by their text as they are shown
+            return strings(row -> {
+                final Object v = view.get(row);
+                if (v instanceof char[]) {
+                    return new String((char[]) v);
+                }
+                return v instanceof String ? (String) v : view.formatPlain(formatter, row);
+            }, false);
+        }
+
+        private static KeyColumn strings(StringReader reader, boolean symbols) {
+            return new KeyColumn() {
+                @Override
+                public long hash(int row) {
+                    return stringHash(reader.read(row));
+                }
+
+                @Override
+                public Probe parse(String text) {
+                    final String s = unquote(text, symbols);
+                    return new Probe(stringHash(s), row -> s.equals(reader.read(row)));
+                }
+            };
+        }
+
+        /**
+         * Removes the leading backtick of a symbol or quotes of a string.
+         */
+        private static String unquote(String text, boolean symbol) {
+            if (symbol) {
+                return text.startsWith("`") ? text.substring(1) : text;
+            }
+            return text.length() > 1 && text.startsWith("\"") && text.endsWith("\"") ? text.substring(1, text.length() - 1) : text;
+        }
+    }
+
+    @FunctionalInterface
+    private interface StringReader {
+        String read(int row);
+    }
+}
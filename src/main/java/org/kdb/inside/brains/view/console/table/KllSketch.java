@@ -0,0 +1,220 @@
+package org.kdb.inside.brains.view.console.table;
+
+import java.util.Arrays;
+
+/**
+ * KLL sketch of quantiles of doubles: items are kept in levels of compactors, an item of level h stands for 2^h
+ * values. A full level is sorted and every other item is promoted to the next level, so the memory is about
+ * 3k items for any number of values and the rank error is about 1.7/k: less than 1% for the default k.
+ * <p>
+ * Sketches of parts of a column can be merged, so a column is sketched by chunks in parallel. Offsets of
+ * compactions are taken from a xorshift generator with a fixed seed: they are random enough to not bias sorted or
+ * periodic values, but the sketch of the same values is always the same.
+ */
+final class KllSketch {
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int[] capacities;
+    private int capacity;
+    private int retained;
+    private long count;
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    private static final int DEFAULT_K = 200;
+    private static final int MIN_CAPACITY = 8;
+
+    KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    KllSketch(int k) {
+        this.k = k;
+        capacities = capacities(1);
+        capacity = capacities[0];
+        levels[0] = new double[capacity];
+    }
+
+    /**
+     * Returns the number of added values.
+     */
+    long getCount() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void add(double value) {
+        count++;
+        append(0, value);
+        if (retained >= capacity) {
+            compress();
+        }
+    }
+
+    void merge(KllSketch other) {
+        count += other.count;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        compress();
+    }
+
+    /**
+     * Returns the value of the rank, as a fraction of all values from 0 to 1, or NaN if the sketch is empty.
+     */
+    double quantile(double rank) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        final Items items = items();
+        final double target = rank * items.total;
+        long weight = 0;
+        for (int i = 0; i < items.values.length; i++) {
+            weight += items.weights[i];
+            if (weight >= target) {
+                return items.values[i];
+            }
+        }
+        return items.values[items.values.length - 1];
+    }
+
+    /**
+     * Returns the fraction of values that are less than or equal to the value.
+     */
+    double cdf(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        long weight = 0;
+        long total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            final double[] level = levels[h];
+            for (int i = 0; i < sizes[h]; i++) {
+                total += 1L << h;
+                if (level[i] <= value) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / total;
+    }
+
+    private void append(int h, double value) {
+        if (h == levels.length) {
+            levels = Arrays.copyOf(levels, h + 1);
+            sizes = Arrays.copyOf(sizes, h + 1);
+            capacities = capacities(h + 1);
+            capacity = Arrays.stream(capacities).sum();
+            levels[h] = new double[capacities[h]];
+        }
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(MIN_CAPACITY, sizes[h] * 2));
+        }
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    /**
+     * Compacts the lowest level over its capacity, while the sketch is over its total capacity: compactions are lazy,
+     * so the bottom level collects more values and they are sorted by bigger batches.
+     */
+    private void compress() {
+        while (retained >= capacity) {
+            int h = 0;
+            while (sizes[h] < capacities[h]) {
+                h++;
+            }
+            compact(h);
+        }
+    }
+
+    private void compact(int h) {
+        final double[] level = levels[h];
+        final int size = sizes[h];
+        Arrays.sort(level, 0, size);
+
+        // an odd item stays on the level
+        final int even = size & ~1;
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        final int offset = (int) (seed >>> 63);
+        for (int i = offset; i < even; i += 2) {
+            append(h + 1, level[i]);
+        }
+        if (even != size) {
+            level[0] = level[size - 1];
+        }
+        sizes[h] = size - even;
+        retained -= even;
+    }
+
+    /**
+     * Capacities of levels: the top level has k items and each lower one is 2/3 of the upper one.
+     */
+    private int[] capacities(int height) {
+        final int[] res = new int[height];
+        for (int h = 0; h < height; h++) {
+            res[h] = Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, height - 1 - h)));
+        }
+        return res;
+    }
+
+    private Items items() {
+        int n = 0;
+        for (int size : sizes) {
+            n += size;
+        }
+
+        final double[] values = new double[n];
+        final long[] keys = new long[n];
+        final int[] order = new int[n];
+        int j = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[j] = levels[h][i];
+                keys[j] = QColumn.doubleKey(levels[h][i]);
+                order[j] = j;
+                j++;
+            }
+        }
+        QTableRowSorter.sort(keys, order);
+
+        final Items res = new Items(n);
+        for (int i = 0; i < n; i++) {
+            res.values[i] = values[order[i]];
+            res.weights[i] = weightOf(order[i]);
+            res.total += res.weights[i];
+        }
+        return res;
+    }
+
+    private long weightOf(int item) {
+        int i = item;
+        for (int h = 0; h < levels.length; h++) {
+            if (i < sizes[h]) {
+                return 1L << h;
+            }
+            i -= sizes[h];
+        }
+        throw new IndexOutOfBoundsException("No item " + item);
+    }
+
+    private static final class Items {
+        private final double[] values;
+        private final long[] weights;
+        private long total;
+
+        private Items(int n) {
+            values = new double[n];
+            weights = new long[n];
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxVector;
+import kx.TemporalVector;
+
+/**
+ * Reads values of a column as longs, nulls are {@link Long#MIN_VALUE}.
+ * <p>
+ * Integral numbers, booleans, chars and temporals, except datetimes, are read as raw kdb+ values: temporal objects
+ * are converted into raw values, see {@link ColumnFilter#temporal(Object)}.
+ */
+@FunctionalInterface
+interface LongValues {
+    long get(int row);
+
+    /**
+     * Returns the reader of the column or null, if values of the column are not integral.
+     */
+    static LongValues of(QColumn view) {
+        if (view instanceof QColumn.LongColumn) {
+            return ((QColumn.LongColumn) view)::getLong;
+        }
+        if (view instanceof QColumn.IntColumn) {
+            final QColumn.IntColumn c = (QColumn.IntColumn) view;
+            return row -> {
+                final int v = c.getInt(row);
+                return v == Integer.MIN_VALUE ? Long.MIN_VALUE : v;
+            };
+        }
+        if (view instanceof QColumn.ShortColumn) {
+            final QColumn.ShortColumn c = (QColumn.ShortColumn) view;
+            return row -> {
+                final short v = c.getShort(row);
+                return v == Short.MIN_VALUE ? Long.MIN_VALUE : v;
+            };
+        }
+        if (view instanceof QColumn.ByteColumn) {
+            final QColumn.ByteColumn c = (QColumn.ByteColumn) view;
+            return row -> c.getByte(row) & 0xff;
+        }
+        if (view instanceof QColumn.BooleanColumn) {
+            final QColumn.BooleanColumn c = (QColumn.BooleanColumn) view;
+            return row -> c.getBoolean(row) ? 1 : 0;
+        }
+        if (view instanceof QColumn.CharColumn) {
+            return ((QColumn.CharColumn) view)::getChar;
+        }
+        if (view instanceof QColumn.VectorColumn) {
+            final KxVector vector = ((QColumn.VectorColumn) view).getVector();
+            if (vector instanceof TemporalVector.Longs) {
+                return ((TemporalVector.Longs) vector)::getLong;
+            }
+            if (vector instanceof TemporalVector.Ints) {
+                final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+                return row -> {
+                    final int i = v.getInt(row);
+                    return i == Integer.MIN_VALUE ? Long.MIN_VALUE : i;
+                };
+            }
+            return null;
+        }
+        final int type = ColumnFilter.temporalType(view);
+        if (type != 0 && type != 15) {
+            return row -> ColumnFilter.temporal(view.get(row));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxMappedFile;
+
+/**
+ * Model of a table which columns are read straight from a memory-mapped temp file, see {@link KxMappedFile}.
+ * <p>
+ * The model wraps the usual model of the result and removes the file when it's disposed.
+ */
+public class MappedTableModel extends TableResult.QTableModel {
+    private final KxMappedFile file;
+    private final TableResult.QTableModel model;
+
+    MappedTableModel(KxMappedFile file, TableResult.QTableModel model) {
+        super(model.getColumns());
+        this.file = file;
+        this.model = model;
+    }
+
+    public KxMappedFile getFile() {
+        return file;
+    }
+
+    @Override
+    public int getRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        return model.getValueAt(rowIndex, columnIndex);
+    }
+
+    @Override
+    public Object getColumnData(int columnIndex) {
+        return model.getColumnData(columnIndex);
+    }
+
+    @Override
+    public QColumn getColumnView(int columnIndex) {
+        return model.getColumnView(columnIndex);
+    }
+
+    @Override
+    public void dispose() {
+        file.close();
+    }
+}
@@ -0,0 +1,365 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.find.FindModel;
+import com.intellij.openapi.diagnostic.Logger;
+import kx.c;
+import org.kdb.inside.brains.core.ConcurrentQueryException;
+import org.kdb.inside.brains.core.InstanceConnection;
+import org.kdb.inside.brains.core.InstanceState;
+import org.kdb.inside.brains.core.KdbQuery;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Virtual model of a big table that is kept on the instance in a temporary variable. Only rows around the viewport
+ * are fetched, page by page, and the client keeps a small LRU cache of pages, so the heap doesn't depend on
+ * the table size.
+ * <p>
+ * Sorting and searching are executed on the instance: they create an index of the visible rows in another
+ * temporary variable. Both variables are removed when the model is disposed.
+ * <p>
+ * A row that is not fetched yet is shown as empty and the rows are updated when the page arrives. Pages are fetched
+ * one by one, the most recently requested first, so a model takes only one connection of the instance at a time.
+ * A page that can't be fetched is requested again when its rows are shown next time.
+ */
+public class PagedTableModel extends TableResult.QTableModel {
+    private final InstanceConnection connection;
+    private final String variable;
+    private final String indexVariable;
+    private final String[] columnNames;
+    private final int totalRowsCount;
+
+    private int rowsCount;
+    private boolean indexed;
+    private int version;
+    private boolean disposed;
+    private boolean fetching;
+
+    // requested pages, including queued and fetching ones
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private final Deque<Integer> queuedPages = new ArrayDeque<>();
+    private final Map<Integer, Object[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * The first item of the paged result, see {@link #wrapQuery(KdbQuery, int)}.
+     */
+    static final String RESULT_MARKER = "kxPagedResult";
+
+    static final int PAGE_SIZE = 1000;
+    static final int MAX_CACHED_PAGES = 50;
+
+    private static final int RETRY_DELAY_MILLIS = 500;
+    private static final int DELETE_ATTEMPTS = 10;
+
+    private static final AtomicLong VARIABLES_COUNTER = new AtomicLong();
+
+    private static final Logger log = Logger.getInstance(PagedTableModel.class);
+
+    /**
+     * Evaluates the query and, if it's a table longer than the limit, keeps it in the variable unkeyed and
+     * returns the variable name, the rows count, an empty table with the same schema and the key columns.
+     */
+    private static final String WRAPPER = "{[q;n;v] r:value q; if[not .Q.qt r; :r]; if[n>count r; :r]; k:keys r; v set 0!r; (`" + RESULT_MARKER + ";v;count r;0#0!r;k)}";
+
+    private static final String FETCH = "{[v;iv;s;n] t:value v; $[null iv; t s+til 0|n&count[t]-s; t (value iv) s+til 0|n&count[value iv]-s]}";
+
+    /**
+     * Creates the index of rows that contain the pattern in any column, sorted by the columns with stable sorts from
+     * the last column to the first one, and returns its size.
+     */
+    private static final String INDEX = "{[v;iv;p;ci;c;o] t:value v; " +
+            "i:$[count p; where any {[ci;p;x] x:$[0h=type x;x;string x]; $[ci;lower x;x] like p}[ci;p] each t cols t; til count t]; " +
+            "k:count c; while[k; k-:1; i:i $[o k;iasc;idesc] (t c k) i]; iv set i; count i}";
+
+    private static final String DELETE = "{{![` sv -1_` vs x;();0b;enlist last ` vs x]} each x}";
+
+    PagedTableModel(InstanceConnection connection, Object[] result) {
+        super(columns((c.Flip) result[3], (String[]) result[4]));
+        this.connection = connection;
+        this.variable = (String) result[1];
+        this.indexVariable = variable + "i";
+        this.columnNames = ((c.Flip) result[3]).x;
+        this.totalRowsCount = (int) Math.min(Integer.MAX_VALUE, (Long) result[2]);
+        this.rowsCount = totalRowsCount;
+    }
+
+    private static TableResult.QColumnInfo[] columns(c.Flip schema, String[] keys) {
+        final Set<String> keyNames = new HashSet<>(Arrays.asList(keys));
+
+        final int length = schema.x.length;
+        final TableResult.QColumnInfo[] res = new TableResult.QColumnInfo[length];
+        for (int i = 0; i < length; i++) {
+            res[i] = new TableResult.QColumnInfo(schema.x[i], schema.y[i], keyNames.contains(schema.x[i]));
+        }
+        return res;
+    }
+
+    /**
+     * Wraps the query so a table longer than the limit is kept on the instance and only its schema is returned.
+     * Any other result is returned as it is.
+     *
+     * @param query   the query
+     * @param minRows min number of rows in a table to be paged
+     * @return the wrapped query
+     */
+    public static KdbQuery wrapQuery(KdbQuery query, int minRows) {
+        final String variable = ".kib.paged.r" + System.currentTimeMillis() + "x" + VARIABLES_COUNTER.incrementAndGet();
+        return query.wrap(WRAPPER, (long) minRows, variable);
+    }
+
+    public static boolean isPagedResult(Object o) {
+        if (!(o instanceof Object[])) {
+            return false;
+        }
+        final Object[] items = (Object[]) o;
+        return items.length == 5 && RESULT_MARKER.equals(items[0]) && items[1] instanceof String && items[2] instanceof Long && items[3] instanceof c.Flip && items[4] instanceof String[];
+    }
+
+    /**
+     * Returns name of the variable with the table on the instance.
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    public int getTotalRowsCount() {
+        return totalRowsCount;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowsCount;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        final int page = rowIndex / PAGE_SIZE;
+        final Object[] columns = pages.get(page);
+        if (columns == null) {
+            loadPage(page);
+            return null;
+        }
+        final Object column = columns[columnIndex];
+        final int index = rowIndex - page * PAGE_SIZE;
+        return index < TableResult.length(column) ? TableResult.valueAt(column, index) : null;
+    }
+
+    /**
+     * There is no vector of the whole column in memory.
+     *
+     * @return always null
+     */
+    @Override
+    public Object getColumnData(int columnIndex) {
+        return null;
+    }
+
+    /**
+     * There is no vector of the whole column in memory.
+     *
+     * @return always null
+     */
+    @Override
+    public QColumn getColumnView(int columnIndex) {
+        return null;
+    }
+
+    /**
+     * Sorts and filters the rows on the instance. The model is updated when the new index is ready.
+     *
+     * @param sortKeys  sort keys, the first one is the primary one; unsorted keys are ignored
+     * @param findModel the search text or null if there is no search
+     */
+    void updateView(List<? extends RowSorter.SortKey> sortKeys, FindModel findModel) {
+        final List<String> columns = new ArrayList<>();
+        final List<Boolean> orders = new ArrayList<>();
+        for (RowSorter.SortKey key : sortKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) {
+                columns.add(columnNames[key.getColumn()]);
+                orders.add(key.getSortOrder() == SortOrder.ASCENDING);
+            }
+        }
+
+        final String text = findModel == null ? "" : findModel.getStringToFind();
+        if (columns.isEmpty() && text.isBlank()) {
+            indexed = false;
+            resetRows(totalRowsCount);
+            return;
+        }
+
+        final boolean caseInsensitive = findModel != null && !findModel.isCaseSensitive();
+        final char[] pattern = text.isBlank() ? new char[0] : likePattern(caseInsensitive ? text.toLowerCase() : text).toCharArray();
+
+        final boolean[] o = new boolean[orders.size()];
+        for (int i = 0; i < o.length; i++) {
+            o[i] = orders.get(i);
+        }
+
+        final KdbQuery query = new KdbQuery(INDEX, variable, indexVariable, pattern, caseInsensitive, columns.toArray(String[]::new), o);
+        execute(query, res -> {
+            indexed = true;
+            resetRows((int) Math.min(Integer.MAX_VALUE, ((Number) res).longValue()));
+        }, () -> updateView(sortKeys, findModel), () -> {
+        });
+    }
+
+    private void resetRows(int count) {
+        version++;
+        pages.clear();
+        loadingPages.clear();
+        queuedPages.clear();
+        rowsCount = count;
+        fireTableChanged(new TableModelEvent(this));
+    }
+
+    private void loadPage(int page) {
+        if (disposed || !loadingPages.add(page)) {
+            return;
+        }
+
+        queuedPages.addLast(page);
+        // pages scrolled out of the cache size are not fetched at all
+        if (queuedPages.size() > MAX_CACHED_PAGES) {
+            loadingPages.remove(queuedPages.pollFirst());
+        }
+        fetchNextPage();
+    }
+
+    private void fetchNextPage() {
+        if (fetching || queuedPages.isEmpty()) {
+            return;
+        }
+        fetching = true;
+        fetchPage(queuedPages.pollLast(), version);
+    }
+
+    private void fetchPage(int page, int v) {
+        final long start = (long) page * PAGE_SIZE;
+        final KdbQuery query = new KdbQuery(FETCH, variable, indexed ? indexVariable : "", start, (long) PAGE_SIZE);
+        execute(query, res -> {
+            fetching = false;
+            if (v == version) {
+                loadingPages.remove(page);
+                if (res instanceof c.Flip) {
+                    pages.put(page, ((c.Flip) res).y);
+                    final int first = page * PAGE_SIZE;
+                    fireTableChanged(new TableModelEvent(this, first, Math.min(rowsCount, first + PAGE_SIZE) - 1));
+                }
+            }
+            fetchNextPage();
+        }, () -> {
+            if (v == version) {
+                fetchPage(page, v);
+            } else {
+                fetching = false;
+                fetchNextPage();
+            }
+        }, () -> {
+            // all requested pages are requested again when they are shown
+            fetching = false;
+            if (v == version) {
+                loadingPages.clear();
+                queuedPages.clear();
+            }
+        });
+    }
+
+    /**
+     * Executes the query in background unless the model is disposed. Callbacks are not called after disposing.
+     *
+     * @param failed called if the instance is not connected or the query has failed
+     */
+    private void execute(KdbQuery query, Consumer<Object> handler, Runnable retry, Runnable failed) {
+        if (disposed) {
+            return;
+        }
+        query(query, res -> {
+            if (!disposed) {
+                handler.accept(res);
+            }
+        }, () -> {
+            if (!disposed) {
+                retry.run();
+            }
+        }, () -> {
+            if (!disposed) {
+                failed.run();
+            }
+        });
+    }
+
+    /**
+     * Executes the query in background. If the instance is busy with another query, the retry is called a bit later.
+     *
+     * @param failed called if the instance is not connected or the query has failed
+     */
+    private void query(KdbQuery query, Consumer<Object> handler, Runnable retry, Runnable failed) {
+        if (connection.getState() != InstanceState.CONNECTED) {
+            failed.run();
+            return;
+        }
+
+        try {
+            connection.query(query, result -> {
+                if (result.isError()) {
+                    log.warn("Paged table query failed: " + query.getExpression(), (Exception) result.getObject());
+                    failed.run();
+                } else {
+                    handler.accept(result.getObject());
+                }
+            });
+        } catch (ConcurrentQueryException ex) {
+            final Timer timer = new Timer(RETRY_DELAY_MILLIS, e -> retry.run());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+
+    /**
+     * Removes the temporary variables from the instance.
+     */
+    @Override
+    public void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        pages.clear();
+        deleteVariables(new KdbQuery(DELETE, (Object) new String[]{variable, indexVariable}), DELETE_ATTEMPTS);
+    }
+
+    /**
+     * The variables are removed after the model is disposed, so the query is retried regardless of the flag
+     * while the instance is busy with other queries.
+     */
+    private void deleteVariables(KdbQuery query, int attempts) {
+        final Runnable failed = () -> log.warn("Paged table variable can't be removed: " + variable);
+        query(query, res -> {
+        }, attempts > 1 ? () -> deleteVariables(query, attempts - 1) : failed, failed);
+    }
+
+    static String likePattern(String text) {
+        final StringBuilder b = new StringBuilder(text.length() + 2);
+        b.append('*');
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch == '*' || ch == '?' || ch == '[') {
+                b.append('[').append(ch).append(']');
+            } else {
+                b.append(ch);
+            }
+        }
+        b.append('*');
+        return b.toString();
+    }
+}
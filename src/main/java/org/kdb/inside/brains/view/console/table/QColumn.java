@@ -0,0 +1,843 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxVector;
+import kx.TemporalVector;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import javax.swing.*;
+
+/**
+ * Typed view of a table column. Primitive columns are read through primitive getters, formatted with primitive
+ * formatters and compared without creating value objects, so a value is boxed only when {@link #get(int)} is called
+ * at the Swing {@link javax.swing.table.TableModel} boundary.
+ * <p>
+ * Nulls are ordered as kdb+ does: a null is less than any other value.
+ *
+ * @see TableResult.QTableModel#getColumnView(int)
+ */
+public abstract class QColumn {
+    private QColumn() {
+    }
+
+    public abstract int size();
+
+    /**
+     * Returns Java type of the column items: a primitive type for primitive columns.
+     */
+    public abstract Class<?> getElementType();
+
+    /**
+     * Returns the item as an object. Use typed getters of the column, if there are, to avoid boxing.
+     */
+    public abstract Object get(int row);
+
+    public abstract boolean isNull(int row);
+
+    /**
+     * Compares two items of the column, nulls first.
+     */
+    public abstract int compare(int row1, int row2);
+
+    /**
+     * Returns true if {@link #compare(int, int)} orders the items, false if items can't be compared.
+     */
+    public boolean isComparable() {
+        return true;
+    }
+
+    /**
+     * Returns a long key of each item that is ordered the same way as {@link #compare(int, int)} orders the items, so
+     * the column can be sorted by primitive keys.
+     *
+     * @return the keys or null if items can't be mapped into longs
+     */
+    long[] toSortKeys() {
+        return null;
+    }
+
+    /**
+     * Formats the item the same way as {@link KdbOutputFormatter#objectToString(Object)} formats the item object.
+     */
+    public abstract String format(KdbOutputFormatter formatter, int row);
+
+    /**
+     * Formats the item without kdb+ type suffixes: numbers are printed as Java prints them and symbols and strings are
+     * not decorated, like {@link KdbOutputFormatter#objectToString(Object, boolean, boolean)} without prefixes and
+     * wrapping. A null object is an empty string.
+     */
+    public abstract String formatPlain(KdbOutputFormatter formatter, int row);
+
+    /**
+     * Creates the view of the vector.
+     *
+     * @param vector an array of a kdb+ type or a {@link KxVector}
+     * @return the view
+     * @throws IllegalArgumentException if the object is not a vector
+     */
+    public static QColumn of(Object vector) {
+        if (vector instanceof KxVector) {
+            return new VectorColumn((KxVector) vector);
+        }
+        if (vector instanceof long[]) {
+            return new LongColumn((long[]) vector);
+        }
+        if (vector instanceof double[]) {
+            return new DoubleColumn((double[]) vector);
+        }
+        if (vector instanceof int[]) {
+            return new IntColumn((int[]) vector);
+        }
+        if (vector instanceof String[]) {
+            return new SymbolColumn((String[]) vector);
+        }
+        if (vector instanceof boolean[]) {
+            return new BooleanColumn((boolean[]) vector);
+        }
+        if (vector instanceof byte[]) {
+            return new ByteColumn((byte[]) vector);
+        }
+        if (vector instanceof short[]) {
+            return new ShortColumn((short[]) vector);
+        }
+        if (vector instanceof float[]) {
+            return new FloatColumn((float[]) vector);
+        }
+        if (vector instanceof char[]) {
+            return new CharColumn((char[]) vector);
+        }
+        if (vector instanceof Object[]) {
+            return new ObjectColumn((Object[]) vector);
+        }
+        throw new IllegalArgumentException("Not a vector: " + (vector == null ? null : vector.getClass()));
+    }
+
+    /**
+     * Returns the view of the table column or null if the table is not a kdb+ result or the column is not in memory.
+     *
+     * @param table  the table
+     * @param column the column index in the table view
+     */
+    public static QColumn of(JTable table, int column) {
+        if (table.getModel() instanceof TableResult.QTableModel) {
+            return ((TableResult.QTableModel) table.getModel()).getColumnView(table.convertColumnIndexToModel(column));
+        }
+        return null;
+    }
+
+    /**
+     * A column of numbers that can be read as doubles, nulls are NaN.
+     */
+    public static abstract class NumericColumn extends QColumn {
+        private NumericColumn() {
+        }
+
+        public abstract double getDouble(int row);
+    }
+
+    public static final class BooleanColumn extends QColumn {
+        private final boolean[] values;
+
+        BooleanColumn(boolean[] values) {
+            this.values = values;
+        }
+
+        public boolean getBoolean(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return boolean.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return false;
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            return Boolean.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i] ? 1 : 0;
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatBool(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class ByteColumn extends NumericColumn {
+        private final byte[] values;
+
+        ByteColumn(byte[] values) {
+            this.values = values;
+        }
+
+        public byte getByte(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            // bytes are unsigned in kdb+
+            return values[row] & 0xff;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return byte.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return false;
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            // bytes are unsigned in kdb+
+            return Integer.compare(values[row1] & 0xff, values[row2] & 0xff);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i] & 0xff;
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatByte(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class ShortColumn extends NumericColumn {
+        private final short[] values;
+
+        ShortColumn(short[] values) {
+            this.values = values;
+        }
+
+        public short getShort(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            final short v = values[row];
+            return v == Short.MIN_VALUE ? Double.NaN : v;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return short.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == Short.MIN_VALUE;
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            // the null is the min value
+            return Short.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i];
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatShort(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class IntColumn extends NumericColumn {
+        private final int[] values;
+
+        IntColumn(int[] values) {
+            this.values = values;
+        }
+
+        public int getInt(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            final int v = values[row];
+            return v == Integer.MIN_VALUE ? Double.NaN : v;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return int.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == Integer.MIN_VALUE;
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            // the null is the min value
+            return Integer.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i];
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatInt(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class LongColumn extends NumericColumn {
+        private final long[] values;
+
+        LongColumn(long[] values) {
+            this.values = values;
+        }
+
+        public long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            final long v = values[row];
+            return v == Long.MIN_VALUE ? Double.NaN : v;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return long.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == Long.MIN_VALUE;
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            // the null is the min value
+            return Long.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            return values;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatLong(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class FloatColumn extends NumericColumn {
+        private final float[] values;
+
+        FloatColumn(float[] values) {
+            this.values = values;
+        }
+
+        public float getFloat(int row) {
+            return values[row];
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return float.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return Float.isNaN(values[row]);
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            final float v1 = values[row1];
+            final float v2 = values[row2];
+            if (Float.isNaN(v1) || Float.isNaN(v2)) {
+                return Boolean.compare(!Float.isNaN(v1), !Float.isNaN(v2));
+            }
+            return Float.compare(v1, v2);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = doubleKey(values[i]);
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatFloat(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class DoubleColumn extends NumericColumn {
+        private final double[] values;
+
+        DoubleColumn(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return double.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return Double.isNaN(values[row]);
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            final double v1 = values[row1];
+            final double v2 = values[row2];
+            if (Double.isNaN(v1) || Double.isNaN(v2)) {
+                return Boolean.compare(!Double.isNaN(v1), !Double.isNaN(v2));
+            }
+            return Double.compare(v1, v2);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = doubleKey(values[i]);
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatDouble(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class CharColumn extends QColumn {
+        private final char[] values;
+
+        CharColumn(char[] values) {
+            this.values = values;
+        }
+
+        public char getChar(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return char.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == ' ';
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            return Character.compare(values[row1], values[row2]);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            final long[] res = new long[values.length];
+            for (int i = 0; i < res.length; i++) {
+                res[i] = values[i];
+            }
+            return res;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.objectToString(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return String.valueOf(values[row]);
+        }
+    }
+
+    public static final class SymbolColumn extends QColumn {
+        private final String[] values;
+
+        SymbolColumn(String[] values) {
+            this.values = values;
+        }
+
+        public String getSymbol(int row) {
+            return values[row];
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return String.class;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row].isEmpty();
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            // the null is an empty string
+            return values[row1].compareTo(values[row2]);
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.objectToString(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return values[row];
+        }
+    }
+
+    /**
+     * View of a compact vector, like raw temporals, packed symbols or a memory-mapped column. Items are read,
+     * compared and formatted by the vector itself.
+     */
+    public static final class VectorColumn extends QColumn {
+        private final KxVector vector;
+
+        VectorColumn(KxVector vector) {
+            this.vector = vector;
+        }
+
+        public KxVector getVector() {
+            return vector;
+        }
+
+        @Override
+        public int size() {
+            return vector.size();
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return vector.getElementType();
+        }
+
+        @Override
+        public Object get(int row) {
+            return vector.get(row);
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return vector.isNull(row);
+        }
+
+        @Override
+        public int compare(int row1, int row2) {
+            return vector.compare(row1, row2);
+        }
+
+        @Override
+        long[] toSortKeys() {
+            if (vector instanceof TemporalVector.Longs) {
+                return ((TemporalVector.Longs) vector).getValues();
+            }
+            if (vector instanceof TemporalVector.Ints) {
+                final int[] values = ((TemporalVector.Ints) vector).getValues();
+                final long[] res = new long[values.length];
+                for (int i = 0; i < res.length; i++) {
+                    res[i] = values[i];
+                }
+                return res;
+            }
+            if (vector instanceof TemporalVector.Doubles) {
+                final double[] values = ((TemporalVector.Doubles) vector).getValues();
+                final long[] res = new long[values.length];
+                for (int i = 0; i < res.length; i++) {
+                    res[i] = doubleKey(values[i]);
+                }
+                return res;
+            }
+            return null;
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.formatItem(vector, row);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            if (vector instanceof TemporalVector) {
+                return formatter.formatTemporal((TemporalVector) vector, row);
+            }
+            return plain(formatter, vector.get(row));
+        }
+    }
+
+    /**
+     * View of an array of objects: a general list or a vector of values that are objects anyway, like GUIDs.
+     */
+    public static final class ObjectColumn extends QColumn {
+        private final Object[] values;
+        private final boolean comparable;
+
+        ObjectColumn(Object[] values) {
+            this.values = values;
+            this.comparable = Comparable.class.isAssignableFrom(values.getClass().getComponentType());
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Class<?> getElementType() {
+            return values.getClass().getComponentType();
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        public boolean isComparable() {
+            return comparable;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public int compare(int row1, int row2) {
+            final Object v1 = values[row1];
+            final Object v2 = values[row2];
+            if (v1 == null || v2 == null) {
+                return Boolean.compare(v1 != null, v2 != null);
+            }
+            if (!comparable) {
+                return 0;
+            }
+            return ((Comparable<Object>) v1).compareTo(v2);
+        }
+
+        @Override
+        public String format(KdbOutputFormatter formatter, int row) {
+            return formatter.objectToString(values[row]);
+        }
+
+        @Override
+        public String formatPlain(KdbOutputFormatter formatter, int row) {
+            return plain(formatter, values[row]);
+        }
+    }
+
+    /**
+     * Maps a double into a long with the same order, the null (NaN) is the lowest key.
+     */
+    static long doubleKey(double v) {
+        if (Double.isNaN(v)) {
+            return Long.MIN_VALUE;
+        }
+        final long bits = Double.doubleToLongBits(v);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Maps a key of {@link #doubleKey(double)} back into the double.
+     */
+    static double fromDoubleKey(long key) {
+        if (key == Long.MIN_VALUE) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+    }
+
+    private static String plain(KdbOutputFormatter formatter, Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return String.valueOf(value);
+        }
+        return formatter.objectToString(value, false, false);
+    }
+}
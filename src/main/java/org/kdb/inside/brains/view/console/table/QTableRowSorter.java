@@ -0,0 +1,744 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+
+/**
+ * Sorter of an in-memory table that sorts an <code>int[]</code> permutation of model rows instead of row objects.
+ * <p>
+ * Rows are compared by typed column views, see {@link QColumn}, so no value object is created, and nulls go first as
+ * kdb+ sorts them. The ascending order of each sorted column is kept with ranks of its rows, so changing the direction
+ * of a column is just a pass over the cached order, and a sort by many columns compares int ranks only.
+ * <p>
+ * A big table is sorted in background, by a parallel merge sort on the common pool: the table keeps the previous
+ * order until the new one is ready. The sort is stable, so equal rows stay in the order of the model.
+ * <p>
+ * Rows are filtered by {@link QTableSearch} the same way: a big table is searched in background and the table keeps
+ * previous rows until the new ones are found. Structured {@link ColumnFilter} conditions read raw column values,
+ * so they are checked in parallel, and in background for a big table too.
+ */
+class QTableRowSorter extends RowSorter<TableResult.QTableModel> {
+    private final TableResult.QTableModel model;
+    private final KdbOutputFormatter formatter;
+    private final boolean searchIndex;
+
+    private final Map<Integer, ColumnOrder> orders = new ConcurrentHashMap<>();
+
+    private List<SortKey> sortKeys = List.of();
+
+    private QTableSearch search;
+    private QTableSearch.Query query;
+    private QTableSearch.Query foundQuery;
+    private int[] foundRows;
+
+    private ColumnFilter filter;
+
+    private int version;
+    private int filterVersion;
+    private volatile int searchVersion;
+    private int[] permutation;
+    private boolean[] found;
+    private boolean[] accepted;
+    private int[] viewToModel;
+    private int[] modelToView;
+
+    private static final int MAX_SORT_KEYS = 3;
+
+    /**
+     * Min number of rows to sort the table in background.
+     */
+    static final int ASYNC_THRESHOLD = 100_000;
+
+    /**
+     * Min number of cells to search the table in background.
+     */
+    static final int ASYNC_SEARCH_THRESHOLD = 200_000;
+
+    /**
+     * Max number of rows sorted by one task of the parallel sort.
+     */
+    static final int PARALLEL_CHUNK_SIZE = 8192;
+
+    private static final int INSERTION_SORT_SIZE = 32;
+
+    private static final Logger log = Logger.getInstance(QTableRowSorter.class);
+
+    QTableRowSorter(TableResult.QTableModel model, KdbOutputFormatter formatter, boolean searchIndex) {
+        this.model = model;
+        this.formatter = formatter;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    public TableResult.QTableModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        final List<SortKey> keys = new ArrayList<>(sortKeys);
+        int index = -1;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).getColumn() == column) {
+                index = i;
+                break;
+            }
+        }
+
+        if (index == 0) {
+            final SortOrder order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+            keys.set(0, new SortKey(column, order));
+        } else {
+            if (index > 0) {
+                keys.remove(index);
+            }
+            keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+            if (keys.size() > MAX_SORT_KEYS) {
+                keys.remove(MAX_SORT_KEYS);
+            }
+        }
+        setSortKeys(keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        final List<SortKey> newKeys = keys == null ? List.of() : List.copyOf(keys);
+        for (SortKey key : newKeys) {
+            if (key.getColumn() < 0 || key.getColumn() >= model.getColumnCount()) {
+                throw new IllegalArgumentException("Invalid sort key: " + key.getColumn());
+            }
+        }
+
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            fireSortOrderChanged();
+            sort();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    /**
+     * Shows only rows found by the query. If the query extends the previous one, only previously found rows are
+     * checked again.
+     *
+     * @param query the query or null to show all rows
+     */
+    void setSearch(QTableSearch.Query query) {
+        final int v = ++searchVersion;
+        this.query = query;
+
+        if (query == null) {
+            foundQuery = null;
+            foundRows = null;
+            found = null;
+            apply();
+            return;
+        }
+
+        if (search == null) {
+            search = new QTableSearch(model, formatter, searchIndex);
+        }
+
+        final QTableSearch engine = search;
+        final int[] candidates = query.narrows(foundQuery) ? foundRows : null;
+        if ((long) getModelRowCount() * model.getColumnCount() < ASYNC_SEARCH_THRESHOLD) {
+            found(query, engine.search(query, candidates, () -> false));
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> engine.search(query, candidates, () -> v != searchVersion), ForkJoinPool.commonPool()).whenComplete((res, ex) -> ApplicationManager.getApplication().invokeLater(() -> {
+            if (v != searchVersion) {
+                return;
+            }
+            if (ex != null) {
+                log.error("Table can't be searched", ex);
+            } else {
+                found(query, res);
+            }
+        }, ModalityState.any()));
+    }
+
+    private void found(QTableSearch.Query query, int[] rows) {
+        foundQuery = query;
+        foundRows = rows;
+
+        found = new boolean[getModelRowCount()];
+        for (int row : rows) {
+            found[row] = true;
+        }
+        apply();
+    }
+
+    /**
+     * Shows only rows accepted by the filter, together with the search. A big table keeps previous rows until
+     * the filter is checked in background.
+     *
+     * @param filter the filter or null to show all rows
+     * @throws IllegalArgumentException if a condition can't be applied to its column
+     */
+    void setFilter(ColumnFilter filter) {
+        final int v = ++filterVersion;
+        this.filter = filter == null || filter.isEmpty() ? null : filter;
+
+        if (this.filter == null) {
+            accepted = null;
+            apply();
+            return;
+        }
+
+        // compiled right away, so a wrong condition is reported to the caller
+        final IntPredicate predicate = this.filter.compile(model::getColumnView);
+        if (getModelRowCount() < ASYNC_THRESHOLD) {
+            accepted = accept(predicate);
+            apply();
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> accept(predicate), ForkJoinPool.commonPool()).whenComplete((res, ex) -> ApplicationManager.getApplication().invokeLater(() -> {
+            if (v != filterVersion) {
+                return;
+            }
+            if (ex != null) {
+                log.error("Table can't be filtered", ex);
+            } else {
+                accepted = res;
+                apply();
+            }
+        }, ModalityState.any()));
+    }
+
+    private boolean[] accept(IntPredicate predicate) {
+        final boolean[] res = new boolean[getModelRowCount()];
+        if (res.length <= PARALLEL_CHUNK_SIZE) {
+            for (int i = 0; i < res.length; i++) {
+                res[i] = predicate.test(i);
+            }
+        } else {
+            ForkJoinPool.commonPool().invoke(new FilterTask(predicate, res, 0, res.length));
+        }
+        return res;
+    }
+
+    private void sort() {
+        final int v = ++version;
+
+        final List<SortKey> keys = new ArrayList<>(sortKeys.size());
+        for (SortKey key : sortKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED) {
+                keys.add(key);
+            }
+        }
+
+        if (keys.isEmpty()) {
+            permutation = null;
+            apply();
+            return;
+        }
+
+        if (getModelRowCount() < ASYNC_THRESHOLD) {
+            permutation = permutation(keys);
+            apply();
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> permutation(keys), ForkJoinPool.commonPool()).whenComplete((res, ex) -> ApplicationManager.getApplication().invokeLater(() -> {
+            if (v != version) {
+                return;
+            }
+            if (ex != null) {
+                log.error("Table can't be sorted", ex);
+            } else {
+                permutation = res;
+                apply();
+            }
+        }, ModalityState.any()));
+    }
+
+    private int[] permutation(List<SortKey> keys) {
+        final int rowsCount = getModelRowCount();
+
+        final ColumnOrder[] columnOrders = new ColumnOrder[keys.size()];
+        for (int i = 0; i < columnOrders.length; i++) {
+            final int column = keys.get(i).getColumn();
+            ColumnOrder order = orders.get(column);
+            if (order == null) {
+                order = columnOrder(column, rowsCount);
+                orders.put(column, order);
+            }
+            columnOrders[i] = order;
+        }
+
+        final ColumnOrder primary = columnOrders[0];
+        final boolean primaryAscending = keys.get(0).getSortOrder() == SortOrder.ASCENDING;
+        if (columnOrders.length == 1) {
+            return primaryAscending ? primary.sorted : primary.descending();
+        }
+
+        final int[][] ranks = new int[columnOrders.length][];
+        final boolean[] ascending = new boolean[columnOrders.length];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = columnOrders[i].ranks;
+            ascending[i] = keys.get(i).getSortOrder() == SortOrder.ASCENDING;
+        }
+
+        // the sort starts from the primary order, so most of the merges are skipped
+        final int[] res = primaryAscending ? primary.sorted.clone() : primary.descending();
+        sort(res, (r1, r2) -> {
+            for (int i = 0; i < ranks.length; i++) {
+                final int c = Integer.compare(ranks[i][r1], ranks[i][r2]);
+                if (c != 0) {
+                    return ascending[i] ? c : -c;
+                }
+            }
+            // equal rows keep the order of the model
+            return Integer.compare(r1, r2);
+        });
+        return res;
+    }
+
+    private ColumnOrder columnOrder(int column, int rowsCount) {
+        final int[] sorted = identity(rowsCount);
+
+        // items that can't be compared are sorted by their text
+        final QColumn view = model.getColumnView(column);
+        final String[] text = view == null || !view.isComparable() ? formatColumn(column) : null;
+        final long[] keys = text == null ? view.toSortKeys() : null;
+        if (keys != null) {
+            // primitive columns are sorted by keys moved together with rows, so the sort reads memory sequentially
+            final long[] sortedKeys = keys.clone();
+            sort(sortedKeys, sorted);
+
+            final int[] ranks = new int[rowsCount];
+            int rank = 0;
+            for (int i = 1; i < rowsCount; i++) {
+                if (sortedKeys[i - 1] != sortedKeys[i]) {
+                    rank++;
+                }
+                ranks[sorted[i]] = rank;
+            }
+            return new ColumnOrder(sorted, ranks);
+        }
+
+        final RowComparator comparator = text != null ? (r1, r2) -> text[r1].compareTo(text[r2]) : view::compare;
+        sort(sorted, comparator);
+
+        final int[] ranks = new int[rowsCount];
+        int rank = 0;
+        for (int i = 1; i < rowsCount; i++) {
+            if (comparator.compare(sorted[i - 1], sorted[i]) != 0) {
+                rank++;
+            }
+            ranks[sorted[i]] = rank;
+        }
+        return new ColumnOrder(sorted, ranks);
+    }
+
+    private String[] formatColumn(int column) {
+        final int rowsCount = getModelRowCount();
+        final QColumn view = model.getColumnView(column);
+        final String[] res = new String[rowsCount];
+        for (int i = 0; i < rowsCount; i++) {
+            if (view != null) {
+                res[i] = view.format(formatter, i);
+            } else {
+                final Object valueAt = model.getValueAt(i, column);
+                res[i] = valueAt == null ? "" : formatter.objectToString(valueAt);
+            }
+        }
+        return res;
+    }
+
+    private void apply() {
+        final int[] last = viewToModel != null ? viewToModel : identity(getModelRowCount());
+
+        if (permutation == null && found == null && accepted == null) {
+            viewToModel = null;
+        } else {
+            final int rowsCount = getModelRowCount();
+            final int[] order = permutation != null ? permutation : identity(rowsCount);
+            if (found == null && accepted == null) {
+                viewToModel = order;
+            } else {
+                int count = 0;
+                final int[] res = new int[rowsCount];
+                for (int row : order) {
+                    if ((found == null || found[row]) && (accepted == null || accepted[row])) {
+                        res[count++] = row;
+                    }
+                }
+                viewToModel = count == rowsCount ? res : Arrays.copyOf(res, count);
+            }
+        }
+        modelToView = null;
+        fireRowSorterChanged(last);
+    }
+
+    private static int[] identity(int count) {
+        final int[] res = new int[count];
+        for (int i = 0; i < count; i++) {
+            res[i] = i;
+        }
+        return res;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= getModelRowCount()) {
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            }
+            return index;
+        }
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (viewToModel == null) {
+            if (index < 0 || index >= getModelRowCount()) {
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            }
+            return index;
+        }
+
+        if (modelToView == null) {
+            final int[] res = new int[getModelRowCount()];
+            Arrays.fill(res, -1);
+            for (int i = 0; i < viewToModel.length; i++) {
+                res[viewToModel[i]] = i;
+            }
+            modelToView = res;
+        }
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? getModelRowCount() : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        orders.clear();
+        permutation = null;
+        found = null;
+        accepted = null;
+        filter = null;
+        sortKeys = List.of();
+        search = null;
+        foundQuery = null;
+        foundRows = null;
+        query = null;
+        version++;
+        filterVersion++;
+        searchVersion++;
+        apply();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        invalidate();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        invalidate();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        invalidate();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        invalidate();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        invalidate();
+    }
+
+    /**
+     * In-memory models are never changed, but if they are, everything is sorted and filtered again.
+     */
+    private void invalidate() {
+        orders.clear();
+        permutation = null;
+        search = null;
+        foundQuery = null;
+        foundRows = null;
+        accepted = null;
+        setFilter(filter);
+        setSearch(query);
+        sort();
+    }
+
+    /**
+     * Stable merge sort of rows, in parallel on the common pool if there are more rows than {@link #PARALLEL_CHUNK_SIZE}.
+     */
+    static void sort(int[] rows, RowComparator comparator) {
+        final int[] tmp = new int[rows.length];
+        if (rows.length <= PARALLEL_CHUNK_SIZE) {
+            mergeSort(rows, tmp, 0, rows.length, comparator);
+        } else {
+            ForkJoinPool.commonPool().invoke(new SortTask(rows, tmp, 0, rows.length, comparator));
+        }
+    }
+
+    /**
+     * Stable merge sort of keys, the rows are moved with their keys. Runs in parallel on the common pool if there
+     * are more rows than {@link #PARALLEL_CHUNK_SIZE}.
+     */
+    static void sort(long[] keys, int[] rows) {
+        final long[] tmpKeys = new long[keys.length];
+        final int[] tmpRows = new int[rows.length];
+        if (rows.length <= PARALLEL_CHUNK_SIZE) {
+            mergeSort(keys, rows, tmpKeys, tmpRows, 0, rows.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new KeysSortTask(keys, rows, tmpKeys, tmpRows, 0, rows.length));
+        }
+    }
+
+    private static void mergeSort(long[] k, int[] r, long[] tk, int[] tr, int from, int to) {
+        if (to - from <= INSERTION_SORT_SIZE) {
+            for (int i = from + 1; i < to; i++) {
+                final long key = k[i];
+                final int row = r[i];
+                int j = i - 1;
+                while (j >= from && k[j] > key) {
+                    k[j + 1] = k[j];
+                    r[j + 1] = r[j];
+                    j--;
+                }
+                k[j + 1] = key;
+                r[j + 1] = row;
+            }
+            return;
+        }
+
+        final int mid = (from + to) >>> 1;
+        mergeSort(k, r, tk, tr, from, mid);
+        mergeSort(k, r, tk, tr, mid, to);
+        merge(k, r, tk, tr, from, mid, to);
+    }
+
+    private static void merge(long[] k, int[] r, long[] tk, int[] tr, int from, int mid, int to) {
+        if (k[mid - 1] <= k[mid]) {
+            return;
+        }
+
+        System.arraycopy(k, from, tk, from, to - from);
+        System.arraycopy(r, from, tr, from, to - from);
+        int i = from;
+        int j = mid;
+        int n = from;
+        while (i < mid && j < to) {
+            if (tk[j] < tk[i]) {
+                k[n] = tk[j];
+                r[n++] = tr[j++];
+            } else {
+                k[n] = tk[i];
+                r[n++] = tr[i++];
+            }
+        }
+        while (i < mid) {
+            k[n] = tk[i];
+            r[n++] = tr[i++];
+        }
+        while (j < to) {
+            k[n] = tk[j];
+            r[n++] = tr[j++];
+        }
+    }
+
+    private static void mergeSort(int[] a, int[] tmp, int from, int to, RowComparator c) {
+        if (to - from <= INSERTION_SORT_SIZE) {
+            insertionSort(a, from, to, c);
+            return;
+        }
+
+        final int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid, c);
+        mergeSort(a, tmp, mid, to, c);
+        merge(a, tmp, from, mid, to, c);
+    }
+
+    private static void insertionSort(int[] a, int from, int to, RowComparator c) {
+        for (int i = from + 1; i < to; i++) {
+            final int v = a[i];
+            int j = i - 1;
+            while (j >= from && c.compare(a[j], v) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void merge(int[] a, int[] tmp, int from, int mid, int to, RowComparator c) {
+        if (c.compare(a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            a[k++] = c.compare(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+        }
+        while (i < mid) {
+            a[k++] = tmp[i++];
+        }
+        while (j < to) {
+            a[k++] = tmp[j++];
+        }
+    }
+
+    @FunctionalInterface
+    interface RowComparator {
+        int compare(int row1, int row2);
+    }
+
+    private static class SortTask extends RecursiveAction {
+        private final int[] a;
+        private final int[] tmp;
+        private final int from;
+        private final int to;
+        private final RowComparator comparator;
+
+        private SortTask(int[] a, int[] tmp, int from, int to, RowComparator comparator) {
+            this.a = a;
+            this.tmp = tmp;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                mergeSort(a, tmp, from, to, comparator);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(a, tmp, from, mid, comparator), new SortTask(a, tmp, mid, to, comparator));
+            merge(a, tmp, from, mid, to, comparator);
+        }
+    }
+
+    private static class KeysSortTask extends RecursiveAction {
+        private final long[] keys;
+        private final int[] rows;
+        private final long[] tmpKeys;
+        private final int[] tmpRows;
+        private final int from;
+        private final int to;
+
+        private KeysSortTask(long[] keys, int[] rows, long[] tmpKeys, int[] tmpRows, int from, int to) {
+            this.keys = keys;
+            this.rows = rows;
+            this.tmpKeys = tmpKeys;
+            this.tmpRows = tmpRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                mergeSort(keys, rows, tmpKeys, tmpRows, from, to);
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new KeysSortTask(keys, rows, tmpKeys, tmpRows, from, mid), new KeysSortTask(keys, rows, tmpKeys, tmpRows, mid, to));
+            merge(keys, rows, tmpKeys, tmpRows, from, mid, to);
+        }
+    }
+
+    private static class FilterTask extends RecursiveAction {
+        private final IntPredicate predicate;
+        private final boolean[] res;
+        private final int from;
+        private final int to;
+
+        private FilterTask(IntPredicate predicate, boolean[] res, int from, int to) {
+            this.predicate = predicate;
+            this.res = res;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    res[i] = predicate.test(i);
+                }
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new FilterTask(predicate, res, from, mid), new FilterTask(predicate, res, mid, to));
+        }
+    }
+
+    /**
+     * Stable ascending order of a column and the rank of each row in it: equal items have the same rank.
+     */
+    private static class ColumnOrder {
+        private final int[] sorted;
+        private final int[] ranks;
+
+        private ColumnOrder(int[] sorted, int[] ranks) {
+            this.sorted = sorted;
+            this.ranks = ranks;
+        }
+
+        /**
+         * Returns the descending order: groups of equal items are reversed, but rows of a group keep the model order.
+         */
+        int[] descending() {
+            final int[] res = new int[sorted.length];
+            int count = 0;
+            int end = sorted.length;
+            while (end > 0) {
+                final int rank = ranks[sorted[end - 1]];
+                int start = end - 1;
+                while (start > 0 && ranks[sorted[start - 1]] == rank) {
+                    start--;
+                }
+                System.arraycopy(sorted, start, res, count, end - start);
+                count += end - start;
+                end = start;
+            }
+            return res;
+        }
+    }
+}
\ No newline at end of file
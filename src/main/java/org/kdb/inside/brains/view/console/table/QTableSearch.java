@@ -0,0 +1,680 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.find.FindModel;
+import kx.SymbolVector;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Search engine of an in-memory table: finds rows that contain the text in any column, as the table shows the column.
+ * <p>
+ * Formatted text of a column is cached when the column is searched first time. A column with not many distinct
+ * texts, like symbols or dates, keeps each distinct text once, so each text is checked only once. Other columns keep
+ * the text of each row, up to {@link #MAX_CACHED_ROWS} rows, and bigger ones are formatted while they are searched.
+ * <p>
+ * Rows are checked in parallel chunks on the common pool. The caller can restrict rows to the ones matched by
+ * a previous search, if the new search text extends the previous one: see {@link Query#narrows(Query)}.
+ * <p>
+ * If enabled, an n-gram index of cached texts is created in background when a big table is searched the second
+ * time. A search, except regex one, checks only texts that contain all trigrams of the search text then.
+ */
+class QTableSearch {
+    private final TableResult.QTableModel model;
+    private final KdbOutputFormatter formatter;
+    private final boolean indexEnabled;
+
+    private final ColumnText[] texts;
+    private final AtomicInteger searchesCount = new AtomicInteger();
+
+    /**
+     * Max number of rows in a chunk checked by one task.
+     */
+    static final int PARALLEL_CHUNK_SIZE = 16384;
+
+    /**
+     * Max number of rows which text is cached for each row.
+     */
+    static final int MAX_CACHED_ROWS = 1_000_000;
+
+    /**
+     * Min number of rows to create the n-gram index.
+     */
+    static final int INDEX_MIN_ROWS = 100_000;
+
+    /**
+     * Max size of the n-gram index of one column: the number of texts for all trigrams.
+     */
+    static final int MAX_INDEX_POSTINGS = 64 * 1024 * 1024;
+
+    private static final int MIN_DICTIONARY_SIZE = 1024;
+
+    QTableSearch(TableResult.QTableModel model, KdbOutputFormatter formatter, boolean indexEnabled) {
+        this.model = model;
+        this.formatter = formatter;
+        this.indexEnabled = indexEnabled;
+        this.texts = new ColumnText[model.getColumnCount()];
+    }
+
+    /**
+     * Finds rows that contain the text in any column.
+     *
+     * @param query      the search query
+     * @param candidates rows to be checked, in ascending order, or null to check all rows
+     * @param cancelled  checked between chunks, the result is not complete if it returns true
+     * @return the matched rows in ascending order
+     */
+    int[] search(Query query, int[] candidates, BooleanSupplier cancelled) {
+        final int columnCount = model.getColumnCount();
+        final ColumnSearch[] columns = new ColumnSearch[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = text(i).prepare(query, cancelled);
+        }
+
+        final int size = candidates == null ? model.getRowCount() : candidates.length;
+        final int[] res = new SearchTask(columns, candidates, 0, size, cancelled).invoke();
+
+        if (indexEnabled && model.getRowCount() >= INDEX_MIN_ROWS && searchesCount.incrementAndGet() == 2) {
+            ForkJoinPool.commonPool().execute(this::createIndexes);
+        }
+        return res;
+    }
+
+    private void createIndexes() {
+        for (int i = 0; i < texts.length; i++) {
+            final ColumnText text = text(i);
+            if (text.index == null) {
+                text.index = NGramIndex.create(text);
+            }
+        }
+    }
+
+    synchronized ColumnText text(int column) {
+        ColumnText text = texts[column];
+        if (text == null) {
+            text = texts[column] = createText(column);
+        }
+        return text;
+    }
+
+    private ColumnText createText(int column) {
+        final int rowsCount = model.getRowCount();
+        final QColumn view = model.getColumnView(column);
+
+        // symbols are already packed, so each symbol is formatted only once
+        if (view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof SymbolVector) {
+            final SymbolVector vector = (SymbolVector) ((QColumn.VectorColumn) view).getVector();
+            final String[] symbols = vector.getSymbols();
+            final String[] values = new String[symbols.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = formatter.objectToString(symbols[i]);
+            }
+            final int[] ids = new int[rowsCount];
+            for (int i = 0; i < rowsCount; i++) {
+                ids[i] = vector.getCode(i);
+            }
+            return new DictionaryText(ids, values);
+        }
+
+        final int limit = Math.max(MIN_DICTIONARY_SIZE, rowsCount / 8);
+        final Map<String, Integer> dictionary = new HashMap<>();
+        final int[] ids = new int[rowsCount];
+        for (int i = 0; i < rowsCount; i++) {
+            final String value = format(i, column);
+            Integer id = dictionary.get(value);
+            if (id == null) {
+                if (dictionary.size() == limit) {
+                    return rowsCount <= MAX_CACHED_ROWS ? new CachedText(formatColumn(column)) : new FormattedText(column);
+                }
+                id = dictionary.size();
+                dictionary.put(value, id);
+            }
+            ids[i] = id;
+        }
+
+        final String[] values = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            values[entry.getValue()] = entry.getKey();
+        }
+        return new DictionaryText(ids, values);
+    }
+
+    private String[] formatColumn(int column) {
+        final String[] res = new String[model.getRowCount()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = format(i, column);
+        }
+        return res;
+    }
+
+    /**
+     * Formats the item the same way as the table shows it.
+     */
+    String format(int row, int column) {
+        final QColumn view = model.getColumnView(column);
+        if (view != null) {
+            return view.format(formatter, row);
+        }
+
+        final Object valueAt = model.getValueAt(row, column);
+        if (valueAt == null) {
+            return "";
+        }
+        return formatter.objectToString(valueAt);
+    }
+
+    /**
+     * Immutable copy of the search options.
+     */
+    static final class Query {
+        private final String text;
+        private final boolean caseSensitive;
+        private final boolean wholeWords;
+        private final boolean regex;
+        private final Pattern pattern;
+
+        Query(String text, boolean caseSensitive, boolean wholeWords, boolean regex) {
+            this.text = text;
+            this.caseSensitive = caseSensitive;
+            this.wholeWords = wholeWords;
+            this.regex = regex;
+            this.pattern = regex ? compile(text, caseSensitive) : wholeWords ? compile("\\b" + Pattern.quote(text) + "\\b", caseSensitive) : null;
+        }
+
+        static Query of(FindModel model) {
+            return new Query(model.getStringToFind(), model.isCaseSensitive(), model.isWholeWordsOnly(), model.isRegularExpressions());
+        }
+
+        private static Pattern compile(String regex, boolean caseSensitive) {
+            try {
+                return Pattern.compile(regex, caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            } catch (PatternSyntaxException ex) {
+                // the expression is not finished yet, nothing is matched
+                return null;
+            }
+        }
+
+        /**
+         * Returns true if any text matched by this query is matched by the previous query too, so only rows matched
+         * by the previous query must be checked: the text extends the previous plain text.
+         */
+        boolean narrows(Query previous) {
+            if (previous == null || regex || previous.regex || wholeWords || previous.wholeWords || caseSensitive != previous.caseSensitive) {
+                return false;
+            }
+            return contains(text, previous.text, !caseSensitive);
+        }
+
+        /**
+         * Creates new matcher of texts. A matcher is not thread-safe, so each thread creates its own one.
+         */
+        Predicate<String> newMatcher() {
+            if (regex || wholeWords) {
+                if (pattern == null) {
+                    return v -> false;
+                }
+                final Matcher matcher = pattern.matcher("");
+                return v -> matcher.reset(v).find();
+            }
+            return v -> contains(v, text, !caseSensitive);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Query query = (Query) o;
+            return caseSensitive == query.caseSensitive && wholeWords == query.wholeWords && regex == query.regex && text.equals(query.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, caseSensitive, wholeWords, regex);
+        }
+    }
+
+    static boolean contains(String str, String searchStr, boolean ignoreCase) {
+        if (str == null || searchStr == null) {
+            return false;
+        }
+
+        final int length = searchStr.length();
+        if (length == 0) {
+            return true;
+        }
+
+        if (!ignoreCase) {
+            return str.contains(searchStr);
+        }
+
+        for (int i = str.length() - length; i >= 0; i--) {
+            if (str.regionMatches(true, i, searchStr, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface RowMatcher {
+        boolean matches(int row);
+    }
+
+    /**
+     * A column prepared for the search. Creates a matcher of rows for each thread.
+     */
+    @FunctionalInterface
+    private interface ColumnSearch {
+        RowMatcher newMatcher();
+    }
+
+    /**
+     * Cached text of a column. Entries are rows or distinct texts of the column.
+     */
+    private abstract static class ColumnText {
+        private volatile NGramIndex index;
+
+        abstract int size();
+
+        abstract String get(int entry);
+
+        /**
+         * Marks entries that match the query, in parallel. Only entries from the n-gram index are checked if
+         * the index can be used for the query.
+         */
+        boolean[] match(Query query, BooleanSupplier cancelled) {
+            final boolean[] res = new boolean[size()];
+            final NGramIndex idx = query.regex ? null : index;
+            final int[] entries = idx == null ? null : idx.candidates(query.text);
+            if (entries == null || entries.length != 0) {
+                new MatchTask(this, query, entries, 0, entries == null ? res.length : entries.length, res, cancelled).invoke();
+            }
+            return res;
+        }
+
+        abstract ColumnSearch prepare(Query query, BooleanSupplier cancelled);
+    }
+
+    /**
+     * Text of a column with not many distinct values: each distinct text is kept and checked only once.
+     */
+    private static final class DictionaryText extends ColumnText {
+        private final int[] ids;
+        private final String[] values;
+
+        private DictionaryText(int[] ids, String[] values) {
+            this.ids = ids;
+            this.values = values;
+        }
+
+        @Override
+        int size() {
+            return values.length;
+        }
+
+        @Override
+        String get(int entry) {
+            return values[entry];
+        }
+
+        @Override
+        ColumnSearch prepare(Query query, BooleanSupplier cancelled) {
+            final boolean[] matches = match(query, cancelled);
+            return () -> row -> matches[ids[row]];
+        }
+    }
+
+    private abstract static class RowsText extends ColumnText {
+        @Override
+        ColumnSearch prepare(Query query, BooleanSupplier cancelled) {
+            if (!query.regex && super.index != null) {
+                final boolean[] matches = match(query, cancelled);
+                return () -> row -> matches[row];
+            }
+            return () -> {
+                final Predicate<String> matcher = query.newMatcher();
+                return row -> matcher.test(get(row));
+            };
+        }
+    }
+
+    private static final class CachedText extends RowsText {
+        private final String[] texts;
+
+        private CachedText(String[] texts) {
+            this.texts = texts;
+        }
+
+        @Override
+        int size() {
+            return texts.length;
+        }
+
+        @Override
+        String get(int entry) {
+            return texts[entry];
+        }
+    }
+
+    /**
+     * Text of a big column with many distinct values, that is not cached but formatted each time.
+     */
+    private final class FormattedText extends RowsText {
+        private final int column;
+
+        private FormattedText(int column) {
+            this.column = column;
+        }
+
+        @Override
+        int size() {
+            return model.getRowCount();
+        }
+
+        @Override
+        String get(int entry) {
+            return format(entry, column);
+        }
+    }
+
+    private static final class MatchTask extends RecursiveAction {
+        private final ColumnText text;
+        private final Query query;
+        private final int[] entries;
+        private final int from;
+        private final int to;
+        private final boolean[] res;
+        private final BooleanSupplier cancelled;
+
+        private MatchTask(ColumnText text, Query query, int[] entries, int from, int to, boolean[] res, BooleanSupplier cancelled) {
+            this.text = text;
+            this.query = query;
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.res = res;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                final Predicate<String> matcher = query.newMatcher();
+                for (int i = from; i < to; i++) {
+                    final int entry = entries == null ? i : entries[i];
+                    res[entry] = matcher.test(text.get(entry));
+                }
+                return;
+            }
+
+            final int mid = (from + to) >>> 1;
+            invokeAll(new MatchTask(text, query, entries, from, mid, res, cancelled), new MatchTask(text, query, entries, mid, to, res, cancelled));
+        }
+    }
+
+    private static final class SearchTask extends RecursiveTask<int[]> {
+        private final ColumnSearch[] columns;
+        private final int[] candidates;
+        private final int from;
+        private final int to;
+        private final BooleanSupplier cancelled;
+
+        private SearchTask(ColumnSearch[] columns, int[] candidates, int from, int to, BooleanSupplier cancelled) {
+            this.columns = columns;
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (cancelled.getAsBoolean()) {
+                return new int[0];
+            }
+
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                final RowMatcher[] matchers = new RowMatcher[columns.length];
+                for (int i = 0; i < matchers.length; i++) {
+                    matchers[i] = columns[i].newMatcher();
+                }
+
+                int count = 0;
+                final int[] res = new int[to - from];
+                for (int i = from; i < to; i++) {
+                    final int row = candidates == null ? i : candidates[i];
+                    for (RowMatcher matcher : matchers) {
+                        if (matcher.matches(row)) {
+                            res[count++] = row;
+                            break;
+                        }
+                    }
+                }
+                return count == res.length ? res : Arrays.copyOf(res, count);
+            }
+
+            final int mid = (from + to) >>> 1;
+            final SearchTask left = new SearchTask(columns, candidates, from, mid, cancelled);
+            final SearchTask right = new SearchTask(columns, candidates, mid, to, cancelled);
+            invokeAll(left, right);
+
+            final int[] l = left.join();
+            final int[] r = right.join();
+            final int[] res = Arrays.copyOf(l, l.length + r.length);
+            System.arraycopy(r, 0, res, l.length, r.length);
+            return res;
+        }
+    }
+
+    /**
+     * Index of entries by trigrams of their text. Trigrams are case-insensitive, so the index returns candidates for
+     * both case-sensitive and case-insensitive search; the candidates are checked by the matcher anyway.
+     */
+    static final class NGramIndex {
+        private final LongIntMap grams;
+        private final int[] offsets;
+        private final int[] postings;
+
+        private NGramIndex(LongIntMap grams, int[] offsets, int[] postings) {
+            this.grams = grams;
+            this.offsets = offsets;
+            this.postings = postings;
+        }
+
+        /**
+         * Creates the index or returns null if it's bigger than {@link #MAX_INDEX_POSTINGS}.
+         */
+        static NGramIndex create(ColumnText text) {
+            final int size = text.size();
+            final LongIntMap grams = new LongIntMap();
+            int[] counts = new int[1024];
+            int[] last = new int[1024];
+
+            long total = 0;
+            for (int entry = 0; entry < size; entry++) {
+                final String s = text.get(entry);
+                for (int i = 0; i + 3 <= s.length(); i++) {
+                    final long gram = gram(s, i);
+                    int id = grams.get(gram);
+                    if (id < 0) {
+                        id = grams.size();
+                        grams.put(gram, id);
+                        if (id == counts.length) {
+                            counts = Arrays.copyOf(counts, id * 2);
+                            last = Arrays.copyOf(last, id * 2);
+                        }
+                        last[id] = -1;
+                    }
+                    if (last[id] != entry) {
+                        last[id] = entry;
+                        counts[id]++;
+                        if (++total > MAX_INDEX_POSTINGS) {
+                            return null;
+                        }
+                    }
+                }
+            }
+
+            final int gramsCount = grams.size();
+            final int[] offsets = new int[gramsCount + 1];
+            for (int i = 0; i < gramsCount; i++) {
+                offsets[i + 1] = offsets[i] + counts[i];
+                last[i] = -1;
+            }
+
+            final int[] cursors = Arrays.copyOf(offsets, gramsCount);
+            final int[] postings = new int[(int) total];
+            for (int entry = 0; entry < size; entry++) {
+                final String s = text.get(entry);
+                for (int i = 0; i + 3 <= s.length(); i++) {
+                    final int id = grams.get(gram(s, i));
+                    if (last[id] != entry) {
+                        last[id] = entry;
+                        postings[cursors[id]++] = entry;
+                    }
+                }
+            }
+            return new NGramIndex(grams, offsets, postings);
+        }
+
+        /**
+         * Returns entries, in ascending order, that contain all trigrams of the text, or null if the text is shorter
+         * than a trigram and the index can't be used.
+         */
+        int[] candidates(String text) {
+            if (text.length() < 3) {
+                return null;
+            }
+
+            int[] res = null;
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                final int id = grams.get(gram(text, i));
+                if (id < 0) {
+                    return new int[0];
+                }
+
+                final int from = offsets[id];
+                final int to = offsets[id + 1];
+                res = res == null ? Arrays.copyOfRange(postings, from, to) : intersect(res, postings, from, to);
+                if (res.length == 0) {
+                    return res;
+                }
+            }
+            return res;
+        }
+
+        private static int[] intersect(int[] a, int[] b, int from, int to) {
+            int count = 0;
+            final int[] res = new int[Math.min(a.length, to - from)];
+            int i = 0;
+            int j = from;
+            while (i < a.length && j < to) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    res[count++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(res, count);
+        }
+
+        private static long gram(String s, int index) {
+            return ((long) fold(s.charAt(index)) << 32) | ((long) fold(s.charAt(index + 1)) << 16) | fold(s.charAt(index + 2));
+        }
+
+        /**
+         * Folds the case the same way as {@link String#regionMatches(boolean, int, String, int, int)} ignores it.
+         */
+        private static char fold(char ch) {
+            return Character.toLowerCase(Character.toUpperCase(ch));
+        }
+    }
+
+    /**
+     * Open addressing map of long keys to non-negative int values.
+     */
+    private static final class LongIntMap {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        // keys are at most 48 bits, so the marker bit separates them from empty slots
+        private static final long MARKER = 1L << 48;
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            final long k = key | MARKER;
+            final int mask = keys.length - 1;
+            int i = hash(k) & mask;
+            while (keys[i] != 0) {
+                if (keys[i] == k) {
+                    return values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                rehash();
+            }
+            final long k = key | MARKER;
+            final int mask = keys.length - 1;
+            int i = hash(k) & mask;
+            while (keys[i] != 0 && keys[i] != k) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = k;
+            values[i] = value;
+        }
+
+        private void rehash() {
+            final long[] oldKeys = keys;
+            final int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+
+            final int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                final long k = oldKeys[j];
+                if (k != 0) {
+                    int i = hash(k) & mask;
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = k;
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int hash(long k) {
+            final long h = k * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.KxMappedVector;
+import kx.StringVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+
+import java.lang.reflect.Array;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Estimates the heap size of a result by types of its columns: primitive vectors by their width, symbols by
+ * references and distinct strings, strings and general lists by a sample of items. Only a few items of each column
+ * are read, so any result is estimated in no time.
+ */
+final class ResultMemory {
+    /**
+     * Size of an object or an array header.
+     */
+    private static final int HEADER = 16;
+
+    /**
+     * Size of a compressed reference.
+     */
+    private static final int REFERENCE = 4;
+
+    /**
+     * Max number of sampled items of a column.
+     */
+    private static final int SAMPLE_SIZE = 1024;
+
+    private ResultMemory() {
+    }
+
+    /**
+     * Returns the estimated heap size of the object in bytes.
+     */
+    static long estimate(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        if (o instanceof c.Flip) {
+            final c.Flip flip = (c.Flip) o;
+            return HEADER + estimate(flip.x) + estimate(flip.y);
+        }
+        if (o instanceof c.Dict) {
+            final c.Dict dict = (c.Dict) o;
+            return HEADER + estimate(dict.x) + estimate(dict.y);
+        }
+        if (o instanceof KxMappedVector) {
+            // items are read off the file mapping
+            return HEADER;
+        }
+        if (o instanceof SymbolVector) {
+            final SymbolVector v = (SymbolVector) o;
+            return HEADER + array(int.class, v.size()) + estimate(v.getSymbols());
+        }
+        if (o instanceof StringVector) {
+            final StringVector v = (StringVector) o;
+            return HEADER + array(int.class, v.size() + 1) + array(byte.class, sample(v.size(), i -> v.getLength(i)));
+        }
+        if (o instanceof TemporalVector.Longs) {
+            return HEADER + estimate(((TemporalVector.Longs) o).getValues());
+        }
+        if (o instanceof TemporalVector.Ints) {
+            return HEADER + estimate(((TemporalVector.Ints) o).getValues());
+        }
+        if (o instanceof TemporalVector.Doubles) {
+            return HEADER + estimate(((TemporalVector.Doubles) o).getValues());
+        }
+        if (o instanceof String) {
+            // the header, the hash and the reference to compact Latin-1 bytes
+            return HEADER + 8 + array(byte.class, ((String) o).length());
+        }
+        if (o instanceof char[]) {
+            return array(char.class, ((char[]) o).length);
+        }
+
+        final Class<?> type = o.getClass().getComponentType();
+        if (type == null) {
+            // atoms
+            return 2L * HEADER;
+        }
+
+        final int length = Array.getLength(o);
+        if (type.isPrimitive()) {
+            return array(type, length);
+        }
+        if (type == String.class) {
+            return array(Object.class, length) + symbols((String[]) o);
+        }
+
+        final Object[] items = (Object[]) o;
+        return array(Object.class, length) + sample(length, i -> estimate(items[i]));
+    }
+
+    /**
+     * Symbols are interned, so each distinct symbol is counted once. The number of distinct symbols is estimated by
+     * symbols seen only once in the sample: there are none in a column of a few distinct values and all of them in
+     * a column of unique values.
+     */
+    private static long symbols(String[] symbols) {
+        final int step = Math.max(1, symbols.length / SAMPLE_SIZE);
+        final Map<String, Integer> counts = new IdentityHashMap<>();
+        int sampled = 0;
+        for (int i = 0; i < symbols.length; i += step, sampled++) {
+            if (symbols[i] != null) {
+                counts.merge(symbols[i], 1, Integer::sum);
+            }
+        }
+        if (counts.isEmpty()) {
+            return 0;
+        }
+
+        long size = 0;
+        int singles = 0;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            size += estimate(e.getKey());
+            if (e.getValue() == 1) {
+                singles++;
+            }
+        }
+        final double distinct = counts.size() + (double) singles * (symbols.length - sampled) / sampled;
+        return (long) (distinct * size / counts.size());
+    }
+
+    private static long array(Class<?> type, long length) {
+        final int width;
+        if (type == long.class || type == double.class) {
+            width = 8;
+        } else if (type == int.class || type == float.class) {
+            width = 4;
+        } else if (type == short.class || type == char.class) {
+            width = 2;
+        } else if (type.isPrimitive()) {
+            width = 1;
+        } else {
+            width = REFERENCE;
+        }
+        // arrays are aligned by 8 bytes
+        return HEADER + ((length * width + 7) & ~7L);
+    }
+
+    /**
+     * Sums sizes of evenly spaced items and scales the sum to all items.
+     */
+    private static long sample(int length, ItemSize size) {
+        if (length <= SAMPLE_SIZE) {
+            long res = 0;
+            for (int i = 0; i < length; i++) {
+                res += size.get(i);
+            }
+            return res;
+        }
+
+        long res = 0;
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            res += size.get((int) ((long) length * i / SAMPLE_SIZE));
+        }
+        return (long) ((double) res * length / SAMPLE_SIZE);
+    }
+
+    @FunctionalInterface
+    private interface ItemSize {
+        long get(int index);
+    }
+}
@@ -0,0 +1,107 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import org.kdb.inside.brains.settings.KdbSettingsService;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps results of all tabs of all projects in the memory budget, see {@link org.kdb.inside.brains.view.console.ConsoleOptions#getResultsMemoryBudget()}.
+ * <p>
+ * Results are kept in the order of use: if the budget is exceeded, least recently used results of tabs that are not
+ * shown are evicted into compressed temp files, and a result is loaded back when its tab is shown again. Results that
+ * are not in the heap, paged or mapped from a file, are not counted at all.
+ * <p>
+ * All methods are called in the event dispatch thread.
+ */
+@Service(value = Service.Level.APP)
+final class ResultsMemoryManager {
+    // from the least to the most recently used one
+    private final Map<TableResultView, Long> results = new LinkedHashMap<>();
+
+    private static final long MB = 1024 * 1024;
+
+    static ResultsMemoryManager getInstance() {
+        return ApplicationManager.getApplication().getService(ResultsMemoryManager.class);
+    }
+
+    /**
+     * Registers a new result of the view as the most recently used one and evicts other results over the budget.
+     *
+     * @param size the estimated heap size of the result
+     */
+    void register(TableResultView view, long size) {
+        results.remove(view);
+        results.put(view, size);
+        evict(view);
+    }
+
+    /**
+     * Marks the result of the view as the most recently used one.
+     */
+    void touch(TableResultView view) {
+        final Long size = results.remove(view);
+        if (size != null) {
+            results.put(view, size);
+            evict(view);
+        }
+    }
+
+    /**
+     * Removes the result of the view, as it's released or evicted.
+     */
+    void release(TableResultView view) {
+        results.remove(view);
+    }
+
+    /**
+     * Returns the estimated heap size of the view result or -1 if the result is not counted.
+     */
+    long getSize(TableResultView view) {
+        final Long size = results.get(view);
+        return size == null ? -1 : size;
+    }
+
+    /**
+     * Returns the estimated heap size of all results.
+     */
+    long getUsed() {
+        long res = 0;
+        for (Long size : results.values()) {
+            res += size;
+        }
+        return res;
+    }
+
+    /**
+     * Returns the budget in bytes or zero, if there is no limit.
+     */
+    long getBudget() {
+        return KdbSettingsService.getInstance().getConsoleOptions().getResultsMemoryBudget() * MB;
+    }
+
+    /**
+     * Evicts least recently used results over the budget, except the result of the given view.
+     */
+    private void evict(TableResultView keep) {
+        final long budget = getBudget();
+        if (budget <= 0) {
+            return;
+        }
+
+        long used = getUsed();
+        final Iterator<Map.Entry<TableResultView, Long>> iterator = results.entrySet().iterator();
+        while (used > budget && iterator.hasNext()) {
+            final Map.Entry<TableResultView, Long> e = iterator.next();
+            final TableResultView view = e.getKey();
+            // results of shown tabs are never evicted, even if they don't fit the budget
+            if (view != keep && !view.isShowing() && view.evict()) {
+                used -= e.getValue();
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package org.kdb.inside.brains.view.console.table;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import kx.SymbolVector;
+import kx.TemporalVector;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Aggregates of selected cells: count, nulls, sum, average, min, max and an estimate of distinct values.
+ * <p>
+ * Cells are read by typed column views, see {@link QColumn}, so numbers are summed by primitive loops and nothing is
+ * formatted. A big selection is aggregated in background: partial aggregates are published to the EDT while
+ * the selection is read and the calculation is cancelled when a new one is started.
+ */
+class SelectionAggregator {
+    private final AtomicInteger version = new AtomicInteger();
+
+    /**
+     * Max number of cells aggregated on the EDT right away.
+     */
+    static final int SYNC_THRESHOLD = 10_000;
+
+    /**
+     * Number of rows between checks of the cancellation and the publishing time.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final long PUBLISH_INTERVAL_MILLIS = 150;
+
+    private static final Logger log = Logger.getInstance(SelectionAggregator.class);
+
+    /**
+     * Aggregates the cells and passes the result to the listener on the EDT, maybe a few times: partial results
+     * first and the complete one at the end. Aggregation of previous cells is cancelled.
+     *
+     * @param rows     model rows of the cells
+     * @param columns  views of columns of the cells
+     * @param listener the listener of the results
+     */
+    void aggregate(int[] rows, QColumn[] columns, Consumer<Aggregates> listener) {
+        final int v = version.incrementAndGet();
+
+        if ((long) rows.length * columns.length <= SYNC_THRESHOLD) {
+            final Aggregates aggregates = new Aggregates((long) rows.length * columns.length);
+            aggregate(rows, columns, aggregates, () -> false, a -> {
+            });
+            listener.accept(aggregates);
+            return;
+        }
+
+        CompletableFuture.runAsync(() -> {
+            final Aggregates aggregates = new Aggregates((long) rows.length * columns.length);
+            final boolean completed = aggregate(rows, columns, aggregates, () -> v != version.get(), partial -> publish(v, partial, listener));
+            if (completed) {
+                publish(v, aggregates, listener);
+            }
+        }, ForkJoinPool.commonPool()).whenComplete((r, ex) -> {
+            if (ex != null) {
+                log.error("Selection can't be aggregated", ex);
+            }
+        });
+    }
+
+    /**
+     * Cancels the current aggregation, its results are not published anymore.
+     */
+    void cancel() {
+        version.incrementAndGet();
+    }
+
+    private void publish(int v, Aggregates aggregates, Consumer<Aggregates> listener) {
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (v == version.get()) {
+                listener.accept(aggregates);
+            }
+        }, ModalityState.any());
+    }
+
+    /**
+     * @return true if all cells are aggregated, false if it was cancelled
+     */
+    private static boolean aggregate(int[] rows, QColumn[] columns, Aggregates res, Cancellation cancellation, Consumer<Aggregates> partial) {
+        long published = System.currentTimeMillis();
+        for (QColumn column : columns) {
+            final CellReader reader = CellReader.of(column);
+            for (int from = 0; from < rows.length; from += CHUNK_SIZE) {
+                if (cancellation.isCancelled()) {
+                    return false;
+                }
+
+                reader.read(rows, from, Math.min(rows.length, from + CHUNK_SIZE), res);
+
+                final long now = System.currentTimeMillis();
+                if (now - published >= PUBLISH_INTERVAL_MILLIS) {
+                    published = now;
+                    partial.accept(res.copy());
+                }
+            }
+        }
+        res.completed = true;
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface Cancellation {
+        boolean isCancelled();
+    }
+
+    /**
+     * Reads cells of one column into aggregates by the fastest way for the column type.
+     */
+    @FunctionalInterface
+    private interface CellReader {
+        void read(int[] rows, int from, int to, Aggregates res);
+
+        static CellReader of(QColumn column) {
+            if (column instanceof QColumn.NumericColumn) {
+                final QColumn.NumericColumn c = (QColumn.NumericColumn) column;
+                return (rows, from, to, res) -> {
+                    for (int i = from; i < to; i++) {
+                        res.addNumber(c.getDouble(rows[i]));
+                    }
+                };
+            }
+
+            if (column instanceof QColumn.VectorColumn) {
+                final Object vector = ((QColumn.VectorColumn) column).getVector();
+                if (vector instanceof SymbolVector) {
+                    // each distinct symbol is hashed only once
+                    final SymbolVector symbols = (SymbolVector) vector;
+                    final String[] values = symbols.getSymbols();
+                    final long[] hashes = new long[values.length];
+                    for (int i = 0; i < values.length; i++) {
+                        hashes[i] = HyperLogLog.hash(values[i].hashCode());
+                    }
+                    return (rows, from, to, res) -> {
+                        for (int i = from; i < to; i++) {
+                            final int code = symbols.getCode(rows[i]);
+                            if (values[code].isEmpty()) {
+                                res.nulls++;
+                            } else {
+                                res.distinct.add(hashes[code]);
+                            }
+                        }
+                    };
+                }
+                if (vector instanceof TemporalVector.Longs) {
+                    final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+                    return (rows, from, to, res) -> {
+                        for (int i = from; i < to; i++) {
+                            final long l = v.getLong(rows[i]);
+                            res.addValue(l == Long.MIN_VALUE, l);
+                        }
+                    };
+                }
+                if (vector instanceof TemporalVector.Ints) {
+                    final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+                    return (rows, from, to, res) -> {
+                        for (int i = from; i < to; i++) {
+                            final int l = v.getInt(rows[i]);
+                            res.addValue(l == Integer.MIN_VALUE, l);
+                        }
+                    };
+                }
+                if (vector instanceof TemporalVector.Doubles) {
+                    final TemporalVector.Doubles v = (TemporalVector.Doubles) vector;
+                    return (rows, from, to, res) -> {
+                        for (int i = from; i < to; i++) {
+                            final double d = v.getDouble(rows[i]);
+                            res.addValue(Double.isNaN(d), Double.doubleToLongBits(d));
+                        }
+                    };
+                }
+            }
+
+            if (column instanceof QColumn.SymbolColumn) {
+                final QColumn.SymbolColumn c = (QColumn.SymbolColumn) column;
+                return (rows, from, to, res) -> {
+                    for (int i = from; i < to; i++) {
+                        final String s = c.getSymbol(rows[i]);
+                        res.addValue(s == null || s.isEmpty(), s == null ? 0 : s.hashCode());
+                    }
+                };
+            }
+
+            return (rows, from, to, res) -> {
+                for (int i = from; i < to; i++) {
+                    final int row = rows[i];
+                    if (column.isNull(row)) {
+                        res.nulls++;
+                        continue;
+                    }
+
+                    final Object value = column.get(row);
+                    if (value instanceof Number) {
+                        final double d = ((Number) value).doubleValue();
+                        res.addNumber(kx.c.qn(value) ? Double.NaN : d);
+                    } else if (value instanceof char[]) {
+                        res.distinct.add(HyperLogLog.hash(Arrays.hashCode((char[]) value)));
+                    } else {
+                        res.distinct.add(HyperLogLog.hash(value == null ? 0 : value.hashCode()));
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Aggregates of cells. Only numbers are summed, nulls are counted but not included into other aggregates.
+     */
+    static final class Aggregates {
+        private final long count;
+        private long nulls;
+        private long numbers;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final HyperLogLog distinct;
+        private boolean completed;
+
+        Aggregates(long count) {
+            this(count, new HyperLogLog());
+        }
+
+        private Aggregates(long count, HyperLogLog distinct) {
+            this.count = count;
+            this.distinct = distinct;
+        }
+
+        private void addNumber(double v) {
+            if (Double.isNaN(v)) {
+                nulls++;
+                return;
+            }
+            numbers++;
+            sum += v;
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+            distinct.add(HyperLogLog.hash(Double.doubleToLongBits(v)));
+        }
+
+        private void addValue(boolean isNull, long value) {
+            if (isNull) {
+                nulls++;
+            } else {
+                distinct.add(HyperLogLog.hash(value));
+            }
+        }
+
+        Aggregates copy() {
+            final Aggregates res = new Aggregates(count, distinct.copy());
+            res.nulls = nulls;
+            res.numbers = numbers;
+            res.sum = sum;
+            res.min = min;
+            res.max = max;
+            res.completed = completed;
+            return res;
+        }
+
+        /**
+         * Returns the number of selected cells, including cells that are not aggregated yet.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        public long getNulls() {
+            return nulls;
+        }
+
+        /**
+         * Returns the number of not null numeric cells.
+         */
+        public long getNumbers() {
+            return numbers;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getAverage() {
+            return numbers == 0 ? Double.NaN : sum / numbers;
+        }
+
+        public double getMin() {
+            return numbers == 0 ? Double.NaN : min;
+        }
+
+        public double getMax() {
+            return numbers == 0 ? Double.NaN : max;
+        }
+
+        /**
+         * Returns an estimate of distinct not null values.
+         */
+        public long getDistinct() {
+            return distinct.estimate();
+        }
+
+        /**
+         * Returns false for partial aggregates, if not all cells are read yet.
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package org.kdb.inside.brains.view.console.table;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import kx.TemporalVector;
+import kx.c;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * Diff of two tables: rows added to the right table, removed from the left one and changed, with changed cells.
+ * <p>
+ * Rows are matched by key columns, if both tables are keyed by the same columns, or by all values otherwise, and
+ * columns are matched by names. Nothing is compared cell by cell: keys and values of each row are hashed in parallel
+ * into 64-bit hashes of typed values, see {@link KeyIndex#hashes(QColumn, KdbOutputFormatter)}, rows are sorted by
+ * hashes of keys and the tables are merged. Big tables are split into partitions by hashes of keys, so only hashes of
+ * one partition are kept in memory at once.
+ * <p>
+ * The diff itself is a table of the differed rows only: added and changed rows with values of the right table and
+ * removed rows with values of the left one, and the {@code diff} column with the status of each row.
+ */
+final class TableDiff {
+    private final Object table;
+    private final Status[] statuses;
+    private final int[] leftRows;
+    private final QColumn[] leftViews;
+    private final int[] valueColumns;
+    private final BitSet changedCells;
+    private final int valuesCount;
+    private final int unchanged;
+
+    /**
+     * Name of the column with statuses of rows.
+     */
+    static final String STATUS_COLUMN = "diff";
+
+    /**
+     * Max number of rows of one table in a partition.
+     */
+    private static final int PARTITION_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Min number of rows in a chunk hashed by one thread.
+     */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    enum Status {
+        ADDED("added"),
+        REMOVED("removed"),
+        CHANGED("changed");
+
+        private final String label;
+
+        Status(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private TableDiff(Object table, Status[] statuses, int[] leftRows, QColumn[] leftViews, int[] valueColumns, BitSet changedCells, int valuesCount, int unchanged) {
+        this.table = table;
+        this.statuses = statuses;
+        this.leftRows = leftRows;
+        this.leftViews = leftViews;
+        this.valueColumns = valueColumns;
+        this.changedCells = changedCells;
+        this.valuesCount = valuesCount;
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Compares the tables.
+     *
+     * @param left      the left, old, table
+     * @param right     the right, new, table
+     * @param formatter the formatter of values that are compared by their text
+     * @throws IllegalArgumentException if a table is not in memory or the tables have no common columns
+     */
+    static TableDiff compare(TableResult.QTableModel left, TableResult.QTableModel right, KdbOutputFormatter formatter) {
+        return compare(Columns.of(left), Columns.of(right), formatter, PARTITION_SIZE);
+    }
+
+    /**
+     * Compares the tables split into partitions of the given max size.
+     */
+    static TableDiff compare(Columns left, Columns right, KdbOutputFormatter formatter, int partitionSize) {
+        final Map<String, Integer> rightColumns = new HashMap<>();
+        for (int i = 0; i < right.names.length; i++) {
+            rightColumns.put(right.names[i], i);
+        }
+
+        final List<String> leftKeys = keyNames(left);
+        final boolean keyed = !leftKeys.isEmpty() && new HashSet<>(leftKeys).equals(new HashSet<>(keyNames(right)));
+
+        // columns of the diff: keys of both tables and common values
+        final IntArrayList keys = new IntArrayList();
+        final IntArrayList values = new IntArrayList();
+        for (int i = 0; i < left.names.length; i++) {
+            final Integer r = rightColumns.get(left.names[i]);
+            if (r == null || left.keys[i] != right.keys[r]) {
+                continue;
+            }
+            if (left.views[i] == null || right.views[r] == null) {
+                throw new IllegalArgumentException("Only results in memory can be compared");
+            }
+            (keyed && left.keys[i] ? keys : values).add(i);
+        }
+        if (keys.isEmpty() && values.isEmpty()) {
+            throw new IllegalArgumentException("Tables have no common columns");
+        }
+
+        final int[] leftColumns = IntStream.concat(IntStream.of(keys.toIntArray()), IntStream.of(values.toIntArray())).toArray();
+        final int[] rightIndexes = Arrays.stream(leftColumns).map(i -> rightColumns.get(left.names[i])).toArray();
+
+        final Side l = new Side(left, leftColumns, keys.size(), formatter);
+        final Side r = new Side(right, rightIndexes, keys.size(), formatter);
+        final Merge merge = merge(l, r, partitionSize);
+
+        // added and changed rows in the order of the right table and then removed rows in the order of the left one
+        final int n = merge.statuses.size();
+        final long[] order = new long[n];
+        final int[] entries = new int[n];
+        for (int i = 0; i < n; i++) {
+            final int row = merge.rightRows.getInt(i);
+            order[i] = row >= 0 ? row : (1L << 32) + merge.leftRows.getInt(i);
+            entries[i] = i;
+        }
+        QTableRowSorter.sort(order, entries);
+
+        final Status[] all = Status.values();
+        final Status[] statuses = new Status[n];
+        final int[] leftRows = new int[n];
+        final int[] rightRows = new int[n];
+        int added = 0;
+        for (int i = 0; i < n; i++) {
+            statuses[i] = all[merge.statuses.getInt(entries[i])];
+            leftRows[i] = merge.leftRows.getInt(entries[i]);
+            rightRows[i] = merge.rightRows.getInt(entries[i]);
+            if (rightRows[i] >= 0) {
+                added++;
+            }
+        }
+
+        // model columns of the diff: keys, the status and values
+        final int columns = leftColumns.length + 1;
+        final int statusColumn = keys.size();
+        final QColumn[] leftViews = new QColumn[columns];
+        final int[] valueColumns = new int[columns];
+        Arrays.fill(valueColumns, -1);
+        for (int i = 0; i < leftColumns.length; i++) {
+            final int column = i < statusColumn ? i : i + 1;
+            leftViews[column] = l.views[i];
+            if (i >= statusColumn) {
+                valueColumns[column] = i - statusColumn;
+            }
+        }
+
+        final BitSet changedCells = new BitSet();
+        final int valuesCount = values.size();
+        for (int i = 0; i < n; i++) {
+            if (statuses[i] == Status.CHANGED) {
+                for (int v = 0; v < valuesCount; v++) {
+                    if (l.valueHashers[v].get(leftRows[i]) != r.valueHashers[v].get(rightRows[i])) {
+                        changedCells.set(i * valuesCount + v);
+                    }
+                }
+            }
+        }
+
+        final String[] names = new String[columns];
+        final Object[] vectors = new Object[columns];
+        final String[] labels = new String[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = statuses[i].getLabel();
+        }
+        names[statusColumn] = STATUS_COLUMN;
+        vectors[statusColumn] = labels;
+
+        final int[] rightPart = Arrays.copyOf(rightRows, added);
+        final int[] leftPart = Arrays.copyOfRange(leftRows, added, n);
+        for (int i = 0; i < leftColumns.length; i++) {
+            final int column = i < statusColumn ? i : i + 1;
+            names[column] = left.names[leftColumns[i]];
+            vectors[column] = concat(gather(r.views[i], rightPart), gather(l.views[i], leftPart));
+        }
+
+        final Object table;
+        if (statusColumn == 0) {
+            table = new c.Flip(new c.Dict(names, vectors));
+        } else {
+            final c.Flip k = new c.Flip(new c.Dict(Arrays.copyOf(names, statusColumn), Arrays.copyOf(vectors, statusColumn)));
+            final c.Flip v = new c.Flip(new c.Dict(Arrays.copyOfRange(names, statusColumn, columns), Arrays.copyOfRange(vectors, statusColumn, columns)));
+            table = new c.Dict(k, v);
+        }
+        return new TableDiff(table, statuses, leftRows, leftViews, valueColumns, changedCells, values.size(), merge.unchanged);
+    }
+
+    private static List<String> keyNames(Columns columns) {
+        final List<String> res = new ArrayList<>();
+        for (int i = 0; i < columns.names.length; i++) {
+            if (columns.keys[i]) {
+                res.add(columns.names[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Returns the diff table: a keyed table, if rows are matched by keys, or a simple table otherwise.
+     */
+    Object getTable() {
+        return table;
+    }
+
+    /**
+     * Returns the number of differed rows.
+     */
+    int getRowCount() {
+        return statuses.length;
+    }
+
+    /**
+     * Returns the number of matched rows without changes, they are not in the diff table.
+     */
+    int getUnchanged() {
+        return unchanged;
+    }
+
+    Status getStatus(int row) {
+        return statuses[row];
+    }
+
+    /**
+     * Returns true if the cell of a changed row differs from the left table.
+     *
+     * @param row    the model row of the diff table
+     * @param column the model column of the diff table
+     */
+    boolean isChanged(int row, int column) {
+        final int v = valueColumns[column];
+        return v >= 0 && statuses[row] == Status.CHANGED && changedCells.get(row * valuesCount + v);
+    }
+
+    /**
+     * Formats the value of a changed cell in the left table.
+     */
+    String formatOldValue(KdbOutputFormatter formatter, int row, int column) {
+        return leftViews[column].format(formatter, leftRows[row]);
+    }
+
+    /**
+     * Merges partitions of rows of both tables sorted by hashes of keys. Rows with the same key are matched in
+     * their order, so duplicated keys are compared as lists.
+     */
+    private static Merge merge(Side left, Side right, int partitionSize) {
+        // partitions of rows are kept as bytes
+        final int bits = Math.min(Byte.SIZE, 32 - Integer.numberOfLeadingZeros((Math.max(left.rows, right.rows) - 1) / partitionSize));
+        final int partitions = 1 << bits;
+        if (partitions > 1) {
+            left.partition(bits);
+            right.partition(bits);
+        }
+
+        final Merge res = new Merge();
+        for (int p = 0; p < partitions; p++) {
+            final Partition a = left.sort(p);
+            final Partition b = right.sort(p);
+
+            int i = 0;
+            int j = 0;
+            while (i < a.size || j < b.size) {
+                final int cmp = i == a.size ? 1 : j == b.size ? -1 : Long.compare(a.keys[i], b.keys[j]);
+                if (cmp < 0) {
+                    res.add(Status.REMOVED, a.rows[a.order[i++]], -1);
+                } else if (cmp > 0) {
+                    res.add(Status.ADDED, -1, b.rows[b.order[j++]]);
+                } else {
+                    final int x = a.order[i++];
+                    final int y = b.order[j++];
+                    if (a.values[x] == b.values[y]) {
+                        res.unchanged++;
+                    } else {
+                        res.add(Status.CHANGED, a.rows[x], b.rows[y]);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    private static long hash(LongValues[] hashers, int row) {
+        long h = SEED;
+        for (LongValues hasher : hashers) {
+            h = HyperLogLog.hash(h ^ hasher.get(row));
+        }
+        return h;
+    }
+
+    private static Object gather(QColumn view, int[] rows) {
+        return GroupBy.select(view, IntStream.range(0, rows.length).toArray(), rows);
+    }
+
+    /**
+     * Concatenates vectors of the same type, or creates a general list if types are different.
+     */
+    private static Object concat(Object a, Object b) {
+        if (a.getClass() == b.getClass()) {
+            if (a instanceof TemporalVector.Longs && ((TemporalVector) a).getType() == ((TemporalVector) b).getType()) {
+                return ((TemporalVector.Longs) a).withValues((long[]) concat(((TemporalVector.Longs) a).getValues(), ((TemporalVector.Longs) b).getValues()));
+            }
+            if (a instanceof TemporalVector.Ints && ((TemporalVector) a).getType() == ((TemporalVector) b).getType()) {
+                return ((TemporalVector.Ints) a).withValues((int[]) concat(((TemporalVector.Ints) a).getValues(), ((TemporalVector.Ints) b).getValues()));
+            }
+            if (a instanceof TemporalVector.Doubles && ((TemporalVector) a).getType() == ((TemporalVector) b).getType()) {
+                return ((TemporalVector.Doubles) a).withValues((double[]) concat(((TemporalVector.Doubles) a).getValues(), ((TemporalVector.Doubles) b).getValues()));
+            }
+            if (a.getClass().isArray()) {
+                final int la = Array.getLength(a);
+                final int lb = Array.getLength(b);
+                final Object res = Array.newInstance(a.getClass().getComponentType(), la + lb);
+                System.arraycopy(a, 0, res, 0, la);
+                System.arraycopy(b, 0, res, la, lb);
+                return res;
+            }
+        }
+
+        final QColumn va = QColumn.of(a);
+        final QColumn vb = QColumn.of(b);
+        final Object[] res = new Object[va.size() + vb.size()];
+        for (int i = 0; i < va.size(); i++) {
+            res[i] = va.get(i);
+        }
+        for (int i = 0; i < vb.size(); i++) {
+            res[va.size() + i] = vb.get(i);
+        }
+        return res;
+    }
+
+    /**
+     * Columns of a compared table: names, key flags and views, the view is null if the column is not in memory.
+     */
+    static final class Columns {
+        private final int rows;
+        private final String[] names;
+        private final boolean[] keys;
+        private final QColumn[] views;
+
+        Columns(int rows, String[] names, boolean[] keys, QColumn[] views) {
+            this.rows = rows;
+            this.names = names;
+            this.keys = keys;
+            this.views = views;
+        }
+
+        static Columns of(TableResult.QTableModel model) {
+            final int count = model.getColumnCount();
+            final String[] names = new String[count];
+            final boolean[] keys = new boolean[count];
+            final QColumn[] views = new QColumn[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = model.getColumns()[i].getQName();
+                keys[i] = model.isKeyColumn(i);
+                views[i] = model.getColumnView(i);
+            }
+            return new Columns(model.getRowCount(), names, keys, views);
+        }
+    }
+
+    /**
+     * Hashers of keys and values of one table. Rows of a big table are assigned to partitions by hashes of keys.
+     */
+    private static final class Side {
+        private final int rows;
+        private final QColumn[] views;
+        private final LongValues[] keyHashers;
+        private final LongValues[] valueHashers;
+        private byte[] partitions;
+
+        private Side(Columns table, int[] columns, int keys, KdbOutputFormatter formatter) {
+            rows = table.rows;
+            views = new QColumn[columns.length];
+            final LongValues[] hashers = new LongValues[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                views[i] = table.views[columns[i]];
+                hashers[i] = KeyIndex.hashes(views[i], formatter);
+            }
+
+            // without keys rows are matched by all values, so matched rows are never changed
+            valueHashers = Arrays.copyOfRange(hashers, keys, hashers.length);
+            keyHashers = keys == 0 ? valueHashers : Arrays.copyOf(hashers, keys);
+        }
+
+        private void partition(int bits) {
+            final byte[] res = new byte[rows];
+            forEachChunk(rows, (from, to) -> {
+                for (int row = from; row < to; row++) {
+                    res[row] = (byte) (hash(keyHashers, row) >>> (64 - bits));
+                }
+            });
+            partitions = res;
+        }
+
+        /**
+         * Hashes keys and values of rows of the partition and sorts them by keys.
+         */
+        private Partition sort(int partition) {
+            final int[] rows;
+            if (partitions == null) {
+                rows = IntStream.range(0, this.rows).toArray();
+            } else {
+                final IntArrayList list = new IntArrayList();
+                for (int row = 0; row < this.rows; row++) {
+                    if (partitions[row] == (byte) partition) {
+                        list.add(row);
+                    }
+                }
+                rows = list.toIntArray();
+            }
+
+            final Partition res = new Partition(rows);
+            forEachChunk(rows.length, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    res.keys[i] = hash(keyHashers, rows[i]);
+                    res.values[i] = keyHashers == valueHashers ? res.keys[i] : hash(valueHashers, rows[i]);
+                }
+            });
+
+            // values stay in the row order, keys are sorted with positions of their rows
+            QTableRowSorter.sort(res.keys, res.order);
+            return res;
+        }
+    }
+
+    private static final class Partition {
+        private final int size;
+        private final int[] rows;
+        private final int[] order;
+        private final long[] keys;
+        private final long[] values;
+
+        private Partition(int[] rows) {
+            this.rows = rows;
+            size = rows.length;
+            order = IntStream.range(0, size).toArray();
+            keys = new long[size];
+            values = new long[size];
+        }
+    }
+
+    private static final class Merge {
+        private final IntArrayList statuses = new IntArrayList();
+        private final IntArrayList leftRows = new IntArrayList();
+        private final IntArrayList rightRows = new IntArrayList();
+        private int unchanged;
+
+        private void add(Status status, int left, int right) {
+            statuses.add(status.ordinal());
+            leftRows.add(left);
+            rightRows.add(right);
+        }
+    }
+
+    /**
+     * Splits the rows into chunks of about the same size and processes them in parallel on the common pool.
+     */
+    private static void forEachChunk(int rows, ChunkAction action) {
+        final int chunks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), rows / CHUNK_SIZE));
+        if (chunks == 1) {
+            action.process(0, rows);
+            return;
+        }
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = (int) ((long) rows * c / chunks);
+            final int to = (int) ((long) rows * (c + 1) / chunks);
+            tasks.add(ForkJoinTask.adapt(() -> action.process(from, to)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void process(int from, int to);
+    }
+}
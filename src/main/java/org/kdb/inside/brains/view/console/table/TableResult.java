@@ -1,17 +1,23 @@
 package org.kdb.inside.brains.view.console.table;
 
 import com.intellij.util.ui.ColumnInfo;
+import kx.KxMappedFile;
+import kx.KxVector;
 import kx.c;
 import org.apache.commons.lang3.ArrayUtils;
 import org.jetbrains.annotations.Nls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kdb.inside.brains.KdbType;
+import org.kdb.inside.brains.core.InstanceConnection;
 import org.kdb.inside.brains.core.KdbQuery;
 import org.kdb.inside.brains.core.KdbResult;
 import org.kdb.inside.brains.settings.KdbSettingsService;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
 import org.kdb.inside.brains.view.console.ConsoleOptions;
 
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
 import java.lang.reflect.Array;
@@ -53,17 +59,36 @@ public class TableResult {
     }
 
     public static TableResult from(KdbQuery query, KdbResult result) {
+        return from(query, result, null);
+    }
+
+    /**
+     * Creates the table result, including a paged table kept on the instance, see {@link PagedTableModel}, and
+     * a table mapped from a temp file, see {@link MappedTableModel}.
+     *
+     * @param connection the connection the result was received from or null if it's not known
+     */
+    public static TableResult from(KdbQuery query, KdbResult result, @Nullable InstanceConnection connection) {
         final Object k = result.getObject();
         if (k == null) {
             return null;
         }
 
-        QTableModel model = createModel(k);
-        return model == null ? null : new TableResult(query, result, model);
+        QTableModel model = createModel(k, connection);
+        if (model == null) {
+            return null;
+        }
+
+        final KxMappedFile file = KxMappedFile.of(k);
+        return new TableResult(query, result, file == null ? model : new MappedTableModel(file, model));
     }
 
     @Nullable
-    private static QTableModel createModel(Object k) {
+    private static QTableModel createModel(Object k, @Nullable InstanceConnection connection) {
+        if (connection != null && PagedTableModel.isPagedResult(k)) {
+            return new PagedTableModel(connection, (Object[]) k);
+        }
+
         if (k instanceof c.Flip) {
             return new SimpleTableModel((c.Flip) k);
         }
@@ -78,8 +103,8 @@ public class TableResult {
             final Object x = dict.x;
             final Object y = dict.y;
 
-            final boolean xa = x.getClass().isArray();
-            final boolean ya = y.getClass().isArray();
+            final boolean xa = isVector(x);
+            final boolean ya = isVector(y);
             if (xa && ya) {
                 if (options.isDictAsTable()) {
                     return new DictTableModel(x, y);
@@ -99,18 +124,45 @@ public class TableResult {
         }
         if (o instanceof c.Dict) {
             final c.Dict d = (c.Dict) o;
-            return (d.x instanceof c.Flip || d.x.getClass().isArray()) && (d.y instanceof c.Flip || d.y.getClass().isArray());
+            return (d.x instanceof c.Flip || isVector(d.x)) && (d.y instanceof c.Flip || isVector(d.y));
         }
         return false;
     }
 
     public static boolean isNotEmptyList(Object o) {
-        return o.getClass().isArray() && !(o instanceof char[]) && Array.getLength(o) != 0;
+        return isVector(o) && !(o instanceof char[]) && length(o) != 0;
+    }
+
+    private static boolean isVector(Object o) {
+        return o.getClass().isArray() || o instanceof KxVector;
+    }
+
+    static int length(Object vector) {
+        if (vector instanceof KxVector) {
+            return ((KxVector) vector).size();
+        }
+        return Array.getLength(vector);
+    }
+
+    static Object valueAt(Object vector, int index) {
+        if (vector instanceof KxVector) {
+            return ((KxVector) vector).get(index);
+        }
+        return Array.get(vector, index);
+    }
+
+    static Class<?> elementType(Object vector) {
+        if (vector instanceof KxVector) {
+            return ((KxVector) vector).getElementType();
+        }
+        return vector.getClass().getComponentType();
     }
 
     public static abstract class QTableModel implements TableModel {
         final QColumnInfo[] columns;
 
+        private final EventListenerList listeners = new EventListenerList();
+
         static final QColumnInfo[] EMPTY_COLUMNS = new QColumnInfo[0];
 
         protected QTableModel(QColumnInfo[] columns) {
@@ -119,10 +171,25 @@ public class TableResult {
 
         @Override
         public void addTableModelListener(TableModelListener l) {
+            listeners.add(TableModelListener.class, l);
         }
 
         @Override
         public void removeTableModelListener(TableModelListener l) {
+            listeners.remove(TableModelListener.class, l);
+        }
+
+        protected void fireTableChanged(TableModelEvent e) {
+            for (TableModelListener l : listeners.getListeners(TableModelListener.class)) {
+                l.tableChanged(e);
+            }
+        }
+
+        /**
+         * Releases resources of the model when the result is not shown anymore. Data of an in-memory model is just left
+         * to the garbage collector.
+         */
+        public void dispose() {
         }
 
         @Override
@@ -158,6 +225,25 @@ public class TableResult {
         public boolean isKeyColumn(int columnIndex) {
             return columns[columnIndex].key;
         }
+
+        /**
+         * Returns the typed view of the column, so items can be read, compared and formatted without reflection and
+         * boxing.
+         *
+         * @param columnIndex the column index
+         * @return the view or null if the column is not in memory.
+         */
+        public QColumn getColumnView(int columnIndex) {
+            return columns[columnIndex].view;
+        }
+
+        /**
+         * Returns the vector of the column as it was received from kdb+.
+         *
+         * @param columnIndex the column index
+         * @return the column vector or null if there is no such.
+         */
+        public abstract Object getColumnData(int columnIndex);
     }
 
     private static class EmptyTableModel extends QTableModel {
@@ -165,6 +251,15 @@ public class TableResult {
             super(EMPTY_COLUMNS);
         }
 
+        @Override
+        public void addTableModelListener(TableModelListener l) {
+            // the model is shared and never changed
+        }
+
+        @Override
+        public void removeTableModelListener(TableModelListener l) {
+        }
+
         @Override
         public int getRowCount() {
             return 0;
@@ -174,6 +269,16 @@ public class TableResult {
         public Object getValueAt(int rowIndex, int columnIndex) {
             return null;
         }
+
+        @Override
+        public Object getColumnData(int columnIndex) {
+            return null;
+        }
+
+        @Override
+        public QColumn getColumnView(int columnIndex) {
+            return null;
+        }
     }
 
     public static class ListTableModel extends QTableModel {
@@ -181,13 +286,9 @@ public class TableResult {
         private final int rowsCount;
 
         protected ListTableModel(Object array) {
-            this(array, array.getClass().getComponentType());
-        }
-
-        private ListTableModel(Object array, Class<?> type) {
-            super(new QColumnInfo[]{new QColumnInfo(KdbType.typeOf(type).getTypeName(), type, false)});
+            super(new QColumnInfo[]{new QColumnInfo(KdbType.typeOf(elementType(array)).getTypeName(), array, false)});
             this.array = array;
-            this.rowsCount = Array.getLength(array);
+            this.rowsCount = length(array);
         }
 
         @Override
@@ -197,7 +298,12 @@ public class TableResult {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            return Array.get(array, rowIndex);
+            return columns[0].view.get(rowIndex);
+        }
+
+        @Override
+        public Object getColumnData(int columnIndex) {
+            return array;
         }
     }
 
@@ -208,6 +314,8 @@ public class TableResult {
         private final int keysCount;
         private final int rowsCount;
 
+        private KeyIndex keyIndex;
+
         private DictTableModel(Object keys, Object values) {
             this(keys, cols(keys, true), values, cols(values, false));
         }
@@ -218,7 +326,7 @@ public class TableResult {
             this.values = values;
 
             keysCount = keysInfo.length;
-            rowsCount = Array.getLength(keys instanceof c.Flip ? ((c.Flip) keys).y[0] : keys);
+            rowsCount = length(keys instanceof c.Flip ? ((c.Flip) keys).y[0] : keys);
         }
 
         private static QColumnInfo[] cols(Object v, boolean key) {
@@ -226,7 +334,7 @@ public class TableResult {
                 return QColumnInfo.of((c.Flip) v, key);
             }
             return new QColumnInfo[]{
-                    new QColumnInfo(key ? "Key" : "Value", v.getClass().getComponentType(), key)
+                    new QColumnInfo(key ? "Key" : "Value", v, key)
             };
         }
 
@@ -237,8 +345,12 @@ public class TableResult {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            final Object row = getRow(columnIndex);
-            return Array.get(row, rowIndex);
+            return columns[columnIndex].view.get(rowIndex);
+        }
+
+        @Override
+        public Object getColumnData(int columnIndex) {
+            return getRow(columnIndex);
         }
 
         public Object getRow(int columnIndex) {
@@ -250,6 +362,24 @@ public class TableResult {
             }
             return o;
         }
+
+        /**
+         * Returns the hash index of rows by keys. The index is built by the first call, so it can take a while.
+         */
+        synchronized KeyIndex getKeyIndex(KdbOutputFormatter formatter) {
+            if (keyIndex == null) {
+                final QColumn[] views = new QColumn[keysCount];
+                for (int i = 0; i < keysCount; i++) {
+                    views[i] = columns[i].view;
+                }
+                keyIndex = KeyIndex.build(views, rowsCount, formatter);
+            }
+            return keyIndex;
+        }
+
+        synchronized boolean isKeyIndexed() {
+            return keyIndex != null;
+        }
     }
 
     public static class SimpleTableModel extends QTableModel {
@@ -259,7 +389,7 @@ public class TableResult {
         private SimpleTableModel(c.Flip flip) {
             super(QColumnInfo.of(flip, false));
             this.flip = flip;
-            this.rowsCount = Array.getLength(flip.y[0]);
+            this.rowsCount = length(flip.y[0]);
         }
 
         @Override
@@ -269,7 +399,12 @@ public class TableResult {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            return Array.get(flip.y[columnIndex], rowIndex);
+            return columns[columnIndex].view.get(rowIndex);
+        }
+
+        @Override
+        public Object getColumnData(int columnIndex) {
+            return flip.y[columnIndex];
         }
     }
 
@@ -294,20 +429,64 @@ public class TableResult {
 
     public static class QColumnInfo extends ColumnInfo<Object, Object> {
         private final boolean key;
+        private final String qName;
+        final QColumn view;
         private final Class<?> columnClass;
         private final Comparator<Object> comparator;
+        private final boolean indexComparator;
 
-        @SuppressWarnings("unchecked")
         public QColumnInfo(String name, Class<?> columnClass, boolean key) {
             super(createColumnName(name, key));
             this.key = key;
+            this.qName = name;
+            this.view = null;
             this.columnClass = columnClass;
+            this.indexComparator = false;
+            this.comparator = createComparator(columnClass);
+        }
 
-            if (columnClass != null && (Comparable.class.isAssignableFrom(columnClass) || columnClass.isPrimitive())) {
-                comparator = (o1, o2) -> ((Comparable<Object>) o1).compareTo(o2);
+        /**
+         * Creates column info for the given vector. Items are sorted through the typed view of the vector, see
+         * {@link QColumn}, without creating value objects, so the comparator takes row indexes instead of values:
+         * see {@link #isIndexComparator()}.
+         */
+        public QColumnInfo(String name, Object vector, boolean key) {
+            super(createColumnName(name, key));
+            this.key = key;
+            this.qName = name;
+            this.view = QColumn.of(vector);
+            this.columnClass = view.getElementType();
+
+            if (view.isComparable()) {
+                final QColumn v = view;
+                this.indexComparator = true;
+                this.comparator = (o1, o2) -> v.compare((Integer) o1, (Integer) o2);
             } else {
-                comparator = null;
+                this.indexComparator = false;
+                this.comparator = createComparator(columnClass);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Comparator<Object> createComparator(Class<?> columnClass) {
+            if (columnClass != null && (Comparable.class.isAssignableFrom(columnClass) || columnClass.isPrimitive())) {
+                return (o1, o2) -> ((Comparable<Object>) o1).compareTo(o2);
             }
+            return null;
+        }
+
+        /**
+         * Returns the column name as it is in kdb+, without the key column prefix.
+         */
+        public String getQName() {
+            return qName;
+        }
+
+        /**
+         * Returns true if the {@link #getComparator()} compares model row indexes instead of values.
+         */
+        public boolean isIndexComparator() {
+            return indexComparator;
         }
 
         @Override
@@ -334,7 +513,7 @@ public class TableResult {
             final int length = flip.x.length;
             QColumnInfo[] res = new QColumnInfo[length];
             for (int i = 0; i < length; i++) {
-                res[i] = new QColumnInfo(flip.x[i], flip.y[i].getClass().getComponentType(), key);
+                res[i] = new QColumnInfo(flip.x[i], flip.y[i], key);
             }
             return res;
         }
@@ -5,6 +5,7 @@ import org.kdb.inside.brains.core.KdbResult;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 
 import javax.swing.*;
+import javax.swing.table.TableModel;
 import java.awt.*;
 import java.sql.Timestamp;
 
@@ -12,8 +13,14 @@ class TableResultStatusPanel extends JPanel {
     private final JTable myTable;
     private final KdbOutputFormatter formatter;
 
+    private final SelectionAggregator aggregator = new SelectionAggregator();
+
     private final JLabel avgLabel = new JLabel();
     private final JLabel sumLabel = new JLabel();
+    private final JLabel minLabel = new JLabel();
+    private final JLabel maxLabel = new JLabel();
+    private final JLabel nullsLabel = new JLabel();
+    private final JLabel distinctLabel = new JLabel();
     private final JLabel countLabel = new JLabel();
     private final JLabel timeLabel = new JLabel();
     private final JLabel sizeLabel = new JLabel();
@@ -35,6 +42,10 @@ class TableResultStatusPanel extends JPanel {
         add(Box.createHorizontalStrut(10), c.next());
         add(countLabel, c.next());
         add(sumLabel, c.next());
+        add(minLabel, c.next());
+        add(maxLabel, c.next());
+        add(nullsLabel, c.next());
+        add(distinctLabel, c.next());
         add(timeLabel, c.next());
         add(sizeLabel, c.next());
 
@@ -45,29 +56,65 @@ class TableResultStatusPanel extends JPanel {
     private void selectionChanged() {
         final int[] rows = myTable.getSelectionModel().getSelectedIndices();
         final int[] columns = myTable.getColumnModel().getSelectionModel().getSelectedIndices();
-        double sum = 0;
-        for (int row : rows) {
-            for (int column : columns) {
-                final Object value = myTable.getValueAt(row, column);
-                if (value instanceof Number && !kx.c.qn(value)) {
-                    Number at = (Number) value;
-                    sum += at.doubleValue();
+        if (rows.length == 0 || columns.length == 0) {
+            aggregator.cancel();
+            clearAggregates();
+            return;
+        }
+
+        final TableModel model = myTable.getModel();
+        final int[] modelRows = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            modelRows[i] = myTable.convertRowIndexToModel(rows[i]);
+        }
+
+        final QColumn[] views = new QColumn[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            final QColumn view = QColumn.of(myTable, columns[i]);
+            if (view != null) {
+                views[i] = view;
+            } else {
+                // values of a column that is not in memory are taken here, they can't be read in background
+                final int column = myTable.convertColumnIndexToModel(columns[i]);
+                final Object[] values = new Object[model.getRowCount()];
+                for (int row : modelRows) {
+                    values[row] = model.getValueAt(row, column);
                 }
+                views[i] = QColumn.of(values);
             }
         }
+        aggregator.aggregate(modelRows, views, this::showAggregates);
+    }
 
-        final int cnt = rows.length * columns.length;
-        if (cnt == 0) {
+    private void showAggregates(SelectionAggregator.Aggregates aggregates) {
+        // partial aggregates are marked until all selected cells are read
+        final String suffix = aggregates.isCompleted() ? "" : "\u2026";
+        countLabel.setText("Count: " + aggregates.getCount());
+        nullsLabel.setText(aggregates.getNulls() == 0 ? "" : "Nulls: " + aggregates.getNulls() + suffix);
+        distinctLabel.setText("Distinct: ~" + aggregates.getDistinct() + suffix);
+        if (aggregates.getNumbers() == 0) {
             sumLabel.setText("");
             avgLabel.setText("");
-            countLabel.setText("");
+            minLabel.setText("");
+            maxLabel.setText("");
         } else {
-            sumLabel.setText("Sum: " + formatter.formatDouble(sum));
-            avgLabel.setText("Average: " + formatter.formatDouble(sum / cnt));
-            countLabel.setText("Count: " + cnt);
+            sumLabel.setText("Sum: " + formatter.formatDouble(aggregates.getSum()) + suffix);
+            avgLabel.setText("Average: " + formatter.formatDouble(aggregates.getAverage()) + suffix);
+            minLabel.setText("Min: " + formatter.formatDouble(aggregates.getMin()) + suffix);
+            maxLabel.setText("Max: " + formatter.formatDouble(aggregates.getMax()) + suffix);
         }
     }
 
+    private void clearAggregates() {
+        sumLabel.setText("");
+        avgLabel.setText("");
+        minLabel.setText("");
+        maxLabel.setText("");
+        nullsLabel.setText("");
+        distinctLabel.setText("");
+        countLabel.setText("");
+    }
+
     public void invalidateRowsCount() {
         sizeLabel.setText(myTable.getRowCount() + " of " + myTable.getModel().getRowCount() + " rows");
     }
@@ -77,9 +124,8 @@ class TableResultStatusPanel extends JPanel {
             timeLabel.setText("");
             sizeLabel.setText("Empty");
             queryLabel.setText("");
-            sumLabel.setText("");
-            avgLabel.setText("");
-            countLabel.setText("");
+            aggregator.cancel();
+            clearAggregates();
         } else {
             final KdbResult result = tableResult.getResult();
 
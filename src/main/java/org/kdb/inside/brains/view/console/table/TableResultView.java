@@ -3,10 +3,19 @@ package org.kdb.inside.brains.view.console.table;
 import com.intellij.find.FindModel;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.*;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.DumbAwareToggleAction;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.Splitter;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vcs.FileStatus;
 import com.intellij.ui.PopupHandler;
 import com.intellij.ui.ScrollPaneFactory;
 import com.intellij.ui.components.panels.NonOpaquePanel;
@@ -15,11 +24,14 @@ import com.intellij.ui.tabs.JBTabs;
 import com.intellij.ui.tabs.TabInfo;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
+import com.intellij.util.ui.update.Activatable;
+import com.intellij.util.ui.update.UiNotifyConnector;
 import icons.KdbIcons;
-import kx.c;
+import kx.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kdb.inside.brains.UIUtils;
+import org.kdb.inside.brains.core.ExecutionOptions;
 import org.kdb.inside.brains.core.KdbQuery;
 import org.kdb.inside.brains.core.KdbResult;
 import org.kdb.inside.brains.settings.KdbSettingsService;
@@ -33,15 +45,22 @@ import org.kdb.inside.brains.view.export.OpenInEditorAction;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.RowSorterEvent;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.Comparator;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.Math.max;
 
@@ -50,6 +69,7 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
     private ToggleAction searchAction;
 
     private final Project project;
+    private final KdbOutputFormatter formatter;
     private final ConsoleOptions consoleOptions;
     private final BiConsumer<KdbQuery, TableResultView> repeater;
 
@@ -59,8 +79,18 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
     private final TableResultSearchSession searchSession;
 
     private ColumnsFilterPanel columnsFilter;
+    private ColumnsProfilePanel columnsProfile;
+    private TableDiff tableDiff;
+    private EvictedResult evictedResult;
+    private boolean evicting;
+    private boolean memoryManaged;
+    private String lastKey = "";
     private TableResultStatusPanel statusBar;
 
+    private final String emptyText;
+
+    private static final Logger log = Logger.getInstance(TableResultView.class);
+
     public static final DataKey<TableResultView> DATA_KEY = DataKey.create("KdbConsole.TableResultView");
 
     public TableResultView(Project project, KdbOutputFormatter formatter) {
@@ -73,12 +103,20 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
 
     public TableResultView(Project project, KdbOutputFormatter formatter, TableMode mode, BiConsumer<KdbQuery, TableResultView> repeater) {
         this.project = project;
+        this.formatter = formatter;
         this.repeater = repeater;
 
         consoleOptions = KdbSettingsService.getInstance().getConsoleOptions();
         final var valueColumnRenderer = new DefaultTableCellRenderer() {
+            private QColumn view;
+            private int modelRow;
+
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+                // typed columns are formatted by primitive formatters, the value is used for other columns only
+                view = QColumn.of(table, column);
+                modelRow = view == null ? -1 : table.convertRowIndexToModel(row);
+
                 final Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
                 if (!isSelected) {
                     if (consoleOptions.isStriped() && row % 2 == 0) {
@@ -87,12 +125,31 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
                         c.setBackground(table.getBackground());
                     }
                 }
+
+                setToolTipText(null);
+                if (tableDiff != null) {
+                    showDiff(table.convertRowIndexToModel(row), table.convertColumnIndexToModel(column), isSelected);
+                }
                 return c;
             }
 
+            /**
+             * Rows of a diff are colored by their status and changed cells have their old values in the tooltip.
+             */
+            private void showDiff(int row, int column, boolean isSelected) {
+                final TableDiff.Status status = tableDiff.getStatus(row);
+                final boolean changed = tableDiff.isChanged(row, column);
+                if (!isSelected && (status != TableDiff.Status.CHANGED || changed)) {
+                    setForeground((status == TableDiff.Status.ADDED ? FileStatus.ADDED : status == TableDiff.Status.REMOVED ? FileStatus.DELETED : FileStatus.MODIFIED).getColor());
+                }
+                if (changed) {
+                    setToolTipText("Was: " + tableDiff.formatOldValue(formatter, row, column));
+                }
+            }
+
             @Override
             protected void setValue(Object value) {
-                setText(formatter.objectToString(value));
+                setText(view != null ? view.format(formatter, modelRow) : formatter.objectToString(value));
             }
         };
 
@@ -133,24 +190,17 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
                 if (model instanceof TableResult.QTableModel) {
                     final TableResult.QTableModel qModel = (TableResult.QTableModel) model;
 
-                    final TableRowSorter<TableResult.QTableModel> sorter = new TableRowSorter<>(qModel);
-                    sorter.setStringConverter(new TableStringConverter() {
-                        @Override
-                        public String toString(TableModel model, int row, int column) {
-                            final Object valueAt = model.getValueAt(row, column);
-                            if (valueAt == null) {
-                                return "";
+                    final RowSorter<? extends TableModel> sorter;
+                    if (qModel instanceof PagedTableModel) {
+                        sorter = new PagedRowSorter((PagedTableModel) qModel, searchSession);
+                    } else {
+                        // big tables are sorted and searched in background, so rows are counted again when they are sorted
+                        sorter = new QTableRowSorter(qModel, formatter, consoleOptions.isSearchIndex());
+                        sorter.addRowSorterListener(e -> {
+                            if (e.getType() == RowSorterEvent.Type.SORTED) {
+                                rowsChanged();
                             }
-                            return formatter.objectToString(valueAt);
-                        }
-                    });
-
-                    final TableResult.QColumnInfo[] columns = qModel.getColumns();
-                    for (int i = 0; i < columns.length; i++) {
-                        final Comparator<Object> comparator = columns[i].getComparator();
-                        if (comparator != null) {
-                            sorter.setComparator(i, comparator);
-                        }
+                        });
                     }
                     setRowSorter(sorter);
                 }
@@ -215,6 +265,20 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
 
         add(createFilter(), BorderLayout.EAST);
         add(createActions(), BorderLayout.WEST);
+
+        // an evicted result is loaded back as soon as the view is shown
+        emptyText = myTable.getEmptyText().getText();
+        new UiNotifyConnector(this, new Activatable() {
+            @Override
+            public void showNotify() {
+                restore();
+                ResultsMemoryManager.getInstance().touch(TableResultView.this);
+            }
+
+            @Override
+            public void hideNotify() {
+            }
+        });
     }
 
     @NotNull
@@ -224,29 +288,57 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         final ToggleAction action = new DumbAwareToggleAction("Filter Columns", "Filter columns list", KdbIcons.Console.ColumnsFilter) {
             @Override
             public boolean isSelected(@NotNull AnActionEvent e) {
-                return splitter.getSecondComponent() != null;
+                return columnsFilter != null;
             }
 
             @Override
             public void setSelected(@NotNull AnActionEvent e, boolean state) {
+                closeSidePanel();
                 if (state) {
-                    columnsFilter = new ColumnsFilterPanel(myTable);
+                    columnsFilter = new ColumnsFilterPanel(myTable, TableResultView.this::rowsFiltered);
                     splitter.setSecondComponent(columnsFilter);
                     columnsFilter.requestFocus();
-                } else {
-                    splitter.setSecondComponent(null);
-                    columnsFilter.destroy();
-                    columnsFilter = null;
                 }
             }
         };
         group.add(action);
 
+        group.add(new DumbAwareToggleAction("Profile Columns", "Show nulls, distinct values, quantiles and histograms of columns", AllIcons.Actions.Profile) {
+            @Override
+            public boolean isSelected(@NotNull AnActionEvent e) {
+                return columnsProfile != null;
+            }
+
+            @Override
+            public void setSelected(@NotNull AnActionEvent e, boolean state) {
+                closeSidePanel();
+                if (state) {
+                    columnsProfile = new ColumnsProfilePanel(myTable, formatter);
+                    splitter.setSecondComponent(columnsProfile);
+                }
+            }
+        });
+
         final ActionToolbar filterToolbar = ActionManager.getInstance().createActionToolbar("TableResultView.Filter", group, false);
         filterToolbar.setTargetComponent(this);
         return filterToolbar.getComponent();
     }
 
+    /**
+     * Closes the columns filter or the columns profile: only one of them is shown at once.
+     */
+    private void closeSidePanel() {
+        splitter.setSecondComponent(null);
+        if (columnsFilter != null) {
+            columnsFilter.destroy();
+            columnsFilter = null;
+        }
+        if (columnsProfile != null) {
+            columnsProfile.destroy();
+            columnsProfile = null;
+        }
+    }
+
     @NotNull
     private JComponent createActions() {
         final DefaultActionGroup group = new DefaultActionGroup();
@@ -255,7 +347,15 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
             group.add(new DumbAwareAction("_Repeat the Query", "Re-run the query related with this result", AllIcons.Actions.Refresh) {
                 @Override
                 public void actionPerformed(@NotNull AnActionEvent e) {
-                    repeater.accept(tableResult.getQuery(), TableResultView.this);
+                    final KdbQuery query = getQuery();
+                    if (query != null) {
+                        repeater.accept(query, TableResultView.this);
+                    }
+                }
+
+                @Override
+                public void update(@NotNull AnActionEvent e) {
+                    e.getPresentation().setEnabled(getQuery() != null);
                 }
             });
             group.addSeparator();
@@ -278,6 +378,32 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         action.registerCustomShortcutSet(KeyEvent.VK_I, KeyEvent.CTRL_DOWN_MASK | KeyEvent.SHIFT_DOWN_MASK, myTable);
         group.add(action);
 
+        final AnAction goToKey = new DumbAwareAction("Go to _Key", "Jump to the row of a key of the keyed table or dictionary", AllIcons.General.Locate) {
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                e.getPresentation().setEnabled(myTable.getModel() instanceof TableResult.DictTableModel);
+            }
+
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                goToKey();
+            }
+        };
+        goToKey.registerCustomShortcutSet(KeyEvent.VK_G, KeyEvent.CTRL_DOWN_MASK, myTable);
+        group.add(goToKey);
+
+        group.add(new DumbAwareAction("_Group By", "Group and aggregate rows of the table into a new tab", AllIcons.Actions.GroupBy) {
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                e.getPresentation().setEnabled(tableResult != null && !(myTable.getModel() instanceof PagedTableModel) && TabsTableResult.findParentTabs(TableResultView.this) != null);
+            }
+
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                groupBy();
+            }
+        });
+
         group.addSeparator();
         group.addAll(ExportDataProvider.createActionGroup(project, this));
 
@@ -371,6 +497,86 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         return false;
     }
 
+    private void groupBy() {
+        final GroupByDialog dialog = new GroupByDialog(myTable);
+        if (!dialog.showAndGet()) {
+            return;
+        }
+
+        // only the rows in the view are grouped, in the view order
+        final TableResult.QTableModel model = myTable.getModel();
+        final int[] rows = new int[myTable.getRowCount()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = myTable.convertRowIndexToModel(i);
+        }
+
+        final GroupBy groupBy = dialog.getGroupBy();
+        final String keys = groupBy.getKeys().stream().map(GroupBy.Key::getName).collect(Collectors.joining(", "));
+        final String tabName = getExportName() + (keys.isEmpty() ? " totals" : " by " + keys);
+        new Task.Backgroundable(project, "Grouping " + tabName, false, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    final Object result = groupBy.execute(model::getColumnView, rows, formatter);
+                    final TableResult tr = TableResult.from(new KdbQuery(groupBy.toString()), new KdbResult().complete(result));
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        final TabsTableResult owner = TabsTableResult.findParentTabs(TableResultView.this);
+                        if (owner != null) {
+                            owner.showTabAfter(tabName, tr);
+                        }
+                    });
+                } catch (IllegalArgumentException ex) {
+                    ApplicationManager.getApplication().invokeLater(() -> Messages.showErrorDialog(project, ex.getMessage(), "Table Can't Be Grouped"));
+                }
+            }
+        }.queue();
+    }
+
+    private void goToKey() {
+        final TableResult.DictTableModel model = (TableResult.DictTableModel) myTable.getModel();
+        final String keys = IntStream.range(0, model.getColumnCount()).filter(model::isKeyColumn).mapToObj(model::getColumnName).collect(Collectors.joining(", "));
+        final String text = Messages.showInputDialog(project, "Key (" + keys + "):", "Go to Key", null, lastKey, null);
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        lastKey = text;
+
+        if (model.isKeyIndexed()) {
+            goToKey(model, model.getKeyIndex(formatter), text);
+            return;
+        }
+
+        // the index is built only once, by the first lookup
+        new Task.Backgroundable(project, "Indexing keys of " + getExportName(), false, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                final KeyIndex index = model.getKeyIndex(formatter);
+                ApplicationManager.getApplication().invokeLater(() -> goToKey(model, index, text));
+            }
+        }.queue();
+    }
+
+    private void goToKey(TableResult.DictTableModel model, KeyIndex index, String text) {
+        if (myTable.getModel() != model) {
+            return;
+        }
+
+        final int row;
+        try {
+            row = index.find(text);
+        } catch (IllegalArgumentException ex) {
+            Messages.showErrorDialog(project, ex.getMessage(), "Wrong Key");
+            return;
+        }
+
+        final int viewRow = row < 0 ? -1 : myTable.convertRowIndexToView(row);
+        if (viewRow < 0) {
+            Messages.showInfoMessage(project, row < 0 ? "There is no key " + text : "The row of the key " + text + " is filtered out", "Go to Key");
+            return;
+        }
+        myTable.changeSelection(viewRow, Math.max(0, myTable.getSelectedColumn()), false, false);
+    }
+
     private boolean isExpandable(Object o) {
         if (o == null) {
             return false;
@@ -388,14 +594,6 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         return myTable;
     }
 
-    static TableRowFilter createFilter(FindModel model) {
-        final String text = model.getStringToFind();
-        if (text.isBlank()) {
-            return null;
-        }
-        return createSimpleFilter(model);
-    }
-
     @Override
     public JBTable getTable() {
         return myTable;
@@ -420,22 +618,6 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         searchAction.registerCustomShortcutSet(new CustomShortcutSet(KeyStroke.getKeyStroke(KeyEvent.VK_F, KeyEvent.CTRL_DOWN_MASK)), myTable);
     }
 
-    @NotNull
-    static TableRowFilter createSimpleFilter(FindModel model) {
-        final String text = model.getStringToFind();
-        if (model.isRegularExpressions()) {
-            final Matcher matcher = model.compileRegExp().matcher("");
-            return new TableRowFilter(v -> matcher.reset(v).find());
-        } else if (model.isWholeWordsOnly()) {
-            final int flags = model.isCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE;
-            final Pattern compile = Pattern.compile(".*\\b" + text + "\\b.*", flags);
-            final Matcher matcher = compile.matcher("");
-            return new TableRowFilter(v -> matcher.reset(v).find());
-        } else {
-            return new TableRowFilter(v -> containsIgnoreCase(v, text, !model.isCaseSensitive()));
-        }
-    }
-
     @Nullable
     @Override
     public Object getData(@NotNull String dataId) {
@@ -447,42 +629,200 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
 
     @Override
     public String getExportName() {
+        final TabInfo info = findTabInfo();
+        return info != null ? info.getText() : "Table Result";
+    }
+
+    private TabInfo findTabInfo() {
         final Container parent = getParent();
         if (parent instanceof JBTabs) {
             final JBTabs jbTabs = (JBTabs) parent;
             for (TabInfo info : jbTabs.getTabs()) {
                 if (info.getObject() == this) {
-                    return info.getText();
+                    return info;
                 }
             }
         }
-        return "Table Result";
+        return null;
     }
 
-    @Override
-    public Object getNativeObject() {
-        return tableResult.getResult().getObject();
+    /**
+     * Shows the memory taken by the result in the tooltip of the tab, see {@link ResultsMemoryManager}.
+     */
+    void updateTabTooltip() {
+        final TabInfo info = findTabInfo();
+        if (info != null) {
+            info.setTooltipText(getMemoryTooltip());
+        }
+    }
+
+    String getMemoryTooltip() {
+        final ResultsMemoryManager memory = ResultsMemoryManager.getInstance();
+        final String total = "all results: " + StringUtil.formatFileSize(memory.getUsed()) + (memory.getBudget() > 0 ? " of " + StringUtil.formatFileSize(memory.getBudget()) : "");
+        if (evictedResult != null) {
+            return "The result is moved into a temp file (" + StringUtil.formatFileSize(evictedResult.fileSize) + "), " + total;
+        }
+
+        final long size = memory.getSize(this);
+        return size < 0 ? null : "About " + StringUtil.formatFileSize(size) + " in memory, " + total;
     }
 
-    private static boolean containsIgnoreCase(String str, String searchStr, boolean ignoreCase) {
-        if (str == null || searchStr == null) {
+    /**
+     * Results of paged and mapped models are not in the heap, so they are not counted and never evicted.
+     */
+    private static boolean isInHeap(TableResult result) {
+        final TableResult.QTableModel model = result.getTableModel();
+        return !(model instanceof PagedTableModel) && !(model instanceof MappedTableModel);
+    }
+
+    /**
+     * Writes the result into a temp file in background and releases it, the result is loaded back when
+     * the view is shown again. Called by {@link ResultsMemoryManager} when the memory budget is exceeded.
+     *
+     * @return false if the result can't be evicted
+     */
+    boolean evict() {
+        final TableResult result = tableResult;
+        // highlights of a diff refer to compared results, so the diff itself is kept
+        if (result == null || evicting || tableDiff != null || !isInHeap(result)) {
             return false;
         }
 
-        final int length = searchStr.length();
-        if (length == 0) {
-            return true;
+        evicting = true;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            Path path = null;
+            try {
+                path = Files.createTempFile("kdbinsidebrains-", ".kib");
+                // in case the result is never closed
+                path.toFile().deleteOnExit();
+                // the heap is over the budget, so the result is written chunk by chunk without compression
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    KxConnection.DEFAULT_CODEC.encode(channel, 0, result.getResult().getObject());
+                }
+
+                final EvictedResult evicted = new EvictedResult(result, path);
+                ApplicationManager.getApplication().invokeLater(() -> evicted(result, evicted), ModalityState.any());
+            } catch (Exception ex) {
+                // the result is kept in memory and not counted anymore, so it's not evicted again
+                log.warn("Result can't be evicted into a temp file", ex);
+                EvictedResult.delete(path);
+                ApplicationManager.getApplication().invokeLater(() -> evicting = false, ModalityState.any());
+            }
+        });
+        return true;
+    }
+
+    private void evicted(TableResult result, EvictedResult evicted) {
+        evicting = false;
+        if (tableResult != result) {
+            evicted.delete();
+            return;
         }
 
-        for (int i = str.length() - length; i >= 0; i--) {
-            if (str.regionMatches(ignoreCase, i, searchStr, 0, length)) {
-                return true;
+        // the view has been shown while the result was written
+        if (isShowing()) {
+            evicted.delete();
+            ResultsMemoryManager.getInstance().register(this, ResultMemory.estimate(result.getResult().getObject()));
+            updateTabTooltip();
+            return;
+        }
+
+        showResult(null);
+        evictedResult = evicted;
+        myTable.getEmptyText().setText("The result is moved into a temp file and loaded when the tab is shown");
+        updateTabTooltip();
+    }
+
+    /**
+     * Loads the evicted result back in background.
+     */
+    private void restore() {
+        final EvictedResult evicted = evictedResult;
+        if (evicted == null || evicted.loading) {
+            return;
+        }
+
+        evicted.loading = true;
+        myTable.getEmptyText().setText("Loading the result...");
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                // a table is mapped from the file instead of being decoded into the heap, so it's not counted
+                // and not evicted anymore. Other results are decoded the same way as received ones.
+                final ExecutionOptions options = KdbSettingsService.getInstance().getConnectionOptions();
+                final KxDecoder decoder = new KxDecoder(KxConnection.UTC_TIMEZONE, KxConnection.DEFAULT_CODEC.getCharset(), KxDecoder.DEFAULT_PARALLEL_THRESHOLD, options.isPrimitiveTemporals(), options.isCompactStrings());
+                final Object object = KxMappedFile.open(evicted.path, true, () -> {
+                }, QueryProgress.NONE, decoder, KxConnection.DEFAULT_CODEC.getCharset());
+                final TableResult result = TableResult.from(evicted.query, evicted.result.withObject(object));
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    if (evictedResult == evicted) {
+                        // the file belongs to the restored result now
+                        evictedResult = null;
+                        myTable.getEmptyText().setText(emptyText);
+                        showResult(result);
+                    } else {
+                        closeMapping(object);
+                    }
+                }, ModalityState.any());
+            } catch (Exception ex) {
+                log.warn("Result can't be loaded from " + evicted.path, ex);
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    evicted.loading = false;
+                    if (evictedResult == evicted) {
+                        myTable.getEmptyText().setText("The result can't be loaded: " + ex.getMessage());
+                    }
+                }, ModalityState.any());
             }
+        });
+    }
+
+    private static void closeMapping(Object object) {
+        final KxMappedFile file = KxMappedFile.of(object);
+        if (file != null) {
+            file.close();
         }
-        return false;
+    }
+
+    /**
+     * Returns the query of the result, including an evicted one, or null if there is no result.
+     */
+    @Nullable
+    KdbQuery getQuery() {
+        if (tableResult != null) {
+            return tableResult.getQuery();
+        }
+        return evictedResult == null ? null : evictedResult.query;
+    }
+
+    /**
+     * Returns the result object or null, if there is no result or it's evicted.
+     */
+    @Override
+    public Object getNativeObject() {
+        return tableResult == null ? null : tableResult.getResult().getObject();
+    }
+
+    TableResult getTableResult() {
+        return tableResult;
+    }
+
+    /**
+     * Highlights the diff shown as the result, see {@link TabsTableResult#showDiffTab(String, TableDiff)}.
+     */
+    void showDiff(TableDiff diff) {
+        tableDiff = diff;
+        myTable.repaint();
     }
 
     public void showResult(TableResult tableResult) {
+        tableDiff = null;
+        if (evictedResult != null) {
+            evictedResult.delete();
+            evictedResult = null;
+            myTable.getEmptyText().setText(emptyText);
+        }
+        if (this.tableResult != null && (tableResult == null || this.tableResult.getTableModel() != tableResult.getTableModel())) {
+            this.tableResult.getTableModel().dispose();
+        }
         this.tableResult = tableResult;
 
         if (tableResult == null) {
@@ -503,9 +843,35 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
             columnsFilter.invalidateFilter();
         }
 
+        if (columnsProfile != null) {
+            columnsProfile.rowsChanged();
+        }
+
         if (statusBar != null) {
             statusBar.showResult(tableResult);
         }
+
+        updateMemory();
+    }
+
+    /**
+     * Counts results of the view in the memory budget, see {@link ResultsMemoryManager}. Only views of
+     * {@link TabsTableResult} are counted, as only closing a tab releases the result. Results of other views,
+     * like inline hints and frames, are released with the views themselves.
+     */
+    void setMemoryManaged(boolean memoryManaged) {
+        this.memoryManaged = memoryManaged;
+        updateMemory();
+    }
+
+    private void updateMemory() {
+        final ResultsMemoryManager memory = ResultsMemoryManager.getInstance();
+        if (memoryManaged && tableResult != null && isInHeap(tableResult)) {
+            memory.register(this, ResultMemory.estimate(tableResult.getResult().getObject()));
+        } else {
+            memory.release(this);
+        }
+        updateTabTooltip();
     }
 
     private void updateHeaderWidth() {
@@ -516,15 +882,27 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         }
     }
 
-    @FunctionalInterface
-    private interface ValueFilter {
-        boolean check(String value);
+    private void modelBeenUpdated(FindModel findModel) {
+        final RowSorter<? extends TableModel> rowSorter = myTable.getRowSorter();
+        if (rowSorter instanceof PagedRowSorter) {
+            ((PagedRowSorter) rowSorter).updateView();
+        } else {
+            final String text = findModel.getStringToFind();
+            ((QTableRowSorter) rowSorter).setSearch(text.isBlank() ? null : QTableSearch.Query.of(findModel));
+        }
+
+        rowsChanged();
     }
 
-    private void modelBeenUpdated(FindModel findModel) {
-        final RowFilter<TableModel, Integer> filter = createFilter(findModel);
-        ((TableRowSorter<? extends TableModel>) myTable.getRowSorter()).setRowFilter(filter);
+    private void rowsFiltered(ColumnFilter filter) {
+        final RowSorter<? extends TableModel> rowSorter = myTable.getRowSorter();
+        if (rowSorter instanceof QTableRowSorter) {
+            ((QTableRowSorter) rowSorter).setFilter(filter);
+            rowsChanged();
+        }
+    }
 
+    private void rowsChanged() {
         final RowNumberView numberTable = getNumberTable();
         if (numberTable != null) {
             numberTable.invalidate();
@@ -533,25 +911,138 @@ public class TableResultView extends NonOpaquePanel implements DataProvider, Exp
         if (statusBar != null) {
             statusBar.invalidateRowsCount();
         }
+
+        if (columnsProfile != null) {
+            columnsProfile.rowsChanged();
+        }
     }
 
-    static class TableRowFilter extends RowFilter<TableModel, Integer> {
-        private final ValueFilter filter;
+    /**
+     * Sorter of a paged table: the rows are sorted and filtered on the instance, so the view order is the model one.
+     */
+    private static class PagedRowSorter extends RowSorter<PagedTableModel> {
+        private final PagedTableModel model;
+        private final TableResultSearchSession searchSession;
+        private List<? extends SortKey> sortKeys = List.of();
+
+        private PagedRowSorter(PagedTableModel model, TableResultSearchSession searchSession) {
+            this.model = model;
+            this.searchSession = searchSession;
+        }
 
-        public TableRowFilter(ValueFilter filter) {
-            this.filter = filter;
+        @Override
+        public PagedTableModel getModel() {
+            return model;
         }
 
         @Override
-        public boolean include(Entry<? extends TableModel, ? extends Integer> value) {
-            int index = value.getValueCount();
-            while (--index >= 0) {
-                final String stringValue = value.getStringValue(index);
-                if (filter.check(stringValue)) {
-                    return true;
+        public void toggleSortOrder(int column) {
+            final List<SortKey> keys = new ArrayList<>(sortKeys);
+            final int index = IntStream.range(0, keys.size()).filter(i -> keys.get(i).getColumn() == column).findFirst().orElse(-1);
+            if (index == 0) {
+                final SortOrder order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+                keys.set(0, new SortKey(column, order));
+            } else {
+                if (index > 0) {
+                    keys.remove(index);
                 }
+                keys.add(0, new SortKey(column, SortOrder.ASCENDING));
+            }
+            setSortKeys(keys);
+        }
+
+        @Override
+        public void setSortKeys(List<? extends SortKey> keys) {
+            sortKeys = keys == null ? List.of() : List.copyOf(keys);
+            updateView();
+            fireSortOrderChanged();
+        }
+
+        @Override
+        public List<? extends SortKey> getSortKeys() {
+            return sortKeys;
+        }
+
+        void updateView() {
+            final FindModel findModel = searchSession.getFindModel();
+            model.updateView(sortKeys, findModel.getStringToFind().isEmpty() ? null : findModel);
+        }
+
+        @Override
+        public int convertRowIndexToModel(int index) {
+            return index;
+        }
+
+        @Override
+        public int convertRowIndexToView(int index) {
+            return index;
+        }
+
+        @Override
+        public int getViewRowCount() {
+            return model.getRowCount();
+        }
+
+        @Override
+        public int getModelRowCount() {
+            return model.getRowCount();
+        }
+
+        @Override
+        public void modelStructureChanged() {
+        }
+
+        @Override
+        public void allRowsChanged() {
+        }
+
+        @Override
+        public void rowsInserted(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsDeleted(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow) {
+        }
+
+        @Override
+        public void rowsUpdated(int firstRow, int endRow, int column) {
+        }
+    }
+
+    /**
+     * The result moved into a compressed temp file: the file, the query and the result without the object.
+     */
+    private static final class EvictedResult {
+        private final Path path;
+        private final long fileSize;
+        private final KdbQuery query;
+        private final KdbResult result;
+        private boolean loading;
+
+        private EvictedResult(TableResult result, Path path) throws IOException {
+            this.path = path;
+            this.fileSize = Files.size(path);
+            this.query = result.getQuery();
+            this.result = result.getResult().withObject(null);
+        }
+
+        private void delete() {
+            delete(path);
+        }
+
+        private static void delete(Path path) {
+            if (path == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                log.warn("Temp file can't be removed: " + path, ex);
             }
-            return false;
         }
     }
-}
\ No newline at end of file
+}
@@ -4,9 +4,14 @@ import com.intellij.icons.AllIcons;
 import com.intellij.ide.IdeEventQueue;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.*;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.PerformInBackgroundOption;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.DumbAwareAction;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.AbstractPainter;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.wm.IdeGlassPaneUtil;
 import com.intellij.ui.JBColor;
@@ -27,6 +32,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.kdb.inside.brains.UIUtils;
 import org.kdb.inside.brains.core.KdbQuery;
+import org.kdb.inside.brains.core.KdbResult;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 
 import javax.swing.*;
@@ -89,6 +95,8 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
             @Override
             public void selectionChanged(TabInfo oldSelection, TabInfo newSelection) {
                 TabsListener.super.selectionChanged(oldSelection, newSelection);
+                // memory of all results is changed when a result is evicted or loaded back
+                updateTooltips();
             }
 
             @Override
@@ -135,7 +143,86 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
             return ActionGroup.EMPTY_GROUP;
         }
 
-        return new DefaultActionGroup(renameAction);
+        final DefaultActionGroup group = new DefaultActionGroup(renameAction);
+        if (isComparable(info)) {
+            final DefaultActionGroup compare = new DefaultActionGroup("Compare With", true);
+            for (TabInfo tab : tabs.getTabs()) {
+                if (tab != info && isComparable(tab)) {
+                    compare.add(new CompareTabAction(tab, info));
+                }
+            }
+            if (compare.getChildrenCount() != 0) {
+                group.addSeparator();
+                group.add(compare);
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Only results in memory can be compared.
+     */
+    private static boolean isComparable(TabInfo info) {
+        if (!(info.getObject() instanceof TableResultView)) {
+            return false;
+        }
+        final TableResult result = ((TableResultView) info.getObject()).getTableResult();
+        return result != null && !(result.getTableModel() instanceof PagedTableModel);
+    }
+
+    /**
+     * Compares results of the tabs in background and shows the diff in a new tab.
+     *
+     * @param left  the tab with the old result
+     * @param right the tab with the new result
+     */
+    private void compareTabs(TabInfo left, TabInfo right) {
+        // a tab can be closed while the menu is shown
+        if (!isComparable(left) || !isComparable(right)) {
+            return;
+        }
+
+        final String name = right.getText() + " vs " + left.getText();
+        final TableResult.QTableModel leftModel = ((TableResultView) left.getObject()).getTableResult().getTableModel();
+        final TableResult.QTableModel rightModel = ((TableResultView) right.getObject()).getTableResult().getTableModel();
+        new Task.Backgroundable(project, "Comparing " + name, false, PerformInBackgroundOption.ALWAYS_BACKGROUND) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                try {
+                    final TableDiff diff = TableDiff.compare(leftModel, rightModel, formatter);
+                    ApplicationManager.getApplication().invokeLater(() -> {
+                        if (diff.getRowCount() == 0) {
+                            Messages.showInfoMessage(project, "All " + diff.getUnchanged() + " rows are the same", "No Differences");
+                        } else {
+                            showDiffTab(name, diff);
+                        }
+                    });
+                } catch (IllegalArgumentException ex) {
+                    ApplicationManager.getApplication().invokeLater(() -> Messages.showErrorDialog(project, ex.getMessage(), "Results Can't Be Compared"));
+                }
+            }
+        }.queue();
+    }
+
+    /**
+     * Shows the diff table in a new tab after the selected one, differed rows and cells are highlighted.
+     */
+    void showDiffTab(String name, TableDiff diff) {
+        final TableResult result = TableResult.from(new KdbQuery("Diff of " + name), new KdbResult().complete(diff.getTable()));
+        final TableResultView view = new TableResultView(project, formatter, TableMode.NORMAL, null);
+        view.showResult(result);
+        view.showDiff(diff);
+
+        final TabInfo selectedInfo = tabs.getSelectedInfo();
+        insertNewTab(createResultTabInfo(name, view), selectedInfo == null ? -1 : tabs.getIndexOf(selectedInfo) + 1);
+    }
+
+    private void updateTooltips() {
+        for (TabInfo tab : tabs.getTabs()) {
+            if (tab.getObject() instanceof TableResultView) {
+                tab.setTooltipText(((TableResultView) tab.getObject()).getMemoryTooltip());
+            }
+        }
     }
 
     public int getTabCount() {
@@ -155,6 +242,7 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
     public void closeAll() {
         for (TabInfo tab : tabs.getTabs()) {
             tabs.removeTab(tab);
+            releaseResult(tab);
             fireContentClosed(tab);
         }
     }
@@ -304,8 +392,11 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
         final TabInfo info = new TabInfo(tableResultView);
         info.setText(name);
         info.setObject(tableResultView);
+        // the result is released when the tab is closed
+        tableResultView.setMemoryManaged(true);
 
         info.setIcon(KdbIcons.Console.Table);
+        info.setTooltipText(tableResultView.getMemoryTooltip());
         info.setPreferredFocusableComponent(tableResultView.getFocusableComponent());
 
         info.setDragOutDelegate(new MyDragOutDelegate());
@@ -342,6 +433,13 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
     }
 
     private void closeTab(TabInfo info) {
+        closeTab(info, true);
+    }
+
+    /**
+     * @param release false if the view is moved to another container, so its result is still shown
+     */
+    private void closeTab(TabInfo info, boolean release) {
         if (info == null || !(info.getObject() instanceof TableResultView)) {
             return;
         }
@@ -350,9 +448,21 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
         }
 
         tabs.removeTab(info);
+        if (release) {
+            releaseResult(info);
+        }
         fireContentClosed(info);
     }
 
+    /**
+     * Disposes the model of the closed tab, so a paged result is removed from the instance.
+     */
+    private void releaseResult(TabInfo info) {
+        if (info.getObject() instanceof TableResultView) {
+            ((TableResultView) info.getObject()).showResult(null);
+        }
+    }
+
     private void fireContentOpen(@NotNull TabInfo info) {
         for (Listener each : listeners) {
             each.contentAdded(info.getObject());
@@ -420,6 +530,22 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
         }
     }
 
+    private class CompareTabAction extends DumbAwareAction {
+        private final TabInfo left;
+        private final TabInfo right;
+
+        private CompareTabAction(TabInfo left, TabInfo right) {
+            super(left.getText(), "Show rows added, removed and changed since the result", null);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void actionPerformed(@NotNull AnActionEvent e) {
+            compareTabs(left, right);
+        }
+    }
+
     private class RenameTabAction extends AnAction {
         public RenameTabAction() {
             super("Rename/Pin", "Rename the result set to keep it in memory", null);
@@ -534,7 +660,7 @@ public class TabsTableResult extends NonOpaquePanel implements DockContainer, Di
         public void dragOutFinished(@NotNull MouseEvent event, TabInfo source) {
             boolean copy = UIUtil.isControlKeyDown(event) || mySession.getResponse(event) == DockContainer.ContentResponse.ACCEPT_COPY;
             if (!copy) {
-                closeTab(source);
+                closeTab(source, false);
             } else {
                 source.setHidden(false);
             }
@@ -0,0 +1,48 @@
+package org.kdb.inside.brains.view.export;
+
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.fileChooser.FileSaverDialog;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.jetbrains.annotations.NotNull;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ArrowExportAction extends AnExportAction<VirtualFileWrapper> {
+    public ArrowExportAction(String text, ExportingType type, ExportDataProvider dataProvider, String description) {
+        super(text, type, dataProvider, description);
+    }
+
+    @Override
+    protected VirtualFileWrapper getExportConfig(Project project, ExportDataProvider dataProvider) {
+        // fails before a file is chosen, if the result is not a table
+        SplayedWriter.toTable(dataProvider.getNativeObject());
+
+        final FileSaverDescriptor fileSaverDescriptor = new FileSaverDescriptor("Export to Arrow", "Exporting data into Apache Arrow IPC (Feather v2) file format", "arrow", "feather");
+        final FileSaverDialog saveFileDialog = FileChooserFactory.getInstance().createSaveFileDialog(fileSaverDescriptor, project);
+        return saveFileDialog.save("Table Result");
+    }
+
+    @Override
+    protected void exportResultView(Project project, ExportingType type, VirtualFileWrapper file, ExportDataProvider dataProvider, KdbOutputFormatter formatter, @NotNull ProgressIndicator indicator) throws Exception {
+        final ArrowWriter writer = new ArrowWriter(SplayedWriter.toTable(dataProvider.getNativeObject()), ArrowWriter.BATCH_ROWS, o -> formatter.objectToString(o, false, false));
+
+        indicator.setIndeterminate(false);
+        final Path path = file.getFile().toPath();
+        final boolean written;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            written = writer.write(channel, indicator::setFraction, indicator::isCanceled);
+        }
+
+        // a partially written file is removed
+        if (!written) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.kdb.inside.brains.view.export;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Constants of Apache Arrow IPC format (Feather v2) and a minimal FlatBuffers encoder and decoder for its metadata.
+ * <p>
+ * Only what Arrow metadata needs is supported: tables of scalars, offsets and unions, strings and vectors of tables
+ * or structs of longs.
+ */
+final class ArrowFormat {
+    static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+
+    static final int CONTINUATION = 0xFFFFFFFF;
+
+    /**
+     * Key of the field metadata with kdb+ type char of the column, so the type is restored when the file is read back.
+     */
+    static final String KDB_TYPE = "kdb.type";
+
+    /**
+     * Nanoseconds between 1970.01.01 and 2000.01.01.
+     */
+    static final long EPOCH_NANOS = 946_684_800_000_000_000L;
+
+    /**
+     * Days between 1970.01.01 and 2000.01.01.
+     */
+    static final int EPOCH_DAYS = 10_957;
+
+    static final short METADATA_V5 = 4;
+
+    // MessageHeader union
+    static final byte SCHEMA = 1;
+    static final byte DICTIONARY_BATCH = 2;
+    static final byte RECORD_BATCH = 3;
+
+    // Type union
+    static final byte NULL = 1;
+    static final byte INT = 2;
+    static final byte FLOATING_POINT = 3;
+    static final byte BINARY = 4;
+    static final byte UTF8 = 5;
+    static final byte BOOL = 6;
+    static final byte DATE = 8;
+    static final byte TIME = 9;
+    static final byte TIMESTAMP = 10;
+    static final byte FIXED_SIZE_BINARY = 15;
+    static final byte DURATION = 18;
+    static final byte LARGE_BINARY = 19;
+    static final byte LARGE_UTF8 = 20;
+
+    // Precision, DateUnit and TimeUnit enums
+    static final short SINGLE = 1;
+    static final short DOUBLE = 2;
+    static final short DAY = 0;
+    static final short MILLISECOND = 1;
+    static final short SECOND = 0;
+    static final short MICROSECOND = 2;
+    static final short NANOSECOND = 3;
+
+    private ArrowFormat() {
+    }
+
+    static int align8(long size) {
+        return (int) ((size + 7) & ~7L);
+    }
+
+    /**
+     * FlatBuffers builder that writes backward from the end of its buffer, as the reference implementation does:
+     * children must be created before their parents and nothing can be created while a table is started.
+     * <p>
+     * All fields are written explicitly, defaults are never omitted.
+     */
+    static final class Builder {
+        private byte[] buf = new byte[1024];
+        private int space = buf.length;
+        private int minAlign = 1;
+        private int[] vtable;
+        private int objectStart;
+
+        int offset() {
+            return buf.length - space;
+        }
+
+        private void prep(int size, int additional) {
+            minAlign = Math.max(minAlign, size);
+            final int alignSize = -(offset() + additional) & (size - 1);
+            while (space < alignSize + size + additional) {
+                final int length = buf.length;
+                final byte[] b = new byte[length * 2];
+                System.arraycopy(buf, 0, b, length, length);
+                buf = b;
+                space += length;
+            }
+            space -= alignSize;
+            Arrays.fill(buf, space, space + alignSize, (byte) 0);
+        }
+
+        private void putShort(short v) {
+            space -= 2;
+            buf[space] = (byte) v;
+            buf[space + 1] = (byte) (v >> 8);
+        }
+
+        private void putInt(int v) {
+            space -= 4;
+            setInt(space, v);
+        }
+
+        private void setInt(int index, int v) {
+            buf[index] = (byte) v;
+            buf[index + 1] = (byte) (v >> 8);
+            buf[index + 2] = (byte) (v >> 16);
+            buf[index + 3] = (byte) (v >> 24);
+        }
+
+        private void putLong(long v) {
+            putInt((int) (v >> 32));
+            putInt((int) v);
+        }
+
+        private void putOffset(int target) {
+            prep(4, 0);
+            putInt(offset() - target + 4);
+        }
+
+        int createString(String text) {
+            final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            prep(4, bytes.length + 1);
+            buf[--space] = 0;
+            space -= bytes.length;
+            System.arraycopy(bytes, 0, buf, space, bytes.length);
+            putInt(bytes.length);
+            return offset();
+        }
+
+        int createOffsets(int... targets) {
+            prep(4, targets.length * 4);
+            for (int i = targets.length - 1; i >= 0; i--) {
+                putOffset(targets[i]);
+            }
+            putInt(targets.length);
+            return offset();
+        }
+
+        /**
+         * Creates a vector of structs, each one of the given number of longs.
+         */
+        int createStructs(long[] values, int longsPerStruct) {
+            prep(4, values.length * 8);
+            prep(8, values.length * 8);
+            for (int i = values.length - 1; i >= 0; i--) {
+                putLong(values[i]);
+            }
+            putInt(values.length / longsPerStruct);
+            return offset();
+        }
+
+        void startTable(int fields) {
+            vtable = new int[fields];
+            objectStart = offset();
+        }
+
+        void addByte(int field, byte v) {
+            prep(1, 0);
+            buf[--space] = v;
+            vtable[field] = offset();
+        }
+
+        void addShort(int field, short v) {
+            prep(2, 0);
+            putShort(v);
+            vtable[field] = offset();
+        }
+
+        void addInt(int field, int v) {
+            prep(4, 0);
+            putInt(v);
+            vtable[field] = offset();
+        }
+
+        void addLong(int field, long v) {
+            prep(8, 0);
+            putLong(v);
+            vtable[field] = offset();
+        }
+
+        void addOffset(int field, int target) {
+            putOffset(target);
+            vtable[field] = offset();
+        }
+
+        int endTable() {
+            prep(4, 0);
+            putInt(0);
+            final int object = offset();
+
+            int count = vtable.length;
+            while (count > 0 && vtable[count - 1] == 0) {
+                count--;
+            }
+            prep(2, (count + 2) * 2);
+            for (int i = count - 1; i >= 0; i--) {
+                putShort((short) (vtable[i] == 0 ? 0 : object - vtable[i]));
+            }
+            putShort((short) (object - objectStart));
+            putShort((short) ((count + 2) * 2));
+
+            setInt(buf.length - object, offset() - object);
+            vtable = null;
+            return object;
+        }
+
+        byte[] finish(int root) {
+            prep(minAlign, 4);
+            putOffset(root);
+            return Arrays.copyOfRange(buf, space, buf.length);
+        }
+    }
+
+    /**
+     * Read-only view of a FlatBuffers table in a little-endian buffer.
+     */
+    static final class Table {
+        private final ByteBuffer bb;
+        private final int pos;
+
+        private Table(ByteBuffer bb, int pos) {
+            this.bb = bb;
+            this.pos = pos;
+        }
+
+        /**
+         * Returns the root table of a FlatBuffer that starts at the position of the buffer.
+         */
+        static Table root(ByteBuffer bb) {
+            final ByteBuffer b = bb.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            final int start = b.position();
+            return new Table(b, start + b.getInt(start));
+        }
+
+        private int field(int id) {
+            final int vt = pos - bb.getInt(pos);
+            final int o = 4 + id * 2;
+            return o < Short.toUnsignedInt(bb.getShort(vt)) ? Short.toUnsignedInt(bb.getShort(vt + o)) : 0;
+        }
+
+        private int indirect(int id) {
+            final int o = field(id);
+            if (o == 0) {
+                return -1;
+            }
+            final int p = pos + o;
+            return p + bb.getInt(p);
+        }
+
+        boolean has(int id) {
+            return field(id) != 0;
+        }
+
+        byte getByte(int id, byte def) {
+            final int o = field(id);
+            return o == 0 ? def : bb.get(pos + o);
+        }
+
+        boolean getBool(int id) {
+            return getByte(id, (byte) 0) != 0;
+        }
+
+        short getShort(int id, short def) {
+            final int o = field(id);
+            return o == 0 ? def : bb.getShort(pos + o);
+        }
+
+        int getInt(int id, int def) {
+            final int o = field(id);
+            return o == 0 ? def : bb.getInt(pos + o);
+        }
+
+        long getLong(int id, long def) {
+            final int o = field(id);
+            return o == 0 ? def : bb.getLong(pos + o);
+        }
+
+        Table getTable(int id) {
+            final int p = indirect(id);
+            return p < 0 ? null : new Table(bb, p);
+        }
+
+        String getString(int id) {
+            final int p = indirect(id);
+            if (p < 0) {
+                return null;
+            }
+            final byte[] bytes = new byte[bb.getInt(p)];
+            final ByteBuffer b = bb.duplicate();
+            b.position(p + 4);
+            b.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int getVectorLength(int id) {
+            final int p = indirect(id);
+            return p < 0 ? 0 : bb.getInt(p);
+        }
+
+        Table getTable(int id, int index) {
+            final int e = indirect(id) + 4 + index * 4;
+            return new Table(bb, e + bb.getInt(e));
+        }
+
+        /**
+         * Returns a long of a struct in a vector of structs, each one of the given number of longs.
+         */
+        long getStructLong(int id, int index, int longsPerStruct, int longIndex) {
+            return bb.getLong(indirect(id) + 4 + (index * longsPerStruct + longIndex) * 8);
+        }
+    }
+}
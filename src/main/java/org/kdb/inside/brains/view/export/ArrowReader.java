@@ -0,0 +1,647 @@
+package org.kdb.inside.brains.view.export;
+
+import kx.KxConnection;
+import kx.KxDecoder;
+import kx.TemporalVector;
+import kx.c;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.kdb.inside.brains.view.export.ArrowFormat.*;
+
+/**
+ * Reads a table from an Apache Arrow IPC file (Feather v2) or stream, written by {@link ArrowWriter}, pandas, polars
+ * or any other Arrow implementation.
+ * <p>
+ * Arrow types are mapped into the nearest kdb+ types, nulls become kdb+ nulls, and dictionary-encoded strings become
+ * symbols. If the file has kdb+ types in the field metadata, the types are restored exactly. Bodies of record batches
+ * are memory-mapped, LZ4 compressed buffers are decompressed, and columns are decoded in parallel. Nested types,
+ * decimals and intervals are not supported.
+ */
+public final class ArrowReader {
+    private static final int LZ4_FRAME = 0;
+    private static final int LZ4_MAGIC = 0x184D2204;
+
+    private ArrowReader() {
+    }
+
+    /**
+     * Returns true if the file starts with the magic of Arrow IPC file format.
+     */
+    public static boolean isArrowFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer magic = read(channel, 0, Math.min(MAGIC.length, (int) channel.size()));
+            return Arrays.equals(magic.array(), MAGIC);
+        }
+    }
+
+    /**
+     * Reads all record batches of the file into one table.
+     *
+     * @throws IllegalArgumentException if the file is not an Arrow file or has unsupported types
+     */
+    public static c.Flip read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final List<Message> messages = new ArrayList<>();
+            final long size = channel.size();
+            if (size >= 2L * MAGIC.length + 4 && Arrays.equals(read(channel, 0, MAGIC.length).array(), MAGIC)) {
+                final int footerLength = read(channel, size - MAGIC.length - 4, 4).getInt(0);
+                final Table footer = Table.root(read(channel, size - MAGIC.length - 4 - footerLength, footerLength));
+                messages.add(new Message(footer.getTable(1), null));
+                for (int id : new int[]{2, 3}) {
+                    for (int i = 0; i < footer.getVectorLength(id); i++) {
+                        final long offset = footer.getStructLong(id, i, 3, 0);
+                        final int metadata = (int) footer.getStructLong(id, i, 3, 1);
+                        final long body = footer.getStructLong(id, i, 3, 2);
+                        messages.add(readMessage(channel, offset, metadata, body));
+                    }
+                }
+            } else {
+                // the stream format has no footer, so messages are read one by one up to the end
+                long offset = 0;
+                while (offset < size) {
+                    final ByteBuffer prefix = read(channel, offset, Math.min(8, (int) (size - offset)));
+                    final boolean continuation = prefix.getInt(0) == CONTINUATION;
+                    final int length = continuation ? prefix.getInt(4) : prefix.getInt(0);
+                    if (length == 0) {
+                        break;
+                    }
+                    final int metadata = length + (continuation ? 8 : 4);
+                    final Message message = readMessage(channel, offset, metadata, -1);
+                    messages.add(message);
+                    offset += metadata + message.bodyLength();
+                }
+            }
+            return decode(messages);
+        }
+    }
+
+    private static c.Flip decode(List<Message> messages) {
+        Table schema = null;
+        final List<Message> batches = new ArrayList<>();
+        final Map<Long, List<String>> dictionaries = new HashMap<>();
+        for (Message message : messages) {
+            if (message.type == SCHEMA) {
+                schema = message.header;
+            } else if (message.type == DICTIONARY_BATCH) {
+                if (schema == null) {
+                    throw new IllegalArgumentException("Arrow dictionary goes before the schema");
+                }
+                final long id = message.header.getLong(0, 0);
+                final Table data = message.header.getTable(1);
+                final Batch batch = new Batch(data, message.body);
+
+                final Field value = findDictionaryField(schema, id);
+                if (value.type != UTF8 && value.type != LARGE_UTF8) {
+                    throw new IllegalArgumentException("Only string dictionaries are supported, the column " + value.name + " has Arrow type " + value.type);
+                }
+                final Object[] strings = new Object[(int) batch.length];
+                final ByteBuffer validity = batch.nodes[1] == 0 ? null : batch.buffer(0);
+                readStrings(batch, 0, validity, strings, 0, value.type == LARGE_UTF8, true);
+
+                final List<String> values = message.header.getBool(2) ? dictionaries.computeIfAbsent(id, k -> new ArrayList<>()) : new ArrayList<>();
+                for (Object s : strings) {
+                    values.add((String) s);
+                }
+                dictionaries.put(id, values);
+            } else if (message.type == RECORD_BATCH) {
+                batches.add(message);
+            }
+        }
+        if (schema == null) {
+            throw new IllegalArgumentException("The file is not an Arrow file: there is no schema");
+        }
+
+        final Field[] fields = new Field[schema.getVectorLength(1)];
+        int buffer = 0;
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = new Field(schema.getTable(1, i), buffer);
+            buffer += fields[i].buffers;
+        }
+
+        long total = 0;
+        final List<Batch> data = new ArrayList<>(batches.size());
+        for (Message message : batches) {
+            final Batch batch = new Batch(message.header, message.body);
+            data.add(batch);
+            total += batch.length;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The table has too many rows: " + total);
+        }
+        final int rows = (int) total;
+
+        final String[] names = new String[fields.length];
+        final Object[] columns = new Object[fields.length];
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            final int index = i;
+            names[i] = fields[i].name;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                columns[index] = readColumn(fields[index], index, data, rows, dictionaries);
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return new c.Flip(new c.Dict(names, columns));
+    }
+
+    private static Field findDictionaryField(Table schema, long id) {
+        for (int i = 0; i < schema.getVectorLength(1); i++) {
+            final Field field = new Field(schema.getTable(1, i), 0);
+            if (field.dictionary == id) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Arrow dictionary " + id + " has no column");
+    }
+
+    private static Object readColumn(Field f, int node, List<Batch> batches, int rows, Map<Long, List<String>> dictionaries) {
+        final KxDecoder decoder = KxConnection.DEFAULT_CODEC.getDecoder();
+        if (f.dictionary >= 0) {
+            final List<String> dictionary = dictionaries.get(f.dictionary);
+            if (dictionary == null) {
+                throw new IllegalArgumentException("Arrow dictionary " + f.dictionary + " of the column " + f.name + " is not found");
+            }
+            final String[] v = new String[rows];
+            read(batches, f, node, (b, validity, at, n) -> {
+                final ByteBuffer d = b.buffer(f.buffer + 1);
+                for (int i = 0; i < n; i++) {
+                    v[at + i] = isValid(validity, i) ? dictionary.get((int) readInt(d, i, f.indexBits / 8, true)) : "";
+                }
+            });
+            return v;
+        }
+
+        final Table type = f.typeTable;
+        switch (f.type) {
+            case NULL: {
+                final Object[] v = new Object[rows];
+                Arrays.fill(v, new char[0]);
+                return v;
+            }
+            case BOOL: {
+                final boolean[] v = new boolean[rows];
+                read(batches, f, node, (b, validity, at, n) -> {
+                    final ByteBuffer d = b.buffer(f.buffer + 1);
+                    for (int i = 0; i < n; i++) {
+                        v[at + i] = isValid(validity, i) && isValid(d, i);
+                    }
+                });
+                return v;
+            }
+            case INT: {
+                final int width = type.getInt(0, 0) / 8;
+                final boolean signed = type.getBool(1);
+                if (width == 1 && (!signed || f.kdbType == 'x')) {
+                    final byte[] v = new byte[rows];
+                    readLongs(batches, f, node, width, signed, (i, x) -> v[i] = (byte) x, i -> v[i] = 0);
+                    return v;
+                }
+                if (width == 1 || (width == 2 && signed)) {
+                    final short[] v = new short[rows];
+                    readLongs(batches, f, node, width, signed, (i, x) -> v[i] = (short) x, i -> v[i] = Short.MIN_VALUE);
+                    return v;
+                }
+                if (width == 2 || (width == 4 && signed)) {
+                    final int[] v = new int[rows];
+                    readLongs(batches, f, node, width, signed, (i, x) -> v[i] = (int) x, i -> v[i] = Integer.MIN_VALUE);
+                    return v;
+                }
+                final long[] v = new long[rows];
+                readLongs(batches, f, node, width, signed, (i, x) -> v[i] = x, i -> v[i] = Long.MIN_VALUE);
+                return v;
+            }
+            case FLOATING_POINT: {
+                final short precision = type.getShort(0, (short) 0);
+                if (precision == SINGLE) {
+                    final float[] v = new float[rows];
+                    readLongs(batches, f, node, 4, true, (i, x) -> v[i] = Float.intBitsToFloat((int) x), i -> v[i] = Float.NaN);
+                    return v;
+                }
+                if (precision == DOUBLE) {
+                    final double[] v = new double[rows];
+                    readLongs(batches, f, node, 8, true, (i, x) -> v[i] = Double.longBitsToDouble(x), i -> v[i] = Double.NaN);
+                    return v;
+                }
+                throw unsupported(f);
+            }
+            case UTF8:
+            case LARGE_UTF8: {
+                if (f.kdbType == 'c') {
+                    final Object[] s = new Object[rows];
+                    read(batches, f, node, (b, validity, at, n) -> readStrings(b, f.buffer, validity, s, at, f.type == LARGE_UTF8, false));
+                    final char[] v = new char[rows];
+                    for (int i = 0; i < rows; i++) {
+                        final char[] chars = (char[]) s[i];
+                        v[i] = chars.length == 0 ? ' ' : chars[0];
+                    }
+                    return v;
+                }
+                final Object[] v = new Object[rows];
+                read(batches, f, node, (b, validity, at, n) -> readStrings(b, f.buffer, validity, v, at, f.type == LARGE_UTF8, false));
+                return v;
+            }
+            case BINARY:
+            case LARGE_BINARY: {
+                final Object[] v = new Object[rows];
+                read(batches, f, node, (b, validity, at, n) -> {
+                    final ByteBuffer offsets = b.buffer(f.buffer + 1);
+                    final ByteBuffer d = b.buffer(f.buffer + 2);
+                    final int width = f.type == LARGE_BINARY ? 8 : 4;
+                    for (int i = 0; i < n; i++) {
+                        final int start = (int) readInt(offsets, i, width, true);
+                        final byte[] bytes = new byte[isValid(validity, i) ? (int) readInt(offsets, i + 1, width, true) - start : 0];
+                        d.duplicate().position(start).get(bytes);
+                        v[at + i] = bytes;
+                    }
+                });
+                return v;
+            }
+            case FIXED_SIZE_BINARY: {
+                final int width = type.getInt(0, 0);
+                if (width == 16) {
+                    final UUID[] v = new UUID[rows];
+                    read(batches, f, node, (b, validity, at, n) -> {
+                        final ByteBuffer d = b.buffer(f.buffer + 1).order(ByteOrder.BIG_ENDIAN);
+                        for (int i = 0; i < n; i++) {
+                            v[at + i] = isValid(validity, i) ? new UUID(d.getLong(i * 16), d.getLong(i * 16 + 8)) : new UUID(0, 0);
+                        }
+                    });
+                    return v;
+                }
+                final Object[] v = new Object[rows];
+                read(batches, f, node, (b, validity, at, n) -> {
+                    final ByteBuffer d = b.buffer(f.buffer + 1);
+                    for (int i = 0; i < n; i++) {
+                        final byte[] bytes = new byte[isValid(validity, i) ? width : 0];
+                        d.duplicate().position(i * width).get(bytes);
+                        v[at + i] = bytes;
+                    }
+                });
+                return v;
+            }
+            case DATE: {
+                final boolean days = type.getShort(0, MILLISECOND) == DAY;
+                final int[] v = new int[rows];
+                if (f.kdbType == 'm') {
+                    readLongs(batches, f, node, 4, true, (i, x) -> {
+                        final LocalDate date = LocalDate.ofEpochDay(x);
+                        v[i] = (date.getYear() - 2000) * 12 + date.getMonthValue() - 1;
+                    }, i -> v[i] = Integer.MIN_VALUE);
+                    return new TemporalVector.Ints(13, v, decoder);
+                }
+                readLongs(batches, f, node, days ? 4 : 8, true, (i, x) -> v[i] = (int) (days ? x : Math.floorDiv(x, 86_400_000L)) - EPOCH_DAYS, i -> v[i] = Integer.MIN_VALUE);
+                return new TemporalVector.Ints(14, v, decoder);
+            }
+            case TIME: {
+                final short unit = type.getShort(0, MILLISECOND);
+                final int width = type.getInt(1, 32) / 8;
+                if (width == 4) {
+                    final int[] v = new int[rows];
+                    final int kdbType = f.kdbType == 'u' ? 17 : unit == SECOND ? 18 : 19;
+                    readLongs(batches, f, node, 4, true, (i, x) -> v[i] = (int) (kdbType == 17 ? x / 60 : x), i -> v[i] = Integer.MIN_VALUE);
+                    return new TemporalVector.Ints(kdbType, v, decoder);
+                }
+                final long[] v = new long[rows];
+                final long factor = nanos(unit);
+                readLongs(batches, f, node, 8, true, (i, x) -> v[i] = x * factor, i -> v[i] = Long.MIN_VALUE);
+                return new TemporalVector.Longs(16, v, decoder);
+            }
+            case TIMESTAMP: {
+                final long factor = nanos(type.getShort(0, (short) 0));
+                if (f.kdbType == 'z') {
+                    final double[] v = new double[rows];
+                    readLongs(batches, f, node, 8, true, (i, x) -> v[i] = (x * factor - EPOCH_NANOS) / 86_400_000_000_000.0, i -> v[i] = Double.NaN);
+                    return new TemporalVector.Doubles(v, decoder);
+                }
+                final long[] v = new long[rows];
+                readLongs(batches, f, node, 8, true, (i, x) -> v[i] = x * factor - EPOCH_NANOS, i -> v[i] = Long.MIN_VALUE);
+                return new TemporalVector.Longs(12, v, decoder);
+            }
+            case DURATION: {
+                final long factor = nanos(type.getShort(0, MILLISECOND));
+                final long[] v = new long[rows];
+                readLongs(batches, f, node, 8, true, (i, x) -> v[i] = x * factor, i -> v[i] = Long.MIN_VALUE);
+                return new TemporalVector.Longs(16, v, decoder);
+            }
+            default:
+                throw unsupported(f);
+        }
+    }
+
+    private static long nanos(short unit) {
+        switch (unit) {
+            case SECOND:
+                return 1_000_000_000L;
+            case MILLISECOND:
+                return 1_000_000L;
+            case MICROSECOND:
+                return 1_000L;
+            default:
+                return 1L;
+        }
+    }
+
+    private static IllegalArgumentException unsupported(Field f) {
+        return new IllegalArgumentException("Arrow type " + f.type + " of the column " + f.name + " is not supported");
+    }
+
+    private static void read(List<Batch> batches, Field f, int node, BatchReader reader) {
+        int at = 0;
+        for (Batch batch : batches) {
+            final int n = (int) batch.nodes[node * 2];
+            final ByteBuffer validity = batch.nodes[node * 2 + 1] == 0 ? null : batch.buffer(f.buffer);
+            reader.read(batch, validity, at, n);
+            at += n;
+        }
+    }
+
+    private static void readLongs(List<Batch> batches, Field f, int node, int width, boolean signed, LongStore value, IntStore nul) {
+        read(batches, f, node, (b, validity, at, n) -> {
+            final ByteBuffer d = b.buffer(f.buffer + 1);
+            for (int i = 0; i < n; i++) {
+                if (isValid(validity, i)) {
+                    value.set(at + i, readInt(d, i, width, signed));
+                } else {
+                    nul.set(at + i);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads strings of a batch as symbols or as char arrays. Nulls are empty strings.
+     */
+    private static void readStrings(Batch batch, int buffer, ByteBuffer validity, Object[] values, int at, boolean large, boolean symbols) {
+        final ByteBuffer offsets = batch.buffer(buffer + 1);
+        final ByteBuffer d = batch.buffer(buffer + 2);
+        final byte[] data = new byte[d.remaining()];
+        d.duplicate().get(data);
+
+        final int width = large ? 8 : 4;
+        final int n = offsets.capacity() == 0 ? 0 : offsets.capacity() / width - 1;
+        for (int i = 0; i < n && at + i < values.length; i++) {
+            final int start = (int) readInt(offsets, i, width, true);
+            final int end = (int) readInt(offsets, i + 1, width, true);
+            final String s = isValid(validity, i) ? new String(data, start, end - start, StandardCharsets.UTF_8) : "";
+            values[at + i] = symbols ? s : s.toCharArray();
+        }
+    }
+
+    private static boolean isValid(ByteBuffer bits, int index) {
+        return bits == null || (bits.get(index >> 3) & 1 << (index & 7)) != 0;
+    }
+
+    private static long readInt(ByteBuffer b, int index, int width, boolean signed) {
+        switch (width) {
+            case 1:
+                return signed ? b.get(index) : b.get(index) & 0xFF;
+            case 2:
+                return signed ? b.getShort(index * 2) : b.getShort(index * 2) & 0xFFFF;
+            case 4:
+                return signed ? b.getInt(index * 4) : b.getInt(index * 4) & 0xFFFFFFFFL;
+            default:
+                return b.getLong(index * 8);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long offset, int length) throws IOException {
+        final ByteBuffer b = ByteBuffer.allocate(length);
+        while (b.hasRemaining()) {
+            if (channel.read(b, offset + b.position()) < 0) {
+                throw new IllegalArgumentException("The file is not an Arrow file: unexpected end of the file");
+            }
+        }
+        return b.flip().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads metadata of an encapsulated message and maps its body.
+     *
+     * @param bodyLength length of the body or -1 to take it from the message
+     */
+    private static Message readMessage(FileChannel channel, long offset, int metadataLength, long bodyLength) throws IOException {
+        final ByteBuffer metadata = read(channel, offset, metadataLength);
+        metadata.position(metadata.getInt(0) == CONTINUATION ? 8 : 4);
+
+        final Table message = Table.root(metadata);
+        final long length = bodyLength < 0 ? message.getLong(3, 0) : bodyLength;
+        final ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, offset + metadataLength, length).order(ByteOrder.LITTLE_ENDIAN);
+        return new Message(message.getTable(2), body, message.getByte(1, (byte) 0));
+    }
+
+    /**
+     * Decompresses an LZ4 frame into an array of the known length.
+     */
+    static byte[] decompressLz4(ByteBuffer src, int length) {
+        final ByteBuffer in = src.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.getInt() != LZ4_MAGIC) {
+            throw new IllegalArgumentException("Incorrect LZ4 frame");
+        }
+        final int flags = in.get();
+        in.get();
+        if ((flags & 0x08) != 0) {
+            in.position(in.position() + 8);
+        }
+        if ((flags & 0x01) != 0) {
+            in.position(in.position() + 4);
+        }
+        in.get();
+
+        final byte[] dst = new byte[length];
+        int pos = 0;
+        while (true) {
+            final int block = in.getInt();
+            if (block == 0) {
+                break;
+            }
+            final int size = block & 0x7FFFFFFF;
+            if (block < 0) {
+                in.get(dst, pos, size);
+                pos += size;
+            } else {
+                final int end = in.position() + size;
+                while (in.position() < end) {
+                    final int token = in.get() & 0xFF;
+                    int literals = token >>> 4;
+                    if (literals == 15) {
+                        literals += readLength(in);
+                    }
+                    in.get(dst, pos, literals);
+                    pos += literals;
+                    if (in.position() >= end) {
+                        break;
+                    }
+
+                    final int distance = in.getShort() & 0xFFFF;
+                    int match = token & 0x0F;
+                    if (match == 15) {
+                        match += readLength(in);
+                    }
+                    match += 4;
+                    for (int i = 0; i < match; i++) {
+                        dst[pos] = dst[pos - distance];
+                        pos++;
+                    }
+                }
+            }
+            if ((flags & 0x10) != 0) {
+                in.getInt();
+            }
+        }
+        return dst;
+    }
+
+    private static int readLength(ByteBuffer in) {
+        int length = 0;
+        int b;
+        do {
+            b = in.get() & 0xFF;
+            length += b;
+        } while (b == 255);
+        return length;
+    }
+
+    @FunctionalInterface
+    private interface BatchReader {
+        void read(Batch batch, ByteBuffer validity, int at, int count);
+    }
+
+    @FunctionalInterface
+    private interface LongStore {
+        void set(int index, long value);
+    }
+
+    @FunctionalInterface
+    private interface IntStore {
+        void set(int index);
+    }
+
+    private static final class Message {
+        private final Table header;
+        private final ByteBuffer body;
+        private final byte type;
+
+        private Message(Table header, ByteBuffer body) {
+            this(header, body, SCHEMA);
+        }
+
+        private Message(Table header, ByteBuffer body, byte type) {
+            this.header = header;
+            this.body = body;
+            this.type = type;
+        }
+
+        long bodyLength() {
+            return body == null ? 0 : body.capacity();
+        }
+    }
+
+    private static final class Field {
+        private final String name;
+        private final byte type;
+        private final Table typeTable;
+        private final long dictionary;
+        private final int indexBits;
+        private final char kdbType;
+        private final int buffer;
+        private final int buffers;
+
+        private Field(Table field, int buffer) {
+            this.buffer = buffer;
+            name = field.getString(0);
+            type = field.getByte(2, (byte) 0);
+            typeTable = field.getTable(3);
+
+            final Table encoding = field.getTable(4);
+            dictionary = encoding == null ? -1 : encoding.getLong(0, 0);
+            final Table index = encoding == null ? null : encoding.getTable(1);
+            indexBits = index == null ? 32 : index.getInt(0, 32);
+
+            char kdb = 0;
+            for (int i = 0; i < field.getVectorLength(6); i++) {
+                final Table kv = field.getTable(6, i);
+                final String value = kv.getString(1);
+                if (KDB_TYPE.equals(kv.getString(0)) && value != null && value.length() == 1) {
+                    kdb = value.charAt(0);
+                }
+            }
+            kdbType = kdb;
+
+            if (field.getVectorLength(5) != 0) {
+                throw new IllegalArgumentException("Nested Arrow type of the column " + name + " is not supported");
+            }
+            if (dictionary >= 0) {
+                buffers = 2;
+            } else if (type == NULL) {
+                buffers = 0;
+            } else if (type == UTF8 || type == LARGE_UTF8 || type == BINARY || type == LARGE_BINARY) {
+                buffers = 3;
+            } else {
+                buffers = 2;
+            }
+        }
+    }
+
+    /**
+     * Nodes and buffers of a record batch, with buffers decompressed on access if the batch is compressed.
+     */
+    private static final class Batch {
+        private final long length;
+        private final long[] nodes;
+        private final long[] buffers;
+        private final ByteBuffer body;
+        private final int codec;
+
+        private Batch(Table batch, ByteBuffer body) {
+            this.body = body;
+            length = batch.getLong(0, 0);
+            nodes = new long[batch.getVectorLength(1) * 2];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = batch.getStructLong(1, i / 2, 2, i % 2);
+            }
+            buffers = new long[batch.getVectorLength(2) * 2];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = batch.getStructLong(2, i / 2, 2, i % 2);
+            }
+            final Table compression = batch.getTable(3);
+            codec = compression == null ? -1 : compression.getByte(0, (byte) 0);
+            if (codec != -1 && codec != LZ4_FRAME) {
+                throw new IllegalArgumentException("Only LZ4 compressed Arrow files are supported");
+            }
+        }
+
+        ByteBuffer buffer(int index) {
+            final int offset = (int) buffers[index * 2];
+            final int length = (int) buffers[index * 2 + 1];
+            final ByteBuffer b = body.duplicate();
+            b.position(offset).limit(offset + length);
+            final ByteBuffer slice = b.slice().order(ByteOrder.LITTLE_ENDIAN);
+            if (codec == -1 || length == 0) {
+                return slice;
+            }
+
+            // a compressed buffer starts with its uncompressed length or -1 if it's not compressed
+            final long uncompressed = slice.getLong(0);
+            slice.position(8);
+            if (uncompressed == -1) {
+                return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return ByteBuffer.wrap(decompressLz4(slice, (int) uncompressed)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package org.kdb.inside.brains.view.export;
+
+import kx.KxVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+
+import static org.kdb.inside.brains.view.export.ArrowFormat.*;
+
+/**
+ * Writes a table into an Apache Arrow IPC file, also known as Feather v2, that pandas, polars or R read directly.
+ * <p>
+ * kdb+ nulls become nulls of the validity bitmap, temporal values are moved from the kdb+ epoch to the unix one,
+ * symbols are dictionary-encoded strings with a dictionary for each column and lists that have no Arrow type are
+ * written as their text. kdb+ type of a column is kept in the field metadata, so the reader restores it.
+ * <p>
+ * Rows are written by record batches in the columnar layout: a few batches are encoded in parallel, each one into its
+ * own buffers, and written in the order of rows as soon as they are ready, so only a window of batches is in memory.
+ */
+final class ArrowWriter {
+    private final Column[] columns;
+    private final int rows;
+    private final int batchRows;
+
+    /**
+     * Default number of rows in a record batch.
+     */
+    static final int BATCH_ROWS = 64 * 1024;
+
+    private static final byte[] PADDING = new byte[8];
+
+    /**
+     * @param flip      the table
+     * @param batchRows max number of rows in a record batch
+     * @param formatter text of items of general lists that have no Arrow type
+     */
+    ArrowWriter(c.Flip flip, int batchRows, Function<Object, String> formatter) {
+        this.batchRows = batchRows;
+        columns = new Column[flip.x.length];
+        int count = 0;
+        for (int i = 0; i < columns.length; i++) {
+            final Object vector = SplayedWriter.normalize(flip.y[i]);
+            count = vector instanceof KxVector ? ((KxVector) vector).size() : Array.getLength(vector);
+            columns[i] = createColumn(flip.x[i], vector, formatter);
+        }
+        rows = count;
+    }
+
+    /**
+     * Writes the file: the schema, dictionaries of symbol columns, record batches and the footer.
+     *
+     * @param channel  the target channel
+     * @param progress receives the fraction of written rows after each batch
+     * @param canceled checked after each batch
+     * @return false if writing is canceled
+     */
+    boolean write(FileChannel channel, DoubleConsumer progress, BooleanSupplier canceled) throws IOException {
+        write(channel, ByteBuffer.wrap(MAGIC), ByteBuffer.wrap(PADDING, 0, 2));
+
+        final Builder sb = new Builder();
+        writeMessage(channel, message(sb, SCHEMA, schema(sb), 0), null);
+
+        final List<long[]> dictionaries = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            final String[] dictionary = columns[i].dictionary;
+            if (dictionary != null) {
+                final Body body = new Body();
+                utf8(j -> dictionary[j].getBytes(StandardCharsets.UTF_8)).encode(0, dictionary.length, body);
+
+                final Builder b = new Builder();
+                final int data = recordBatch(b, dictionary.length, body);
+                b.startTable(3);
+                b.addLong(0, i);
+                b.addOffset(1, data);
+                dictionaries.add(writeMessage(channel, message(b, DICTIONARY_BATCH, b.endTable(), body.size), body));
+            }
+        }
+
+        final List<long[]> batches = new ArrayList<>();
+        final int count = (rows + batchRows - 1) / batchRows;
+        final int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        final ArrayDeque<CompletableFuture<Batch>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                while (next < count && pending.size() < window) {
+                    final int from = next++ * batchRows;
+                    pending.add(CompletableFuture.supplyAsync(() -> encode(from, Math.min(rows, from + batchRows))));
+                }
+
+                final Batch batch = pending.poll().join();
+                batches.add(writeMessage(channel, batch.metadata, batch.body));
+
+                progress.accept((i + 1) / (double) count);
+                if (canceled.getAsBoolean()) {
+                    return false;
+                }
+            }
+        } finally {
+            pending.forEach(f -> f.cancel(false));
+        }
+
+        // end of the stream and the footer of the file
+        final ByteBuffer eos = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(CONTINUATION).putInt(0).flip();
+        write(channel, eos);
+
+        final Builder fb = new Builder();
+        final int schema = schema(fb);
+        final int dictionaryBlocks = fb.createStructs(blocks(dictionaries), 3);
+        final int batchBlocks = fb.createStructs(blocks(batches), 3);
+        fb.startTable(5);
+        fb.addShort(0, METADATA_V5);
+        fb.addOffset(1, schema);
+        fb.addOffset(2, dictionaryBlocks);
+        fb.addOffset(3, batchBlocks);
+        final byte[] footer = fb.finish(fb.endTable());
+
+        final ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(footer.length).flip();
+        write(channel, ByteBuffer.wrap(footer), length, ByteBuffer.wrap(MAGIC));
+        return true;
+    }
+
+    private Batch encode(int from, int to) {
+        final Body body = new Body();
+        for (Column column : columns) {
+            column.encoder.encode(from, to, body);
+        }
+        final Builder b = new Builder();
+        return new Batch(message(b, RECORD_BATCH, recordBatch(b, to - from, body), body.size), body);
+    }
+
+    private int schema(Builder b) {
+        final int[] fields = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            fields[i] = field(b, columns[i], i);
+        }
+        final int vector = b.createOffsets(fields);
+        b.startTable(4);
+        b.addShort(0, (short) 0);
+        b.addOffset(1, vector);
+        return b.endTable();
+    }
+
+    private static int field(Builder b, Column column, int id) {
+        final int name = b.createString(column.name);
+        final int type = column.type.applyAsInt(b);
+
+        int dictionary = 0;
+        if (column.dictionary != null) {
+            final int index = intType(b, 32, true);
+            b.startTable(3);
+            b.addLong(0, id);
+            b.addOffset(1, index);
+            b.addByte(2, (byte) 0);
+            dictionary = b.endTable();
+        }
+
+        int metadata = 0;
+        if (column.kdbType != 0) {
+            final int key = b.createString(KDB_TYPE);
+            final int value = b.createString(String.valueOf(column.kdbType));
+            b.startTable(2);
+            b.addOffset(0, key);
+            b.addOffset(1, value);
+            metadata = b.createOffsets(b.endTable());
+        }
+
+        final int children = b.createOffsets();
+        b.startTable(7);
+        b.addOffset(0, name);
+        b.addByte(1, (byte) 1);
+        b.addByte(2, column.typeId);
+        b.addOffset(3, type);
+        if (dictionary != 0) {
+            b.addOffset(4, dictionary);
+        }
+        b.addOffset(5, children);
+        if (metadata != 0) {
+            b.addOffset(6, metadata);
+        }
+        return b.endTable();
+    }
+
+    private static int recordBatch(Builder b, long length, Body body) {
+        final int nodes = b.createStructs(Arrays.copyOf(body.nodes, body.nodeCount), 2);
+        final int buffers = b.createStructs(Arrays.copyOf(body.layout, body.bufferCount), 2);
+        b.startTable(3);
+        b.addLong(0, length);
+        b.addOffset(1, nodes);
+        b.addOffset(2, buffers);
+        return b.endTable();
+    }
+
+    private static byte[] message(Builder b, byte headerType, int header, long bodyLength) {
+        b.startTable(4);
+        b.addShort(0, METADATA_V5);
+        b.addByte(1, headerType);
+        b.addOffset(2, header);
+        b.addLong(3, bodyLength);
+        return b.finish(b.endTable());
+    }
+
+    /**
+     * Writes an encapsulated message and returns its block: the offset, the metadata length and the body length.
+     */
+    private static long[] writeMessage(FileChannel channel, byte[] metadata, Body body) throws IOException {
+        final long offset = channel.position();
+        final int size = align8(8 + metadata.length);
+
+        final ByteBuffer prefix = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(CONTINUATION).putInt(size - 8).flip();
+        write(channel, prefix, ByteBuffer.wrap(metadata), ByteBuffer.wrap(PADDING, 0, size - 8 - metadata.length));
+        if (body != null) {
+            body.writeTo(channel);
+        }
+        return new long[]{offset, size, body == null ? 0 : body.size};
+    }
+
+    private static long[] blocks(List<long[]> blocks) {
+        final long[] res = new long[blocks.size() * 3];
+        for (int i = 0; i < blocks.size(); i++) {
+            System.arraycopy(blocks.get(i), 0, res, i * 3, 3);
+        }
+        return res;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static int intType(Builder b, int bitWidth, boolean signed) {
+        b.startTable(2);
+        b.addInt(0, bitWidth);
+        b.addByte(1, (byte) (signed ? 1 : 0));
+        return b.endTable();
+    }
+
+    private static ToIntFunction<Builder> unitType(short unit) {
+        return b -> {
+            b.startTable(1);
+            b.addShort(0, unit);
+            return b.endTable();
+        };
+    }
+
+    private static ToIntFunction<Builder> timeType(short unit) {
+        return b -> {
+            b.startTable(2);
+            b.addShort(0, unit);
+            b.addInt(1, 32);
+            return b.endTable();
+        };
+    }
+
+    private static ToIntFunction<Builder> timestampType(short unit) {
+        // no timezone: kdb+ timestamps are local to nothing, same as pandas naive timestamps
+        return b -> {
+            b.startTable(1);
+            b.addShort(0, unit);
+            return b.endTable();
+        };
+    }
+
+    private static int emptyType(Builder b) {
+        b.startTable(0);
+        return b.endTable();
+    }
+
+    private static Column createColumn(String name, Object vector, Function<Object, String> formatter) {
+        if (vector instanceof boolean[]) {
+            final boolean[] v = (boolean[]) vector;
+            return new Column(name, 'b', BOOL, ArrowWriter::emptyType, (from, to, body) -> {
+                body.node(to - from, 0);
+                body.buffer(ByteBuffer.allocate(0));
+                final ByteBuffer bits = body.allocate((to - from + 7) / 8);
+                for (int i = from; i < to; i++) {
+                    if (v[i]) {
+                        final int j = i - from;
+                        bits.put(j >> 3, (byte) (bits.get(j >> 3) | 1 << (j & 7)));
+                    }
+                }
+                body.buffer(bits);
+            });
+        }
+        if (vector instanceof byte[]) {
+            final byte[] v = (byte[]) vector;
+            return fixed(name, 'x', INT, b -> intType(b, 8, false), 1, i -> false, (b, i) -> b.put(v[i]));
+        }
+        if (vector instanceof short[]) {
+            final short[] v = (short[]) vector;
+            return fixed(name, 'h', INT, b -> intType(b, 16, true), 2, i -> v[i] == Short.MIN_VALUE, (b, i) -> b.putShort(v[i]));
+        }
+        if (vector instanceof int[]) {
+            final int[] v = (int[]) vector;
+            return fixed(name, 'i', INT, b -> intType(b, 32, true), 4, i -> v[i] == Integer.MIN_VALUE, (b, i) -> b.putInt(v[i]));
+        }
+        if (vector instanceof long[]) {
+            final long[] v = (long[]) vector;
+            return fixed(name, 'j', INT, b -> intType(b, 64, true), 8, i -> v[i] == Long.MIN_VALUE, (b, i) -> b.putLong(v[i]));
+        }
+        if (vector instanceof float[]) {
+            final float[] v = (float[]) vector;
+            return fixed(name, 'e', FLOATING_POINT, unitType(SINGLE), 4, i -> Float.isNaN(v[i]), (b, i) -> b.putFloat(v[i]));
+        }
+        if (vector instanceof double[]) {
+            final double[] v = (double[]) vector;
+            return fixed(name, 'f', FLOATING_POINT, unitType(DOUBLE), 8, i -> Double.isNaN(v[i]), (b, i) -> b.putDouble(v[i]));
+        }
+        if (vector instanceof char[]) {
+            final char[] v = (char[]) vector;
+            return new Column(name, 'c', UTF8, ArrowWriter::emptyType, utf8(i -> String.valueOf(v[i]).getBytes(StandardCharsets.UTF_8)));
+        }
+        if (vector instanceof UUID[]) {
+            final UUID[] v = (UUID[]) vector;
+            final ToIntFunction<Builder> type = b -> {
+                b.startTable(1);
+                b.addInt(0, 16);
+                return b.endTable();
+            };
+            return fixed(name, 'g', FIXED_SIZE_BINARY, type, 16, i -> v[i] == null || (v[i].getMostSignificantBits() == 0 && v[i].getLeastSignificantBits() == 0), (b, i) -> {
+                // guids are big-endian bytes
+                final UUID u = v[i] == null ? new UUID(0, 0) : v[i];
+                b.putLong(Long.reverseBytes(u.getMostSignificantBits()));
+                b.putLong(Long.reverseBytes(u.getLeastSignificantBits()));
+            });
+        }
+        if (vector instanceof String[]) {
+            final String[] v = (String[]) vector;
+            final Map<String, Integer> index = new HashMap<>();
+            final List<String> symbols = new ArrayList<>();
+            final int[] codes = new int[v.length];
+            for (int i = 0; i < v.length; i++) {
+                final String s = v[i] == null ? "" : v[i];
+                Integer code = index.get(s);
+                if (code == null) {
+                    code = symbols.size();
+                    index.put(s, code);
+                    symbols.add(s);
+                }
+                codes[i] = code;
+            }
+            return dictionary(name, symbols.toArray(String[]::new), i -> codes[i]);
+        }
+        if (vector instanceof SymbolVector) {
+            final SymbolVector v = (SymbolVector) vector;
+            return dictionary(name, v.getSymbols(), v::getCode);
+        }
+        if (vector instanceof TemporalVector.Longs) {
+            final TemporalVector.Longs t = (TemporalVector.Longs) vector;
+            final long[] v = t.getValues();
+            if (t.getType() == 12) {
+                return fixed(name, 'p', TIMESTAMP, timestampType(NANOSECOND), 8, i -> isInfinite(v[i]), (b, i) -> b.putLong(v[i] + EPOCH_NANOS));
+            }
+            return fixed(name, 'n', DURATION, unitType(NANOSECOND), 8, i -> v[i] == Long.MIN_VALUE, (b, i) -> b.putLong(v[i]));
+        }
+        if (vector instanceof TemporalVector.Ints) {
+            final TemporalVector.Ints t = (TemporalVector.Ints) vector;
+            final int[] v = t.getValues();
+            final IntPredicate isNull = i -> isInfinite(v[i]);
+            switch (t.getType()) {
+                case 13:
+                    return fixed(name, 'm', DATE, unitType(DAY), 4, isNull, (b, i) -> b.putInt((int) LocalDate.of(2000 + Math.floorDiv(v[i], 12), Math.floorMod(v[i], 12) + 1, 1).toEpochDay()));
+                case 14:
+                    return fixed(name, 'd', DATE, unitType(DAY), 4, isNull, (b, i) -> b.putInt(v[i] + EPOCH_DAYS));
+                case 17:
+                    return fixed(name, 'u', TIME, timeType(SECOND), 4, isNull, (b, i) -> b.putInt(v[i] * 60));
+                case 18:
+                    return fixed(name, 'v', TIME, timeType(SECOND), 4, isNull, (b, i) -> b.putInt(v[i]));
+                default:
+                    return fixed(name, 't', TIME, timeType(MILLISECOND), 4, isNull, (b, i) -> b.putInt(v[i]));
+            }
+        }
+        if (vector instanceof TemporalVector.Doubles) {
+            final double[] v = ((TemporalVector.Doubles) vector).getValues();
+            return fixed(name, 'z', TIMESTAMP, timestampType(MILLISECOND), 8, i -> Double.isNaN(v[i]) || Double.isInfinite(v[i]), (b, i) -> b.putLong(Math.round(v[i] * 86_400_000) + EPOCH_NANOS / 1_000_000));
+        }
+
+        final Object[] v = (Object[]) vector;
+        if (Arrays.stream(v).allMatch(o -> o instanceof char[] || o instanceof String)) {
+            return new Column(name, '\0', UTF8, ArrowWriter::emptyType, utf8(i -> (v[i] instanceof String ? (String) v[i] : new String((char[]) v[i])).getBytes(StandardCharsets.UTF_8)));
+        }
+        if (v.length != 0 && Arrays.stream(v).allMatch(o -> o instanceof byte[])) {
+            return new Column(name, '\0', BINARY, ArrowWriter::emptyType, utf8(i -> (byte[]) v[i]));
+        }
+        return new Column(name, '\0', UTF8, ArrowWriter::emptyType, utf8(i -> formatter.apply(v[i]).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static boolean isInfinite(long v) {
+        return v == Long.MIN_VALUE || v == Long.MAX_VALUE || v == -Long.MAX_VALUE;
+    }
+
+    private static boolean isInfinite(int v) {
+        return v == Integer.MIN_VALUE || v == Integer.MAX_VALUE || v == -Integer.MAX_VALUE;
+    }
+
+    private static Column fixed(String name, char kdbType, byte typeId, ToIntFunction<Builder> type, int width, IntPredicate isNull, Item item) {
+        return new Column(name, kdbType, typeId, type, (from, to, body) -> {
+            body.validity(from, to, isNull);
+            final ByteBuffer data = body.allocate((to - from) * width);
+            for (int i = from; i < to; i++) {
+                item.put(data, i);
+            }
+            body.buffer(data);
+        });
+    }
+
+    private static Column dictionary(String name, String[] symbols, IntUnaryOperator codes) {
+        final boolean[] nulls = new boolean[symbols.length];
+        for (int i = 0; i < symbols.length; i++) {
+            nulls[i] = symbols[i] == null || symbols[i].isEmpty();
+        }
+        final String[] values = Arrays.stream(symbols).map(s -> s == null ? "" : s).toArray(String[]::new);
+        final Column column = new Column(name, 's', UTF8, ArrowWriter::emptyType, (from, to, body) -> {
+            body.validity(from, to, i -> nulls[codes.applyAsInt(i)]);
+            final ByteBuffer data = body.allocate((to - from) * 4);
+            for (int i = from; i < to; i++) {
+                data.putInt(codes.applyAsInt(i));
+            }
+            body.buffer(data);
+        });
+        column.dictionary = values;
+        return column;
+    }
+
+    /**
+     * Variable-size binary encoder: a null item is a null value.
+     */
+    private static Encoder utf8(IntFunction<byte[]> bytes) {
+        return (from, to, body) -> {
+            final byte[][] items = new byte[to - from][];
+            long size = 0;
+            for (int i = from; i < to; i++) {
+                final byte[] b = bytes.apply(i);
+                items[i - from] = b;
+                size += b == null ? 0 : b.length;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Strings of a batch are longer than 2Gb");
+            }
+
+            body.validity(from, to, i -> items[i - from] == null);
+            final ByteBuffer offsets = body.allocate((items.length + 1) * 4);
+            final ByteBuffer data = body.allocate((int) size);
+            offsets.putInt(0);
+            for (byte[] item : items) {
+                if (item != null) {
+                    data.put(item);
+                }
+                offsets.putInt(data.position());
+            }
+            body.buffer(offsets);
+            body.buffer(data);
+        };
+    }
+
+    @FunctionalInterface
+    private interface Item {
+        void put(ByteBuffer buffer, int index);
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        void encode(int from, int to, Body body);
+    }
+
+    private static final class Column {
+        private final String name;
+        private final char kdbType;
+        private final byte typeId;
+        private final ToIntFunction<Builder> type;
+        private final Encoder encoder;
+        private String[] dictionary;
+
+        private Column(String name, char kdbType, byte typeId, ToIntFunction<Builder> type, Encoder encoder) {
+            this.name = name;
+            this.kdbType = kdbType;
+            this.typeId = typeId;
+            this.type = type;
+            this.encoder = encoder;
+        }
+    }
+
+    private static final class Batch {
+        private final byte[] metadata;
+        private final Body body;
+
+        private Batch(byte[] metadata, Body body) {
+            this.metadata = metadata;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Field nodes and buffers of a record batch. Each buffer is padded to 8 bytes.
+     */
+    private static final class Body {
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private long[] nodes = new long[16];
+        private long[] layout = new long[32];
+        private int nodeCount;
+        private int bufferCount;
+        private long size;
+
+        ByteBuffer allocate(int size) {
+            return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void node(long length, long nulls) {
+            if (nodeCount == nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            }
+            nodes[nodeCount++] = length;
+            nodes[nodeCount++] = nulls;
+        }
+
+        /**
+         * Adds the node of a column and its validity buffer, which is empty if there are no nulls.
+         */
+        void validity(int from, int to, IntPredicate isNull) {
+            final byte[] bits = new byte[(to - from + 7) / 8];
+            int nulls = 0;
+            for (int i = from; i < to; i++) {
+                if (isNull.test(i)) {
+                    nulls++;
+                } else {
+                    final int j = i - from;
+                    bits[j >> 3] |= 1 << (j & 7);
+                }
+            }
+            node(to - from, nulls);
+            buffer(nulls == 0 ? ByteBuffer.allocate(0) : ByteBuffer.wrap(bits));
+        }
+
+        void buffer(ByteBuffer buffer) {
+            buffer.rewind();
+            if (bufferCount == layout.length) {
+                layout = Arrays.copyOf(layout, bufferCount * 2);
+            }
+            layout[bufferCount++] = size;
+            layout[bufferCount++] = buffer.remaining();
+            buffers.add(buffer);
+            size += align8(buffer.remaining());
+        }
+
+        void writeTo(FileChannel channel) throws IOException {
+            final List<ByteBuffer> all = new ArrayList<>(buffers.size() * 2);
+            for (ByteBuffer buffer : buffers) {
+                all.add(buffer);
+                final int padding = align8(buffer.remaining()) - buffer.remaining();
+                if (padding != 0) {
+                    all.add(ByteBuffer.wrap(PADDING, 0, padding));
+                }
+            }
+            write(channel, all.toArray(ByteBuffer[]::new));
+        }
+    }
+}
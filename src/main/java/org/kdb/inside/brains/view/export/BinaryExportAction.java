@@ -6,7 +6,7 @@ import com.intellij.openapi.fileChooser.FileSaverDialog;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFileWrapper;
-import kx.c;
+import kx.KxConnection;
 import org.jetbrains.annotations.NotNull;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 
@@ -35,7 +35,7 @@ public class BinaryExportAction extends AnExportAction<VirtualFileWrapper> {
         indicator.setIndeterminate(true);
 
         final Object nativeObject = dataProvider.getNativeObject();
-        final byte[] serialize = new c().serialize(0, nativeObject, true);
+        final byte[] serialize = KxConnection.DEFAULT_CODEC.encode(0, nativeObject, true);
         Files.write(file.getFile().toPath(), serialize);
     }
 }
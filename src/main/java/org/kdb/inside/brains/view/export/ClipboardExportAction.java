@@ -11,6 +11,7 @@ import org.kdb.inside.brains.UIUtils;
 import org.kdb.inside.brains.settings.KdbSettingsService;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 import org.kdb.inside.brains.view.console.ConsoleOptions;
+import org.kdb.inside.brains.view.console.table.QColumn;
 import org.kdb.inside.brains.view.console.table.TableResult;
 
 import javax.swing.*;
@@ -87,15 +88,20 @@ public final class ClipboardExportAction extends AnExportAction<CopyPasteManager
             htmlStr.append("</tr>\n");
         }
 
+        final QColumn[] views = new QColumn[table.getColumnCount()];
+        for (int c = ci.reset(); c != -1; c = ci.next()) {
+            views[c] = QColumn.of(table, c);
+        }
+
         int count = 0;
         double totalCount = ri.count() * ci.count();
         indicator.setIndeterminate(false);
         for (int r = ri.reset(); r != -1 && !indicator.isCanceled(); r = ri.next()) {
             String t = r % 2 == 0 ? "o" : "e";
             htmlStr.append("<tr>\n");
+            final int modelRow = table.convertRowIndexToModel(r);
             for (int c = ci.reset(); c != -1 && !indicator.isCanceled(); c = ci.next()) {
-                Object obj = table.getValueAt(r, c);
-                String val = formatter.objectToString(obj);
+                String val = views[c] != null ? views[c].format(formatter, modelRow) : formatter.objectToString(table.getValueAt(r, c));
                 plainStr.append(val).append('\t');
 
                 htmlStr.append("  <td class=\"").append(t).append(c).append("\">");
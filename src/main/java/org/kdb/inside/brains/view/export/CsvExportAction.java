@@ -9,14 +9,18 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFileWrapper;
 import org.jetbrains.annotations.NotNull;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
+import org.kdb.inside.brains.view.console.table.QColumn;
 
 import javax.swing.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
 
 public class CsvExportAction extends AnExportAction<VirtualFileWrapper> {
-    private static final char SEPARATOR = ',';
-
     public CsvExportAction(String text, ExportingType type, ExportDataProvider dataProvider, String description) {
         super(text, type, dataProvider, description);
     }
@@ -32,42 +36,47 @@ public class CsvExportAction extends AnExportAction<VirtualFileWrapper> {
     protected void exportResultView(Project project, ExportingType type, VirtualFileWrapper file, ExportDataProvider dataProvider, KdbOutputFormatter formatter, @NotNull ProgressIndicator indicator) throws Exception {
         final JTable table = dataProvider.getTable();
 
-        final StringBuilder plainStr = new StringBuilder();
         final ExportingType.IndexIterator ri = type.rowsIterator(table);
         final ExportingType.IndexIterator ci = type.columnsIterator(table);
 
-        if (type.withHeader()) {
-            for (int i = ci.reset(); i != -1; i = ci.next()) {
-                final String val = table.getColumnName(i);
-                final String esc = escapeSpecialCharacters(val);
-                plainStr.append(esc).append(SEPARATOR);
-            }
-            // we want a newline at the end of each line and not a tab
-            plainStr.deleteCharAt(plainStr.length() - 1).append('\n');
+        final int[] viewRows = new int[ri.count()];
+        final int[] modelRows = new int[ri.count()];
+        int count = 0;
+        for (int r = ri.reset(); r != -1; r = ri.next()) {
+            viewRows[count] = r;
+            modelRows[count++] = table.convertRowIndexToModel(r);
         }
 
-        int count = 0;
-        double totalCount = ri.count() * ci.count();
-        indicator.setIndeterminate(false);
-        for (int r = ri.reset(); r != -1 && !indicator.isCanceled(); r = ri.next()) {
-            for (int c = ci.reset(); c != -1 && !indicator.isCanceled(); c = ci.next()) {
-                final String val = getValueAt(table, formatter, r, c);
-                final String esc = escapeSpecialCharacters(val);
-                plainStr.append(esc).append(SEPARATOR);
-                indicator.setFraction(count++ / totalCount);
+        // typed columns are formatted straight from column data in parallel, others through the table only
+        boolean parallel = true;
+        final List<String> header = type.withHeader() ? new ArrayList<>() : null;
+        final List<IntFunction<String>> columns = new ArrayList<>();
+        for (int c = ci.reset(); c != -1; c = ci.next()) {
+            if (header != null) {
+                header.add(table.getColumnName(c));
             }
-            // we want a newline at the end of each line and not a tab
-            plainStr.deleteCharAt(plainStr.length() - 1).append('\n');
-        }
 
-        if (indicator.isCanceled()) {
-            return;
+            final QColumn view = QColumn.of(table, c);
+            if (view != null) {
+                columns.add(i -> view.formatPlain(formatter, modelRows[i]));
+            } else {
+                final int column = c;
+                columns.add(i -> getValueAt(table, formatter, viewRows[i], column));
+                parallel = false;
+            }
         }
 
-        // remove the last newline
-        plainStr.deleteCharAt(plainStr.length() - 1);
+        indicator.setIndeterminate(false);
+        final Path path = file.getFile().toPath();
+        final boolean written;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            written = new CsvWriter(header, columns, count, parallel).write(channel, indicator::setFraction, indicator::isCanceled);
+        }
 
-        Files.writeString(file.getFile().toPath(), plainStr.toString(), StandardCharsets.UTF_8);
+        // a partially written file is removed
+        if (!written) {
+            Files.deleteIfExists(path);
+        }
     }
 
     private String getValueAt(JTable table, KdbOutputFormatter formatter, int r, int c) {
@@ -81,13 +90,4 @@ public class CsvExportAction extends AnExportAction<VirtualFileWrapper> {
         }
         return formatter.objectToString(valueAt, false, false);
     }
-
-    private String escapeSpecialCharacters(String data) {
-        String escapedData = data.replaceAll("\\R", " ");
-        if (data.contains(",") || data.contains("\"") || data.contains("'")) {
-            data = data.replace("\"", "\"\"");
-            escapedData = "\"" + data + "\"";
-        }
-        return escapedData;
-    }
 }
@@ -0,0 +1,217 @@
+package org.kdb.inside.brains.view.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Streams rows of a table into a CSV file.
+ * <p>
+ * Rows are formatted by chunks: a few chunks are formatted and encoded in parallel, each one into its own reusable
+ * buffer, and the buffers are written into the channel in the order of rows as soon as they are ready. Only a window
+ * of chunks is kept in memory, so the memory doesn't depend on the number of rows.
+ */
+final class CsvWriter {
+    private final List<String> header;
+    private final List<IntFunction<String>> columns;
+    private final int rows;
+    private final boolean parallel;
+
+    private static final char SEPARATOR = ',';
+
+    /**
+     * Number of rows formatted by one task.
+     */
+    private static final int CHUNK_ROWS = 8 * 1024;
+
+    /**
+     * @param header   names of the columns or null, if there is no header
+     * @param columns  formatters of cells of each column by the index of a row
+     * @param rows     the number of rows
+     * @param parallel true if the formatters can be called from a few threads at once
+     */
+    CsvWriter(List<String> header, List<IntFunction<String>> columns, int rows, boolean parallel) {
+        this.header = header;
+        this.columns = columns;
+        this.rows = rows;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Writes the header and all rows into the channel. Rows are separated by a new line and there is no new line
+     * after the last row.
+     *
+     * @param channel  the target channel
+     * @param progress receives the fraction of written rows after each chunk
+     * @param canceled checked after each chunk
+     * @return false if writing is canceled
+     */
+    boolean write(WritableByteChannel channel, DoubleConsumer progress, BooleanSupplier canceled) throws IOException {
+        final Chunk first = new Chunk();
+        if (header != null) {
+            final StringBuilder b = first.text;
+            for (int i = 0; i < header.size(); i++) {
+                if (i != 0) {
+                    b.append(SEPARATOR);
+                }
+                escape(header.get(i), b);
+            }
+            if (rows != 0) {
+                b.append('\n');
+            }
+            first.encode();
+            first.writeTo(channel);
+        }
+
+        final int chunks = (rows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        if (!parallel) {
+            for (int i = 0; i < chunks; i++) {
+                first.format(i).writeTo(channel);
+                progress.accept((i + 1) / (double) chunks);
+                if (canceled.getAsBoolean()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // chunks are formatted ahead while previous ones are written
+        final int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        final ArrayDeque<Chunk> free = new ArrayDeque<>(window);
+        final ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>(window);
+        free.add(first);
+
+        int next = 0;
+        try {
+            for (int i = 0; i < chunks; i++) {
+                while (next < chunks && pending.size() < window) {
+                    final Chunk chunk = free.isEmpty() ? new Chunk() : free.poll();
+                    final int index = next++;
+                    pending.add(CompletableFuture.supplyAsync(() -> chunk.format(index)));
+                }
+
+                final Chunk chunk = pending.poll().join();
+                chunk.writeTo(channel);
+                free.add(chunk);
+
+                progress.accept((i + 1) / (double) chunks);
+                if (canceled.getAsBoolean()) {
+                    return false;
+                }
+            }
+        } finally {
+            // nothing is written after a failure or canceling, so other chunks are just left
+            pending.forEach(f -> f.cancel(false));
+        }
+        return true;
+    }
+
+    /**
+     * Appends the text escaped as a CSV value: a text with separators or quotes is quoted, line breaks of other texts
+     * are replaced by spaces.
+     */
+    static void escape(String text, StringBuilder b) {
+        boolean quote = false;
+        boolean breaks = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch == SEPARATOR || ch == '"' || ch == '\'') {
+                quote = true;
+                break;
+            }
+            breaks |= isLineBreak(ch);
+        }
+
+        if (quote) {
+            b.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                final char ch = text.charAt(i);
+                if (ch == '"') {
+                    b.append('"');
+                }
+                b.append(ch);
+            }
+            b.append('"');
+        } else if (breaks) {
+            for (int i = 0; i < text.length(); i++) {
+                final char ch = text.charAt(i);
+                if (ch == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                b.append(isLineBreak(ch) ? ' ' : ch);
+            }
+        } else {
+            b.append(text);
+        }
+    }
+
+    /**
+     * The same line breaks as {@code \R} of regular expressions.
+     */
+    private static boolean isLineBreak(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u000B' || ch == '\f' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    /**
+     * The reusable text and bytes of a chunk of rows.
+     */
+    private final class Chunk {
+        private final StringBuilder text = new StringBuilder();
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer bytes = ByteBuffer.allocateDirect(0);
+
+        private Chunk format(int index) {
+            final int from = index * CHUNK_ROWS;
+            final int to = Math.min(rows, from + CHUNK_ROWS);
+
+            text.setLength(0);
+            for (int row = from; row < to; row++) {
+                for (int c = 0; c < columns.size(); c++) {
+                    if (c != 0) {
+                        text.append(SEPARATOR);
+                    }
+                    final String value = columns.get(c).apply(row);
+                    escape(value == null ? "" : value, text);
+                }
+                if (row != rows - 1) {
+                    text.append('\n');
+                }
+            }
+            encode();
+            return this;
+        }
+
+        private void encode() {
+            // any char takes 3 bytes at most, a surrogate pair takes 4 bytes
+            final int max = text.length() * 3;
+            if (bytes.capacity() < max) {
+                bytes = ByteBuffer.allocateDirect(Math.max(max, bytes.capacity() * 2));
+            }
+
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(text), bytes, true);
+            encoder.flush(bytes);
+            bytes.flip();
+        }
+
+        private void writeTo(WritableByteChannel channel) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
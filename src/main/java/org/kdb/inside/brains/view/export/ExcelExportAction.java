@@ -8,23 +8,28 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFileWrapper;
 import icons.KdbIcons;
 import kx.KxConnection;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.CellType;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import kx.TemporalVector;
 import org.jetbrains.annotations.NotNull;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
+import org.kdb.inside.brains.view.console.table.QColumn;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
 
 public class ExcelExportAction extends AnExportAction<File> {
     private final boolean saveOnDisk;
 
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
     public ExcelExportAction(String text, ExportingType type, ExportDataProvider dataProvider, String description, boolean saveOnDisk) {
         this(text, type, dataProvider, description, saveOnDisk, KdbIcons.Console.ExportExcel);
     }
@@ -55,82 +60,126 @@ public class ExcelExportAction extends AnExportAction<File> {
     }
 
     private boolean exportData(File file, ExportDataProvider dataProvider, KdbOutputFormatter formatter, ExportingType type, @NotNull ProgressIndicator indicator) throws Exception {
-        try (final SXSSFWorkbook wb = new SXSSFWorkbook(null, 100, false, true)) {
-            final Sheet sheet = wb.createSheet("KDB Exported Data");
-
-            final JTable table = dataProvider.getTable();
-            final ExportingType.IndexIterator ri = type.rowsIterator(table);
-            final ExportingType.IndexIterator ci = type.columnsIterator(table);
-
-            int index = 0;
-            if (type.withHeader()) {
-                Row row = sheet.createRow(index++);
+        final JTable table = dataProvider.getTable();
+        final ExportingType.IndexIterator ri = type.rowsIterator(table);
+        final ExportingType.IndexIterator ci = type.columnsIterator(table);
+
+        final int[] viewRows = new int[ri.count()];
+        final int[] modelRows = new int[ri.count()];
+        int count = 0;
+        for (int r = ri.reset(); r != -1; r = ri.next()) {
+            viewRows[count] = r;
+            modelRows[count++] = table.convertRowIndexToModel(r);
+        }
 
-                int i = 0;
-                for (int c = ci.reset(); c != -1; c = ci.next()) {
-                    final String columnName = table.getColumnName(c);
-                    row.createCell(i++, CellType.STRING).setCellValue(columnName);
-                }
+        // typed columns are written straight from column data in parallel, others through the table only
+        boolean parallel = true;
+        final List<String> header = type.withHeader() ? new ArrayList<>() : null;
+        final List<ExcelWriter.Column> columns = new ArrayList<>();
+        for (int c = ci.reset(); c != -1; c = ci.next()) {
+            if (header != null) {
+                header.add(table.getColumnName(c));
             }
 
-            int count = 0;
-            double totalCount = ri.count() * ci.count();
-            indicator.setIndeterminate(false);
-            for (int r = ri.reset(); r != -1 && !indicator.isCanceled(); r = ri.next()) {
-                final Row row = sheet.createRow(index++);
-                for (int c = ci.reset(), column = 0; c != -1 && !indicator.isCanceled(); c = ci.next(), column++) {
-                    final Object value = table.getValueAt(r, c);
-                    createNewCell(row, column, value, formatter);
-                    indicator.setFraction(count++ / totalCount);
-                }
+            final QColumn view = QColumn.of(table, c);
+            if (view != null) {
+                columns.add(createColumn(view, modelRows, formatter));
+            } else {
+                final int column = c;
+                columns.add((i, cells) -> writeValue(table.getValueAt(viewRows[i], column), cells, formatter));
+                parallel = false;
             }
+        }
 
-            if (indicator.isCanceled()) {
-                return false;
-            }
+        indicator.setIndeterminate(false);
+        final ExcelWriter writer = new ExcelWriter("KDB Exported Data", header, columns, count, parallel, ExcelWriter.MAX_SHEET_ROWS);
 
-            try (final FileOutputStream stream = new FileOutputStream(file)) {
-                wb.write(stream);
+        final Path path = file.toPath();
+        final boolean written;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+            written = writer.write(out, indicator::setFraction, indicator::isCanceled);
+        }
+
+        // a partially written file is removed
+        if (!written) {
+            Files.deleteIfExists(path);
+        }
+        return written;
+    }
+
+    private ExcelWriter.Column createColumn(QColumn view, int[] rows, KdbOutputFormatter formatter) {
+        if (view instanceof QColumn.BooleanColumn) {
+            final QColumn.BooleanColumn c = (QColumn.BooleanColumn) view;
+            return (i, cells) -> cells.bool(c.getBoolean(rows[i]));
+        }
+        if (view instanceof QColumn.NumericColumn) {
+            final QColumn.NumericColumn c = (QColumn.NumericColumn) view;
+            return (i, cells) -> {
+                final double v = c.getDouble(rows[i]);
+                // infinities are not Excel numbers
+                if (Double.isInfinite(v)) {
+                    cells.text(c.formatPlain(formatter, rows[i]));
+                } else {
+                    cells.number(v, ExcelWriter.Style.GENERAL);
+                }
+            };
+        }
+        if (view instanceof QColumn.VectorColumn && ((QColumn.VectorColumn) view).getVector() instanceof TemporalVector) {
+            final TemporalVector vector = (TemporalVector) ((QColumn.VectorColumn) view).getVector();
+            final ExcelWriter.Style style = ExcelWriter.temporalStyle(vector.getType());
+            final IntToDoubleFunction serial = createSerial(vector);
+            return (i, cells) -> {
+                final int row = rows[i];
+                if (vector.isNull(row)) {
+                    return;
+                }
+                // values out of Excel dates, like infinities, are exported as texts
+                final double v = serial.applyAsDouble(row);
+                if (Double.isNaN(v)) {
+                    cells.text(view.formatPlain(formatter, row));
+                } else {
+                    cells.number(v, style);
+                }
+            };
+        }
+        return (i, cells) -> {
+            final int row = rows[i];
+            if (!view.isNull(row)) {
+                cells.text(view.formatPlain(formatter, row));
             }
-            return true;
+        };
+    }
+
+    private IntToDoubleFunction createSerial(TemporalVector vector) {
+        final int type = vector.getType();
+        if (vector instanceof TemporalVector.Longs) {
+            final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+            return row -> ExcelWriter.temporalSerial(type, v.getLong(row));
         }
+        if (vector instanceof TemporalVector.Ints) {
+            final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+            return row -> ExcelWriter.temporalSerial(type, v.getInt(row));
+        }
+        final TemporalVector.Doubles v = (TemporalVector.Doubles) vector;
+        return row -> ExcelWriter.datetimeSerial(v.getDouble(row));
     }
 
-    private void createNewCell(Row row, int column, Object value, KdbOutputFormatter formatter) {
+    private void writeValue(Object value, ExcelWriter.Cells cells, KdbOutputFormatter formatter) {
+        if (value == null || KxConnection.isNull(value)) {
+            return;
+        }
         if (value instanceof Boolean) {
-            createBoolean(row, column, (Boolean) value);
+            cells.bool((Boolean) value);
         } else if (value instanceof Number) {
-            createNumber(row, column, (Number) value);
+            cells.number(((Number) value).doubleValue(), ExcelWriter.Style.GENERAL);
         } else if (value instanceof String) {
-            createString(row, column, (String) value);
+            cells.text((String) value);
         } else if (value instanceof char[]) {
-            createString(row, column, new String((char[]) value));
+            cells.text(new String((char[]) value));
         } else if (value instanceof Character) {
-            createString(row, column, String.valueOf(value));
+            cells.text(String.valueOf(value));
         } else {
-            final Cell cell = row.createCell(column);
-            if (!KxConnection.isNull(value)) {
-                cell.setCellValue(formatter.objectToString(value, false, false));
-            } else {
-                cell.setCellValue("");
-            }
+            cells.text(formatter.objectToString(value, false, false));
         }
     }
-
-    private void createBoolean(Row row, int column, Boolean value) {
-        row.createCell(column, CellType.BOOLEAN).setCellValue(value);
-    }
-
-    private void createNumber(Row row, int column, Number value) {
-        final Cell cell = row.createCell(column, CellType.NUMERIC);
-        if (value != null && !KxConnection.isNull(value)) {
-            cell.setCellValue(value.doubleValue());
-        } else {
-            cell.setCellValue("");
-        }
-    }
-
-    private void createString(Row row, int column, String value) {
-        row.createCell(column, CellType.STRING).setCellValue(value);
-    }
-}
\ No newline at end of file
+}
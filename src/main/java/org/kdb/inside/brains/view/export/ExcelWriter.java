@@ -0,0 +1,562 @@
+package org.kdb.inside.brains.view.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams rows of a table into an Excel workbook (xlsx).
+ * <p>
+ * Numbers, booleans and temporals are written as native Excel values, temporals as serial day numbers with a few
+ * number formats shared by all cells, and texts as inline strings, so there is no table of shared strings to be built
+ * by one thread. Rows over the limit of a sheet go into next sheets.
+ * <p>
+ * The XML of rows is built by chunks, like {@link CsvWriter} formats them: a few chunks are built and encoded in
+ * parallel, each one into its own reusable buffer, and the buffers are compressed into the file in the order of rows.
+ * Only a window of chunks is kept in memory, so the memory doesn't depend on the number of rows.
+ */
+final class ExcelWriter {
+    private final String name;
+    private final List<String> header;
+    private final List<Column> columns;
+    private final int rows;
+    private final boolean parallel;
+    private final int sheetRows;
+
+    private final String[] references;
+
+    /**
+     * Max number of rows in an Excel sheet.
+     */
+    static final int MAX_SHEET_ROWS = 1_048_576;
+
+    /**
+     * Max length of a text in an Excel cell.
+     */
+    private static final int MAX_TEXT_LENGTH = 32_767;
+
+    /**
+     * Number of rows built by one task.
+     */
+    private static final int CHUNK_ROWS = 8 * 1024;
+
+    /**
+     * Serial number of 2000.01.01, the kdb+ epoch, in the 1900 date system of Excel.
+     */
+    private static final int KDB_EPOCH_SERIAL = 36526;
+
+    /**
+     * Serial number of 1970.01.01.
+     */
+    private static final int UNIX_EPOCH_SERIAL = 25569;
+
+    /**
+     * Serial number of 1900.03.01: Excel counts a non-existent 1900.02.29, so only later dates are shown correctly.
+     */
+    private static final int MIN_DATE_SERIAL = 61;
+
+    /**
+     * Serial number of 9999.12.31, the last date of Excel.
+     */
+    private static final int MAX_DATE_SERIAL = 2_958_465;
+
+    private static final long NANOS_IN_DAY = 86_400_000_000_000L;
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String MAIN_NS = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+    private static final String RELATIONSHIPS_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    private static final String DOCUMENT_NS = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    /**
+     * Writes a cell of a column by the index of a row.
+     */
+    @FunctionalInterface
+    interface Column {
+        void write(int row, Cells cells);
+    }
+
+    /**
+     * Receives a value of a cell. Nothing is written for an empty cell, a null text or a number that is not finite.
+     */
+    interface Cells {
+        void number(double value, Style style);
+
+        void bool(boolean value);
+
+        void text(String value);
+    }
+
+    /**
+     * Number formats of cells. The style of a cell is an index of a format in the shared styles of the workbook.
+     */
+    enum Style {
+        GENERAL(null),
+        DATE("yyyy.mm.dd"),
+        DATETIME("yyyy.mm.dd hh:mm:ss.000"),
+        MONTH("yyyy.mm"),
+        TIME("hh:mm:ss.000"),
+        TIMESPAN("[h]:mm:ss.000"),
+        MINUTE("hh:mm"),
+        SECOND("hh:mm:ss");
+
+        private final String format;
+
+        Style(String format) {
+            this.format = format;
+        }
+
+        private int index() {
+            // the second style is the header one
+            return this == GENERAL ? 0 : ordinal() + 1;
+        }
+    }
+
+    /**
+     * @param name      the name of the sheet, a number is added to names of all sheets if there are a few
+     * @param header    names of the columns or null, if there is no header
+     * @param columns   writers of cells of each column by the index of a row
+     * @param rows      the number of rows
+     * @param parallel  true if the writers can be called from a few threads at once
+     * @param sheetRows max number of rows in a sheet, including the header
+     */
+    ExcelWriter(String name, List<String> header, List<Column> columns, int rows, boolean parallel, int sheetRows) {
+        this.name = name;
+        this.header = header;
+        this.columns = columns;
+        this.rows = rows;
+        this.parallel = parallel;
+        this.sheetRows = header == null ? sheetRows : sheetRows - 1;
+        if (this.sheetRows <= 0) {
+            throw new IllegalArgumentException("No rows in a sheet: " + sheetRows);
+        }
+
+        references = new String[columns.size()];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = columnName(i);
+        }
+    }
+
+    /**
+     * Returns the number of sheets, at least one.
+     */
+    int getSheetsCount() {
+        return Math.max(1, (rows + sheetRows - 1) / sheetRows);
+    }
+
+    /**
+     * Writes the workbook into the stream. The stream is not closed.
+     *
+     * @param out      the target stream
+     * @param progress receives the fraction of written rows after each chunk
+     * @param canceled checked after each chunk
+     * @return false if writing is canceled
+     */
+    boolean write(OutputStream out, DoubleConsumer progress, BooleanSupplier canceled) throws IOException {
+        final ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        // the XML is highly repetitive, so the fastest level compresses it well enough
+        zip.setLevel(Deflater.BEST_SPEED);
+
+        final int sheets = getSheetsCount();
+        writeEntry(zip, "[Content_Types].xml", contentTypes(sheets));
+        writeEntry(zip, "_rels/.rels", "<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">" +
+                "<Relationship Id=\"rId1\" Type=\"" + DOCUMENT_NS + "/officeDocument\" Target=\"xl/workbook.xml\"/>" +
+                "</Relationships>");
+        writeEntry(zip, "xl/workbook.xml", workbook(sheets));
+        writeEntry(zip, "xl/_rels/workbook.xml.rels", workbookRelationships(sheets));
+        writeEntry(zip, "xl/styles.xml", styles());
+
+        // the first chunk is also used by tasks, so sheet frames are built separately
+        final Chunk frame = new Chunk();
+        final Chunk first = new Chunk();
+        final int chunksInSheet = (sheetRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        final int chunks = chunksCount(chunksInSheet);
+
+        // chunks are built ahead while previous ones are written
+        final int window = parallel ? 2 * ForkJoinPool.getCommonPoolParallelism() : 1;
+        final ArrayDeque<Chunk> free = new ArrayDeque<>(window);
+        final ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>(window);
+        free.add(first);
+
+        int next = 0;
+        int written = 0;
+        try {
+            for (int sheet = 0; sheet < sheets; sheet++) {
+                zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + (sheet + 1) + ".xml"));
+                frame.prolog().writeTo(zip);
+
+                final int last = Math.min(chunks, (sheet + 1) * chunksInSheet);
+                for (; written < last; written++) {
+                    if (parallel) {
+                        while (next < chunks && pending.size() < window) {
+                            final Chunk c = free.isEmpty() ? new Chunk() : free.poll();
+                            final int index = next++;
+                            pending.add(CompletableFuture.supplyAsync(() -> c.build(index, chunksInSheet)));
+                        }
+                        final Chunk chunk = pending.poll().join();
+                        chunk.writeTo(zip);
+                        free.add(chunk);
+                    } else {
+                        first.build(written, chunksInSheet).writeTo(zip);
+                    }
+
+                    progress.accept((written + 1) / (double) chunks);
+                    if (canceled.getAsBoolean()) {
+                        return false;
+                    }
+                }
+
+                frame.epilog().writeTo(zip);
+                zip.closeEntry();
+            }
+        } finally {
+            // nothing is written after a failure or canceling, so other chunks are just left
+            pending.forEach(f -> f.cancel(false));
+        }
+        zip.finish();
+        return true;
+    }
+
+    private int chunksCount(int chunksInSheet) {
+        final int fullSheets = rows / sheetRows;
+        final int rest = rows % sheetRows;
+        return fullSheets * chunksInSheet + (rest + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    }
+
+    /**
+     * Returns the style of values of a temporal kdb+ type or null, if the type is not temporal.
+     */
+    static Style temporalStyle(int type) {
+        switch (type) {
+            case 12:
+            case 15:
+                return Style.DATETIME;
+            case 13:
+                return Style.MONTH;
+            case 14:
+                return Style.DATE;
+            case 16:
+                return Style.TIMESPAN;
+            case 17:
+                return Style.MINUTE;
+            case 18:
+                return Style.SECOND;
+            case 19:
+                return Style.TIME;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Converts a raw kdb+ value of a temporal type into an Excel serial number: days since 1899.12.30 for dates and
+     * fractions of a day for times.
+     *
+     * @param type  kdb+ type of the value, except a datetime, see {@link #datetimeSerial(double)}
+     * @param value the raw value, not null
+     * @return the serial number or NaN, if Excel can't show the value, like an infinity
+     */
+    static double temporalSerial(int type, long value) {
+        final long infinity = type == 12 || type == 16 ? Long.MAX_VALUE : Integer.MAX_VALUE;
+        if (value == infinity || value == -infinity) {
+            return Double.NaN;
+        }
+
+        switch (type) {
+            case 12:
+                // whole days and the rest separately, as nanos of a timestamp don't fit a double
+                return dateSerial(Math.floorDiv(value, NANOS_IN_DAY) + KDB_EPOCH_SERIAL + Math.floorMod(value, NANOS_IN_DAY) / (double) NANOS_IN_DAY);
+            case 13: {
+                final long year = 2000 + Math.floorDiv(value, 12);
+                if (year < 1900 || year > 9999) {
+                    return Double.NaN;
+                }
+                return dateSerial(UNIX_EPOCH_SERIAL + LocalDate.of((int) year, (int) Math.floorMod(value, 12) + 1, 1).toEpochDay());
+            }
+            case 14:
+                return dateSerial(KDB_EPOCH_SERIAL + (double) value);
+            case 16:
+                return timeSerial(value / (double) NANOS_IN_DAY);
+            case 17:
+                return timeSerial(value / 1440.);
+            case 18:
+                return timeSerial(value / 86400.);
+            case 19:
+                return timeSerial(value / 86_400_000.);
+            default:
+                throw new IllegalArgumentException("Not a temporal type: " + type);
+        }
+    }
+
+    /**
+     * Converts a kdb+ datetime, days since 2000.01.01, into an Excel serial number.
+     *
+     * @return the serial number or NaN, if Excel can't show the value
+     */
+    static double datetimeSerial(double value) {
+        return dateSerial(KDB_EPOCH_SERIAL + value);
+    }
+
+    private static double dateSerial(double serial) {
+        return serial >= MIN_DATE_SERIAL && serial < MAX_DATE_SERIAL + 1 ? serial : Double.NaN;
+    }
+
+    private static double timeSerial(double serial) {
+        // negative times are not shown at all
+        return serial >= 0 && serial < MAX_DATE_SERIAL ? serial : Double.NaN;
+    }
+
+    /**
+     * Returns the name of a column by its index: A, B, ..., Z, AA, AB and so on.
+     */
+    static String columnName(int index) {
+        final StringBuilder b = new StringBuilder();
+        for (int i = index + 1; i > 0; i = (i - 1) / 26) {
+            b.append((char) ('A' + (i - 1) % 26));
+        }
+        return b.reverse().toString();
+    }
+
+    /**
+     * Appends the text escaped as XML content, skipping chars that are not allowed in XML.
+     */
+    static void escape(String text, StringBuilder b) {
+        final int length = Math.min(text.length(), MAX_TEXT_LENGTH);
+        for (int i = 0; i < length; i++) {
+            final char ch = text.charAt(i);
+            switch (ch) {
+                case '&':
+                    b.append("&amp;");
+                    break;
+                case '<':
+                    b.append("&lt;");
+                    break;
+                case '>':
+                    b.append("&gt;");
+                    break;
+                case '"':
+                    b.append("&quot;");
+                    break;
+                default:
+                    if (ch >= 0x20 && ch < 0xFFFE || ch == '\t' || ch == '\n' || ch == '\r') {
+                        b.append(ch);
+                    }
+            }
+        }
+    }
+
+    private String sheetName(int sheet, int sheets) {
+        return sheets == 1 ? name : name + " " + (sheet + 1);
+    }
+
+    private String contentTypes(int sheets) {
+        final StringBuilder b = new StringBuilder();
+        b.append("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        b.append("<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>");
+        b.append("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        b.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        b.append("<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            b.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return b.append("</Types>").toString();
+    }
+
+    private String workbook(int sheets) {
+        final StringBuilder b = new StringBuilder();
+        b.append("<workbook xmlns=\"" + MAIN_NS + "\" xmlns:r=\"" + DOCUMENT_NS + "\"><sheets>");
+        for (int i = 0; i < sheets; i++) {
+            b.append("<sheet name=\"");
+            escape(sheetName(i, sheets), b);
+            b.append("\" sheetId=\"").append(i + 1).append("\" r:id=\"rId").append(i + 1).append("\"/>");
+        }
+        return b.append("</sheets></workbook>").toString();
+    }
+
+    private String workbookRelationships(int sheets) {
+        final StringBuilder b = new StringBuilder();
+        b.append("<Relationships xmlns=\"" + RELATIONSHIPS_NS + "\">");
+        for (int i = 1; i <= sheets; i++) {
+            b.append("<Relationship Id=\"rId").append(i).append("\" Type=\"" + DOCUMENT_NS + "/worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        b.append("<Relationship Id=\"rId").append(sheets + 1).append("\" Type=\"" + DOCUMENT_NS + "/styles\" Target=\"styles.xml\"/>");
+        return b.append("</Relationships>").toString();
+    }
+
+    private String styles() {
+        final Style[] styles = Style.values();
+        final StringBuilder b = new StringBuilder();
+        b.append("<styleSheet xmlns=\"" + MAIN_NS + "\">");
+        b.append("<numFmts count=\"").append(styles.length - 1).append("\">");
+        for (Style style : styles) {
+            if (style.format != null) {
+                b.append("<numFmt numFmtId=\"").append(numberFormatId(style)).append("\" formatCode=\"");
+                escape(style.format, b);
+                b.append("\"/>");
+            }
+        }
+        b.append("</numFmts>");
+        b.append("<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font><font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>");
+        b.append("<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>");
+        b.append("<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>");
+        b.append("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>");
+        b.append("<cellXfs count=\"").append(styles.length + 1).append("\">");
+        b.append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+        b.append("<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>");
+        for (Style style : styles) {
+            if (style.format != null) {
+                b.append("<xf numFmtId=\"").append(numberFormatId(style)).append("\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>");
+            }
+        }
+        b.append("</cellXfs>");
+        b.append("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+        return b.append("</styleSheet>").toString();
+    }
+
+    private static int numberFormatId(Style style) {
+        // ids of custom formats start after the built-in ones
+        return 163 + style.ordinal();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, String xml) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write((XML_HEADER + xml).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /**
+     * The reusable XML and bytes of a chunk of rows.
+     */
+    private final class Chunk implements Cells {
+        private final StringBuilder text = new StringBuilder();
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+
+        private int column;
+        private int excelRow;
+
+        private Chunk prolog() {
+            text.setLength(0);
+            text.append(XML_HEADER).append("<worksheet xmlns=\"" + MAIN_NS + "\"><sheetData>");
+            if (header != null) {
+                text.append("<row r=\"1\">");
+                excelRow = 1;
+                for (column = 0; column < header.size(); column++) {
+                    startCell("inlineStr", 1);
+                    text.append("<is><t>");
+                    escape(header.get(column), text);
+                    text.append("</t></is></c>");
+                }
+                text.append("</row>");
+            }
+            encode();
+            return this;
+        }
+
+        private Chunk epilog() {
+            text.setLength(0);
+            text.append("</sheetData></worksheet>");
+            encode();
+            return this;
+        }
+
+        private Chunk build(int index, int chunksInSheet) {
+            final int sheetFrom = index / chunksInSheet * sheetRows;
+            final int from = sheetFrom + index % chunksInSheet * CHUNK_ROWS;
+            final int to = Math.min(Math.min(rows, sheetFrom + sheetRows), from + CHUNK_ROWS);
+
+            text.setLength(0);
+            for (int row = from; row < to; row++) {
+                excelRow = row - sheetFrom + (header == null ? 1 : 2);
+                text.append("<row r=\"").append(excelRow).append("\">");
+                for (column = 0; column < columns.size(); column++) {
+                    columns.get(column).write(row, this);
+                }
+                text.append("</row>");
+            }
+            encode();
+            return this;
+        }
+
+        @Override
+        public void number(double value, Style style) {
+            if (!Double.isFinite(value)) {
+                return;
+            }
+            startCell(null, style.index());
+            text.append("<v>");
+            if (value == (long) value && Math.abs(value) < 1e15) {
+                text.append((long) value);
+            } else {
+                text.append(value);
+            }
+            text.append("</v></c>");
+        }
+
+        @Override
+        public void bool(boolean value) {
+            startCell("b", 0);
+            text.append("<v>").append(value ? '1' : '0').append("</v></c>");
+        }
+
+        @Override
+        public void text(String value) {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            startCell("inlineStr", 0);
+            // leading and trailing spaces are dropped by Excel otherwise
+            if (Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1))) {
+                text.append("<is><t xml:space=\"preserve\">");
+            } else {
+                text.append("<is><t>");
+            }
+            escape(value, text);
+            text.append("</t></is></c>");
+        }
+
+        private void startCell(String type, int style) {
+            text.append("<c r=\"").append(references[column]).append(excelRow).append('"');
+            if (type != null) {
+                text.append(" t=\"").append(type).append('"');
+            }
+            if (style != 0) {
+                text.append(" s=\"").append(style).append('"');
+            }
+            text.append('>');
+        }
+
+        private void encode() {
+            // any char takes 3 bytes at most, a surrogate pair takes 4 bytes
+            final int max = text.length() * 3;
+            if (bytes.capacity() < max) {
+                bytes = ByteBuffer.allocate(Math.max(max, bytes.capacity() * 2));
+            }
+
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(text), bytes, true);
+            encoder.flush(bytes);
+            bytes.flip();
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            out.write(bytes.array(), 0, bytes.limit());
+        }
+    }
+}
@@ -50,6 +50,8 @@ public interface ExportDataProvider {
         exportGroup.add(new CsvExportAction("CSV format", ExportingType.ALL_WITH_HEADER, dataProvider, "Export current table into Comma Separated File format"));
         exportGroup.add(new ExcelExportAction("Excel xls format", ExportingType.ALL_WITH_HEADER, dataProvider, "Export current table into Excel XLS format", true, null));
         exportGroup.add(new BinaryExportAction("KDB binary format", ExportingType.ALL_WITH_HEADER, dataProvider, "Binary KDB IPC file format. Can be imported directly into KDB."));
+        exportGroup.add(new ArrowExportAction("Arrow IPC format", ExportingType.ALL_WITH_HEADER, dataProvider, "Apache Arrow IPC (Feather v2) file format. Can be read directly by pandas, polars or R."));
+        exportGroup.add(new SplayedExportAction("KDB splayed table", ExportingType.ALL_WITH_HEADER, dataProvider, "Splayed table directory, optionally partitioned by date. Can be loaded or mapped directly by KDB."));
         group.add(exportGroup);
 
         group.addSeparator();
@@ -0,0 +1,31 @@
+package org.kdb.inside.brains.view.export;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import kx.c;
+import org.jetbrains.annotations.NotNull;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+
+public class SplayedExportAction extends AnExportAction<SplayedWriter> {
+    public SplayedExportAction(String text, ExportingType type, ExportDataProvider dataProvider, String description) {
+        super(text, type, dataProvider, description);
+    }
+
+    @Override
+    protected SplayedWriter getExportConfig(Project project, ExportDataProvider dataProvider) {
+        final c.Flip table = SplayedWriter.toTable(dataProvider.getNativeObject());
+
+        final SplayedExportDialog dialog = new SplayedExportDialog(project, dataProvider.getExportName(), SplayedWriter.getPartitionColumns(table));
+        if (!dialog.showAndGet()) {
+            return null;
+        }
+        return new SplayedWriter(dialog.getRoot(), dialog.getTableName(), table, dialog.getPartition());
+    }
+
+    @Override
+    protected void exportResultView(Project project, ExportingType type, SplayedWriter writer, ExportDataProvider dataProvider, KdbOutputFormatter formatter, @NotNull ProgressIndicator indicator) throws Exception {
+        // written partitions are kept, if the export is canceled, as they are complete tables
+        indicator.setIndeterminate(false);
+        writer.write(indicator::setFraction, indicator::isCanceled);
+    }
+}
@@ -0,0 +1,88 @@
+package org.kdb.inside.brains.view.export;
+
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.openapi.ui.ValidationInfo;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.util.ui.FormBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.kdb.inside.brains.QLanguage;
+
+import javax.swing.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class SplayedExportDialog extends DialogWrapper {
+    private final TextFieldWithBrowseButton directory = new TextFieldWithBrowseButton();
+    private final JBTextField tableName = new JBTextField();
+    private final ComboBox<String> partition;
+
+    SplayedExportDialog(Project project, String name, List<String> partitionColumns) {
+        super(project, false);
+        setTitle("Export as Splayed Table");
+
+        directory.addBrowseFolderListener("Database Directory", "Root directory of the database the table is written into", project, FileChooserDescriptorFactory.createSingleFolderDescriptor());
+        tableName.setText(name != null && QLanguage.isIdentifier(name) && name.indexOf('.') < 0 ? name : "t");
+
+        final List<String> items = new ArrayList<>();
+        items.add("");
+        items.addAll(partitionColumns);
+        partition = new ComboBox<>(items.toArray(String[]::new));
+        partition.setRenderer(SimpleListCellRenderer.create("", c -> c.isEmpty() ? "None" : c));
+        partition.setEnabled(!partitionColumns.isEmpty());
+
+        setOKButtonText("Export");
+
+        init();
+        initValidation();
+    }
+
+    Path getRoot() {
+        return Path.of(directory.getText().trim());
+    }
+
+    String getTableName() {
+        return tableName.getText().trim();
+    }
+
+    String getPartition() {
+        final String item = partition.getItem();
+        return item == null || item.isEmpty() ? null : item;
+    }
+
+    @Override
+    protected @NotNull List<ValidationInfo> doValidateAll() {
+        final List<ValidationInfo> r = new ArrayList<>();
+        if (directory.getText().isBlank()) {
+            r.add(new ValidationInfo("Database directory must be selected", directory));
+        }
+
+        final String name = getTableName();
+        if (!QLanguage.isIdentifier(name) || name.indexOf('.') >= 0) {
+            r.add(new ValidationInfo("The name is not valid Q table name", tableName));
+        } else if ("sym".equals(name)) {
+            r.add(new ValidationInfo("The sym file of the database can't be replaced by a table", tableName));
+        }
+        return r;
+    }
+
+    @Override
+    public @Nullable JComponent getPreferredFocusedComponent() {
+        return directory.getTextField();
+    }
+
+    @Override
+    protected @Nullable JComponent createCenterPanel() {
+        return FormBuilder.createFormBuilder()
+                .addLabeledComponent("Database:", directory)
+                .addLabeledComponent("Table:", tableName)
+                .addLabeledComponent("Partition by:", partition)
+                .getPanel();
+    }
+}
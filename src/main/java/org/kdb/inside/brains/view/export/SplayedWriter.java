@@ -0,0 +1,604 @@
+package org.kdb.inside.brains.view.export;
+
+import kx.KxConnection;
+import kx.KxDecoder;
+import kx.KxVector;
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Writes a table into a kdb+ database directory as a splayed table, optionally partitioned by date, the same way
+ * {@code .Q.dpft} lays it out: a {@code .d} file with the order of columns, a file for each column and the {@code sym}
+ * file in the root of the database that symbol columns are enumerated against. The {@code sym} file of an existing
+ * database is extended, so a few tables and partitions can be exported into one database.
+ * <p>
+ * Columns of simple types are written in the mappable layout of kdb+ 3.x, a 16 bytes header and raw items, straight
+ * from column arrays through a direct buffer, so q maps them without deserializing. Lists of vectors, like strings,
+ * and the {@code .d} and {@code sym} files are written as serialized lists, the same as {@code set} writes them.
+ * General lists of mixed items can't be splayed, like in kdb+. Columns of a table are written in parallel.
+ */
+final class SplayedWriter {
+    private final Path root;
+    private final String table;
+    private final String[] names;
+    private final Object[] columns;
+    private final String partition;
+
+    /**
+     * Size of the header of a mappable vector: the file magic, the type, the attribute, a reserved int and the count.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Max size of a direct buffer of a column file.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Days since 1970.01.01 of 2000.01.01, the kdb+ epoch.
+     */
+    private static final int KDB_EPOCH_DAY = 10957;
+
+    private static final long NANOS_IN_DAY = 86_400_000_000_000L;
+
+    private static final int ENUM_TYPE = 20;
+
+    /**
+     * @param root      the root directory of the database
+     * @param table     the name of the table
+     * @param flip      the table
+     * @param partition the name of a date, timestamp or datetime column to partition the table by or null
+     */
+    SplayedWriter(Path root, String table, c.Flip flip, String partition) {
+        this.root = root;
+        this.table = table;
+        this.names = flip.x;
+        this.columns = flip.y;
+        this.partition = partition;
+    }
+
+    /**
+     * Returns the table of a result: a keyed table is unkeyed, as splayed tables can't be keyed.
+     *
+     * @throws IllegalArgumentException if the result is not a table
+     */
+    static c.Flip toTable(Object result) {
+        if (result instanceof c.Flip) {
+            return (c.Flip) result;
+        }
+        if (result instanceof c.Dict && ((c.Dict) result).x instanceof c.Flip && ((c.Dict) result).y instanceof c.Flip) {
+            final c.Flip keys = (c.Flip) ((c.Dict) result).x;
+            final c.Flip values = (c.Flip) ((c.Dict) result).y;
+
+            final String[] names = Arrays.copyOf(keys.x, keys.x.length + values.x.length);
+            System.arraycopy(values.x, 0, names, keys.x.length, values.x.length);
+            final Object[] columns = Arrays.copyOf(keys.y, keys.y.length + values.y.length);
+            System.arraycopy(values.y, 0, columns, keys.y.length, values.y.length);
+            return new c.Flip(new c.Dict(names, columns));
+        }
+        throw new IllegalArgumentException("Only tables can be exported into this format");
+    }
+
+    /**
+     * Returns names of columns the table can be partitioned by: date, timestamp and datetime columns.
+     */
+    static List<String> getPartitionColumns(c.Flip flip) {
+        final List<String> res = new ArrayList<>();
+        for (int i = 0; i < flip.x.length; i++) {
+            final int type = temporalType(flip.y[i]);
+            if (type == 12 || type == 14 || type == 15) {
+                res.add(flip.x[i]);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Writes the table.
+     *
+     * @param progress receives the fraction of written partitions
+     * @param canceled checked after each partition
+     * @return false if writing is canceled
+     */
+    boolean write(DoubleConsumer progress, BooleanSupplier canceled) throws IOException {
+        final Object[] vectors = new Object[columns.length];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = normalize(columns[i]);
+        }
+
+        final int rows = vectors.length == 0 ? 0 : vectors[0] instanceof KxVector ? ((KxVector) vectors[0]).size() : Array.getLength(vectors[0]);
+        enumerate(vectors, root.resolve("sym"));
+
+        if (partition == null) {
+            writeTable(root.resolve(table), names, vectors, null);
+            progress.accept(1);
+            return true;
+        }
+
+        final int column = Arrays.asList(names).indexOf(partition);
+        if (column < 0) {
+            throw new IllegalArgumentException("No partition column: " + partition);
+        }
+
+        // a date column is the virtual partition column, other columns are kept
+        final boolean virtual = temporalType(vectors[column]) == 14;
+        final String[] partitionNames = virtual ? remove(names, column) : names;
+        final Object[] partitionVectors = virtual ? remove(vectors, column) : vectors;
+
+        final Map<Integer, int[]> partitions = partition(vectors[column], rows);
+        int index = 0;
+        for (Map.Entry<Integer, int[]> e : partitions.entrySet()) {
+            final LocalDate date = LocalDate.ofEpochDay(KDB_EPOCH_DAY + (long) e.getKey());
+            final String dir = String.format("%04d.%02d.%02d", date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+            writeTable(root.resolve(dir).resolve(table), partitionNames, partitionVectors, e.getValue());
+
+            progress.accept(++index / (double) partitions.size());
+            if (canceled.getAsBoolean()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeTable(Path dir, String[] names, Object[] vectors, int[] rows) throws IOException {
+        Files.createDirectories(dir);
+        writeSymbols(dir.resolve(".d"), names);
+
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            final String name = names[i];
+            final Object vector = vectors[i];
+            tasks.add(ForkJoinTask.adapt(() -> {
+                writeColumn(dir.resolve(name), name, vector, rows);
+                return null;
+            }));
+        }
+        try {
+            ForkJoinTask.invokeAll(tasks);
+        } catch (RuntimeException ex) {
+            // a failure of a column is wrapped by the task
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Groups rows by days of the column, in the order of days.
+     */
+    private static Map<Integer, int[]> partition(Object vector, int rows) {
+        final int[] days = new int[rows];
+        if (vector instanceof TemporalVector.Ints) {
+            final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+            for (int i = 0; i < rows; i++) {
+                final int day = v.getInt(i);
+                checkPartition(v.isNull(i) || day == Integer.MAX_VALUE || day == -Integer.MAX_VALUE);
+                days[i] = day;
+            }
+        } else if (vector instanceof TemporalVector.Longs) {
+            final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+            for (int i = 0; i < rows; i++) {
+                final long time = v.getLong(i);
+                checkPartition(v.isNull(i) || time == Long.MAX_VALUE || time == -Long.MAX_VALUE);
+                days[i] = (int) Math.floorDiv(time, NANOS_IN_DAY);
+            }
+        } else if (vector instanceof TemporalVector.Doubles) {
+            final TemporalVector.Doubles v = (TemporalVector.Doubles) vector;
+            for (int i = 0; i < rows; i++) {
+                final double time = v.getDouble(i);
+                checkPartition(v.isNull(i) || Double.isInfinite(time));
+                days[i] = (int) Math.floor(time);
+            }
+        } else {
+            throw new IllegalArgumentException("Only date, timestamp or datetime columns can partition a table");
+        }
+
+        // distinct days in order, and rows of each day in order of the table
+        final int[] sorted = days.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        final int[] partitions = new int[rows];
+        final int[] counts = new int[distinct];
+        for (int i = 0; i < rows; i++) {
+            partitions[i] = Arrays.binarySearch(sorted, 0, distinct, days[i]);
+            counts[partitions[i]]++;
+        }
+
+        final int[][] res = new int[distinct][];
+        for (int p = 0; p < distinct; p++) {
+            res[p] = new int[counts[p]];
+            counts[p] = 0;
+        }
+        for (int i = 0; i < rows; i++) {
+            final int p = partitions[i];
+            res[p][counts[p]++] = i;
+        }
+
+        final Map<Integer, int[]> map = new LinkedHashMap<>();
+        for (int p = 0; p < distinct; p++) {
+            map.put(sorted[p], res[p]);
+        }
+        return map;
+    }
+
+    private static void checkPartition(boolean invalid) {
+        if (invalid) {
+            throw new IllegalArgumentException("Rows with null or infinite dates can't be partitioned");
+        }
+    }
+
+    /**
+     * Enumerates symbol columns against the sym file: new symbols are appended to the file and symbol columns are
+     * replaced by indexes of their symbols in the file.
+     */
+    private static void enumerate(Object[] vectors, Path file) throws IOException {
+        final List<String> symbols = new ArrayList<>(List.of(readSymbols(file)));
+        final Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < symbols.size(); i++) {
+            index.putIfAbsent(symbols.get(i), i);
+        }
+
+        final int known = symbols.size();
+        for (int c = 0; c < vectors.length; c++) {
+            if (vectors[c] instanceof String[]) {
+                final String[] v = (String[]) vectors[c];
+                final int[] codes = new int[v.length];
+                for (int i = 0; i < v.length; i++) {
+                    codes[i] = enumerate(v[i] == null ? "" : v[i], symbols, index);
+                }
+                vectors[c] = new Enumerated(codes);
+            } else if (vectors[c] instanceof SymbolVector) {
+                final SymbolVector v = (SymbolVector) vectors[c];
+                // each distinct symbol of the vector is looked up once
+                final String[] distinct = v.getSymbols();
+                final int[] map = new int[distinct.length];
+                for (int i = 0; i < distinct.length; i++) {
+                    map[i] = enumerate(distinct[i] == null ? "" : distinct[i], symbols, index);
+                }
+                final int[] codes = new int[v.size()];
+                for (int i = 0; i < codes.length; i++) {
+                    codes[i] = map[v.getCode(i)];
+                }
+                vectors[c] = new Enumerated(codes);
+            }
+        }
+
+        if (symbols.size() != known || Files.notExists(file)) {
+            Files.createDirectories(file.getParent());
+            writeSymbols(file, symbols.toArray(String[]::new));
+        }
+    }
+
+    private static int enumerate(String symbol, List<String> symbols, Map<String, Integer> index) {
+        return index.computeIfAbsent(symbol, s -> {
+            symbols.add(s);
+            return symbols.size() - 1;
+        });
+    }
+
+    /**
+     * Reads symbols of a sym file or returns an empty array, if there is no file.
+     */
+    static String[] readSymbols(Path file) throws IOException {
+        if (Files.notExists(file)) {
+            return new String[0];
+        }
+
+        final byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 2 || bytes[0] != (byte) 0xff || bytes[1] != 0x01) {
+            throw new IOException("The sym file is not a serialized list of symbols: " + file);
+        }
+
+        // the file is a serialized object without the message header, which is restored
+        final ByteBuffer message = ByteBuffer.allocate(bytes.length + 6).order(ByteOrder.LITTLE_ENDIAN);
+        message.put((byte) 1).put((byte) 0).put((byte) 0).put((byte) 0).putInt(bytes.length + 6);
+        message.put(bytes, 2, bytes.length - 2);
+        try {
+            final Object symbols = KxConnection.DEFAULT_CODEC.decode(message.array());
+            if (symbols instanceof String[]) {
+                return (String[]) symbols;
+            }
+            if (symbols instanceof SymbolVector) {
+                return (String[]) ((SymbolVector) symbols).toArray();
+            }
+        } catch (c.KException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        throw new IOException("The sym file is not a serialized list of symbols: " + file);
+    }
+
+    /**
+     * Returns the column as a primitive array, a temporal vector, a symbol vector or an array of objects.
+     */
+    static Object normalize(Object column) {
+        if (column instanceof TemporalVector || column instanceof SymbolVector) {
+            return column;
+        }
+        if (column instanceof KxVector) {
+            return ((KxVector) column).toArray();
+        }
+        if (temporalType(column) != 0) {
+            // temporal objects are converted into raw values the same way they're serialized
+            final byte[] message = KxConnection.DEFAULT_CODEC.encode(0, column, false);
+            try {
+                return new KxDecoder(TimeZone.getTimeZone("UTC"), StandardCharsets.UTF_8, Long.MAX_VALUE, true).decode(message);
+            } catch (IOException | c.KException ex) {
+                throw new IllegalStateException("Temporal column can't be converted", ex);
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Returns kdb+ type of a temporal column or 0 if the column is not temporal.
+     */
+    private static int temporalType(Object column) {
+        if (column instanceof TemporalVector) {
+            return ((TemporalVector) column).getType();
+        }
+        final Class<?> type = column == null ? null : column.getClass().getComponentType();
+        if (type == java.sql.Timestamp.class) {
+            return 12;
+        }
+        if (type == c.Month.class) {
+            return 13;
+        }
+        if (type == java.sql.Date.class) {
+            return 14;
+        }
+        if (type == java.util.Date.class) {
+            return 15;
+        }
+        if (type == c.Timespan.class) {
+            return 16;
+        }
+        if (type == c.Minute.class) {
+            return 17;
+        }
+        if (type == c.Second.class) {
+            return 18;
+        }
+        if (type == java.sql.Time.class) {
+            return 19;
+        }
+        return 0;
+    }
+
+    private static void writeColumn(Path file, String name, Object vector, int[] rows) throws IOException {
+        if (vector instanceof Enumerated) {
+            // kdb+ 3.x enumerations are longs
+            final int[] v = ((Enumerated) vector).codes;
+            writeVector(file, ENUM_TYPE, 8, v.length, rows, (b, r) -> b.putLong(v[r]));
+        } else if (vector instanceof TemporalVector.Longs) {
+            final TemporalVector.Longs v = (TemporalVector.Longs) vector;
+            writeVector(file, v.getType(), 8, v.size(), rows, (b, r) -> b.putLong(v.getLong(r)));
+        } else if (vector instanceof TemporalVector.Ints) {
+            final TemporalVector.Ints v = (TemporalVector.Ints) vector;
+            writeVector(file, v.getType(), 4, v.size(), rows, (b, r) -> b.putInt(v.getInt(r)));
+        } else if (vector instanceof TemporalVector.Doubles) {
+            final TemporalVector.Doubles v = (TemporalVector.Doubles) vector;
+            writeVector(file, v.getType(), 8, v.size(), rows, (b, r) -> b.putDouble(v.getDouble(r)));
+        } else if (vector instanceof UUID[]) {
+            // guids are bytes in the big-endian order
+            final UUID[] v = (UUID[]) vector;
+            writeVector(file, 2, 16, v.length, rows, (b, r) -> {
+                final UUID u = v[r];
+                b.putLong(u == null ? 0 : Long.reverseBytes(u.getMostSignificantBits()));
+                b.putLong(u == null ? 0 : Long.reverseBytes(u.getLeastSignificantBits()));
+            });
+        } else if (vector instanceof Object[]) {
+            writeList(file, name, (Object[]) vector, rows);
+        } else {
+            final Items items = Items.of(vector);
+            if (items == null) {
+                throw new IllegalArgumentException("Column " + name + " can't be splayed: only vectors and lists of vectors are supported");
+            }
+            writeVector(file, items.type, items.width, items.size, rows, items.item);
+        }
+    }
+
+    private static void writeVector(Path file, int type, int width, int size, int[] rows, Item item) throws IOException {
+        final int count = rows == null ? size : rows.length;
+        final int capacity = (int) Math.min(BUFFER_SIZE, HEADER_SIZE + (long) count * width);
+        try (ColumnFile out = new ColumnFile(file, Math.max(capacity, HEADER_SIZE + width))) {
+            out.buffer.put((byte) 0xfe).put((byte) 0x20).put((byte) type).put((byte) 0).putInt(0).putLong(count);
+            for (int i = 0; i < count; i++) {
+                item.put(out.ensure(width), rows == null ? i : rows[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes a list of vectors, like strings, serialized the same way as {@code set} writes lists that can't be
+     * mapped: the magic and the list without the message header.
+     */
+    private static void writeList(Path file, String name, Object[] vector, int[] rows) throws IOException {
+        final int count = rows == null ? vector.length : rows.length;
+        try (ColumnFile out = new ColumnFile(file, BUFFER_SIZE)) {
+            out.buffer.put((byte) 0xff).put((byte) 0x01).put((byte) 0).put((byte) 0).putInt(count);
+            for (int i = 0; i < count; i++) {
+                final Object value = vector[rows == null ? i : rows[i]];
+                final Items items = Items.of(value == null ? new char[0] : value);
+                if (items == null) {
+                    throw new IllegalArgumentException("Column " + name + " can't be splayed: only vectors and lists of vectors are supported");
+                }
+                out.ensure(6).put((byte) items.type).put((byte) 0).putInt(items.size);
+                for (int j = 0; j < items.size; j++) {
+                    items.item.put(out.ensure(items.width), j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a list of symbols serialized, as {@code set} writes the {@code .d} and {@code sym} files.
+     */
+    private static void writeSymbols(Path file, String[] symbols) throws IOException {
+        try (ColumnFile out = new ColumnFile(file, BUFFER_SIZE)) {
+            out.buffer.put((byte) 0xff).put((byte) 0x01).put((byte) 11).put((byte) 0).putInt(symbols.length);
+            for (String symbol : symbols) {
+                for (byte b : symbol.getBytes(StandardCharsets.UTF_8)) {
+                    out.ensure(1).put(b);
+                }
+                out.ensure(1).put((byte) 0);
+            }
+        }
+    }
+
+    private static String[] remove(String[] values, int index) {
+        final List<String> res = new ArrayList<>(List.of(values));
+        res.remove(index);
+        return res.toArray(String[]::new);
+    }
+
+    private static Object[] remove(Object[] values, int index) {
+        final List<Object> res = new ArrayList<>(Arrays.asList(values));
+        res.remove(index);
+        return res.toArray();
+    }
+
+    /**
+     * Puts an item of a column by the index of a row into the buffer.
+     */
+    @FunctionalInterface
+    private interface Item {
+        void put(ByteBuffer buffer, int row);
+    }
+
+    /**
+     * A symbol column enumerated against the sym file.
+     */
+    private static final class Enumerated {
+        private final int[] codes;
+
+        private Enumerated(int[] codes) {
+            this.codes = codes;
+        }
+    }
+
+    /**
+     * Items of a simple vector.
+     */
+    private static final class Items {
+        private final int type;
+        private final int width;
+        private final int size;
+        private final Item item;
+
+        private Items(int type, int width, int size, Item item) {
+            this.type = type;
+            this.width = width;
+            this.size = size;
+            this.item = item;
+        }
+
+        /**
+         * Returns items of a primitive array or null, if the object is not a primitive array.
+         */
+        private static Items of(Object vector) {
+            if (vector instanceof boolean[]) {
+                final boolean[] v = (boolean[]) vector;
+                return new Items(1, 1, v.length, (b, r) -> b.put((byte) (v[r] ? 1 : 0)));
+            }
+            if (vector instanceof byte[]) {
+                final byte[] v = (byte[]) vector;
+                return new Items(4, 1, v.length, (b, r) -> b.put(v[r]));
+            }
+            if (vector instanceof short[]) {
+                final short[] v = (short[]) vector;
+                return new Items(5, 2, v.length, (b, r) -> b.putShort(v[r]));
+            }
+            if (vector instanceof int[]) {
+                final int[] v = (int[]) vector;
+                return new Items(6, 4, v.length, (b, r) -> b.putInt(v[r]));
+            }
+            if (vector instanceof long[]) {
+                final long[] v = (long[]) vector;
+                return new Items(7, 8, v.length, (b, r) -> b.putLong(v[r]));
+            }
+            if (vector instanceof float[]) {
+                final float[] v = (float[]) vector;
+                return new Items(8, 4, v.length, (b, r) -> b.putFloat(v[r]));
+            }
+            if (vector instanceof double[]) {
+                final double[] v = (double[]) vector;
+                return new Items(9, 8, v.length, (b, r) -> b.putDouble(v[r]));
+            }
+            if (vector instanceof char[]) {
+                final char[] v = (char[]) vector;
+                return new Items(10, 1, v.length, (b, r) -> b.put((byte) v[r]));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A file written through a direct buffer in the kdb+ byte order.
+     */
+    private static final class ColumnFile implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private ColumnFile(Path file, int capacity) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * Returns the buffer with the required number of bytes remaining, writing previous bytes into the file.
+         */
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                flush();
+            }
+        }
+    }
+}
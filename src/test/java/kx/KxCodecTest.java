@@ -0,0 +1,157 @@
+package kx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import static kx.KxSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KxCodecTest {
+    private final KxCodec codec = new KxCodec(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void atoms() throws Exception {
+        for (Object atom : sampleAtoms()) {
+            assertRoundTrip(atom, false);
+        }
+    }
+
+    @Test
+    void vectors() throws Exception {
+        for (Object vector : sampleVectors(10000)) {
+            assertRoundTrip(vector, false);
+            assertRoundTrip(vector, true);
+            assertEquals(1, codec.encode(1, vector, true)[2]);
+        }
+        for (Object vector : sampleVectors(0)) {
+            assertRoundTrip(vector, false);
+        }
+    }
+
+    @Test
+    void lists() throws Exception {
+        assertRoundTrip(new Object[0], false);
+        assertRoundTrip(new Object[]{1L, "a", "ab".toCharArray(), new long[]{1, 2}, new Object[]{2.5, 'c'}}, false);
+        assertRoundTrip(sampleAtoms().toArray(), false);
+        assertRoundTrip(sampleVectors(1000).toArray(), true);
+    }
+
+    @Test
+    void dicts() throws Exception {
+        assertRoundTrip(new c.Dict(new String[]{"a", "b"}, new Object[]{1L, "x"}), false);
+        assertRoundTrip(new c.Dict(longs(1000), doubles(1000)), true);
+    }
+
+    @Test
+    void tables() throws Exception {
+        final c.Flip table = table(5000);
+        assertRoundTrip(table, false);
+        assertRoundTrip(table, true);
+
+        final c.Flip keys = new c.Flip(new c.Dict(new String[]{"k"}, new Object[]{longs(5000)}));
+        assertRoundTrip(new c.Dict(keys, table), false);
+        assertRoundTrip(new c.Dict(keys, table), true);
+    }
+
+    @Test
+    void compression() throws Exception {
+        final byte[] small = codec.encode(1, longs(10), true);
+        assertEquals(0, small[2]);
+
+        final byte[] plain = codec.encode(1, longs(10000), false);
+        final byte[] compressed = codec.encode(1, longs(10000), true);
+        assertEquals(0, plain[2]);
+        assertEquals(1, compressed[2]);
+        assertTrue(compressed.length < plain.length / 2);
+
+        // messages of many chunks are compressed in place, with matches across the chunks
+        final Random random = new Random(1);
+        final long[] big = new long[300000];
+        for (int i = 0; i < big.length; i++) {
+            big[i] = random.nextInt(1000);
+        }
+        final byte[] bigCompressed = codec.encode(1, big, true);
+        assertEquals(1, bigCompressed[2]);
+        assertTrue(bigCompressed.length > KxEncoder.CHUNK_SIZE * 2);
+        assertArrayEquals(big, (long[]) codec.decode(bigCompressed));
+    }
+
+    @Test
+    void encodeIntoFile() throws Exception {
+        final Path file = root.resolve("message.kib");
+        for (Object value : new Object[]{"symbol", longs(10), table(20000)}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                final byte[] message = codec.encode(1, value, false);
+                assertEquals(message.length, codec.encode(channel, 1, value));
+
+                final byte[] written = Files.readAllBytes(file);
+                assertArrayEquals(message, Arrays.copyOfRange(written, 3, written.length));
+            }
+        }
+    }
+
+    @Test
+    void compactVectors() throws Exception {
+        final KxCodec compact = new KxCodec(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8, 3, true, true);
+
+        final Object[] values = {
+                timestamps(100),
+                dates(100),
+                new String[]{"a", "b", "", "a"},
+                new Object[]{"ab".toCharArray(), "".toCharArray(), "c".toCharArray()},
+                table(100)
+        };
+        for (Object value : values) {
+            for (boolean compress : new boolean[]{false, true}) {
+                final Object decoded = compact.decode(compact.encode(1, value, compress));
+                assertValue(value, decoded);
+                // compact vectors are encoded back the same way
+                assertValue(value, compact.decode(compact.encode(1, decoded, compress)));
+            }
+        }
+
+        assertTrue(compact.decode(compact.encode(1, timestamps(10), false)) instanceof TemporalVector);
+        assertTrue(compact.decode(compact.encode(1, new String[]{"a"}, false)) instanceof SymbolVector);
+        assertTrue(compact.decode(compact.encode(1, new Object[]{"a".toCharArray()}, false)) instanceof StringVector);
+        // only top-level vectors are compact
+        final Object nested = compact.decode(compact.encode(1, new Object[]{1L, new String[]{"a"}}, false));
+        assertTrue(((Object[]) nested)[1] instanceof String[]);
+    }
+
+    @Test
+    void error() {
+        final c.KException ex = assertThrows(c.KException.class, () -> codec.decode(codec.encodeError("type")));
+        assertEquals("type", ex.getMessage());
+    }
+
+    @Test
+    void encodedSize() {
+        for (Object value : sampleVectors(100)) {
+            assertEquals(codec.encode(1, value, false).length - 8, codec.encodedSize(value));
+        }
+        assertEquals(codec.encode(1, table(100), false).length - 8, codec.encodedSize(table(100)));
+    }
+
+    private void assertRoundTrip(Object value, boolean compress) throws Exception {
+        final byte[] message = codec.encode(1, value, compress);
+        assertValue(value, codec.decode(message));
+
+        // the message encoded in chunks is the same
+        try (KxMessage chunks = codec.encodeMessage(1, value, compress)) {
+            assertArrayEquals(message, chunks.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package kx;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static kx.KxSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KxDecoderTest {
+    private final KxCodec codec = new KxCodec(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8);
+
+    @Test
+    void streamDecoder() throws Exception {
+        final List<Object> values = new ArrayList<>(sampleAtoms());
+        values.addAll(sampleVectors(0));
+        values.addAll(sampleVectors(50000));
+        values.add(table(20000));
+        values.add(new c.Dict(new String[]{"a", "b"}, new Object[]{1L, "x"}));
+
+        final KxDecoder decoder = codec.getDecoder();
+        for (Object value : values) {
+            for (boolean compress : new boolean[]{false, true}) {
+                final byte[] message = codec.encode(1, value, compress);
+                final Object buffered = decoder.decode(message);
+                assertValue(value, buffered);
+                assertValue(buffered, decodeStream(decoder, message, QueryProgress.NONE));
+            }
+        }
+    }
+
+    @Test
+    void streamProgress() throws Exception {
+        final byte[] message = codec.encode(1, longs(100000), false);
+        final AtomicLong received = new AtomicLong();
+        decodeStream(codec.getDecoder(), message, new QueryProgress() {
+            @Override
+            public void accept(QueryPhase phase) {
+            }
+
+            @Override
+            public void progress(QueryPhase phase, long done, long total) {
+                assertEquals(QueryPhase.RECEIVING, phase);
+                assertTrue(done >= received.get());
+                assertEquals(message.length - 8, total);
+                received.set(done);
+            }
+        });
+        assertEquals(message.length - 8, received.get());
+    }
+
+    @Test
+    void streamCancellation() throws Exception {
+        final byte[] message = codec.encode(1, longs(100000), false);
+        final byte[] next = codec.encode(1, "next", false);
+
+        final byte[] both = new byte[message.length + next.length];
+        System.arraycopy(message, 0, both, 0, message.length);
+        System.arraycopy(next, 0, both, message.length, next.length);
+
+        final InputStream stream = new ChunkedStream(both, 1000);
+        stream.skip(8);
+
+        final AtomicInteger checks = new AtomicInteger();
+        final KxStreamInput in = new KxStreamInput(stream, message.length - 8, () -> {
+            if (checks.incrementAndGet() > 2) {
+                throw new CancellationException("cancelled");
+            }
+        });
+        in.order(message[0] == 1);
+        assertThrows(CancellationException.class, () -> codec.getDecoder().decode(in, false));
+
+        // the rest of the message is skipped, so the next one is read as is
+        in.skipRemaining();
+        assertEquals(0, in.getRemaining());
+        final byte[] header = new byte[8];
+        assertEquals(8, stream.readNBytes(header, 0, 8));
+        final KxStreamInput nextIn = new KxStreamInput(stream, next.length - 8, () -> {
+        });
+        assertEquals("next", codec.getDecoder().decode(nextIn.order(header[0] == 1), false));
+    }
+
+    @Test
+    void parallelColumns() throws Exception {
+        final KxDecoder parallel = new KxDecoder(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8, 0);
+        final KxDecoder sequential = codec.getDecoder();
+
+        final int columnsCount = 40;
+        final String[] names = new String[columnsCount];
+        final Object[] columns = new Object[columnsCount];
+        for (int i = 0; i < columnsCount; i++) {
+            names[i] = "c" + i;
+            columns[i] = i % 2 == 0 ? longs(10000) : sampleVectors(10000).get(i % 18);
+        }
+        final c.Flip table = new c.Flip(new c.Dict(names, columns));
+        final c.Flip keys = new c.Flip(new c.Dict(new String[]{"k"}, new Object[]{longs(10000)}));
+
+        for (Object value : new Object[]{table, table(30000), new c.Dict(keys, table(10000))}) {
+            for (boolean compress : new boolean[]{false, true}) {
+                final byte[] message = codec.encode(1, value, compress);
+                assertEquals(compress ? 1 : 0, message[2]);
+                final Object expected = sequential.decode(message);
+                assertValue(value, expected);
+
+                final int n = ((c.Flip) (value instanceof c.Dict ? ((c.Dict) value).y : value)).x.length;
+                final DecodingProgress progress = new DecodingProgress();
+                final KxInput in = KxInput.wrap(message).order(message[0] == 1);
+                in.skip(8);
+                assertValue(expected, parallel.decode(in, message[2] == 1, progress));
+                assertEquals(n, progress.decoded.get());
+
+                final DecodingProgress streamProgress = new DecodingProgress();
+                assertValue(expected, decodeStream(parallel, message, streamProgress));
+                assertEquals(n, streamProgress.decoded.get());
+            }
+        }
+    }
+
+    @Test
+    void parallelColumnsFailure() throws Exception {
+        final KxDecoder parallel = new KxDecoder(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8, 0);
+        final byte[] message = codec.encode(1, table(10000), false);
+
+        final QueryProgress progress = new QueryProgress() {
+            @Override
+            public void accept(QueryPhase phase) {
+            }
+
+            @Override
+            public void progress(QueryPhase phase, long done, long total) {
+                if (phase == QueryPhase.DECODING && done == 3) {
+                    throw new CancellationException("cancelled");
+                }
+            }
+        };
+        assertThrows(CancellationException.class, () -> decodeStream(parallel, message, progress));
+    }
+
+    @Test
+    void error() {
+        final c.KException ex = assertThrows(c.KException.class, () -> decodeStream(codec.getDecoder(), codec.encodeError("type"), QueryProgress.NONE));
+        assertEquals("type", ex.getMessage());
+    }
+
+    private static Object decodeStream(KxDecoder decoder, byte[] message, QueryProgress progress) throws IOException, c.KException {
+        final InputStream stream = new ChunkedStream(message, 777);
+        stream.skip(8);
+        final KxStreamInput in = new KxStreamInput(stream, message.length - 8, () -> {
+        }, progress);
+        in.order(message[0] == 1);
+        final Object res = decoder.decode(in, message[2] == 1, progress);
+        assertEquals(0, in.getRemaining());
+        return res;
+    }
+
+    private static class DecodingProgress implements QueryProgress {
+        private final AtomicLong decoded = new AtomicLong();
+
+        @Override
+        public void accept(QueryPhase phase) {
+        }
+
+        @Override
+        public void progress(QueryPhase phase, long done, long total) {
+            if (phase == QueryPhase.DECODING) {
+                decoded.accumulateAndGet(done, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Returns no more than the given number of bytes at once, like a socket does.
+     */
+    private static class ChunkedStream extends ByteArrayInputStream {
+        private final int chunk;
+
+        private ChunkedStream(byte[] buf, int chunk) {
+            super(buf);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, chunk));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package kx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+import static kx.KxSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KxMappedFileTest {
+    private final KxCodec codec = new KxCodec(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void openUncompressed() throws Exception {
+        final c.Flip table = table(10000);
+        final Path file = write("table.kib", table, false);
+
+        final Object res = open(file, false);
+        assertMapped(table, res);
+
+        final KxMappedFile mapped = KxMappedFile.of(res);
+        assertEquals(file, mapped.getPath());
+        assertEquals(Files.size(file), mapped.getSize());
+
+        // a file that doesn't belong to the result is never deleted
+        mapped.close();
+        assertTrue(mapped.isClosed());
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void openCompressed() throws Exception {
+        final c.Flip table = table(10000);
+        final Path file = write("table.kib", table, true);
+
+        final Object res = open(file, false);
+        assertMapped(table, res);
+
+        // the file is uncompressed into a temp one
+        final KxMappedFile mapped = KxMappedFile.of(res);
+        assertNotEquals(file, mapped.getPath());
+        assertEquals(codec.encode(1, table, false).length, mapped.getSize());
+
+        mapped.close();
+        assertTrue(Files.exists(file));
+        assertFalse(Files.exists(mapped.getPath()));
+    }
+
+    @Test
+    void openTemporary() throws Exception {
+        final c.Flip table = table(10000);
+
+        final Path plain = write("plain.kib", table, false);
+        final KxMappedFile plainMapped = KxMappedFile.of(open(plain, true));
+        assertTrue(Files.exists(plain));
+        plainMapped.close();
+        assertFalse(Files.exists(plain));
+
+        // a compressed file is deleted as soon as it's uncompressed
+        final Path compressed = write("compressed.kib", table, true);
+        final KxMappedFile compressedMapped = KxMappedFile.of(open(compressed, true));
+        assertFalse(Files.exists(compressed));
+        assertTrue(Files.exists(compressedMapped.getPath()));
+        compressedMapped.close();
+        assertFalse(Files.exists(compressedMapped.getPath()));
+    }
+
+    @Test
+    void openKeyedTable() throws Exception {
+        final c.Flip keys = new c.Flip(new c.Dict(new String[]{"k"}, new Object[]{longs(10000)}));
+        final c.Dict keyed = new c.Dict(keys, table(10000));
+
+        for (boolean compress : new boolean[]{false, true}) {
+            final Object res = open(write("keyed" + compress + ".kib", keyed, compress), false);
+            assertValue(keyed, res);
+            assertTrue(((c.Flip) ((c.Dict) res).x).y[0] instanceof KxMappedVector);
+            assertTrue(((c.Flip) ((c.Dict) res).y).y[0] instanceof KxMappedVector);
+            assertNotNull(KxMappedFile.of(res));
+            KxMappedFile.of(res).close();
+        }
+    }
+
+    @Test
+    void openNotTable() throws Exception {
+        for (Object value : new Object[]{longs(10000), new c.Dict(new String[]{"a"}, new Object[]{1L}), "symbol"}) {
+            final Path file = write("value.kib", value, false);
+            final Object res = open(file, false);
+            assertValue(value, res);
+            assertNull(KxMappedFile.of(res));
+            assertTrue(Files.exists(file));
+        }
+
+        final Path compressed = write("compressed.kib", longs(10000), true);
+        assertValue(longs(10000), open(compressed, true));
+        assertFalse(Files.exists(compressed));
+    }
+
+    @Test
+    void openInvalid() throws Exception {
+        final Path file = root.resolve("invalid.kib");
+        Files.write(file, "not a binary file".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> open(file, true));
+        assertTrue(Files.exists(file));
+
+        final Path error = root.resolve("error.kib");
+        Files.write(error, codec.encodeError("type"));
+        assertThrows(c.KException.class, () -> open(error, false));
+    }
+
+    @Test
+    void receive() throws Exception {
+        final c.Flip table = table(10000);
+        for (boolean compress : new boolean[]{false, true}) {
+            final byte[] message = codec.encode(2, table, compress);
+            final ByteArrayInputStream stream = new ByteArrayInputStream(message);
+            final byte[] header = stream.readNBytes(8);
+
+            final Object res = KxMappedFile.receive(stream, header, () -> {
+            }, QueryProgress.NONE, codec.getDecoder(), codec.getCharset());
+            assertMapped(table, res);
+            assertEquals(0, stream.available());
+
+            final Path path = KxMappedFile.of(res).getPath();
+            KxMappedFile.of(res).close();
+            assertFalse(Files.exists(path));
+        }
+    }
+
+    @Test
+    void receiveCancelled() throws Exception {
+        final byte[] message = codec.encode(2, table(10000), false);
+        final byte[] next = codec.encode(2, "next", false);
+
+        final byte[] both = new byte[message.length + next.length];
+        System.arraycopy(message, 0, both, 0, message.length);
+        System.arraycopy(next, 0, both, message.length, next.length);
+
+        final ByteArrayInputStream stream = new ByteArrayInputStream(both);
+        final byte[] header = stream.readNBytes(8);
+        assertThrows(CancellationException.class, () -> KxMappedFile.receive(stream, header, () -> {
+            throw new CancellationException("cancelled");
+        }, QueryProgress.NONE, codec.getDecoder(), codec.getCharset()));
+
+        // the rest of the message is skipped
+        assertArrayEquals(next, stream.readAllBytes());
+    }
+
+    private Object open(Path file, boolean temporary) throws IOException, c.KException {
+        return KxMappedFile.open(file, temporary, () -> {
+        }, QueryProgress.NONE, codec.getDecoder(), codec.getCharset());
+    }
+
+    private Path write(String name, Object value, boolean compress) throws IOException {
+        final byte[] message = codec.encode(1, value, compress);
+        assertEquals(compress ? 1 : 0, message[2]);
+        return Files.write(root.resolve(name), message);
+    }
+
+    private static void assertMapped(c.Flip expected, Object actual) {
+        assertValue(expected, actual);
+        for (Object column : ((c.Flip) actual).y) {
+            assertTrue(column instanceof KxMappedVector);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package kx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.kdb.inside.brains.core.InstanceOptions;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static kx.KxSamples.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class KxPipelineTest {
+    private static final int TIMEOUT_SECONDS = 10;
+
+    private static final ResponseValidator ANY_SIZE = size -> {
+    };
+
+    private final KxCodec codec = new KxCodec(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8);
+    private final BlockingQueue<Object[]> requests = new LinkedBlockingQueue<>();
+
+    private ServerSocket server;
+    private Socket socket;
+    private KxConnection connection;
+    private KxPipeline pipeline;
+
+    @BeforeEach
+    void connect() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+
+        final CompletableFuture<Socket> accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                final Socket s = server.accept();
+                final DataInputStream in = new DataInputStream(s.getInputStream());
+                // credentials end with zero byte and the ipc version is sent back
+                while (in.readByte() != 0) {
+                }
+                s.getOutputStream().write(3);
+
+                final Thread reader = new Thread(() -> readRequests(in), "KxPipelineTest-Server");
+                reader.setDaemon(true);
+                reader.start();
+                return s;
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+
+        connection = new KxConnection("localhost", server.getLocalPort(), new InstanceOptions());
+        connection.authenticate("user:password");
+        socket = accepted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        pipeline = connection.startPipeline();
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        connection.close();
+        socket.close();
+        server.close();
+    }
+
+    @Test
+    void responsesMatchRequests() throws Exception {
+        final CompletableFuture<Object> first = submit(1L, codec);
+        final CompletableFuture<Object> second = submit(2L, codec);
+        assertEquals(2, pipeline.getInFlightCount());
+
+        final Object[] r1 = nextRequest();
+        final Object[] r2 = nextRequest();
+        assertEquals(1L, r1[2]);
+        assertEquals(2L, r2[2]);
+
+        // responses come in any order
+        respond(r2, true, "second");
+        assertEquals("second", second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(first.isDone());
+
+        respond(r1, true, table(1000));
+        assertValue(table(1000), first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(0, pipeline.getInFlightCount());
+    }
+
+    @Test
+    void decodingOptionsOfEachRequest() throws Exception {
+        final KxCodec compact = connection.getCodec(true, true);
+        final KxCodec plain = connection.getCodec(false, false);
+
+        final CompletableFuture<Object> compactResult = submit("a", compact);
+        final CompletableFuture<Object> plainResult = submit("b", plain);
+
+        final String[] symbols = {"x", "y", "x"};
+        respond(nextRequest(), true, symbols);
+        respond(nextRequest(), true, symbols);
+
+        assertTrue(compactResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) instanceof SymbolVector);
+        assertTrue(plainResult.get(TIMEOUT_SECONDS, TimeUnit.SECONDS) instanceof String[]);
+        assertValue(symbols, compactResult.get());
+        assertValue(symbols, plainResult.get());
+
+        // the connection itself is not changed
+        assertFalse(connection.isPrimitiveTemporals());
+        assertFalse(connection.isCompactStrings());
+    }
+
+    @Test
+    void error() throws Exception {
+        final CompletableFuture<Object> future = submit("bad", codec);
+        respond(nextRequest(), false, "type".toCharArray());
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof c.KException);
+        assertEquals("type", ex.getCause().getMessage());
+
+        // the pipeline keeps working
+        final CompletableFuture<Object> next = submit("good", codec);
+        respond(nextRequest(), true, 42L);
+        assertEquals(42L, next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void query() throws Exception {
+        final CompletableFuture<Object> res = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pipeline.query("q", codec, () -> {
+                }, ANY_SIZE, QueryProgress.NONE);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        });
+        respond(nextRequest(), true, longs(100000));
+        assertValue(longs(100000), res.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelledResponseIsSkipped() throws Exception {
+        final AtomicBoolean cancel = new AtomicBoolean();
+        final CompletableFuture<Object> cancelled = pipeline.submit("q", codec, () -> {
+            if (cancel.get()) {
+                throw new CancellationException("cancelled");
+            }
+        }, ANY_SIZE, QueryProgress.NONE);
+        final CompletableFuture<Object> next = submit("next", codec);
+        cancel.set(true);
+
+        respond(nextRequest(), true, longs(100000));
+        respond(nextRequest(), true, "next");
+
+        assertThrows(CancellationException.class, () -> cancelled.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("next", next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void otherMessages() throws Exception {
+        final CompletableFuture<Object> received = new CompletableFuture<>();
+        connection.setMsgHandler(new c.MsgHandler() {
+            @Override
+            public void processMsg(c c, byte msgType, Object msg) {
+                received.complete(msg);
+            }
+        });
+
+        final CompletableFuture<Object> future = submit("q", codec);
+        write(codec.encode(0, "update", false));
+        assertEquals("update", received.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        respond(nextRequest(), true, 1L);
+        assertEquals(1L, future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closed() throws Exception {
+        final CompletableFuture<Object> future = submit("q", codec);
+        nextRequest();
+        socket.close();
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof IOException);
+        assertEquals(0, pipeline.getInFlightCount());
+        assertThrows(IOException.class, () -> submit("next", codec));
+    }
+
+    private CompletableFuture<Object> submit(Object query, KxCodec codec) throws IOException {
+        return pipeline.submit(query, codec, () -> {
+        }, ANY_SIZE, QueryProgress.NONE);
+    }
+
+    private Object[] nextRequest() throws InterruptedException {
+        final Object[] request = requests.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(request);
+        return request;
+    }
+
+    /**
+     * Sends the response header and the result, the same way the wrapper of the query does.
+     */
+    private void respond(Object[] request, boolean success, Object result) throws IOException {
+        write(codec.encode(0, new Object[]{KxPipeline.RESPONSE_MARKER, request[1], success}, false));
+        write(codec.encode(0, result, true));
+    }
+
+    private synchronized void write(byte[] message) throws IOException {
+        final OutputStream out = socket.getOutputStream();
+        out.write(message);
+        out.flush();
+    }
+
+    /**
+     * Reads async messages sent by the pipeline: the wrapper, the id and the query.
+     */
+    private void readRequests(DataInputStream in) {
+        try {
+            while (true) {
+                final byte[] header = new byte[8];
+                in.readFully(header);
+                final byte[] message = new byte[c.msgSize(header)];
+                System.arraycopy(header, 0, message, 0, 8);
+                in.readFully(message, 8, message.length - 8);
+                requests.add((Object[]) codec.decode(message));
+            }
+        } catch (IOException | c.KException ignore) {
+            // the socket is closed
+        }
+    }
+}
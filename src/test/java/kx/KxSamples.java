@@ -0,0 +1,188 @@
+package kx;
+
+import java.lang.reflect.Array;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Values of all kdb+ types for round-trip tests of the IPC encoding.
+ */
+final class KxSamples {
+    private static final long DAY_MILLIS = 86400000L;
+
+    private KxSamples() {
+    }
+
+    static List<Object> sampleAtoms() {
+        final List<Object> res = new ArrayList<>();
+        res.add(true);
+        res.add(new UUID(1, 2));
+        res.add((byte) 7);
+        res.add((short) -5);
+        res.add(42);
+        res.add(Long.MIN_VALUE);
+        res.add(1.5f);
+        res.add(Double.NaN);
+        res.add('z');
+        res.add("symbol");
+        res.add(timestamps(2)[1]);
+        res.add(new c.Month(300));
+        res.add(dates(2)[1]);
+        res.add(datetimes(2)[1]);
+        res.add(new c.Timespan(123456789L));
+        res.add(new c.Minute(90));
+        res.add(new c.Second(3600));
+        res.add(new Time(12345));
+        return res;
+    }
+
+    static List<Object> sampleVectors(int n) {
+        final List<Object> res = new ArrayList<>();
+        final boolean[] booleans = new boolean[n];
+        final UUID[] guids = new UUID[n];
+        final byte[] bytes = new byte[n];
+        final short[] shorts = new short[n];
+        final int[] ints = new int[n];
+        final float[] floats = new float[n];
+        final char[] chars = new char[n];
+        final String[] symbols = new String[n];
+        final c.Month[] months = new c.Month[n];
+        final c.Timespan[] timespans = new c.Timespan[n];
+        final c.Minute[] minutes = new c.Minute[n];
+        final c.Second[] seconds = new c.Second[n];
+        final Time[] times = new Time[n];
+        for (int i = 0; i < n; i++) {
+            booleans[i] = i % 3 == 0;
+            guids[i] = new UUID(i % 10, -i % 10);
+            bytes[i] = (byte) (i % 10);
+            shorts[i] = (short) (i % 100);
+            ints[i] = i % 100 * 7;
+            floats[i] = i % 100 / 4f;
+            chars[i] = (char) ('a' + i % 26);
+            symbols[i] = "s" + i % 10;
+            months[i] = new c.Month(i % 100);
+            timespans[i] = new c.Timespan(i % 100 * 1000L);
+            minutes[i] = new c.Minute(i % 100);
+            seconds[i] = new c.Second(i % 100);
+            times[i] = new Time(i % 100 * 1000L);
+        }
+        res.add(booleans);
+        res.add(guids);
+        res.add(bytes);
+        res.add(shorts);
+        res.add(ints);
+        res.add(longs(n));
+        res.add(floats);
+        res.add(doubles(n));
+        res.add(chars);
+        res.add(symbols);
+        res.add(timestamps(n));
+        res.add(months);
+        res.add(dates(n));
+        res.add(datetimes(n));
+        res.add(timespans);
+        res.add(minutes);
+        res.add(seconds);
+        res.add(times);
+        return res;
+    }
+
+    static long[] longs(int n) {
+        final long[] res = new long[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = i % 100;
+        }
+        return res;
+    }
+
+    static double[] doubles(int n) {
+        final double[] res = new double[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = i % 50 / 2d;
+        }
+        return res;
+    }
+
+    static Timestamp[] timestamps(int n) {
+        final Timestamp[] res = new Timestamp[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = new Timestamp(i % 100 * 1000L);
+            res[i].setNanos(i % 100 * 1000 + 1);
+        }
+        return res;
+    }
+
+    static Date[] dates(int n) {
+        final Date[] res = new Date[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = new Date(i % 100 * DAY_MILLIS);
+        }
+        return res;
+    }
+
+    static java.util.Date[] datetimes(int n) {
+        final java.util.Date[] res = new java.util.Date[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = new java.util.Date(i % 100 * 1000L);
+        }
+        return res;
+    }
+
+    /**
+     * A table with a column of each type and a general list of strings.
+     */
+    static c.Flip table(int n) {
+        final List<Object> columns = sampleVectors(n);
+        final Object[] strings = new Object[n];
+        for (int i = 0; i < n; i++) {
+            strings[i] = ("str" + i % 10).toCharArray();
+        }
+        columns.add(strings);
+
+        final String[] names = new String[columns.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "c" + i;
+        }
+        return new c.Flip(new c.Dict(names, columns.toArray()));
+    }
+
+    /**
+     * Asserts that the decoded value is the same as the expected one. Arrays are compared by their items,
+     * and dictionaries and tables by their content.
+     */
+    static void assertValue(Object expected, Object actual) {
+        assertEquals(normalize(expected), normalize(actual));
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof KxVector) {
+            return normalize(((KxVector) value).toArray());
+        }
+        if (value instanceof char[]) {
+            return new String((char[]) value);
+        }
+        if (value instanceof c.Flip) {
+            final c.Flip flip = (c.Flip) value;
+            return List.of("flip", normalize(flip.x), normalize(flip.y));
+        }
+        if (value instanceof c.Dict) {
+            final c.Dict dict = (c.Dict) value;
+            return List.of("dict", normalize(dict.x), normalize(dict.y));
+        }
+        if (value != null && value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            final List<Object> res = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                res.add(normalize(Array.get(value, i)));
+            }
+            return res;
+        }
+        return value;
+    }
+}
@@ -1,20 +1,28 @@
 package org.kdb.inside.brains.view.console;
 
-import kx.c;
+import kx.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.kdb.inside.brains.view.KdbOutputFormatter;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class KdbOutputFormatterTest {
     private ConsoleOptions options;
 
+    @TempDir
+    Path root;
+
     @BeforeEach
     void init() {
         options = new ConsoleOptions();
@@ -237,6 +245,70 @@ class KdbOutputFormatterTest {
         assertEquals("2021.02.28D20:34:56.987654321 2021.02.28D20:34:57.123456789 1970.01.01D00:00:00.000000000", convert(new Timestamp[]{v1, v2, v3}));
     }
 
+    @Test
+    void temporalVectors() {
+        final KxDecoder decoder = new KxDecoder(KxConnection.UTC_TIMEZONE, StandardCharsets.UTF_8);
+
+        assertEquals("2021.02.28D20:34:56.987654321 0Np", convert(new TemporalVector.Longs(12, new long[]{(1614544496L - 946684800L) * 1_000_000_000L + 987654321L, Long.MIN_VALUE}, decoder)));
+        assertEquals(",0D00:08:54.523452345", convert(new TemporalVector.Longs(16, new long[]{534523452345L}, decoder)));
+        assertEquals("`month$()", convert(new TemporalVector.Ints(13, new int[0], decoder)));
+        assertEquals("2001.01m 2203.07m", convert(new TemporalVector.Ints(13, new int[]{12, 2442}, decoder)));
+        assertEquals("1986.12.09 0Nd", convert(new TemporalVector.Ints(14, new int[]{-4771, Integer.MIN_VALUE}, decoder)));
+        assertEquals("20:44 88:41", convert(new TemporalVector.Ints(17, new int[]{1244, 5321}, decoder)));
+        assertEquals("09:35:23 181:43:54", convert(new TemporalVector.Ints(18, new int[]{34523, 654234}, decoder)));
+        assertEquals("14:44:12.345 0Nt", convert(new TemporalVector.Ints(19, new int[]{53052345, Integer.MIN_VALUE}, decoder)));
+        assertEquals("1986.12.09T14:44:12.345 0Nz", convert(new TemporalVector.Doubles(new double[]{-412161347655d / 8.64e7, Double.NaN}, decoder)));
+    }
+
+    @Test
+    void compactStrings() {
+        assertEquals("`symbol$()", convert(new SymbolVector(new int[0], new String[0])));
+        assertEquals(",`asd", convert(new SymbolVector(new int[]{0}, new String[]{"asd"})));
+        assertEquals("`asd`qwe``asd", convert(new SymbolVector(new int[]{0, 1, 2, 0}, new String[]{"asd", "qwe", ""})));
+
+        final byte[] data = "asdqwerty".getBytes(StandardCharsets.UTF_8);
+        assertEquals("(,\"asd\")", convert(new StringVector(data, new int[]{0, 3}, StandardCharsets.UTF_8)));
+        assertEquals("(\"asd\";\"\";\"qwerty\")", convert(new StringVector(data, new int[]{0, 3, 3, 9}, StandardCharsets.UTF_8)));
+        assertEquals("()", convert(new StringVector(new byte[0], new int[]{0}, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void mappedVectors() throws Exception {
+        final c.Flip table = mapped(new String[]{"j", "i", "c", "s", "d", "l"},
+                new long[]{1, 2, Long.MIN_VALUE},
+                new int[]{1, Integer.MIN_VALUE, 3},
+                new char[]{'a', 'b', 'c'},
+                new String[]{"a", "", "c"},
+                new Date[]{new Date(534523452345L), (Date) c.NULL('d'), new Date(0)},
+                new Object[]{"ab".toCharArray(), "".toCharArray(), 1L});
+        assertEquals("1 2 0N", convert(table.y[0]));
+        assertEquals("1 0N 3i", convert(table.y[1]));
+        assertEquals("\"abc\"", convert(table.y[2]));
+        assertEquals("`a``c", convert(table.y[3]));
+        assertEquals("1986.12.09 0Nd 1970.01.01", convert(table.y[4]));
+        assertEquals("(\"ab\";\"\";1)", convert(table.y[5]));
+
+        final c.Flip one = mapped(new String[]{"j", "l"}, new long[]{5}, new Object[]{"ab".toCharArray()});
+        assertEquals(",5", convert(one.y[0]));
+        assertEquals("(,\"ab\")", convert(one.y[1]));
+
+        final c.Flip empty = mapped(new String[]{"j", "s", "l"}, new long[0], new String[0], new Object[0]);
+        assertEquals("`long$()", convert(empty.y[0]));
+        assertEquals("`symbol$()", convert(empty.y[1]));
+        assertEquals("()", convert(empty.y[2]));
+    }
+
+    private c.Flip mapped(String[] names, Object... columns) throws Exception {
+        final Path file = Files.createTempFile(root, "t", ".kib");
+        Files.write(file, KxConnection.DEFAULT_CODEC.encode(0, new c.Flip(new c.Dict(names, columns)), false));
+        final c.Flip res = (c.Flip) KxMappedFile.open(file, false, () -> {
+        }, QueryProgress.NONE, KxConnection.DEFAULT_CODEC.getDecoder(), StandardCharsets.UTF_8);
+        for (Object column : res.y) {
+            assertTrue(column instanceof KxMappedVector);
+        }
+        return res;
+    }
+
     @Test
     void flip() {
         final c.Flip v1 = new c.Flip(new c.Dict(new String[]{"a", "b", "c"},
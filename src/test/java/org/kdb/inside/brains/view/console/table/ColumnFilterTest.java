@@ -0,0 +1,71 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ColumnFilterTest {
+    private static int[] rows(IntPredicate predicate, int size) {
+        return IntStream.range(0, size).filter(predicate).toArray();
+    }
+
+    @Test
+    void withinNumbers() {
+        final QColumn longs = QColumn.of(new long[]{Long.MIN_VALUE, 1, 5, 10, 11});
+        assertArrayEquals(new int[]{2, 3}, rows(ColumnFilter.Condition.within(0, "a", "1.5", "10").compile(longs), 5));
+        assertArrayEquals(new int[]{1, 2}, rows(ColumnFilter.Condition.within(0, "a", "", "9").compile(longs), 5));
+
+        final QColumn doubles = QColumn.of(new double[]{Double.NaN, -1.5, 0, 2.5});
+        assertArrayEquals(new int[]{1, 2}, rows(ColumnFilter.Condition.within(0, "a", "-2", "0f").compile(doubles), 4));
+        assertArrayEquals(new int[]{3}, rows(ColumnFilter.Condition.within(0, "a", "1", "").compile(doubles), 4));
+    }
+
+    @Test
+    void withinTimestamps() {
+        // 2024.01.31D09:59:59, 2024.01.31D10:00:00, 2024.01.31D10:30:00.5, 2024.01.31D11:00:00.000000001
+        final long day = 8796L * 86400_000_000_000L;
+        final long hour = 3600_000_000_000L;
+        final long[] values = {day + 10 * hour - 1_000_000_000L, day + 10 * hour, day + 10 * hour + hour / 2 + 500_000_000L, day + 11 * hour + 1, Long.MIN_VALUE};
+        final QColumn column = QColumn.of(new TemporalVector.Longs(12, values, null));
+
+        assertArrayEquals(new int[]{1, 2}, rows(ColumnFilter.Condition.within(0, "time", "2024.01.31D10:00", "2024.01.31D11:00:00").compile(column), 5));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, rows(ColumnFilter.Condition.within(0, "time", "2024.01.31", "").compile(column), 5));
+        assertThrows(IllegalArgumentException.class, () -> ColumnFilter.Condition.within(0, "time", "2024.13.01", "").compile(column));
+    }
+
+    @Test
+    void inSymbols() {
+        final QColumn packed = QColumn.of(new SymbolVector(new int[]{0, 1, 2, 1, 0}, new String[]{"a", "b", ""}));
+        assertArrayEquals(new int[]{0, 1, 3, 4}, rows(ColumnFilter.Condition.in(0, "sym", List.of("`a", "b")).compile(packed), 5));
+
+        final QColumn symbols = QColumn.of(new String[]{"a", "b", "c"});
+        assertArrayEquals(new int[]{2}, rows(ColumnFilter.Condition.in(0, "sym", List.of("c", "d")).compile(symbols), 3));
+    }
+
+    @Test
+    void nulls() {
+        final QColumn ints = QColumn.of(new int[]{Integer.MIN_VALUE, 1, Integer.MIN_VALUE});
+        assertArrayEquals(new int[]{0, 2}, rows(ColumnFilter.Condition.isNull(0, "a", true).compile(ints), 3));
+        assertArrayEquals(new int[]{1}, rows(ColumnFilter.Condition.isNull(0, "a", false).compile(ints), 3));
+    }
+
+    @Test
+    void operators() {
+        final QColumn a = QColumn.of(new long[]{1, 2, 3, 4});
+        final QColumn b = QColumn.of(new String[]{"x", "y", "x", "y"});
+        final QColumn[] views = {a, b};
+
+        final List<ColumnFilter.Condition> conditions = List.of(ColumnFilter.Condition.within(0, "a", "2", ""), ColumnFilter.Condition.in(1, "b", List.of("x")));
+        assertArrayEquals(new int[]{2}, rows(new ColumnFilter(ColumnFilter.Operator.AND, conditions).compile(i -> views[i]), 4));
+        assertArrayEquals(new int[]{0, 1, 2, 3}, rows(new ColumnFilter(ColumnFilter.Operator.OR, conditions).compile(i -> views[i]), 4));
+        assertEquals("a >= 2 and b in x", new ColumnFilter(ColumnFilter.Operator.AND, conditions).toString());
+    }
+}
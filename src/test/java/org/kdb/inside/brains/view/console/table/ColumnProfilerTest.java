@@ -0,0 +1,93 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnProfilerTest {
+    private static ColumnProfiler.Profile profile(Object vector, int rows) {
+        return ColumnProfiler.profile(IntStream.range(0, rows).toArray(), QColumn.of(vector));
+    }
+
+    @Test
+    void longs() {
+        final long[] values = new long[3_000_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 10 == 0 ? Long.MIN_VALUE : i % 1000;
+        }
+
+        final ColumnProfiler.Profile p = profile(values, values.length);
+        assertEquals(3_000_000, p.getCount());
+        assertEquals(300_000, p.getNulls());
+        assertEquals(900, p.getDistinct(), 900 * 0.03);
+        assertArrayEquals(new long[]{1}, (long[]) p.getMin());
+        assertArrayEquals(new long[]{999}, (long[]) p.getMax());
+        assertEquals(500, ((long[]) p.getQuantile(0.5))[0], 20);
+
+        final long[] histogram = p.getHistogram(10);
+        assertEquals(10, histogram.length);
+        assertEquals(2_700_000, IntStream.range(0, 10).mapToLong(i -> histogram[i]).sum());
+        for (long count : histogram) {
+            // the rank error of each bound is less than 1% of all values
+            assertEquals(270_000, count, 2_700_000 * 0.02);
+        }
+    }
+
+    @Test
+    void integralBins() {
+        final ColumnProfiler.Profile p = profile(new boolean[]{true, false, true, true}, 4);
+        assertArrayEquals(new long[]{1, 3}, p.getHistogram(16));
+        assertEquals(2, p.getDistinct());
+    }
+
+    @Test
+    void temporals() {
+        final TemporalVector.Longs time = new TemporalVector.Longs(12, new long[]{30, 10, Long.MIN_VALUE, 20}, null);
+        final ColumnProfiler.Profile p = profile(time, 4);
+        assertEquals(1, p.getNulls());
+        assertArrayEquals(new long[]{10}, ((TemporalVector.Longs) p.getMin()).getValues());
+        assertArrayEquals(new long[]{30}, ((TemporalVector.Longs) p.getMax()).getValues());
+        assertArrayEquals(new long[]{20}, ((TemporalVector.Longs) p.getQuantile(0.5)).getValues());
+    }
+
+    @Test
+    void doubles() {
+        final ColumnProfiler.Profile p = profile(new double[]{2.5, Double.NaN, -1.0, 4.0}, 4);
+        assertEquals(1, p.getNulls());
+        assertEquals(3, p.getDistinct());
+        assertArrayEquals(new double[]{-1.0}, (double[]) p.getMin());
+        assertArrayEquals(new double[]{4.0}, (double[]) p.getMax());
+        assertArrayEquals(new double[]{2.5}, (double[]) p.getQuantile(0.5));
+    }
+
+    @Test
+    void symbols() {
+        final SymbolVector sym = new SymbolVector(new int[]{0, 1, 0, 2, 1, 0, 3}, new String[]{"b", "a", "c", ""});
+        final ColumnProfiler.Profile p = profile(sym, 7);
+        assertEquals(1, p.getNulls());
+        assertEquals(3, p.getDistinct());
+        assertArrayEquals(new String[]{"a"}, (String[]) p.getMin());
+        assertArrayEquals(new String[]{"c"}, (String[]) p.getMax());
+        assertFalse(p.hasQuantiles());
+
+        final List<ColumnProfiler.Top> top = p.getTop(2);
+        assertEquals(2, top.size());
+        assertEquals("b", top.get(0).getValue());
+        assertEquals(3, top.get(0).getCount());
+        assertEquals("a", top.get(1).getValue());
+    }
+
+    @Test
+    void objects() {
+        final ColumnProfiler.Profile p = profile(new Object[]{"x".toCharArray(), "y".toCharArray(), "x".toCharArray()}, 3);
+        assertEquals(0, p.getNulls());
+        assertEquals(2, p.getDistinct());
+        assertNull(p.getMin());
+        assertNull(p.getQuantile(0.5));
+    }
+}
@@ -0,0 +1,120 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+import org.junit.jupiter.api.Test;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+import org.kdb.inside.brains.view.console.ConsoleOptions;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GroupByTest {
+    private static final List<String> NAMES = List.of("sym", "time", "size", "price");
+
+    private static final long MINUTE = 60_000_000_000L;
+
+    private static Object[] columns() {
+        final SymbolVector sym = new SymbolVector(new int[]{0, 1, 0, 2, 1, 0}, new String[]{"b", "a", "c"});
+        final TemporalVector.Longs time = new TemporalVector.Longs(12, new long[]{0, MINUTE, 4 * MINUTE, 5 * MINUTE, 6 * MINUTE, 11 * MINUTE}, null);
+        final long[] size = {10, 20, 30, Long.MIN_VALUE, 50, 60};
+        final double[] price = {1.0, 2.0, 3.0, 4.0, Double.NaN, 6.0};
+        return new Object[]{sym, time, size, price};
+    }
+
+    private static Object execute(String by, String aggregate, String pivot) {
+        final Object[] columns = columns();
+        final GroupBy groupBy = GroupBy.parse(by, aggregate, pivot, NAMES);
+        return groupBy.execute(i -> QColumn.of(columns[i]), IntStream.range(0, 6).toArray(), new KdbOutputFormatter(new ConsoleOptions()));
+    }
+
+    private static Object[] values(Object table) {
+        return ((c.Flip) table).y;
+    }
+
+    @Test
+    void bySymbol() {
+        final c.Dict res = (c.Dict) execute("sym", "sum size, avg price, count i, last time", "");
+
+        assertArrayEquals(new String[]{"a", "b", "c"}, (String[]) values(res.x)[0]);
+
+        final Object[] values = values(res.y);
+        assertArrayEquals(new String[]{"size", "price", "count", "time"}, ((c.Flip) res.y).x);
+        assertArrayEquals(new long[]{70, 100, 0}, (long[]) values[0]);
+        assertArrayEquals(new double[]{2.0, 10.0 / 3, 4.0}, (double[]) values[1]);
+        assertArrayEquals(new long[]{2, 3, 1}, (long[]) values[2]);
+        assertArrayEquals(new long[]{6 * MINUTE, 11 * MINUTE, 5 * MINUTE}, ((TemporalVector.Longs) values[3]).getValues());
+    }
+
+    @Test
+    void byBuckets() {
+        final c.Dict res = (c.Dict) execute("0D00:05 xbar time", "max price, min size", "");
+
+        assertArrayEquals(new long[]{0, 5 * MINUTE, 10 * MINUTE}, ((TemporalVector.Longs) values(res.x)[0]).getValues());
+        assertArrayEquals(new double[]{3.0, 4.0, 6.0}, (double[]) values(res.y)[0]);
+        assertArrayEquals(new long[]{10, 50, 60}, (long[]) values(res.y)[1]);
+    }
+
+    @Test
+    void byComposite() {
+        final c.Dict res = (c.Dict) execute("sym, 0D00:05 xbar time", "count", "");
+
+        assertArrayEquals(new String[]{"a", "a", "b", "b", "c"}, (String[]) values(res.x)[0]);
+        assertArrayEquals(new long[]{0, 5 * MINUTE, 0, 10 * MINUTE, 5 * MINUTE}, ((TemporalVector.Longs) values(res.x)[1]).getValues());
+        assertArrayEquals(new long[]{1, 1, 2, 1, 1}, (long[]) values(res.y)[0]);
+    }
+
+    @Test
+    void noKeys() {
+        final c.Flip res = (c.Flip) execute("", "sum size, first price", "");
+        assertArrayEquals(new long[]{170}, (long[]) res.y[0]);
+        assertArrayEquals(new double[]{1.0}, (double[]) res.y[1]);
+    }
+
+    @Test
+    void pivot() {
+        final c.Dict res = (c.Dict) execute("0D00:05 xbar time", "sum size", "sym");
+
+        assertArrayEquals(new String[]{"a", "b", "c"}, ((c.Flip) res.y).x);
+        final Object[] values = values(res.y);
+        assertArrayEquals(new long[]{20, 50, Long.MIN_VALUE}, (long[]) values[0]);
+        assertArrayEquals(new long[]{40, Long.MIN_VALUE, 60}, (long[]) values[1]);
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0, Long.MIN_VALUE}, (long[]) values[2]);
+    }
+
+    @Test
+    void densify() {
+        // codes of a small range are mapped through an array, others are hashed
+        for (long step : new long[]{31, 1_000_000_007L}) {
+            final Random random = new Random(7);
+            final long[] codes = new long[300_000];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = i % 100 == 0 ? Long.MIN_VALUE : random.nextInt(1000) * step - 5000;
+            }
+
+            final GroupBy.Groups groups = GroupBy.densify(codes);
+            assertEquals(1001, groups.count);
+            for (int i = 0; i < codes.length; i++) {
+                final int first = groups.firsts[groups.ids[i]];
+                assertEquals(codes[first], codes[i]);
+                assertTrue(first <= i);
+            }
+        }
+    }
+
+    @Test
+    void errors() {
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("sym", "sum volume", "", NAMES));
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("sym", "median size", "", NAMES));
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("sym", "sum size, count", "time", NAMES));
+
+        final Object[] columns = columns();
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("sym", "sum sym", "", NAMES).check(i -> QColumn.of(columns[i])));
+        assertThrows(IllegalArgumentException.class, () -> GroupBy.parse("5 xbar sym", "count", "", NAMES).check(i -> QColumn.of(columns[i])));
+        assertEquals("select sum size by sym, 0D00:05 xbar time", GroupBy.parse("sym, 0D00:05 xbar time", "sum size", "", NAMES).toString());
+    }
+}
@@ -0,0 +1,42 @@
+package org.kdb.inside.brains.view.console.table;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HyperLogLogTest {
+    private static HyperLogLog distinct(long from, long to) {
+        final HyperLogLog hll = new HyperLogLog();
+        for (long i = from; i < to; i++) {
+            hll.add(HyperLogLog.hash(i));
+        }
+        return hll;
+    }
+
+    @Test
+    void small() {
+        assertEquals(0, new HyperLogLog().estimate());
+        assertEquals(10, distinct(0, 10).estimate());
+
+        final HyperLogLog hll = distinct(0, 100);
+        hll.merge(distinct(50, 100));
+        assertEquals(100, hll.estimate());
+    }
+
+    @Test
+    void big() {
+        for (int count : new int[]{10_000, 100_000, 1_000_000}) {
+            final long estimate = distinct(0, count).estimate();
+            assertTrue(Math.abs(estimate - count) < count * 0.03, "Estimate " + estimate + " of " + count);
+        }
+    }
+
+    @Test
+    void merge() {
+        final HyperLogLog hll = distinct(0, 500_000);
+        hll.merge(distinct(250_000, 750_000));
+        final long estimate = hll.estimate();
+        assertTrue(Math.abs(estimate - 750_000) < 750_000 * 0.03, "Estimate " + estimate);
+    }
+}
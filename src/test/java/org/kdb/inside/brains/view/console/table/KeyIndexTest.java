@@ -0,0 +1,76 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import org.junit.jupiter.api.Test;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+import org.kdb.inside.brains.view.console.ConsoleOptions;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyIndexTest {
+    private static KeyIndex index(Object... keys) {
+        final QColumn[] views = new QColumn[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            views[i] = QColumn.of(keys[i]);
+        }
+        return KeyIndex.build(views, views[0].size(), new KdbOutputFormatter(new ConsoleOptions()));
+    }
+
+    @Test
+    void single() {
+        final KeyIndex index = index(new long[]{5, 3, 9, 3});
+        assertEquals(1, index.getKeysCount());
+        assertEquals(0, index.find("5"));
+        assertEquals(1, index.find(" 3j "));
+        assertEquals(2, index.find("9"));
+        assertEquals(-1, index.find("4"));
+    }
+
+    @Test
+    void composite() {
+        final SymbolVector sym = new SymbolVector(new int[]{0, 1, 0, 1}, new String[]{"a", "b"});
+        final TemporalVector.Ints date = new TemporalVector.Ints(14, new int[]{0, 0, 1, 1}, null);
+        final KeyIndex index = index(sym, date, new double[]{1.5, 2.5, -0.0, 4.0});
+
+        assertEquals(0, index.find("a, 2000.01.01, 1.5"));
+        assertEquals(1, index.find("`b, 2000.01.01, 2.5"));
+        assertEquals(2, index.find(List.of("a", "2000.01.02", "0")));
+        assertEquals(-1, index.find("b, 2000.01.02, 1.5"));
+        assertEquals(-1, index.find("c, 2000.01.02, 4"));
+    }
+
+    @Test
+    void objects() {
+        final KeyIndex index = index(new String[]{"x", "y"}, new Object[]{"ab".toCharArray(), "cd".toCharArray()}, new boolean[]{true, false});
+        assertEquals(1, index.find("y, \"cd\", 0b"));
+        assertEquals(0, index.find("`x, ab, 1b"));
+        assertEquals(-1, index.find("x, cd, 1b"));
+    }
+
+    @Test
+    void big() {
+        final int count = 1_000_000;
+        final long[] ids = new long[count];
+        final int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i / 4;
+            codes[i] = i % 4;
+        }
+        final KeyIndex index = index(ids, new SymbolVector(codes, new String[]{"q", "w", "e", "r"}));
+        for (int i = 0; i < count; i += 997) {
+            assertEquals(i, index.find(ids[i] + ", " + "qwer".charAt(i % 4)));
+        }
+        assertEquals(-1, index.find(count + ", q"));
+    }
+
+    @Test
+    void errors() {
+        final KeyIndex index = index(new long[]{1, 2}, new int[]{3, 4});
+        assertThrows(IllegalArgumentException.class, () -> index.find("1"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("1, 2, 3"));
+        assertThrows(IllegalArgumentException.class, () -> index.find("1, x"));
+    }
+}
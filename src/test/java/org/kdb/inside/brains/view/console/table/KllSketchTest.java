@@ -0,0 +1,58 @@
+package org.kdb.inside.brains.view.console.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KllSketchTest {
+    private static KllSketch sketch(int from, int to) {
+        final KllSketch sketch = new KllSketch();
+        for (int i = from; i < to; i++) {
+            sketch.add(i);
+        }
+        return sketch;
+    }
+
+    @Test
+    void small() {
+        assertTrue(Double.isNaN(new KllSketch().quantile(0.5)));
+
+        final KllSketch sketch = sketch(1, 101);
+        assertEquals(100, sketch.getCount());
+        assertEquals(1, sketch.quantile(0));
+        assertEquals(50, sketch.quantile(0.5));
+        assertEquals(100, sketch.quantile(1));
+        assertEquals(0.25, sketch.cdf(25));
+    }
+
+    @Test
+    void big() {
+        // shuffled values, so compactions see them in a random order
+        final Random random = new Random(3);
+        final int count = 1_000_000;
+        final KllSketch sketch = new KllSketch();
+        for (int i = 0; i < count; i++) {
+            sketch.add(random.nextInt(count));
+        }
+
+        assertEquals(count, sketch.getCount());
+        for (double rank : new double[]{0.01, 0.25, 0.5, 0.75, 0.99}) {
+            final double q = sketch.quantile(rank);
+            assertTrue(Math.abs(q - rank * count) < count * 0.02, "Quantile " + q + " of " + rank);
+            assertEquals(rank, sketch.cdf(rank * count), 0.02);
+        }
+    }
+
+    @Test
+    void merge() {
+        final KllSketch sketch = sketch(0, 300_000);
+        sketch.merge(sketch(300_000, 1_000_000));
+        sketch.merge(new KllSketch());
+
+        assertEquals(1_000_000, sketch.getCount());
+        assertEquals(500_000, sketch.quantile(0.5), 20_000);
+        assertEquals(0.3, sketch.cdf(300_000), 0.02);
+    }
+}
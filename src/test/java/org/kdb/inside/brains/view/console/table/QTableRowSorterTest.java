@@ -0,0 +1,71 @@
+package org.kdb.inside.brains.view.console.table;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class QTableRowSorterTest {
+    private static int[] expected(QColumn column, int size) {
+        return IntStream.range(0, size).boxed().sorted(Comparator.comparing(i -> i, column::compare)).mapToInt(i -> i).toArray();
+    }
+
+    private static int[] rows(int size) {
+        return IntStream.range(0, size).toArray();
+    }
+
+    @Test
+    void sortByComparator() {
+        final Random random = new Random(0);
+        for (int size : new int[]{0, 1, 10, 100, QTableRowSorter.PARALLEL_CHUNK_SIZE * 3 + 7}) {
+            final long[] values = random.longs(size, 0, 20).toArray();
+            final QColumn column = QColumn.of(values);
+
+            final int[] rows = rows(size);
+            QTableRowSorter.sort(rows, column::compare);
+            assertArrayEquals(expected(column, size), rows);
+        }
+    }
+
+    @Test
+    void sortByKeys() {
+        final Random random = new Random(0);
+        for (int size : new int[]{0, 1, 10, 100, QTableRowSorter.PARALLEL_CHUNK_SIZE * 3 + 7}) {
+            final double[] values = random.doubles(size).map(v -> v < 0.1 ? Double.NaN : Math.floor((v - 0.5) * 20)).toArray();
+            final QColumn column = QColumn.of(values);
+
+            final int[] rows = rows(size);
+            QTableRowSorter.sort(column.toSortKeys(), rows);
+            assertArrayEquals(expected(column, size), rows);
+        }
+    }
+
+    @Test
+    void nullsFirst() {
+        final int[] rows = rows(4);
+        QTableRowSorter.sort(QColumn.of(new double[]{1, Double.NaN, -1, Double.NaN}).toSortKeys(), rows);
+        assertArrayEquals(new int[]{1, 3, 2, 0}, rows);
+
+        final int[] rows2 = rows(3);
+        final QColumn ints = QColumn.of(new int[]{5, Integer.MIN_VALUE, -5});
+        QTableRowSorter.sort(rows2, ints::compare);
+        assertArrayEquals(new int[]{1, 2, 0}, rows2);
+        assertArrayEquals(new long[]{5, Integer.MIN_VALUE, -5}, Arrays.copyOf(ints.toSortKeys(), 3));
+    }
+
+    @Test
+    void unsignedBytes() {
+        final QColumn.ByteColumn bytes = (QColumn.ByteColumn) QColumn.of(new byte[]{(byte) 0xff, 1, (byte) 0x80});
+        final int[] rows = rows(3);
+        QTableRowSorter.sort(bytes.toSortKeys(), rows);
+        assertArrayEquals(new int[]{1, 2, 0}, rows);
+        assertArrayEquals(rows, expected(bytes, 3));
+
+        // values are the same as their order
+        assertArrayEquals(new double[]{255, 1, 128}, IntStream.range(0, 3).mapToDouble(bytes::getDouble).toArray());
+    }
+}
@@ -0,0 +1,39 @@
+package org.kdb.inside.brains.view.console.table;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QTableSearchTest {
+    private static QTableSearch.Query plain(String text) {
+        return new QTableSearch.Query(text, false, false, false);
+    }
+
+    @Test
+    void narrows() {
+        assertTrue(plain("abc").narrows(plain("ab")));
+        assertTrue(plain("xABx").narrows(plain("ab")));
+        assertTrue(plain("ab").narrows(plain("ab")));
+        assertFalse(plain("ab").narrows(plain("abc")));
+        assertFalse(plain("abc").narrows(null));
+
+        assertTrue(new QTableSearch.Query("abc", true, false, false).narrows(new QTableSearch.Query("ab", true, false, false)));
+        assertFalse(new QTableSearch.Query("Abc", true, false, false).narrows(new QTableSearch.Query("ab", true, false, false)));
+        assertFalse(new QTableSearch.Query("abc", true, false, false).narrows(plain("ab")));
+        assertFalse(new QTableSearch.Query("abc", false, true, false).narrows(plain("ab")));
+        assertFalse(new QTableSearch.Query("abc", false, false, true).narrows(plain("ab")));
+    }
+
+    @Test
+    void matcher() {
+        assertTrue(plain("lo w").newMatcher().test("Hello World"));
+        assertFalse(new QTableSearch.Query("lo w", true, false, false).newMatcher().test("Hello World"));
+        assertTrue(new QTableSearch.Query("world", false, true, false).newMatcher().test("Hello World"));
+        assertFalse(new QTableSearch.Query("wor", false, true, false).newMatcher().test("Hello World"));
+        assertTrue(new QTableSearch.Query("a.c", false, true, false).newMatcher().test("x a.c"));
+        assertFalse(new QTableSearch.Query("a.c", false, true, false).newMatcher().test("x abc"));
+        assertTrue(new QTableSearch.Query("h.l+o", false, false, true).newMatcher().test("Hello"));
+        assertFalse(new QTableSearch.Query("h(", false, false, true).newMatcher().test("h("));
+    }
+}
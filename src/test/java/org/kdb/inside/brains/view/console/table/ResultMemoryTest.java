@@ -0,0 +1,49 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultMemoryTest {
+    @Test
+    void primitives() {
+        assertEquals(16 + 8000, ResultMemory.estimate(new long[1000]));
+        assertEquals(16 + 4000, ResultMemory.estimate(new int[1000]));
+        assertEquals(16 + 1000, ResultMemory.estimate(new boolean[1000]));
+        assertEquals(16 + 8, ResultMemory.estimate(new byte[3]));
+        assertEquals(16 + 16 + 8000, ResultMemory.estimate(new TemporalVector.Longs(12, new long[1000], null)));
+    }
+
+    @Test
+    void symbols() {
+        final int count = 1_000_000;
+        final String[] few = new String[count];
+        final String[] unique = new String[count];
+        for (int i = 0; i < count; i++) {
+            few[i] = ("s" + i % 10).intern();
+            unique[i] = "u" + (1_000_000 + i);
+        }
+
+        // references and 10 strings only
+        final long refs = 16 + 4L * count;
+        assertTrue(ResultMemory.estimate(few) - refs < 1000);
+        // references and all strings
+        final long strings = ResultMemory.estimate(unique) - refs;
+        assertTrue(strings > 40L * count && strings < 50L * count, "Strings: " + strings);
+
+        final long vector = ResultMemory.estimate(new SymbolVector(new int[count], new String[]{"a", "b"}));
+        assertTrue(vector - 4L * count < 200);
+    }
+
+    @Test
+    void tables() {
+        final c.Flip flip = new c.Flip(new c.Dict(new String[]{"a", "b"}, new Object[]{new double[100], new Object[]{"ab".toCharArray(), "cd".toCharArray()}}));
+        final long columns = ResultMemory.estimate(new double[100]) + ResultMemory.estimate(new Object[]{"ab".toCharArray(), "cd".toCharArray()});
+        assertTrue(ResultMemory.estimate(flip) > columns);
+        assertTrue(ResultMemory.estimate(new c.Dict(flip, flip)) > 2 * columns);
+        assertEquals(16 + 8 + 2 * 24, ResultMemory.estimate(new Object[]{"ab".toCharArray(), "cd".toCharArray()}));
+    }
+}
@@ -0,0 +1,117 @@
+package org.kdb.inside.brains.view.console.table;
+
+import kx.SymbolVector;
+import kx.c;
+import org.junit.jupiter.api.Test;
+import org.kdb.inside.brains.view.KdbOutputFormatter;
+import org.kdb.inside.brains.view.console.ConsoleOptions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TableDiffTest {
+    private static final KdbOutputFormatter FORMATTER = new KdbOutputFormatter(new ConsoleOptions());
+
+    private static TableDiff.Columns table(String[] names, int keys, Object... vectors) {
+        final boolean[] flags = new boolean[names.length];
+        final QColumn[] views = new QColumn[names.length];
+        for (int i = 0; i < names.length; i++) {
+            flags[i] = i < keys;
+            views[i] = QColumn.of(vectors[i]);
+        }
+        return new TableDiff.Columns(views[0].size(), names, flags, views);
+    }
+
+    private static TableDiff.Columns keyed(long[] ids, Object... values) {
+        final String[] names = {"id", "sym", "price"};
+        return table(names, 1, ids, values[0], values[1]);
+    }
+
+    @Test
+    void keyed() {
+        final TableDiff.Columns left = keyed(new long[]{1, 2, 3, 4},
+                new SymbolVector(new int[]{0, 1, 0, 1}, new String[]{"a", "b"}), new double[]{1.0, 2.0, 3.0, 4.0});
+        final TableDiff.Columns right = keyed(new long[]{5, 4, 3, 1},
+                new String[]{"e", "b", "c", "a"}, new double[]{5.0, 4.0, 3.0, 1.5});
+
+        final TableDiff diff = TableDiff.compare(left, right, FORMATTER, 1000);
+        assertEquals(4, diff.getRowCount());
+        assertEquals(1, diff.getUnchanged());
+
+        final c.Dict table = (c.Dict) diff.getTable();
+        final c.Flip keys = (c.Flip) table.x;
+        final c.Flip values = (c.Flip) table.y;
+        assertArrayEquals(new String[]{"id"}, keys.x);
+        assertArrayEquals(new String[]{TableDiff.STATUS_COLUMN, "sym", "price"}, values.x);
+        assertArrayEquals(new long[]{5, 3, 1, 2}, (long[]) keys.y[0]);
+        assertArrayEquals(new String[]{"added", "changed", "changed", "removed"}, (String[]) values.y[0]);
+        assertArrayEquals(new String[]{"e", "c", "a", "b"}, (String[]) values.y[1]);
+        assertArrayEquals(new double[]{5.0, 3.0, 1.5, 2.0}, (double[]) values.y[2]);
+
+        assertEquals(TableDiff.Status.ADDED, diff.getStatus(0));
+        assertEquals(TableDiff.Status.REMOVED, diff.getStatus(3));
+
+        // only the symbol is changed in the 2nd row and the price in the 3rd one, keys and statuses are never changed
+        assertFalse(diff.isChanged(0, 2));
+        assertTrue(diff.isChanged(1, 2));
+        assertFalse(diff.isChanged(1, 3));
+        assertFalse(diff.isChanged(2, 2));
+        assertTrue(diff.isChanged(2, 3));
+        assertFalse(diff.isChanged(2, 0));
+        assertFalse(diff.isChanged(2, 1));
+        assertEquals("a", diff.formatOldValue(FORMATTER, 1, 2));
+    }
+
+    @Test
+    void rows() {
+        final String[] names = {"a", "b"};
+        final TableDiff.Columns left = table(names, 0, new int[]{1, 2, 2, 3}, new Object[]{"x".toCharArray(), "y".toCharArray(), "y".toCharArray(), "z".toCharArray()});
+        final TableDiff.Columns right = table(names, 0, new long[]{2, 3, 4}, new Object[]{"y".toCharArray(), "z".toCharArray(), "w".toCharArray()});
+
+        final TableDiff diff = TableDiff.compare(left, right, FORMATTER, 1000);
+        assertEquals(2, diff.getUnchanged());
+        assertEquals(3, diff.getRowCount());
+
+        final c.Flip table = (c.Flip) diff.getTable();
+        assertArrayEquals(new String[]{TableDiff.STATUS_COLUMN, "a", "b"}, table.x);
+        assertArrayEquals(new String[]{"added", "removed", "removed"}, (String[]) table.y[0]);
+        // ints and longs are concatenated into a general list
+        assertArrayEquals(new Object[]{4L, 1, 2}, (Object[]) table.y[1]);
+        assertFalse(diff.isChanged(0, 1));
+    }
+
+    @Test
+    void partitions() {
+        final int count = 100_000;
+        final long[] ids = new long[count];
+        final double[] left = new double[count];
+        final double[] right = new double[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+            left[i] = i;
+            right[i] = i % 1000 == 0 ? -i : i;
+        }
+
+        final String[] names = {"id", "v"};
+        final TableDiff diff = TableDiff.compare(table(names, 1, ids, left), table(names, 1, ids, right), FORMATTER, 10_000);
+        // -0.0 is the same as 0.0
+        assertEquals(99, diff.getRowCount());
+        assertEquals(count - 99, diff.getUnchanged());
+
+        final long[] changed = (long[]) ((c.Flip) ((c.Dict) diff.getTable()).x).y[0];
+        for (int i = 0; i < changed.length; i++) {
+            assertEquals(1000L * (i + 1), changed[i]);
+            assertEquals(TableDiff.Status.CHANGED, diff.getStatus(i));
+            assertTrue(diff.isChanged(i, 2));
+        }
+    }
+
+    @Test
+    void errors() {
+        final TableDiff.Columns a = table(new String[]{"a"}, 0, new long[]{1});
+        final TableDiff.Columns b = table(new String[]{"b"}, 0, new long[]{1});
+        assertThrows(IllegalArgumentException.class, () -> TableDiff.compare(a, b, FORMATTER, 1000));
+
+        final TableDiff.Columns paged = new TableDiff.Columns(1, new String[]{"a"}, new boolean[1], new QColumn[1]);
+        assertThrows(IllegalArgumentException.class, () -> TableDiff.compare(a, paged, FORMATTER, 1000));
+    }
+}
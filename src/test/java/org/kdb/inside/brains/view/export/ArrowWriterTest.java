@@ -0,0 +1,191 @@
+package org.kdb.inside.brains.view.export;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArrowWriterTest {
+    @TempDir
+    Path root;
+
+    private Path write(c.Flip flip, int batchRows) throws IOException {
+        final Path file = root.resolve("t.arrow");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            assertTrue(new ArrowWriter(flip, batchRows, o -> o instanceof long[] ? Arrays.toString((long[]) o) : String.valueOf(o)).write(channel, f -> {
+            }, () -> false));
+        }
+        return file;
+    }
+
+    private static c.Flip table(String[] names, Object... columns) {
+        return new c.Flip(new c.Dict(names, columns));
+    }
+
+    private static Object column(c.Flip flip, String name) {
+        return flip.y[Arrays.asList(flip.x).indexOf(name)];
+    }
+
+    private static void assertTemporal(int type, Object expected, Object actual) {
+        final TemporalVector vector = (TemporalVector) actual;
+        assertEquals(type, vector.getType());
+        if (vector instanceof TemporalVector.Longs) {
+            assertArrayEquals((long[]) expected, ((TemporalVector.Longs) vector).getValues());
+        } else if (vector instanceof TemporalVector.Ints) {
+            assertArrayEquals((int[]) expected, ((TemporalVector.Ints) vector).getValues());
+        } else {
+            assertArrayEquals((double[]) expected, ((TemporalVector.Doubles) vector).getValues());
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        final UUID uuid = UUID.fromString("01020304-0506-0708-090a-0b0c0d0e0f10");
+        final String[] names = {"b", "x", "h", "i", "j", "e", "f", "c", "s", "sv", "g", "str", "bin", "p", "m", "d", "z", "n", "u", "v", "t"};
+        final c.Flip flip = table(names,
+                new boolean[]{true, false, true},
+                new byte[]{1, (byte) 0xff, 0},
+                new short[]{1, Short.MIN_VALUE, 3},
+                new int[]{Integer.MIN_VALUE, 2, 3},
+                new long[]{1, 2, Long.MIN_VALUE},
+                new float[]{1.5f, Float.NaN, 2},
+                new double[]{Double.NaN, 2.5, 3},
+                new char[]{'a', 'b', ' '},
+                new String[]{"a", "", "b"},
+                new SymbolVector(new int[]{1, 0, 1}, new String[]{"", "z"}),
+                new UUID[]{uuid, null, uuid},
+                new Object[]{"ab".toCharArray(), "".toCharArray(), "\u00e9".toCharArray()},
+                new Object[]{new byte[]{1}, new byte[0], new byte[]{2, 3}},
+                new TemporalVector.Longs(12, new long[]{0, Long.MIN_VALUE, 5}, null),
+                new TemporalVector.Ints(13, new int[]{0, -1, Integer.MIN_VALUE}, null),
+                new TemporalVector.Ints(14, new int[]{0, Integer.MIN_VALUE, 8766}, null),
+                new TemporalVector.Doubles(new double[]{0.5, Double.NaN, -1.25}, null),
+                new TemporalVector.Longs(16, new long[]{1, Long.MIN_VALUE, -5}, null),
+                new TemporalVector.Ints(17, new int[]{1, Integer.MIN_VALUE, 1439}, null),
+                new TemporalVector.Ints(18, new int[]{59, Integer.MIN_VALUE, 0}, null),
+                new TemporalVector.Ints(19, new int[]{0, Integer.MIN_VALUE, 86_399_999}, null));
+
+        // two batches
+        final c.Flip read = ArrowReader.read(write(flip, 2));
+        assertArrayEquals(names, read.x);
+
+        assertArrayEquals(new boolean[]{true, false, true}, (boolean[]) column(read, "b"));
+        assertArrayEquals(new byte[]{1, (byte) 0xff, 0}, (byte[]) column(read, "x"));
+        assertArrayEquals(new short[]{1, Short.MIN_VALUE, 3}, (short[]) column(read, "h"));
+        assertArrayEquals(new int[]{Integer.MIN_VALUE, 2, 3}, (int[]) column(read, "i"));
+        assertArrayEquals(new long[]{1, 2, Long.MIN_VALUE}, (long[]) column(read, "j"));
+        assertArrayEquals(new float[]{1.5f, Float.NaN, 2}, (float[]) column(read, "e"));
+        assertArrayEquals(new double[]{Double.NaN, 2.5, 3}, (double[]) column(read, "f"));
+        assertArrayEquals(new char[]{'a', 'b', ' '}, (char[]) column(read, "c"));
+        assertArrayEquals(new String[]{"a", "", "b"}, (String[]) column(read, "s"));
+        assertArrayEquals(new String[]{"z", "", "z"}, (String[]) column(read, "sv"));
+        assertArrayEquals(new UUID[]{uuid, new UUID(0, 0), uuid}, (UUID[]) column(read, "g"));
+
+        final Object[] str = (Object[]) column(read, "str");
+        assertArrayEquals("ab".toCharArray(), (char[]) str[0]);
+        assertArrayEquals(new char[0], (char[]) str[1]);
+        assertArrayEquals("\u00e9".toCharArray(), (char[]) str[2]);
+
+        final Object[] bin = (Object[]) column(read, "bin");
+        assertArrayEquals(new byte[]{1}, (byte[]) bin[0]);
+        assertArrayEquals(new byte[]{2, 3}, (byte[]) bin[2]);
+
+        assertTemporal(12, new long[]{0, Long.MIN_VALUE, 5}, column(read, "p"));
+        assertTemporal(13, new int[]{0, -1, Integer.MIN_VALUE}, column(read, "m"));
+        assertTemporal(14, new int[]{0, Integer.MIN_VALUE, 8766}, column(read, "d"));
+        assertTemporal(15, new double[]{0.5, Double.NaN, -1.25}, column(read, "z"));
+        assertTemporal(16, new long[]{1, Long.MIN_VALUE, -5}, column(read, "n"));
+        assertTemporal(17, new int[]{1, Integer.MIN_VALUE, 1439}, column(read, "u"));
+        assertTemporal(18, new int[]{59, Integer.MIN_VALUE, 0}, column(read, "v"));
+        assertTemporal(19, new int[]{0, Integer.MIN_VALUE, 86_399_999}, column(read, "t"));
+    }
+
+    @Test
+    void layout() throws IOException {
+        // 1970.01.01D00:00 as unix nanos and a mixed list as text
+        final c.Flip flip = table(new String[]{"p", "l"},
+                new TemporalVector.Longs(12, new long[]{-ArrowFormat.EPOCH_NANOS}, null),
+                new Object[]{new long[]{1, 2}});
+        final Path file = write(flip, ArrowWriter.BATCH_ROWS);
+        assertTrue(ArrowReader.isArrowFile(file));
+
+        final byte[] bytes = Files.readAllBytes(file);
+        final ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals("ARROW1", new String(bytes, 0, 6));
+        assertEquals("ARROW1", new String(bytes, bytes.length - 6, 6));
+        assertEquals(ArrowFormat.CONTINUATION, b.getInt(8));
+        // metadata of the schema message is padded to 8 bytes
+        assertEquals(0, (8 + b.getInt(12)) % 8);
+
+        final c.Flip read = ArrowReader.read(file);
+        assertTemporal(12, new long[]{-ArrowFormat.EPOCH_NANOS}, column(read, "p"));
+        assertArrayEquals("[1, 2]".toCharArray(), (char[]) ((Object[]) column(read, "l"))[0]);
+
+        // the stream is the file without the magic and the footer
+        final int footer = b.getInt(bytes.length - 10);
+        final Path stream = root.resolve("t.arrows");
+        Files.write(stream, Arrays.copyOfRange(bytes, 8, bytes.length - 10 - footer));
+        assertFalse(ArrowReader.isArrowFile(stream));
+        assertTemporal(12, new long[]{-ArrowFormat.EPOCH_NANOS}, column(ArrowReader.read(stream), "p"));
+
+        // empty table
+        final c.Flip empty = ArrowReader.read(write(table(new String[]{"a"}, (Object) new long[0]), 10));
+        assertArrayEquals(new long[0], (long[]) empty.y[0]);
+    }
+
+    @Test
+    void flatBuffers() {
+        final ArrowFormat.Builder b = new ArrowFormat.Builder();
+        final int name = b.createString("name\u00e9");
+        final int structs = b.createStructs(new long[]{1, 2, 3, 4}, 2);
+        b.startTable(0);
+        final int child = b.endTable();
+        final int children = b.createOffsets(child, child);
+        b.startTable(6);
+        b.addOffset(0, name);
+        b.addByte(1, (byte) 7);
+        b.addLong(2, -5);
+        b.addOffset(3, structs);
+        b.addOffset(5, children);
+        final byte[] bytes = b.finish(b.endTable());
+        assertEquals(0, bytes.length % 8);
+
+        final ArrowFormat.Table t = ArrowFormat.Table.root(ByteBuffer.wrap(bytes));
+        assertEquals("name\u00e9", t.getString(0));
+        assertEquals(7, t.getByte(1, (byte) 0));
+        assertEquals(-5, t.getLong(2, 0));
+        assertEquals(2, t.getVectorLength(3));
+        assertEquals(3, t.getStructLong(3, 1, 2, 0));
+        assertEquals(4, t.getStructLong(3, 1, 2, 1));
+        assertFalse(t.has(4));
+        assertEquals(9, t.getInt(4, 9));
+        assertEquals(2, t.getVectorLength(5));
+        assertFalse(t.getTable(5, 1).has(0));
+        assertNull(t.getTable(4));
+    }
+
+    @Test
+    void lz4() {
+        // "abc" and a match of 9 bytes at distance 3, the last literals "x" and an uncompressed block "yz"
+        final byte[] frame = {
+                0x04, 0x22, 0x4D, 0x18, 0x60, 0x40, 0x00,
+                8, 0, 0, 0, 0x35, 'a', 'b', 'c', 3, 0, 0x10, 'x',
+                2, 0, 0, (byte) 0x80, 'y', 'z',
+                0, 0, 0, 0
+        };
+        assertEquals("abcabcabcabcxyz", new String(ArrowReader.decompressLz4(ByteBuffer.wrap(frame), 15)));
+    }
+}
@@ -0,0 +1,67 @@
+package org.kdb.inside.brains.view.export;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvWriterTest {
+    private static String write(List<String> header, List<IntFunction<String>> columns, int rows, boolean parallel) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(new CsvWriter(header, columns, rows, parallel).write(Channels.newChannel(out), f -> {
+        }, () -> false));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void escape() {
+        final StringBuilder b = new StringBuilder();
+        CsvWriter.escape("plain", b);
+        b.append('|');
+        CsvWriter.escape("a\r\nb\nc", b);
+        b.append('|');
+        CsvWriter.escape("x,\"y\"", b);
+        b.append('|');
+        CsvWriter.escape("it's\nok", b);
+        assertEquals("plain|a b c|\"x,\"\"y\"\"\"|\"it's\nok\"", b.toString());
+    }
+
+    @Test
+    void small() throws IOException {
+        final String[] names = {"a", "b,c", "\u0436"};
+        final List<IntFunction<String>> columns = List.of(i -> String.valueOf(i), i -> names[i], i -> i == 1 ? null : "v");
+        assertEquals("x,y\n0,a,v\n1,\"b,c\",\n2,\u0436,v", write(List.of("x", "y"), columns, 3, true));
+        assertEquals("0,a,v\n1,\"b,c\",\n2,\u0436,v", write(null, columns, 3, false));
+        assertEquals("x,y", write(List.of("x", "y"), columns, 0, true));
+    }
+
+    @Test
+    void big() throws IOException {
+        final int rows = 100_000;
+        final List<IntFunction<String>> columns = List.of(String::valueOf, i -> "s" + (i % 7));
+
+        final StringBuilder expected = new StringBuilder("id,sym");
+        for (int i = 0; i < rows; i++) {
+            expected.append('\n').append(i).append(",s").append(i % 7);
+        }
+        assertEquals(expected.toString(), write(List.of("id", "sym"), columns, rows, true));
+        assertEquals(expected.toString(), write(List.of("id", "sym"), columns, rows, false));
+    }
+
+    @Test
+    void canceled() throws IOException {
+        final AtomicInteger chunks = new AtomicInteger();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final CsvWriter writer = new CsvWriter(null, List.of(String::valueOf), 1_000_000, true);
+        assertFalse(writer.write(Channels.newChannel(out), f -> chunks.incrementAndGet(), () -> chunks.get() == 2));
+        assertEquals(2, chunks.get());
+        assertTrue(out.size() < 1_000_000);
+    }
+}
@@ -0,0 +1,163 @@
+package org.kdb.inside.brains.view.export;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExcelWriterTest {
+    private static Map<String, String> write(ExcelWriter writer) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(writer.write(out, f -> {
+        }, () -> false));
+
+        final Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+                final String xml = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                // each part must be a well-formed XML
+                DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+                entries.put(e.getName(), xml);
+            }
+        }
+        return entries;
+    }
+
+    private static String sheetData(String xml) {
+        return xml.substring(xml.indexOf("<sheetData>") + 11, xml.indexOf("</sheetData>"));
+    }
+
+    @Test
+    void serials() {
+        assertEquals(ExcelWriter.Style.DATETIME, ExcelWriter.temporalStyle(12));
+        assertEquals(ExcelWriter.Style.DATE, ExcelWriter.temporalStyle(14));
+        assertNull(ExcelWriter.temporalStyle(7));
+
+        // 2000.01.01 and 2024.02.29
+        assertEquals(36526, ExcelWriter.temporalSerial(14, 0));
+        assertEquals(45351, ExcelWriter.temporalSerial(14, 8825));
+        // 1999.12.31D12:00:00
+        assertEquals(36525.5, ExcelWriter.temporalSerial(12, -43_200_000_000_000L));
+        assertEquals(36526.25, ExcelWriter.datetimeSerial(0.25));
+        // 2001.02m and 1999.12m
+        assertEquals(36923, ExcelWriter.temporalSerial(13, 13));
+        assertEquals(36495, ExcelWriter.temporalSerial(13, -1));
+        assertEquals(0.5, ExcelWriter.temporalSerial(19, 43_200_000));
+        assertEquals(0.75, ExcelWriter.temporalSerial(17, 1080));
+        assertEquals(0.5, ExcelWriter.temporalSerial(18, 43_200));
+        assertEquals(1.5, ExcelWriter.temporalSerial(16, 129_600_000_000_000L));
+
+        // out of Excel dates
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(14, Integer.MAX_VALUE)));
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(14, -40000)));
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(13, Integer.MAX_VALUE)));
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(12, Long.MAX_VALUE)));
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(17, Integer.MAX_VALUE)));
+        assertTrue(Double.isNaN(ExcelWriter.datetimeSerial(Double.POSITIVE_INFINITY)));
+        assertTrue(Double.isNaN(ExcelWriter.temporalSerial(16, -1)));
+    }
+
+    @Test
+    void names() {
+        assertEquals("A", ExcelWriter.columnName(0));
+        assertEquals("Z", ExcelWriter.columnName(25));
+        assertEquals("AA", ExcelWriter.columnName(26));
+        assertEquals("AZ", ExcelWriter.columnName(51));
+        assertEquals("XFD", ExcelWriter.columnName(16383));
+
+        final StringBuilder b = new StringBuilder();
+        ExcelWriter.escape("a<b>&\"c\"\u0001\td", b);
+        assertEquals("a&lt;b&gt;&amp;&quot;c&quot;\td", b.toString());
+    }
+
+    @Test
+    void cells() throws Exception {
+        final List<ExcelWriter.Column> columns = List.of(
+                (i, cells) -> cells.number(i == 1 ? Double.NaN : i * 1.5, ExcelWriter.Style.GENERAL),
+                (i, cells) -> cells.number(36526 + i, ExcelWriter.Style.DATE),
+                (i, cells) -> cells.bool(i == 0),
+                (i, cells) -> cells.text(i == 0 ? " a<b " : null)
+        );
+        final Map<String, String> entries = write(new ExcelWriter("Data", List.of("n", "d", "b", "s"), columns, 2, true, ExcelWriter.MAX_SHEET_ROWS));
+        assertEquals(List.of("[Content_Types].xml", "_rels/.rels", "xl/workbook.xml", "xl/_rels/workbook.xml.rels", "xl/styles.xml", "xl/worksheets/sheet1.xml"), List.copyOf(entries.keySet()));
+        assertTrue(entries.get("xl/workbook.xml").contains("<sheet name=\"Data\" sheetId=\"1\" r:id=\"rId1\"/>"));
+
+        assertEquals("<row r=\"1\">" +
+                        "<c r=\"A1\" t=\"inlineStr\" s=\"1\"><is><t>n</t></is></c>" +
+                        "<c r=\"B1\" t=\"inlineStr\" s=\"1\"><is><t>d</t></is></c>" +
+                        "<c r=\"C1\" t=\"inlineStr\" s=\"1\"><is><t>b</t></is></c>" +
+                        "<c r=\"D1\" t=\"inlineStr\" s=\"1\"><is><t>s</t></is></c></row>" +
+                        "<row r=\"2\">" +
+                        "<c r=\"A2\"><v>0</v></c>" +
+                        "<c r=\"B2\" s=\"2\"><v>36526</v></c>" +
+                        "<c r=\"C2\" t=\"b\"><v>1</v></c>" +
+                        "<c r=\"D2\" t=\"inlineStr\"><is><t xml:space=\"preserve\"> a&lt;b </t></is></c></row>" +
+                        "<row r=\"3\">" +
+                        "<c r=\"B3\" s=\"2\"><v>36527</v></c>" +
+                        "<c r=\"C3\" t=\"b\"><v>0</v></c></row>",
+                sheetData(entries.get("xl/worksheets/sheet1.xml")));
+
+        // the date style is the first custom format
+        final Document styles = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(entries.get("xl/styles.xml").getBytes(StandardCharsets.UTF_8)));
+        final NodeList xfs = ((Element) styles.getElementsByTagName("cellXfs").item(0)).getElementsByTagName("xf");
+        assertEquals(ExcelWriter.Style.values().length + 1, xfs.getLength());
+        assertEquals("164", ((Element) xfs.item(2)).getAttribute("numFmtId"));
+        assertEquals("yyyy.mm.dd", ((Element) styles.getElementsByTagName("numFmt").item(0)).getAttribute("formatCode"));
+    }
+
+    @Test
+    void sheets() throws Exception {
+        final List<ExcelWriter.Column> columns = List.of((i, cells) -> cells.number(i, ExcelWriter.Style.GENERAL));
+
+        final ExcelWriter writer = new ExcelWriter("Data", List.of("id"), columns, 5, true, 3);
+        assertEquals(3, writer.getSheetsCount());
+        final Map<String, String> entries = write(writer);
+        assertTrue(entries.get("xl/workbook.xml").contains("<sheet name=\"Data 3\" sheetId=\"3\" r:id=\"rId3\"/>"));
+        assertTrue(entries.get("xl/_rels/workbook.xml.rels").contains("Id=\"rId4\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\""));
+        assertTrue(entries.get("[Content_Types].xml").contains("/xl/worksheets/sheet3.xml"));
+
+        final String header = "<row r=\"1\"><c r=\"A1\" t=\"inlineStr\" s=\"1\"><is><t>id</t></is></c></row>";
+        assertEquals(header + "<row r=\"2\"><c r=\"A2\"><v>0</v></c></row><row r=\"3\"><c r=\"A3\"><v>1</v></c></row>", sheetData(entries.get("xl/worksheets/sheet1.xml")));
+        assertEquals(header + "<row r=\"2\"><c r=\"A2\"><v>2</v></c></row><row r=\"3\"><c r=\"A3\"><v>3</v></c></row>", sheetData(entries.get("xl/worksheets/sheet2.xml")));
+        assertEquals(header + "<row r=\"2\"><c r=\"A2\"><v>4</v></c></row>", sheetData(entries.get("xl/worksheets/sheet3.xml")));
+
+        // no header and no rows
+        assertEquals("", sheetData(write(new ExcelWriter("Data", null, columns, 0, false, 3)).get("xl/worksheets/sheet1.xml")));
+    }
+
+    @Test
+    void big() throws Exception {
+        final int rows = 100_000;
+        final List<ExcelWriter.Column> columns = List.of((i, cells) -> cells.number(i, ExcelWriter.Style.GENERAL), (i, cells) -> cells.text("s" + i % 7));
+
+        final Map<String, String> parallel = write(new ExcelWriter("Data", null, columns, rows, true, 30_000));
+        final Map<String, String> sequential = write(new ExcelWriter("Data", null, columns, rows, false, 30_000));
+        assertEquals(sequential, parallel);
+        assertEquals(4 + 5, parallel.size());
+
+        final String last = sheetData(parallel.get("xl/worksheets/sheet4.xml"));
+        assertTrue(last.startsWith("<row r=\"1\"><c r=\"A1\"><v>90000</v></c>"));
+        assertTrue(last.endsWith("<row r=\"10000\"><c r=\"A10000\"><v>99999</v></c><c r=\"B10000\" t=\"inlineStr\"><is><t>s4</t></is></c></row>"));
+    }
+
+    @Test
+    void canceled() throws Exception {
+        final AtomicInteger chunks = new AtomicInteger();
+        final ExcelWriter writer = new ExcelWriter("Data", null, List.of((i, cells) -> cells.number(i, ExcelWriter.Style.GENERAL)), 1_000_000, true, ExcelWriter.MAX_SHEET_ROWS);
+        assertFalse(writer.write(new ByteArrayOutputStream(), f -> chunks.incrementAndGet(), () -> chunks.get() == 2));
+        assertEquals(2, chunks.get());
+    }
+}
@@ -0,0 +1,164 @@
+package org.kdb.inside.brains.view.export;
+
+import kx.SymbolVector;
+import kx.TemporalVector;
+import kx.c;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SplayedWriterTest {
+    @TempDir
+    Path root;
+
+    private static c.Flip table(String[] names, Object... columns) {
+        return new c.Flip(new c.Dict(names, columns));
+    }
+
+    private static ByteBuffer read(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void assertHeader(ByteBuffer b, int type, long count) {
+        assertEquals((byte) 0xfe, b.get());
+        assertEquals(0x20, b.get());
+        assertEquals(type, b.get());
+        assertEquals(0, b.get());
+        assertEquals(0, b.getInt());
+        assertEquals(count, b.getLong());
+    }
+
+    @Test
+    void splayed() throws IOException {
+        final UUID uuid = UUID.fromString("01020304-0506-0708-090a-0b0c0d0e0f10");
+        final c.Flip flip = table(new String[]{"id", "sym", "px", "flag", "g", "s"},
+                new long[]{1, 2, 3},
+                new String[]{"b", "a", "b"},
+                new double[]{1.5, 2.5, 3.5},
+                new boolean[]{true, false, true},
+                new UUID[]{uuid, null, uuid},
+                new Object[]{"ab".toCharArray(), "c".toCharArray(), "".toCharArray()});
+        assertTrue(new SplayedWriter(root, "t", flip, null).write(f -> {
+        }, () -> false));
+
+        final Path dir = root.resolve("t");
+        assertArrayEquals(new String[]{"id", "sym", "px", "flag", "g", "s"}, SplayedWriter.readSymbols(dir.resolve(".d")));
+        assertArrayEquals(new String[]{"b", "a"}, SplayedWriter.readSymbols(root.resolve("sym")));
+
+        final ByteBuffer id = read(dir.resolve("id"));
+        assertHeader(id, 7, 3);
+        assertEquals(1, id.getLong());
+        assertEquals(2, id.getLong());
+        assertEquals(3, id.getLong());
+        assertFalse(id.hasRemaining());
+
+        final ByteBuffer sym = read(dir.resolve("sym"));
+        assertHeader(sym, 20, 3);
+        assertEquals(0, sym.getLong());
+        assertEquals(1, sym.getLong());
+        assertEquals(0, sym.getLong());
+
+        final ByteBuffer px = read(dir.resolve("px"));
+        assertHeader(px, 9, 3);
+        assertEquals(1.5, px.getDouble());
+
+        final ByteBuffer flag = read(dir.resolve("flag"));
+        assertHeader(flag, 1, 3);
+        assertEquals(1, flag.get());
+        assertEquals(0, flag.get());
+
+        final ByteBuffer g = read(dir.resolve("g"));
+        assertHeader(g, 2, 3);
+        for (int i = 1; i <= 16; i++) {
+            assertEquals(i, g.get());
+        }
+        assertEquals(0, g.getLong());
+
+        // strings are serialized: the magic, a general list of 3 items and the first char vector
+        final ByteBuffer s = read(dir.resolve("s"));
+        assertEquals((byte) 0xff, s.get());
+        assertEquals(1, s.get());
+        assertEquals(0, s.get());
+        assertEquals(0, s.get());
+        assertEquals(3, s.getInt());
+        assertEquals(10, s.get());
+    }
+
+    @Test
+    void symbols() throws IOException {
+        assertTrue(new SplayedWriter(root, "a", table(new String[]{"s"}, (Object) new String[]{"x", null, "y"}), null).write(f -> {
+        }, () -> false));
+        assertArrayEquals(new String[]{"x", "", "y"}, SplayedWriter.readSymbols(root.resolve("sym")));
+
+        // the sym file of the database is extended by the next table
+        final SymbolVector vector = new SymbolVector(new int[]{1, 0, 1}, new String[]{"z", "y"});
+        assertTrue(new SplayedWriter(root, "b", table(new String[]{"s"}, vector), null).write(f -> {
+        }, () -> false));
+        assertArrayEquals(new String[]{"x", "", "y", "z"}, SplayedWriter.readSymbols(root.resolve("sym")));
+
+        final ByteBuffer s = read(root.resolve("b").resolve("s"));
+        assertHeader(s, 20, 3);
+        assertEquals(2, s.getLong());
+        assertEquals(3, s.getLong());
+        assertEquals(2, s.getLong());
+    }
+
+    @Test
+    void partitioned() throws IOException {
+        // 2024.01.02, 2024.01.01 and 2024.01.02
+        final TemporalVector.Ints dates = new TemporalVector.Ints(14, new int[]{8767, 8766, 8767}, null);
+        final c.Flip flip = table(new String[]{"date", "v"}, dates, new int[]{10, 20, 30});
+        assertEquals(List.of("date"), SplayedWriter.getPartitionColumns(flip));
+
+        final double[] progress = new double[1];
+        assertTrue(new SplayedWriter(root, "t", flip, "date").write(f -> progress[0] = f, () -> false));
+        assertEquals(1, progress[0]);
+
+        // the date column is virtual
+        final Path first = root.resolve("2024.01.01").resolve("t");
+        assertArrayEquals(new String[]{"v"}, SplayedWriter.readSymbols(first.resolve(".d")));
+        final ByteBuffer v1 = read(first.resolve("v"));
+        assertHeader(v1, 6, 1);
+        assertEquals(20, v1.getInt());
+
+        final ByteBuffer v2 = read(root.resolve("2024.01.02").resolve("t").resolve("v"));
+        assertHeader(v2, 6, 2);
+        assertEquals(10, v2.getInt());
+        assertEquals(30, v2.getInt());
+
+        // timestamps are kept in partitions
+        final TemporalVector.Longs times = new TemporalVector.Longs(12, new long[]{-1, 86_400_000_000_000L}, null);
+        assertTrue(new SplayedWriter(root, "q", table(new String[]{"time"}, times), "time").write(f -> {
+        }, () -> false));
+        assertHeader(read(root.resolve("1999.12.31").resolve("q").resolve("time")), 12, 1);
+        assertHeader(read(root.resolve("2000.01.02").resolve("q").resolve("time")), 12, 1);
+
+        // temporal objects are converted into raw values
+        final java.sql.Date[] objects = {new java.sql.Date((8766 + 10957) * 86_400_000L)};
+        assertTrue(new SplayedWriter(root, "o", table(new String[]{"date", "v"}, objects, new long[]{1}), "date").write(f -> {
+        }, () -> false));
+        assertHeader(read(root.resolve("2024.01.01").resolve("o").resolve("v")), 7, 1);
+
+        final TemporalVector.Ints nulls = new TemporalVector.Ints(14, new int[]{Integer.MIN_VALUE}, null);
+        assertThrows(IllegalArgumentException.class, () -> new SplayedWriter(root, "n", table(new String[]{"date"}, nulls), "date").write(f -> {
+        }, () -> false));
+    }
+
+    @Test
+    void keyed() {
+        final c.Flip keys = table(new String[]{"k"}, (Object) new long[]{1});
+        final c.Flip values = table(new String[]{"v"}, (Object) new double[]{2});
+        final c.Flip flip = SplayedWriter.toTable(new c.Dict(keys, values));
+        assertArrayEquals(new String[]{"k", "v"}, flip.x);
+        assertThrows(IllegalArgumentException.class, () -> SplayedWriter.toTable(new long[]{1}));
+    }
+}